@@ -0,0 +1,107 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import it.iacovelli.nexabudgetbe.config.BinaryCacheSerializer;
+import it.iacovelli.nexabudgetbe.config.CacheConfig;
+import it.iacovelli.nexabudgetbe.dto.GocardlessAmount;
+import it.iacovelli.nexabudgetbe.dto.GocardlessTransaction;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode dei valori in cache: serializer JSON con {@code @class} (quello precedente) contro
+ * {@link BinaryCacheSerializer} (Smile + Deflate sopra soglia), sui valori grandi delle cache: la mappa
+ * {@code ALL_USDT}, una lista di transazioni bancarie e il corpo di un report AI. Le dimensioni codificate
+ * di ogni payload vengono stampate al setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    @Param({"TICKERS", "TRANSACTIONS", "REPORT"})
+    public String payload;
+
+    @Param({"JSON", "BINARY"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper cacheMapper = CacheConfig.cacheObjectMapper(
+                new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+        serializer = "JSON".equals(codec)
+                ? new GenericJackson2JsonRedisSerializer(cacheMapper)
+                : new BinaryCacheSerializer(cacheMapper.copyWith(new SmileFactory()), 1024);
+        value = switch (payload) {
+            case "TICKERS" -> tickers(2500);
+            case "TRANSACTIONS" -> transactions(1000);
+            default -> report(40_000);
+        };
+        encoded = serializer.serialize(value);
+        System.out.printf("%n[%s/%s] %d byte codificati%n", payload, codec, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    private static Map<String, BigDecimal> tickers(int count) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            prices.put("SYM" + i, BigDecimal.valueOf(random.nextDouble() * 1000).setScale(8, java.math.RoundingMode.HALF_UP));
+        }
+        return prices;
+    }
+
+    private static List<GocardlessTransaction> transactions(int count) {
+        List<GocardlessTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GocardlessAmount amount = new GocardlessAmount();
+            amount.setAmount((i % 3 == 0 ? "" : "-") + (i % 997) + "." + (10 + i % 90));
+            amount.setCurrency("EUR");
+            GocardlessTransaction tx = new GocardlessTransaction();
+            tx.setTransactionId(UUID.nameUUIDFromBytes(("tx" + i).getBytes()).toString());
+            tx.setBookingDate("2024-" + String.format("%02d-%02d", 1 + i % 12, 1 + i % 28));
+            tx.setValueDate(tx.getBookingDate());
+            tx.setTransactionAmount(amount);
+            tx.setCreditorName("Esercente " + (i % 150));
+            tx.setRemittanceInformationUnstructuredArray(new ArrayList<>(List.of(
+                    "PAGAMENTO POS " + (i % 150), "CARTA **** " + (1000 + i % 9000))));
+            tx.setProprietaryBankTransactionCode("PMNT-CCRD-POSD");
+            tx.setInternalTransactionId("int-" + i);
+            transactions.add(tx);
+        }
+        return transactions;
+    }
+
+    private static String report(int length) {
+        StringBuilder sb = new StringBuilder(length + 200);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("## Analisi mese ").append(1 + i % 12).append('\n')
+                    .append("Le spese per la categoria Spesa sono aumentate del ").append(i % 30)
+                    .append("% rispetto al mese precedente; le entrate restano stabili.\n");
+        }
+        return sb.toString();
+    }
+}
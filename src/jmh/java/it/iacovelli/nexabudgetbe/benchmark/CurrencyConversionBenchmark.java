@@ -0,0 +1,64 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import it.iacovelli.nexabudgetbe.service.ConversionContext;
+import it.iacovelli.nexabudgetbe.service.CurrencyConversionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversione di ogni transazione nella valuta dell'utente al tasso del suo mese, con lo storico dei tassi in
+ * memoria: {@link CurrencyConversionService#convert(BigDecimal, String, String, java.time.LocalDate)} (ricerca del
+ * tasso e arrotondamento per riga) contro {@link ConversionContext} (tasso memorizzato per valuta e data, somma a
+ * precisione piena). {@code sumOnly} è la sola somma BigDecimal, senza conversione, come riferimento.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CurrencyConversionBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int transactions;
+
+    private ReportDataset dataset;
+    private CurrencyConversionService conversionService;
+
+    @Setup
+    public void setUp() {
+        dataset = new ReportDataset(transactions);
+        conversionService = ReportDataset.conversionService(dataset.firstMonth.minusMonths(1));
+    }
+
+    @Benchmark
+    public BigDecimal convertEachRow() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < dataset.size; i++) {
+            sum = sum.add(conversionService.convert(dataset.amounts[i], dataset.currencies[i],
+                    ReportDataset.TARGET_CURRENCY, dataset.rateDates[i]));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public BigDecimal conversionContext() {
+        ConversionContext conversions = conversionService.newContext(ReportDataset.TARGET_CURRENCY);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < dataset.size; i++) {
+            sum = sum.add(conversions.convert(dataset.amounts[i], dataset.currencies[i], dataset.rateDates[i]));
+        }
+        return ConversionContext.money(sum);
+    }
+
+    @Benchmark
+    public BigDecimal sumOnly() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < dataset.size; i++) {
+            sum = sum.add(dataset.amounts[i]);
+        }
+        return sum;
+    }
+}
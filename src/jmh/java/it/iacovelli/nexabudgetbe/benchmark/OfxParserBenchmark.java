@@ -0,0 +1,148 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import it.iacovelli.nexabudgetbe.service.OfxStatementParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing di un estratto conto OFX da ~10 MB: tokenizer in streaming ({@link OfxStatementParser}) contro il parser
+ * precedente a regex, che caricava il file in una String e compilava un Pattern per ogni tag di ogni blocco.
+ * Per confrontare anche le allocazioni: {@code -Djmh.args="OfxParserBenchmark -prof gc"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OfxParserBenchmark {
+
+    private static final int TARGET_BYTES = 10 * 1024 * 1024;
+
+    @Param({"SGML", "XML"})
+    public String dialect;
+
+    private byte[] statement;
+
+    @Setup
+    public void setUp() {
+        statement = syntheticStatement("XML".equals(dialect)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streaming(Blackhole bh) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(statement), StandardCharsets.UTF_8)) {
+            return OfxStatementParser.parse(reader, Integer.MAX_VALUE, bh::consume);
+        }
+    }
+
+    @Benchmark
+    public int legacyRegex(Blackhole bh) {
+        return LegacyRegexParser.parse(statement, bh);
+    }
+
+    private static String syntheticStatement(boolean xml) {
+        StringBuilder sb = new StringBuilder(TARGET_BYTES + 1024);
+        sb.append(xml
+                ? "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<OFX>\n<BANKTRANLIST>\n"
+                : "OFXHEADER:100\nDATA:OFXSGML\nVERSION:102\n\n<OFX>\n<BANKTRANLIST>\n");
+        LocalDate base = LocalDate.of(2020, 1, 1);
+        for (int i = 0; sb.length() < TARGET_BYTES; i++) {
+            String date = base.plusDays(i % 2000).format(DateTimeFormatter.BASIC_ISO_DATE);
+            String amount = (i % 3 == 0 ? "" : "-") + (i % 997) + "." + (10 + i % 90);
+            sb.append("<STMTTRN>\n");
+            leaf(sb, "TRNTYPE", i % 3 == 0 ? "CREDIT" : "DEBIT", xml);
+            leaf(sb, "DTPOSTED", date + "120000.000[+1:CET]", xml);
+            leaf(sb, "TRNAMT", amount, xml);
+            leaf(sb, "FITID", "FIT" + i, xml);
+            leaf(sb, "NAME", "Esercente " + (i % 1500), xml);
+            leaf(sb, "MEMO", "Pagamento carta **** " + (1000 + i % 9000) + " operazione " + i, xml);
+            // In OFX 1.x gli aggregati (STMTTRN) si chiudono, i tag foglia no
+            sb.append("</STMTTRN>\n");
+        }
+        return sb.append("</BANKTRANLIST>\n</OFX>\n").toString();
+    }
+
+    private static void leaf(StringBuilder sb, String tag, String value, boolean xml) {
+        sb.append('<').append(tag).append('>').append(value);
+        if (xml) {
+            sb.append("</").append(tag).append('>');
+        }
+        sb.append('\n');
+    }
+
+    /** Copia del parser OFX di ImportService prima del tokenizer in streaming, come baseline. */
+    static final class LegacyRegexParser {
+
+        static int parse(byte[] file, Blackhole bh) {
+            String content = new String(file, StandardCharsets.UTF_8);
+            if (content.trim().startsWith("<?xml") || content.contains("<OFX>") && content.contains("</OFX>")) {
+                return parseXml(content, bh);
+            }
+            return parseSgml(content, bh);
+        }
+
+        private static int parseSgml(String content, Blackhole bh) {
+            int count = 0;
+            String[] blocks = content.split("(?i)<STMTTRN>");
+            for (int i = 1; i < blocks.length; i++) {
+                count += emit(blocks[i], false, bh);
+            }
+            return count;
+        }
+
+        private static int parseXml(String content, Blackhole bh) {
+            int count = 0;
+            Pattern stmtTrnPattern = Pattern.compile(
+                    "<STMTTRN>(.*?)</STMTTRN>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+            Matcher matcher = stmtTrnPattern.matcher(content);
+            while (matcher.find()) {
+                count += emit(matcher.group(1), true, bh);
+            }
+            return count;
+        }
+
+        private static int emit(String block, boolean xml, Blackhole bh) {
+            try {
+                String dateStr = xml ? extractXmlTag(block, "DTPOSTED") : extractSgmlTag(block, "DTPOSTED");
+                String amountStr = xml ? extractXmlTag(block, "TRNAMT") : extractSgmlTag(block, "TRNAMT");
+                String name = xml ? extractXmlTag(block, "NAME") : extractSgmlTag(block, "NAME");
+                String memo = xml ? extractXmlTag(block, "MEMO") : extractSgmlTag(block, "MEMO");
+                String fitId = xml ? extractXmlTag(block, "FITID") : extractSgmlTag(block, "FITID");
+                if (dateStr == null || amountStr == null) return 0;
+
+                LocalDate date = LocalDate.parse(dateStr.substring(0, 8), DateTimeFormatter.ofPattern("yyyyMMdd"));
+                BigDecimal amount = new BigDecimal(amountStr.replace(",", ".").trim());
+                bh.consume(new OfxStatementParser.Entry(date, amount, name, memo, fitId));
+                return 1;
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+
+        private static String extractSgmlTag(String block, String tag) {
+            Pattern p = Pattern.compile("(?i)<" + tag + ">([^<\\r\\n]+)");
+            Matcher m = p.matcher(block);
+            return m.find() ? m.group(1).trim() : null;
+        }
+
+        private static String extractXmlTag(String block, String tag) {
+            Pattern p = Pattern.compile("(?i)<" + tag + ">([^<]+)</" + tag + ">");
+            Matcher m = p.matcher(block);
+            if (m.find()) return m.group(1).trim();
+            return extractSgmlTag(block, tag);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import it.iacovelli.nexabudgetbe.dto.ReportDto;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.service.ReportService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregazione in memoria dei report ({@link ReportService}) su 24 mesi di dati sintetici in quattro valute, con il
+ * rollup e lo storico dei tassi serviti dalla memoria: misura solo raggruppamento, conversione e aritmetica BigDecimal.
+ * {@code ROLLUP} passa le righe già raggruppate per (mese, categoria, valuta, tipo) come le legge il rollup mensile,
+ * {@code RAW} una riga per transazione (il caso peggiore, come i mesi parziali letti da {@code transactions}).
+ * {@code monthlyTrend} passa da {@code buildMonthlyNetMap}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ReportAggregationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int transactions;
+
+    @Param({"ROLLUP", "RAW"})
+    public String rows;
+
+    private ReportService reportService;
+    private User user;
+    private LocalDate start;
+    private LocalDate end;
+
+    @Setup
+    public void setUp() {
+        ReportDataset dataset = new ReportDataset(transactions);
+        reportService = ReportDataset.reportService(
+                "RAW".equals(rows) ? dataset.rawTotals() : dataset.rollupTotals(),
+                ReportDataset.conversionService(dataset.firstMonth.minusMonths(1)));
+        user = ReportDataset.user();
+        start = dataset.firstMonth;
+        end = dataset.lastMonth.withDayOfMonth(dataset.lastMonth.lengthOfMonth());
+    }
+
+    @Benchmark
+    public ReportDto.MonthlyTrendResponse monthlyTrend() {
+        return reportService.getMonthlyTrend(user, ReportDataset.MONTHS);
+    }
+
+    @Benchmark
+    public ReportDto.CategoryBreakdownResponse categoryBreakdown() {
+        return reportService.getCategoryBreakdown(user, start, end);
+    }
+
+    @Benchmark
+    public ReportDto.BalanceTrendResponse balanceTrend() {
+        return reportService.getBalanceTrend(user, start, end);
+    }
+
+    @Benchmark
+    public ReportDto.ReportBundle reportBundle() {
+        return reportService.getReportBundle(user, start, end);
+    }
+}
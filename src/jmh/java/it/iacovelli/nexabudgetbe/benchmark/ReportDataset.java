@@ -0,0 +1,188 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.CategoryRepository;
+import it.iacovelli.nexabudgetbe.repository.ExchangeRateRepository;
+import it.iacovelli.nexabudgetbe.service.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Dati sintetici per i benchmark dei report: transazioni distribuite su {@link #MONTHS} mesi, 40 categorie (più il
+ * 5% senza categoria) e quattro valute, con uno storico giornaliero dei tassi in memoria al posto del database.
+ * Il seed è fisso, così ogni esecuzione misura lo stesso dataset.
+ */
+final class ReportDataset {
+
+    static final int MONTHS = 24;
+    static final String TARGET_CURRENCY = "EUR";
+    static final String[] CURRENCIES = {"EUR", "USD", "GBP", "CHF"};
+
+    private static final int CATEGORIES = 40;
+
+    final int size;
+    final BigDecimal[] amounts;
+    final String[] currencies;
+    final LocalDate[] dates;
+    final TransactionType[] types;
+    final UUID[] categories;
+    /** Data del tasso di fine mese di ogni transazione, come la usano i report. */
+    final LocalDate[] rateDates;
+    final LocalDate firstMonth;
+    final LocalDate lastMonth;
+
+    ReportDataset(int size) {
+        this.size = size;
+        amounts = new BigDecimal[size];
+        currencies = new String[size];
+        dates = new LocalDate[size];
+        types = new TransactionType[size];
+        categories = new UUID[size];
+        rateDates = new LocalDate[size];
+        lastMonth = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+        firstMonth = lastMonth.minusMonths(MONTHS - 1);
+
+        UUID[] categoryIds = new UUID[CATEGORIES];
+        for (int i = 0; i < CATEGORIES; i++) {
+            categoryIds[i] = UUID.nameUUIDFromBytes(("category" + i).getBytes());
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            LocalDate month = firstMonth.plusMonths(random.nextInt(MONTHS));
+            dates[i] = month.withDayOfMonth(1 + random.nextInt(month.lengthOfMonth()));
+            rateDates[i] = CurrencyConversionService.monthRateDate(month.getYear(), month.getMonthValue());
+            // 70% EUR, il resto diviso tra le altre valute
+            int c = random.nextInt(10);
+            currencies[i] = c < 7 ? "EUR" : CURRENCIES[c - 6];
+            types[i] = random.nextInt(10) < 7 ? TransactionType.OUT : TransactionType.IN;
+            categories[i] = random.nextInt(20) == 0 ? null : categoryIds[random.nextInt(CATEGORIES)];
+            amounts[i] = BigDecimal.valueOf(100 + random.nextInt(250_000), 2);
+        }
+    }
+
+    /** Una riga per transazione, come i mesi parziali letti da {@code transactions}. */
+    List<MonthlyRollupService.MonthlyTotal> rawTotals() {
+        List<MonthlyRollupService.MonthlyTotal> totals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            totals.add(new MonthlyRollupService.MonthlyTotal(dates[i].getYear(), dates[i].getMonthValue(),
+                    categories[i], currencies[i], types[i], amounts[i]));
+        }
+        return totals;
+    }
+
+    /** Righe raggruppate per (mese, categoria, valuta, tipo), come le restituisce il rollup mensile. */
+    List<MonthlyRollupService.MonthlyTotal> rollupTotals() {
+        record Key(int year, int month, UUID categoryId, String currency, TransactionType type) {
+        }
+        Map<Key, BigDecimal> grouped = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            grouped.merge(new Key(dates[i].getYear(), dates[i].getMonthValue(), categories[i], currencies[i], types[i]),
+                    amounts[i], BigDecimal::add);
+        }
+        List<MonthlyRollupService.MonthlyTotal> totals = new ArrayList<>(grouped.size());
+        grouped.forEach((k, amount) ->
+                totals.add(new MonthlyRollupService.MonthlyTotal(k.year(), k.month(), k.categoryId(), k.currency(), k.type(), amount)));
+        return totals;
+    }
+
+    /**
+     * Conversione con lo storico in memoria: un tasso al giorno verso la pivot USD per ogni valuta, dal primo mese
+     * del dataset a oggi. Tutte le coppie sono coperte, quindi il tasso corrente (e la rete) non serve mai.
+     */
+    static CurrencyConversionService conversionService(LocalDate from) {
+        List<Object[]> rows = new ArrayList<>();
+        Map<String, Double> base = Map.of("EUR", 0.92, "GBP", 0.79, "CHF", 0.88);
+        Random random = new Random(7);
+        for (LocalDate day = from; !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+            for (Map.Entry<String, Double> e : base.entrySet()) {
+                double rate = e.getValue() * (0.97 + random.nextDouble() * 0.06);
+                rows.add(new Object[]{"USD", e.getKey(), day, BigDecimal.valueOf(rate).setScale(6, java.math.RoundingMode.HALF_UP)});
+            }
+        }
+        ExchangeRateRepository repository = stub(ExchangeRateRepository.class,
+                Map.of("findAllRatesOrderByDate", rows));
+        HistoricalExchangeRateService history = new HistoricalExchangeRateService(repository, null, "USD", false);
+        history.loadSeries();
+        return new CurrencyConversionService(null, history);
+    }
+
+    /** ReportService senza Spring: rollup servito da {@code totals}, nessuna cache, repository delle categorie vuoto. */
+    static ReportService reportService(List<MonthlyRollupService.MonthlyTotal> totals, CurrencyConversionService conversion) {
+        NavigableMap<Integer, List<MonthlyRollupService.MonthlyTotal>> byMonth = new TreeMap<>();
+        for (MonthlyRollupService.MonthlyTotal t : totals) {
+            byMonth.computeIfAbsent(MonthlyRollupService.yearMonth(LocalDate.of(t.year(), t.month(), 1)),
+                    k -> new ArrayList<>()).add(t);
+        }
+        MonthlyRollupService rollup = new MonthlyRollupService(null, null, null, null, "update-insert") {
+            @Override
+            public List<MonthlyTotal> findMonthlyTotals(User user, LocalDate start, LocalDate end) {
+                List<MonthlyTotal> slice = new ArrayList<>();
+                byMonth.subMap(yearMonth(start), true, yearMonth(end), true).values().forEach(slice::addAll);
+                return slice;
+            }
+
+            @Override
+            public ReportWindow findReportWindow(User user, LocalDate start, LocalDate end) {
+                Map<String, BigDecimal> opening = new HashMap<>();
+                byMonth.headMap(yearMonth(start), false).values().forEach(month -> month.forEach(t ->
+                        opening.merge(t.currency(), t.type() == TransactionType.IN ? t.amount() : t.amount().negate(),
+                                BigDecimal::add)));
+                return new ReportWindow(findMonthlyTotals(user, start, end), opening);
+            }
+        };
+        CacheManager noCache = new CacheManager() {
+            @Override
+            public Cache getCache(String name) {
+                return null;
+            }
+
+            @Override
+            public Collection<String> getCacheNames() {
+                return List.of();
+            }
+        };
+        return new ReportService(rollup, stub(CategoryRepository.class, Map.of()), conversion,
+                new ReportCacheService(noCache, null));
+    }
+
+    static User user() {
+        User user = new User();
+        user.setId(UUID.nameUUIDFromBytes("benchmark".getBytes()));
+        user.setDefaultCurrency(TARGET_CURRENCY);
+        return user;
+    }
+
+    /** Repository finto: i metodi in {@code results} restituiscono il valore indicato, le liste sono vuote. */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Object> results) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + " stub";
+                default:
+                    break;
+            }
+            if (results.containsKey(method.getName())) {
+                return results.get(method.getName());
+            }
+            Class<?> returnType = method.getReturnType();
+            if (Iterable.class.isAssignableFrom(returnType)) {
+                return List.of();
+            }
+            if (returnType == Optional.class) {
+                return Optional.empty();
+            }
+            return returnType == boolean.class ? false : null;
+        });
+    }
+}
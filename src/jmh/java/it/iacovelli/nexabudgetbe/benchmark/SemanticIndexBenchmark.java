@@ -0,0 +1,158 @@
+package it.iacovelli.nexabudgetbe.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import it.iacovelli.nexabudgetbe.service.semantic.EmbeddingEncoding;
+import it.iacovelli.nexabudgetbe.service.semantic.UserVectorIndex;
+import it.iacovelli.nexabudgetbe.service.semantic.VectorIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ricerca nell'indice in memoria della cache semantica ({@link UserVectorIndex}) con le forme di
+ * {@link EmbeddingEncoding}: embedding completi a 3072 dimensioni, troncati a 768 (Matryoshka), quantizzati int8 e
+ * le due cose insieme. {@code entries} sotto e sopra la soglia HNSW (2000) misura sia la forza bruta sia il grafo.
+ * <p>
+ * Gli embedding sono sintetici ma etichettati: ogni token delle descrizioni ha un vettore casuale fisso, con varianza
+ * decrescente lungo le dimensioni come nei modelli addestrati Matryoshka, e la descrizione somma merchant, variante
+ * di scrittura del merchant, categoria e rumore (circuito, città, riferimenti), tarati perché molte coppie dello
+ * stesso merchant cadano vicino alla soglia. Al setup, alla soglia di 0.82 sullo score {@code (1 + coseno) / 2} di
+ * {@code SemanticCacheService}, vengono misurate la quota di query di merchant noti servite dalla cache, la
+ * precisione delle risposte, le false risposte su merchant mai visti e la memoria dell'indice: sono scritte in
+ * {@code target/jmh-semantic-index/<encoding>-<entries>.json}, accanto ai risultati JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SemanticIndexBenchmark {
+
+    private static final int DIMENSIONS = 3072;
+    private static final double SIMILARITY_THRESHOLD = 0.82;
+    private static final int HNSW_THRESHOLD = 2000;
+    private static final int CATEGORIES = 20;
+    private static final int MERCHANTS_PER_CATEGORY = 60;
+    private static final int VARIANTS = 3;
+    private static final int QUERIES = 1000;
+    private static final String[] CITIES = {"MILANO", "ROMA", "TORINO", "NAPOLI", "BOLOGNA", "FIRENZE", "BARI", "ONLINE"};
+    private static final String[] PREFIXES = {"POS", "PAGAMENTO", "ADDEBITO SDD", "CARTA", "APPLE PAY"};
+    private static final Path QUALITY_OUTPUT = Path.of("target", "jmh-semantic-index");
+
+    @Param({"500", "5000"})
+    public int entries;
+
+    @Param({"FULL", "INT8", "DIM768", "DIM768_INT8"})
+    public String encoding;
+
+    private UserVectorIndex index;
+    private float[][] queries;
+    private int next;
+
+    /** Descrizione etichettata: embedding e categoria attesa. */
+    private record Sample(float[] embedding, int category) {
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        EmbeddingEncoding embeddingEncoding = switch (encoding) {
+            case "INT8" -> new EmbeddingEncoding(0, EmbeddingEncoding.Quantization.INT8);
+            case "DIM768" -> new EmbeddingEncoding(768, EmbeddingEncoding.Quantization.FLOAT32);
+            case "DIM768_INT8" -> new EmbeddingEncoding(768, EmbeddingEncoding.Quantization.INT8);
+            default -> EmbeddingEncoding.FULL;
+        };
+        Random random = new Random(42);
+        int knownMerchants = CATEGORIES * MERCHANTS_PER_CATEGORY / 2;
+        index = new UserVectorIndex(HNSW_THRESHOLD, embeddingEncoding);
+        for (int i = 0; i < entries; i++) {
+            Sample sample = sample(random.nextInt(knownMerchants), random);
+            index.add(sample.embedding(), "cat-" + sample.category());
+        }
+
+        List<Sample> known = new ArrayList<>();
+        List<Sample> unseen = new ArrayList<>();
+        for (int q = 0; q < QUERIES; q++) {
+            known.add(sample(random.nextInt(knownMerchants), random));
+            unseen.add(sample(knownMerchants + random.nextInt(knownMerchants), random));
+        }
+        queries = known.stream().map(Sample::embedding).toArray(float[][]::new);
+
+        int hits = 0;
+        int correct = 0;
+        for (Sample sample : known) {
+            Optional<String> answer = answer(sample);
+            if (answer.isPresent()) {
+                hits++;
+                if (answer.get().equals("cat-" + sample.category())) {
+                    correct++;
+                }
+            }
+        }
+        int wrongUnseen = 0;
+        for (Sample sample : unseen) {
+            Optional<String> answer = answer(sample);
+            if (answer.isPresent() && !answer.get().equals("cat-" + sample.category())) {
+                wrongUnseen++;
+            }
+        }
+        Map<String, Object> quality = new LinkedHashMap<>();
+        quality.put("encoding", encoding);
+        quality.put("entries", entries);
+        quality.put("similarityThreshold", SIMILARITY_THRESHOLD);
+        quality.put("hitRate", (double) hits / QUERIES);
+        quality.put("precision", hits == 0 ? 0.0 : (double) correct / hits);
+        quality.put("unseenFalseAnswerRate", (double) wrongUnseen / QUERIES);
+        quality.put("indexKb", index.weightKb());
+        Files.createDirectories(QUALITY_OUTPUT);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(QUALITY_OUTPUT.resolve(encoding + "-" + entries + ".json").toFile(), quality);
+    }
+
+    @Benchmark
+    public Optional<VectorIndex.Neighbor> nearest() {
+        float[] query = queries[next];
+        next = (next + 1) % queries.length;
+        return index.nearest(query);
+    }
+
+    private Optional<String> answer(Sample sample) {
+        return index.nearest(sample.embedding())
+                .filter(neighbor -> (1 + neighbor.cosine()) / 2 >= SIMILARITY_THRESHOLD)
+                .map(VectorIndex.Neighbor::category);
+    }
+
+    /**
+     * Descrizione del merchant {@code merchant} in una delle sue varianti di scrittura (ragione sociale, insegna,
+     * abbreviazioni), con prefisso, città e riferimento casuali.
+     */
+    private static Sample sample(int merchant, Random random) {
+        int category = merchant % CATEGORIES;
+        float[] embedding = new float[DIMENSIONS];
+        accumulate(embedding, "merchant-" + merchant, 1.0);
+        accumulate(embedding, "merchant-" + merchant + "-" + random.nextInt(VARIANTS), 0.6);
+        accumulate(embedding, "category-" + category, 0.6);
+        accumulate(embedding, PREFIXES[random.nextInt(PREFIXES.length)], 0.45);
+        accumulate(embedding, CITIES[random.nextInt(CITIES.length)], 0.45);
+        accumulate(embedding, "ref-" + random.nextInt(100_000), 0.5);
+        return new Sample(embedding, category);
+    }
+
+    /** Somma il vettore del token, fisso per token, con varianza {@code 1 / (1 + i / 64)} sulla dimensione i. */
+    private static void accumulate(float[] embedding, String token, double weight) {
+        Random random = new Random(token.hashCode());
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] += (float) (weight * random.nextGaussian() / Math.sqrt(1 + i / 64.0));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package it.iacovelli.nexabudgetbe.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Percorsi utente scriptati contro l'applicazione in ascolto: ogni percorso è la sequenza di chiamate REST che il
+ * frontend fa per quella schermata. Ogni chiamata è misurata nel {@link LatencyRecorder} con un'etichetta stabile
+ * (metodo e path con gli id sostituiti), e conta come errore se risponde con uno stato diverso da 2xx.
+ */
+final class Journeys {
+
+    enum Journey {
+        LOGIN, DASHBOARD, SYNC, IMPORT, CHAT, REPORT
+    }
+
+    private static final String[] IMPORT_DESCRIPTIONS = {
+            "Esselunga", "Coop", "Lidl", "Amazon Marketplace", "Italo Treno", "Trenitalia", "A2A Energia",
+            "Spotify", "Farmacia Centrale", "Pizzeria Napoli", "Q8 Carburanti", "Decathlon", "Ikea", "Bonifico stipendio"};
+    private static final String[] CHAT_MESSAGES = {
+            "Quanto ho speso questo mese?", "Quali sono le mie categorie di spesa principali?",
+            "Sto rispettando i budget?", "Come è andato il saldo negli ultimi sei mesi?"};
+    private static final int IMPORT_ROWS = 100;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final LatencyRecorder recorder;
+
+    Journeys(HttpClient httpClient, String baseUrl, LatencyRecorder recorder) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.recorder = recorder;
+    }
+
+    /** Sessione di un virtual user: il token viene rinnovato dal percorso di login. */
+    final class Session {
+        private final LoadTestSeeder.SeededUser user;
+        private String token;
+
+        Session(LoadTestSeeder.SeededUser user) {
+            this.user = user;
+        }
+
+        void run(Journey journey) throws InterruptedException {
+            if (token == null && journey != Journey.LOGIN) {
+                login();
+            }
+            switch (journey) {
+                case LOGIN -> login();
+                case DASHBOARD -> dashboard();
+                case SYNC -> sync();
+                case IMPORT -> importCsv();
+                case CHAT -> chat();
+                case REPORT -> report();
+            }
+        }
+
+        private void login() throws InterruptedException {
+            String body = json(Map.of("username", user.username(), "password", LoadTestSeeder.PASSWORD));
+            HttpResponse<String> response = send("POST /api/auth/login",
+                    request("/api/auth/login").header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body)));
+            if (response != null && response.statusCode() == 200) {
+                try {
+                    token = objectMapper.readTree(response.body()).path("token").asText(null);
+                } catch (IOException e) {
+                    token = null;
+                }
+            }
+        }
+
+        private void dashboard() throws InterruptedException {
+            get("GET /api/dashboard", "/api/dashboard?months=12");
+            get("GET /api/accounts/", "/api/accounts/");
+            get("GET /api/crypto/portfolio", "/api/crypto/portfolio?currency=EUR");
+        }
+
+        private void sync() throws InterruptedException {
+            get("GET /api/banking/gocardless/banks", "/api/banking/gocardless/banks?countryCode=IT");
+            post("POST /api/banking/gocardless/{id}/sync", "/api/banking/gocardless/" + user.gocardlessAccountId() + "/sync");
+            post("POST /api/banking/enable-banking/{id}/sync", "/api/banking/enable-banking/" + user.enableBankingAccountId() + "/sync");
+        }
+
+        private void importCsv() throws InterruptedException {
+            String boundary = "loadtest-" + UUID.randomUUID();
+            StringBuilder csv = new StringBuilder();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < IMPORT_ROWS; i++) {
+                String description = IMPORT_DESCRIPTIONS[random.nextInt(IMPORT_DESCRIPTIONS.length)];
+                boolean income = description.startsWith("Bonifico");
+                csv.append(LocalDate.now().minusDays(random.nextInt(90))).append(',')
+                        .append(income ? "" : "-").append(1 + random.nextInt(500)).append('.').append(10 + random.nextInt(90)).append(',')
+                        .append(description).append(' ').append(random.nextInt(1000)).append('\n');
+            }
+            String mapping = json(Map.of("dateColumn", 0, "amountColumn", 1, "descriptionColumn", 2, "hasHeader", false));
+            String body = "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"movimenti.csv\"\r\n"
+                    + "Content-Type: text/csv\r\n\r\n" + csv + "\r\n"
+                    + "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"mapping\"\r\n"
+                    + "Content-Type: application/json\r\n\r\n" + mapping + "\r\n"
+                    + "--" + boundary + "--\r\n";
+            send("POST /api/accounts/{id}/import/csv",
+                    authorized("/api/accounts/" + user.manualAccountId() + "/import/csv")
+                            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                            .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)));
+        }
+
+        private void chat() throws InterruptedException {
+            String message = CHAT_MESSAGES[ThreadLocalRandom.current().nextInt(CHAT_MESSAGES.length)];
+            send("POST /api/chat", authorized("/api/chat").header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json(Map.of("message", message)))));
+        }
+
+        private void report() throws InterruptedException {
+            LocalDate today = LocalDate.now();
+            LocalDate yearStart = today.withDayOfMonth(1).minusMonths(11);
+            get("GET /api/reports/monthly-trend", "/api/reports/monthly-trend?months=12");
+            get("GET /api/reports/category-breakdown",
+                    "/api/reports/category-breakdown?startDate=" + today.withDayOfMonth(1) + "&endDate=" + today);
+            get("GET /api/reports/balance-trend",
+                    "/api/reports/balance-trend?startDate=" + yearStart + "&endDate=" + today);
+            get("GET /api/reports/monthly-projection", "/api/reports/monthly-projection");
+        }
+
+        private void get(String label, String path) throws InterruptedException {
+            send(label, authorized(path).GET());
+        }
+
+        private void post(String label, String path) throws InterruptedException {
+            send(label, authorized(path).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{}")));
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return request(path).header("Authorization", "Bearer " + token);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60));
+    }
+
+    /** Esegue e misura la chiamata; un'eccezione di rete conta come errore con la latenza fino al fallimento. */
+    private HttpResponse<String> send(String label, HttpRequest.Builder request) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            recorder.record(label, System.nanoTime() - start, response.statusCode() >= 300);
+            return response;
+        } catch (IOException e) {
+            recorder.record(label, System.nanoTime() - start, true);
+            return null;
+        }
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
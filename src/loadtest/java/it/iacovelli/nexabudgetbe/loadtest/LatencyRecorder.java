@@ -0,0 +1,70 @@
+package it.iacovelli.nexabudgetbe.loadtest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latenze per endpoint (metodo e path con gli id sostituiti da {@code {id}}), registrate dai virtual user. Tiene
+ * tutti i campioni: un load test locale produce al più qualche milione di richieste, e i percentili esatti
+ * evitano gli errori di bucket di un istogramma. Le chiamate del warm-up non vengono registrate.
+ */
+final class LatencyRecorder {
+
+    /** Percentili di un endpoint, in millisecondi. */
+    record EndpointSummary(String endpoint, int requests, int errors,
+                           double p50, double p90, double p95, double p99, double max) {
+    }
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long elapsedNanos, boolean error) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = elapsedNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointSummary summarize(String endpoint) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return new EndpointSummary(endpoint, size, errors, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 95), percentile(sorted, 99), size == 0 ? 0 : sorted[size - 1] / 1e6);
+        }
+    }
+
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+
+    /** Fine del warm-up: da qui in poi le chiamate entrano nei percentili. */
+    void startRecording() {
+        recording = true;
+    }
+
+    void record(String endpoint, long elapsedNanos, boolean error) {
+        if (!recording) {
+            return;
+        }
+        samples.computeIfAbsent(endpoint, k -> new Samples()).add(elapsedNanos, error);
+    }
+
+    List<EndpointSummary> summaries() {
+        List<EndpointSummary> summaries = new ArrayList<>();
+        new TreeMap<>(samples).forEach((endpoint, s) -> summaries.add(s.summarize(endpoint)));
+        return summaries;
+    }
+
+    /** Nearest-rank: il valore sotto cui cade almeno il {@code p}% dei campioni. */
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+}
@@ -0,0 +1,147 @@
+package it.iacovelli.nexabudgetbe.loadtest;
+
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.*;
+import it.iacovelli.nexabudgetbe.service.TransactionReadModelService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Dataset sintetico del load test, scritto con i repository dell'applicazione già avviata: per ogni utente
+ * categorie proprie, un conto manuale in EUR, uno in USD, uno collegato a GoCardless e uno a Enable Banking
+ * (serviti dagli stub), qualche holding crypto manuale e {@code transactionsPerUser} transazioni distribuite su
+ * {@code months} mesi. Saldi e rollup mensile sono aggiornati con lo stesso {@link TransactionReadModelService}
+ * delle scritture reali, così i report leggono dati coerenti.
+ */
+final class LoadTestSeeder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestSeeder.class);
+
+    static final String PASSWORD = "LoadTest-password-1";
+
+    private static final String[] CATEGORIES = {
+            "Spesa", "Trasporti", "Casa", "Bollette", "Ristoranti", "Svago", "Salute", "Stipendio"};
+    private static final String[] DESCRIPTIONS = {
+            "Esselunga", "Conad", "Amazon", "Trenitalia", "Enel Energia", "Netflix", "Farmacia Comunale",
+            "Ristorante Da Mario", "IP Carburanti", "Zara", "Bonifico stipendio", "Affitto"};
+    private static final int BATCH_SIZE = 1_000;
+
+    /** Utente creato dal seeder, con i conti usati dai percorsi. */
+    record SeededUser(String username, UUID manualAccountId, UUID gocardlessAccountId, UUID enableBankingAccountId) {
+    }
+
+    private final UserRepository userRepository;
+    private final AccountRepository accountRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionRepository transactionRepository;
+    private final CryptoHoldingRepository cryptoHoldingRepository;
+    private final TransactionReadModelService readModelService;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+
+    LoadTestSeeder(ApplicationContext context) {
+        this.userRepository = context.getBean(UserRepository.class);
+        this.accountRepository = context.getBean(AccountRepository.class);
+        this.categoryRepository = context.getBean(CategoryRepository.class);
+        this.transactionRepository = context.getBean(TransactionRepository.class);
+        this.cryptoHoldingRepository = context.getBean(CryptoHoldingRepository.class);
+        this.readModelService = context.getBean(TransactionReadModelService.class);
+        this.passwordEncoder = context.getBean(PasswordEncoder.class);
+        this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    List<SeededUser> seed(int users, int transactionsPerUser, int months) {
+        long start = System.nanoTime();
+        // Un solo hash bcrypt per tutti gli utenti: il costo del login resta quello reale, il seeding no
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<SeededUser> seeded = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            seeded.add(seedUser("lt-" + runId + "-" + i, passwordHash, transactionsPerUser, months, new Random(i)));
+        }
+        logger.info("Seed completato: {} utenti, {} transazioni ciascuno, in {} ms",
+                users, transactionsPerUser, (System.nanoTime() - start) / 1_000_000);
+        return seeded;
+    }
+
+    private SeededUser seedUser(String username, String passwordHash, int transactions, int months, Random random) {
+        record Setup(User user, List<Category> categories, List<Account> accounts, SeededUser seeded) {
+        }
+        Setup setup = transactionTemplate.execute(status -> {
+            User user = userRepository.save(User.builder()
+                    .username(username)
+                    .email(username + "@loadtest.local")
+                    .passwordHash(passwordHash)
+                    .build());
+            List<Category> categories = new ArrayList<>();
+            for (String name : CATEGORIES) {
+                categories.add(categoryRepository.save(Category.builder().name(name).user(user).build()));
+            }
+            Account manual = account(user, "Conto corrente", AccountType.CONTO_CORRENTE, "EUR", null, null);
+            Account usd = account(user, "Conto USD", AccountType.RISPARMIO, "USD", null, null);
+            Account gocardless = account(user, "Banca GoCardless", AccountType.CONTO_CORRENTE, "EUR",
+                    BankProvider.GOCARDLESS, "req-" + username);
+            Account enableBanking = account(user, "Banca Enable Banking", AccountType.CONTO_CORRENTE, "EUR",
+                    BankProvider.ENABLE_BANKING, null);
+            cryptoHoldingRepository.saveAll(List.of(
+                    CryptoHolding.builder().user(user).symbol("BTC").amount(new BigDecimal("0.05")).source(HoldingSource.MANUAL).build(),
+                    CryptoHolding.builder().user(user).symbol("ETH").amount(new BigDecimal("1.2")).source(HoldingSource.MANUAL).build()));
+            return new Setup(user, categories, List.of(manual, usd),
+                    new SeededUser(username, manual.getId(), gocardless.getId(), enableBanking.getId()));
+        });
+
+        LocalDate firstMonth = LocalDate.now().withDayOfMonth(1).minusMonths(months - 1L);
+        int days = (int) (LocalDate.now().toEpochDay() - firstMonth.toEpochDay()) + 1;
+        for (int offset = 0; offset < transactions; offset += BATCH_SIZE) {
+            int size = Math.min(BATCH_SIZE, transactions - offset);
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Transaction> batch = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+                    boolean income = description.startsWith("Bonifico");
+                    batch.add(Transaction.builder()
+                            .user(setup.user())
+                            .account(setup.accounts().get(random.nextInt(10) < 8 ? 0 : 1))
+                            .category(random.nextInt(10) == 0 ? null : setup.categories().get(random.nextInt(CATEGORIES.length)))
+                            .amount(BigDecimal.valueOf(income ? 150_000 + random.nextInt(100_000) : 100 + random.nextInt(20_000), 2))
+                            .type(income ? TransactionType.IN : TransactionType.OUT)
+                            .description(description + " " + random.nextInt(50))
+                            .date(firstMonth.plusDays(random.nextInt(days)))
+                            .build());
+                }
+                readModelService.addedAll(transactionRepository.saveAll(batch));
+            });
+        }
+        return setup.seeded();
+    }
+
+    private Account account(User user, String name, AccountType type, String currency,
+                            BankProvider provider, String requisitionId) {
+        Account account = accountRepository.save(Account.builder()
+                .name(name)
+                .type(type)
+                .currency(currency)
+                .user(user)
+                .provider(provider)
+                .requisitionId(requisitionId)
+                .isSynchronizing(false)
+                .build());
+        if (provider != null) {
+            // L'id esterno identifica il conto presso lo stub (transazioni deterministiche per conto)
+            account.setExternalAccountId("ext-" + account.getId());
+            account = accountRepository.save(account);
+        }
+        return account;
+    }
+}
@@ -0,0 +1,355 @@
+package it.iacovelli.nexabudgetbe.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stub HTTP locali di tutti i provider esterni chiamati dai percorsi del load test: Gemini (generateContent e
+ * embedding), integratore GoCardless, Enable Banking, Binance (prezzi) ed exchangerate-api. Ogni stub risponde
+ * con payload nel formato reale del provider, dopo una latenza configurabile, e fallisce con la probabilità
+ * indicata (503, 429 per Gemini) per esercitare retry e fallback.
+ * <p>
+ * Le risposte sono deterministiche per chiave (conto, descrizione): sync ripetuti restituiscono le stesse
+ * transazioni, come un provider reale tra due sync ravvicinati, così la deduplica lavora come in produzione.
+ */
+final class ProviderStubs implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderStubs.class);
+
+    static final String GEMINI = "gemini";
+    static final String GOCARDLESS = "gocardless";
+    static final String ENABLE_BANKING = "enablebanking";
+    static final String BINANCE = "binance";
+    static final String EXCHANGE_RATES = "exchangerates";
+
+    /** Tassi verso USD usati dallo stub di exchangerate-api. */
+    private static final Map<String, Double> USD_RATES = Map.of(
+            "USD", 1.0, "EUR", 0.92, "GBP", 0.79, "CHF", 0.88, "JPY", 151.2, "USDT", 1.0);
+    private static final String[] MERCHANTS = {
+            "Esselunga", "Conad", "Amazon", "Trenitalia", "Enel Energia", "Netflix", "Farmacia Comunale",
+            "Ristorante Da Mario", "IP Carburanti", "Zara", "Bonifico stipendio", "Affitto"};
+    private static final int TRANSACTIONS_PER_SYNC = 40;
+    /** Riga numerata di un prompt di categorizzazione a batch: {@code 3. "descrizione"}. */
+    private static final Pattern BATCH_ROW = Pattern.compile("(?m)^(\\d+)\\. \"");
+
+    /** Latenza e tasso d'errore di uno stub. */
+    record Behaviour(Duration latency, Duration jitter, double errorRate) {
+    }
+
+    /** Contatori di uno stub, riportati nel riepilogo del load test. */
+    record Stats(long requests, long injectedErrors) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, HttpServer> servers = new LinkedHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, Behaviour> behaviours;
+
+    ProviderStubs(Map<String, Behaviour> behaviours) {
+        this.behaviours = behaviours;
+    }
+
+    void start() throws IOException {
+        start(GEMINI, this::gemini);
+        start(GOCARDLESS, this::gocardless);
+        start(ENABLE_BANKING, this::enableBanking);
+        start(BINANCE, this::binance);
+        start(EXCHANGE_RATES, this::exchangeRates);
+    }
+
+    /** Proprietà Spring che puntano i client dell'applicazione agli stub. */
+    Map<String, Object> applicationProperties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("nexabudget.ai.base-url", baseUrl(GEMINI));
+        properties.put("gocardless.integrator.baseUrl", baseUrl(GOCARDLESS));
+        properties.put("enablebanking.baseUrl", baseUrl(ENABLE_BANKING));
+        properties.put("binance.baseUrl", baseUrl(BINANCE));
+        properties.put("app.exchange-rates.api-url", baseUrl(EXCHANGE_RATES) + "/v4/latest/");
+        return properties;
+    }
+
+    Map<String, Stats> stats() {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        servers.keySet().forEach(name -> stats.put(name,
+                new Stats(counter(requests, name).sum(), counter(errors, name).sum())));
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        servers.values().forEach(server -> server.stop(0));
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange, byte[] body) throws IOException;
+    }
+
+    private record Response(int status, Object body) {
+    }
+
+    private void start(String name, Handler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        Behaviour behaviour = behaviours.get(name);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                counter(requests, name).increment();
+                simulateLatency(behaviour);
+                Response response;
+                if (ThreadLocalRandom.current().nextDouble() < behaviour.errorRate()) {
+                    counter(errors, name).increment();
+                    int status = GEMINI.equals(name) ? 429 : 503;
+                    response = new Response(status, Map.of("error", Map.of("code", status, "message", "errore simulato dallo stub")));
+                } else {
+                    response = handler.handle(exchange, body);
+                }
+                write(exchange, response);
+            } catch (Exception e) {
+                logger.warn("Errore nello stub {} per {}: {}", name, exchange.getRequestURI(), e.getMessage());
+            }
+        });
+        server.start();
+        servers.put(name, server);
+        logger.info("Stub {} in ascolto su {}", name, baseUrl(name));
+    }
+
+    private String baseUrl(String name) {
+        return "http://127.0.0.1:" + servers.get(name).getAddress().getPort();
+    }
+
+    private static void simulateLatency(Behaviour behaviour) throws InterruptedException {
+        long millis = behaviour.latency().toMillis();
+        long jitter = behaviour.jitter().toMillis();
+        if (jitter > 0) {
+            millis += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+        }
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private void write(HttpExchange exchange, Response response) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(response.body());
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counters, String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    private static Response notFound() {
+        return new Response(404, Map.of("error", "endpoint non emulato dallo stub"));
+    }
+
+    // --- Gemini ---------------------------------------------------------------------------------------------
+
+    private Response gemini(HttpExchange exchange, byte[] body) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        JsonNode request = objectMapper.readTree(body);
+        if (path.endsWith(":generateContent")) {
+            return new Response(200, generateContent(request));
+        }
+        if (path.endsWith(":batchEmbedContents")) {
+            List<Map<String, Object>> embeddings = new ArrayList<>();
+            for (JsonNode item : request.path("requests")) {
+                embeddings.add(Map.of("values", embedding(text(item.path("content")), dimensions(item))));
+            }
+            return new Response(200, Map.of("embeddings", embeddings));
+        }
+        if (path.endsWith(":embedContent")) {
+            return new Response(200, Map.of("embedding",
+                    Map.of("values", embedding(text(request.path("content")), dimensions(request)))));
+        }
+        return notFound();
+    }
+
+    /**
+     * Categorizzazione: prima categoria della lista nel prompt, come JSON {@code {"category": ...}} (il formato
+     * imposto da responseSchema); per le richieste a batch un elemento {@code {"id", "category"}} per ogni riga
+     * numerata. Chat e report: testo fisso, senza chiamate a tool.
+     */
+    private Map<String, Object> generateContent(JsonNode request) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode content : request.path("contents")) {
+            prompt.append(text(content));
+        }
+        String reply;
+        int categories = prompt.indexOf("CATEGORIE DISPONIBILI");
+        if (categories >= 0) {
+            int start = prompt.indexOf("- ", categories);
+            int end = start >= 0 ? prompt.indexOf("\n", start) : -1;
+            String category = (start >= 0 && end > start ? prompt.substring(start + 2, end).trim() : "NONE")
+                    .replace("\"", "");
+            Matcher rows = BATCH_ROW.matcher(prompt);
+            List<String> results = new ArrayList<>();
+            while (rows.find()) {
+                results.add("{\"id\": " + rows.group(1) + ", \"category\": \"" + category + "\"}");
+            }
+            reply = results.isEmpty()
+                    ? "{\"category\": \"" + category + "\"}"
+                    : "{\"results\": [" + String.join(", ", results) + "]}";
+        } else {
+            reply = "Risposta simulata dallo stub Gemini: le spese del mese sono in linea con la media.";
+        }
+        return Map.of(
+                "candidates", List.of(Map.of(
+                        "content", Map.of("role", "model", "parts", List.of(Map.of("text", reply))),
+                        "finishReason", "STOP")),
+                "usageMetadata", Map.of("promptTokenCount", prompt.length() / 4,
+                        "candidatesTokenCount", reply.length() / 4,
+                        "totalTokenCount", (prompt.length() + reply.length()) / 4));
+    }
+
+    private static String text(JsonNode content) {
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : content.path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+        return text.toString();
+    }
+
+    private static int dimensions(JsonNode request) {
+        return request.path("outputDimensionality").asInt(3072);
+    }
+
+    /** Vettore deterministico e normalizzato per testo: testi uguali hanno similarità 1. */
+    private static float[] embedding(String text, int dimensions) {
+        Random random = new Random(text.hashCode());
+        float[] values = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = (float) random.nextGaussian();
+            norm += values[i] * values[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            values[i] *= scale;
+        }
+        return values;
+    }
+
+    // --- GoCardless (integratore) ----------------------------------------------------------------------------
+
+    private Response gocardless(HttpExchange exchange, byte[] body) throws IOException {
+        JsonNode request = body.length > 0 ? objectMapper.readTree(body) : objectMapper.createObjectNode();
+        return switch (exchange.getRequestURI().getPath()) {
+            case "/get-banks" -> new Response(200, Map.of("status", "ok", "data", List.of(
+                    Map.of("id", "STUB_BANK_IT", "name", "Banca Stub", "bic", "STUBITMM",
+                            "transaction_total_days", 540, "logo", ""))));
+            case "/transactions" -> new Response(200, Map.of("status", "ok", "data", Map.of(
+                    "transactions", Map.of("all", gocardlessTransactions(request.path("accountId").asText())))));
+            default -> notFound();
+        };
+    }
+
+    private static List<Map<String, Object>> gocardlessTransactions(String accountId) {
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        Random random = new Random(accountId.hashCode());
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < TRANSACTIONS_PER_SYNC; i++) {
+            String merchant = MERCHANTS[random.nextInt(MERCHANTS.length)];
+            boolean income = merchant.startsWith("Bonifico");
+            String amount = (income ? "" : "-") + (1 + random.nextInt(300)) + "." + String.format("%02d", random.nextInt(100));
+            String date = today.minusDays(random.nextInt(60)).toString();
+            transactions.add(Map.of(
+                    "transactionId", accountId + "-" + i,
+                    "bookingDate", date,
+                    "valueDate", date,
+                    "transactionAmount", Map.of("amount", amount, "currency", "EUR"),
+                    "remittanceInformationUnstructuredArray", List.of(merchant + " " + (i % 7))));
+        }
+        return transactions;
+    }
+
+    // --- Enable Banking ---------------------------------------------------------------------------------------
+
+    private Response enableBanking(HttpExchange exchange, byte[] body) {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/aspsps")) {
+            return new Response(200, Map.of("aspsps", List.of(Map.of("name", "Banca Stub", "country", "IT"))));
+        }
+        if (path.startsWith("/accounts/") && path.endsWith("/transactions")) {
+            String uid = path.substring("/accounts/".length(), path.length() - "/transactions".length());
+            return new Response(200, Map.of("transactions", enableBankingTransactions(uid)));
+        }
+        return notFound();
+    }
+
+    private static List<Map<String, Object>> enableBankingTransactions(String uid) {
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        Random random = new Random(uid.hashCode());
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < TRANSACTIONS_PER_SYNC; i++) {
+            String merchant = MERCHANTS[random.nextInt(MERCHANTS.length)];
+            String date = today.minusDays(random.nextInt(60)).toString();
+            transactions.add(Map.of(
+                    "entry_reference", uid + "-" + i,
+                    "booking_date", date,
+                    "value_date", date,
+                    "transaction_amount", Map.of("amount", (1 + random.nextInt(300)) + ".00", "currency", "EUR"),
+                    "credit_debit_indicator", merchant.startsWith("Bonifico") ? "CRDT" : "DBIT",
+                    "remittance_information", List.of(merchant + " " + (i % 7)),
+                    "creditor", Map.of("name", merchant)));
+        }
+        return transactions;
+    }
+
+    // --- Binance e tassi di cambio ----------------------------------------------------------------------------
+
+    private static final Map<String, String> TICKERS = Map.of(
+            "BTCUSDT", "65000.00", "ETHUSDT", "3200.00", "SOLUSDT", "150.00", "ADAUSDT", "0.45", "BTCEUR", "60000.00");
+
+    private Response binance(HttpExchange exchange, byte[] body) {
+        if (!exchange.getRequestURI().getPath().equals("/api/v3/ticker/price")) {
+            return notFound();
+        }
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null && query.startsWith("symbol=")) {
+            String symbol = query.substring("symbol=".length());
+            String price = TICKERS.get(symbol);
+            return price != null ? new Response(200, Map.of("symbol", symbol, "price", price))
+                    : new Response(400, Map.of("code", -1121, "msg", "Invalid symbol."));
+        }
+        List<Map<String, String>> prices = new ArrayList<>();
+        TICKERS.forEach((symbol, price) -> prices.add(Map.of("symbol", symbol, "price", price)));
+        return new Response(200, prices);
+    }
+
+    private Response exchangeRates(HttpExchange exchange, byte[] body) {
+        String path = exchange.getRequestURI().getPath();
+        String base = path.substring(path.lastIndexOf('/') + 1).toUpperCase();
+        Double baseToUsd = USD_RATES.get(base);
+        if (baseToUsd == null) {
+            return new Response(404, Map.of("result", "error", "error-type", "unsupported-code"));
+        }
+        Map<String, Double> rates = new TreeMap<>();
+        USD_RATES.forEach((currency, rate) -> rates.put(currency, rate / baseToUsd));
+        return new Response(200, Map.of("base", base, "date", LocalDate.now().toString(), "rates", rates));
+    }
+}
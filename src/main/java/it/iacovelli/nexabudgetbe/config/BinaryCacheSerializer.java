@@ -0,0 +1,136 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec binario dei valori in cache: Smile (JSON binario di Jackson, stessi tipi e stesso default typing del
+ * serializer JSON) con compressione Deflate sopra {@code compressionThreshold} byte.
+ * <p>
+ * Ogni valore inizia con un header di 4 byte: magic {@code 'N' 'B'}, versione del formato e flag; se il payload è
+ * compresso seguono 4 byte con la lunghezza originale. Una versione sconosciuta produce una
+ * {@link SerializationException} invece di un valore corrotto; le cache binarie usano inoltre un prefisso di chiave
+ * con la versione ({@link #KEY_PREFIX_VERSION}), così durante un rolling deploy repliche con formati diversi non
+ * leggono le voci l'una dell'altra.
+ */
+public class BinaryCacheSerializer implements RedisSerializer<Object> {
+
+    public static final String KEY_PREFIX_VERSION = "b1";
+
+    static final byte MAGIC_0 = 'N';
+    static final byte MAGIC_1 = 'B';
+    static final byte FORMAT_VERSION = 1;
+    static final byte FLAG_DEFLATE = 0x01;
+
+    private static final int HEADER_LENGTH = 4;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ObjectMapper smileMapper;
+    private final int compressionThreshold;
+
+    /**
+     * @param smileMapper          mapper con {@code SmileFactory}, di norma {@code cacheObjectMapper.copyWith(new SmileFactory())}
+     * @param compressionThreshold dimensione minima (byte Smile) oltre la quale il payload viene compresso
+     */
+    public BinaryCacheSerializer(ObjectMapper smileMapper, int compressionThreshold) {
+        this.smileMapper = smileMapper;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        byte[] body;
+        try {
+            body = smileMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Serializzazione binaria fallita: " + e.getMessage(), e);
+        }
+        if (body.length >= compressionThreshold) {
+            byte[] compressed = deflate(body);
+            // Solo se conviene: dati già compatti (es. stringhe casuali) possono crescere
+            if (compressed.length + Integer.BYTES < body.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + compressed.length)
+                        .put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put(FLAG_DEFLATE)
+                        .putInt(body.length)
+                        .put(compressed)
+                        .array();
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                .put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put((byte) 0)
+                .put(body)
+                .array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1) {
+            throw new SerializationException("Valore in cache non nel formato binario atteso");
+        }
+        if (bytes[2] != FORMAT_VERSION) {
+            throw new SerializationException("Versione del formato binario non supportata: " + bytes[2]);
+        }
+        try {
+            if ((bytes[3] & FLAG_DEFLATE) != 0) {
+                int originalLength = ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+                byte[] body = inflate(bytes, HEADER_LENGTH + Integer.BYTES, originalLength);
+                return smileMapper.readValue(body, Object.class);
+            }
+            return smileMapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, Object.class);
+        } catch (IOException | DataFormatException e) {
+            throw new SerializationException("Deserializzazione binaria fallita: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset, int originalLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            byte[] output = new byte[originalLength];
+            int written = 0;
+            while (written < originalLength) {
+                int n = inflater.inflate(output, written, originalLength - written);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                written += n;
+            }
+            if (written != originalLength) {
+                throw new DataFormatException("Payload compresso troncato: " + written + "/" + originalLength + " byte");
+            }
+            return output;
+        } finally {
+            inflater.end();
+        }
+    }
+}
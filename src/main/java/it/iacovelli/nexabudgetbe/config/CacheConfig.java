@@ -2,20 +2,29 @@ package it.iacovelli.nexabudgetbe.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 @Configuration
 @EnableCaching
@@ -28,16 +37,42 @@ public class CacheConfig {
         public static final String ENABLE_BANKING_ASPSPS_CACHE = "enableBankingAspsps";
         public static final String ENABLE_BANKING_TRANSACTIONS_CACHE = "enableBankingTransactions";
         public static final String CRYPTO_PRICES_CACHE = "cryptoPrices";
-        public static final String EXCHANGE_RATES_CACHE = "exchangeRates";
+        public static final String EXCHANGE_RATE_TABLES_CACHE = "exchangeRateTables";
         public static final String PORTFOLIO_CACHE = "portfolio";
         public static final String AI_REPORTS_CACHE = "aiReports";
         public static final String AI_REPORTS_RESULTS_CACHE = "aiReportResults";
+        public static final String REPORTS_CACHE = "reports";
         public static final Duration CRYPTO_CACHE_TTL = Duration.ofMinutes(5);
         public static final Duration CACHE_TTL = Duration.ofHours(6);
         public static final Duration AI_REPORT_RESULTS_TTL = Duration.ofDays(7);
+        public static final Duration REPORTS_TTL = Duration.ofDays(1);
 
-        @Bean
-        public CacheManager cacheManager(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+        /**
+         * Cache piccole e lette di continuo che hanno anche un tier locale davanti a Redis (dimensione massima e TTL,
+         * sovrascrivibili con {@code app.cache.local.<cache>.max-size} e {@code .ttl-seconds}). Il TTL locale
+         * resta sotto quello Redis della cache.
+         */
+        private static final Map<String, TwoLevelCacheManager.LocalTier> LOCAL_TIERS = Map.of(
+                        EXCHANGE_RATE_TABLES_CACHE, new TwoLevelCacheManager.LocalTier(32, Duration.ofMinutes(10)),
+                        CRYPTO_PRICES_CACHE, new TwoLevelCacheManager.LocalTier(512, Duration.ofSeconds(30)),
+                        ENABLE_BANKING_ASPSPS_CACHE, new TwoLevelCacheManager.LocalTier(64, Duration.ofHours(1)),
+                        GOCARDLESS_BANKS_CACHE, new TwoLevelCacheManager.LocalTier(64, Duration.ofHours(1)));
+
+        /**
+         * Cache con valori grandi scritte con {@link BinaryCacheSerializer} (Smile + Deflate) invece che in JSON.
+         * Il codec di ogni cache si sceglie con {@code app.cache.codec.<cache>=binary|json}.
+         */
+        private static final Set<String> BINARY_CACHES = Set.of(
+                        CRYPTO_PRICES_CACHE,
+                        GOCARDLESS_TRANSACTIONS_CACHE,
+                        ENABLE_BANKING_TRANSACTIONS_CACHE,
+                        AI_REPORTS_RESULTS_CACHE);
+
+        /**
+         * Mapper dei valori in cache: default typing ({@code @class}) perché i valori tornino con il loro tipo.
+         * Condiviso dal codec JSON e da quello binario ({@code copyWith(new SmileFactory())}).
+         */
+        public static ObjectMapper cacheObjectMapper(ObjectMapper objectMapper) {
                 ObjectMapper cacheObjectMapper = objectMapper.copy();
                 cacheObjectMapper.registerModule(new JavaTimeModule());
                 cacheObjectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -45,6 +80,14 @@ public class CacheConfig {
                                 cacheObjectMapper.getPolymorphicTypeValidator(),
                                 ObjectMapper.DefaultTyping.NON_FINAL,
                                 "@class");
+                return cacheObjectMapper;
+        }
+
+        @Bean
+        public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper,
+                                                 MeterRegistry meterRegistry, StringRedisTemplate stringRedisTemplate,
+                                                 Environment environment) {
+                ObjectMapper cacheObjectMapper = cacheObjectMapper(objectMapper);
 
                 RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                                 .entryTtl(CACHE_TTL)
@@ -57,10 +100,48 @@ public class CacheConfig {
                                                                 new GenericJackson2JsonRedisSerializer(
                                                                                 cacheObjectMapper)));
 
-                return RedisCacheManager.builder(connectionFactory)
+                Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+                cacheConfigurations.put(CRYPTO_PRICES_CACHE, config.entryTtl(CRYPTO_CACHE_TTL));
+                cacheConfigurations.put(AI_REPORTS_RESULTS_CACHE, config.entryTtl(AI_REPORT_RESULTS_TTL));
+                cacheConfigurations.put(REPORTS_CACHE, config.entryTtl(REPORTS_TTL));
+
+                BinaryCacheSerializer binarySerializer = new BinaryCacheSerializer(
+                                cacheObjectMapper.copyWith(new SmileFactory()),
+                                environment.getProperty("app.cache.codec.compression-threshold-bytes", Integer.class, 1024));
+                for (String name : BINARY_CACHES) {
+                        if (!"binary".equalsIgnoreCase(environment.getProperty("app.cache.codec." + name, "binary"))) {
+                                continue;
+                        }
+                        // Prefisso con la versione del formato: JSON e binario non condividono mai le chiavi
+                        cacheConfigurations.put(name, cacheConfigurations.getOrDefault(name, config)
+                                        .computePrefixWith(cacheName -> cacheName + "::"
+                                                        + BinaryCacheSerializer.KEY_PREFIX_VERSION + "::")
+                                        .serializeValuesWith(RedisSerializationContext.SerializationPair
+                                                        .fromSerializer(binarySerializer)));
+                }
+
+                RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                                 .cacheDefaults(config)
-                                .withCacheConfiguration(CRYPTO_PRICES_CACHE, config.entryTtl(CRYPTO_CACHE_TTL))
-                                .withCacheConfiguration(AI_REPORTS_RESULTS_CACHE, config.entryTtl(AI_REPORT_RESULTS_TTL))
+                                .withInitialCacheConfigurations(cacheConfigurations)
                                 .build();
+                redisCacheManager.afterPropertiesSet();
+
+                Map<String, TwoLevelCacheManager.LocalTier> localTiers = new HashMap<>();
+                LOCAL_TIERS.forEach((name, defaults) -> localTiers.put(name, new TwoLevelCacheManager.LocalTier(
+                                environment.getProperty("app.cache.local." + name + ".max-size", Long.class,
+                                                defaults.maxSize()),
+                                Duration.ofSeconds(environment.getProperty("app.cache.local." + name + ".ttl-seconds",
+                                                Long.class, defaults.ttl().toSeconds())))));
+                return new TwoLevelCacheManager(redisCacheManager, localTiers, meterRegistry, stringRedisTemplate);
+        }
+
+        /** Riceve le invalidazioni pubblicate dalle altre repliche e scarta le copie locali. */
+        @Bean
+        public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                                TwoLevelCacheManager cacheManager) {
+                RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+                container.setConnectionFactory(connectionFactory);
+                container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+                return container;
         }
 }
@@ -0,0 +1,96 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link EmbeddingModel} con una cache locale davanti: hash SHA-256 del testo -> embedding, limitata in memoria
+ * (peso = byte del vettore). Un testo già visto non genera una nuova richiesta remota, né nelle ricerche della
+ * cache semantica né nell'{@code add} del vector store che ne riusa l'embedding subito dopo. Le richieste con più
+ * testi inoltrano al modello solo quelli mancanti, ciascuno una volta sola. Le opzioni della richiesta non fanno
+ * parte della chiave: il modello configurato è uno solo.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Cache<String, float[]> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, long maxMegabytes) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxMegabytes) * 1024 * 1024)
+                .weigher((String key, float[] embedding) -> embedding.length * Float.BYTES + key.length())
+                .build();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        float[][] embeddings = new float[texts.size()][];
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        Map<String, String> missingTexts = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String key = key(texts.get(i));
+            float[] cached = cache.getIfPresent(key);
+            if (cached != null) {
+                embeddings[i] = cached;
+            } else {
+                missing.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+                missingTexts.putIfAbsent(key, texts.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<String> keys = new ArrayList<>(missingTexts.keySet());
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(missingTexts.values()), request.getOptions()));
+            List<Embedding> results = response.getResults();
+            for (int j = 0; j < results.size() && j < keys.size(); j++) {
+                float[] embedding = results.get(j).getOutput();
+                cache.put(keys.get(j), embedding);
+                for (int index : missing.get(keys.get(j))) {
+                    embeddings[index] = embedding;
+                }
+            }
+        }
+
+        List<Embedding> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < embeddings.length; i++) {
+            results.add(new Embedding(embeddings[i] != null ? embeddings[i] : new float[0], i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private static String key(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package it.iacovelli.nexabudgetbe.config;
 
 import com.google.genai.Client;
 import com.google.genai.Models;
+import com.google.genai.types.HttpOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,15 +13,25 @@ public class GenAiSdkConfig {
     @Value("${spring.ai.google.genai.api-key}")
     private String apiKey;
 
+    // Vuoto = endpoint pubblico Gemini; valorizzato solo per puntare a uno stub (load test)
+    @Value("${nexabudget.ai.base-url:}")
+    private String baseUrl;
+
     // Separate Client bean for direct SDK usage (chat, report, categorization).
     // GoogleGenAiConfig also instantiates its own Client internally for the Spring AI embedding stack.
     // Nessun timeout HTTP: chat e report richiedono tempi variabili. Il bulk categorization
     // gestisce il proprio timeout tramite CompletableFuture.get(aiCallTimeoutSeconds).
     @Bean
     public Client genaiClient() {
-        return Client.builder()
-                .apiKey(apiKey)
-                .build();
+        return genaiClient(apiKey, baseUrl);
+    }
+
+    static Client genaiClient(String apiKey, String baseUrl) {
+        Client.Builder builder = Client.builder().apiKey(apiKey);
+        if (baseUrl != null && !baseUrl.isBlank()) {
+            builder.httpOptions(HttpOptions.builder().baseUrl(baseUrl).build());
+        }
+        return builder.build();
     }
 
     // Expose Models directly so services don't depend on the full Client and tests can mock it easily.
@@ -33,6 +33,9 @@ public class GoogleGenAiConfig {
         @Value("${spring.ai.google.genai.api-key}")
         private String apiKey;
 
+        @Value("${nexabudget.ai.base-url:}")
+        private String baseUrl;
+
         @Value("${spring.ai.google.genai.chat.options.model}")
         private String modelName;
 
@@ -45,13 +48,14 @@ public class GoogleGenAiConfig {
         @Value("${spring.ai.google.genai.embedding.text.options.dimensions}")
         private Integer embeddingDimensions;
 
+        @Value("${nexabudget.ai.embedding-cache.max-mb:32}")
+        private long embeddingCacheMaxMb;
+
         private final RetryTemplate retryTemplate = new RetryTemplate();
 
         @Bean
         public GoogleGenAiChatModel client() {
-                Client apiClient = Client.builder()
-                                .apiKey(apiKey)
-                                .build();
+                Client apiClient = GenAiSdkConfig.genaiClient(apiKey, baseUrl);
                 return new GoogleGenAiChatModel(
                                 apiClient,
                                 GoogleGenAiChatOptions.builder()
@@ -66,10 +70,13 @@ public class GoogleGenAiConfig {
 
         @Bean
         public EmbeddingModel embeddingModel() {
-                GoogleGenAiEmbeddingConnectionDetails connectionDetails = GoogleGenAiEmbeddingConnectionDetails
+                GoogleGenAiEmbeddingConnectionDetails.Builder connection = GoogleGenAiEmbeddingConnectionDetails
                                 .builder()
-                                .apiKey(apiKey)
-                                .build();
+                                .apiKey(apiKey);
+                if (!baseUrl.isBlank()) {
+                        connection.genAiClient(GenAiSdkConfig.genaiClient(apiKey, baseUrl));
+                }
+                GoogleGenAiEmbeddingConnectionDetails connectionDetails = connection.build();
 
                 GoogleGenAiTextEmbeddingOptions options = GoogleGenAiTextEmbeddingOptions.builder()
                                 .model(embeddingModelName)
@@ -77,7 +84,8 @@ public class GoogleGenAiConfig {
                                 .taskType(GoogleGenAiTextEmbeddingOptions.TaskType.SEMANTIC_SIMILARITY)
                                 .build();
 
-                return new GoogleGenAiTextEmbeddingModel(connectionDetails, options);
+                return new CachingEmbeddingModel(new GoogleGenAiTextEmbeddingModel(connectionDetails, options),
+                                embeddingCacheMaxMb);
         }
 
 }
@@ -0,0 +1,41 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Funzioni HQL/Criteria per la ricerca full-text su Postgres, usate da
+ * {@link it.iacovelli.nexabudgetbe.service.search.PostgresTransactionSearchBackend}. L'espressione
+ * {@code to_tsvector('simple', coalesce(col, ''))} è scritta inline (non come parametro) perché deve coincidere
+ * con quella degli indici GIN, altrimenti il planner non li usa. Registrata via
+ * {@code META-INF/services/org.hibernate.boot.model.FunctionContributor}; sugli altri dialetti non fa nulla.
+ */
+public class PostgresSearchFunctionContributor implements FunctionContributor {
+
+    public static final String FTS_PREFIX_MATCH = "nb_fts_prefix_match";
+    public static final String FTS_RANK = "nb_fts_rank";
+
+    private static final String TS_VECTOR = "to_tsvector('simple', coalesce(?1, ''))";
+    private static final String TS_QUERY = "to_tsquery('simple', ?2)";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        if (!(functionContributions.getDialect() instanceof PostgreSQLDialect)) {
+            return;
+        }
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        functionContributions.getFunctionRegistry()
+                .patternDescriptorBuilder(FTS_PREFIX_MATCH, "(" + TS_VECTOR + " @@ " + TS_QUERY + ")")
+                .setInvariantType(types.resolve(StandardBasicTypes.BOOLEAN))
+                .setExactArgumentCount(2)
+                .register();
+        functionContributions.getFunctionRegistry()
+                .patternDescriptorBuilder(FTS_RANK, "ts_rank(" + TS_VECTOR + ", " + TS_QUERY + ")")
+                .setInvariantType(types.resolve(StandardBasicTypes.DOUBLE))
+                .setExactArgumentCount(2)
+                .register();
+    }
+}
@@ -0,0 +1,185 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Cache a due livelli: un tier locale Caffeine limitato (L1) davanti alla cache Redis (L2). Le letture che trovano
+ * il valore in L1 non fanno round-trip né deserializzazione; un miss locale legge da Redis e popola L1.
+ * Ogni scrittura o eviction aggiorna entrambi i livelli e viene pubblicata a {@code invalidationPublisher}
+ * (chiave, o {@code null} per l'intera cache) perché le altre repliche scartino la propria copia locale.
+ * <p>
+ * I valori in L1 sono istanze condivise tra i chiamanti: vanno trattati in sola lettura.
+ */
+final class TwoLevelCache implements Cache {
+
+    static final String REQUESTS_METRIC = "nexabudget.cache.requests";
+    static final String LOCAL_SIZE_METRIC = "nexabudget.cache.local.size";
+
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Consumer<String> invalidationPublisher;
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    TwoLevelCache(Cache remote, com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                  MeterRegistry meterRegistry, Consumer<String> invalidationPublisher) {
+        this.remote = remote;
+        this.local = local;
+        this.invalidationPublisher = invalidationPublisher;
+        String name = remote.getName();
+        this.localHits = meterRegistry.counter(REQUESTS_METRIC, "cache", name, "tier", "local", "result", "hit");
+        this.localMisses = meterRegistry.counter(REQUESTS_METRIC, "cache", name, "tier", "local", "result", "miss");
+        this.remoteHits = meterRegistry.counter(REQUESTS_METRIC, "cache", name, "tier", "redis", "result", "hit");
+        this.remoteMisses = meterRegistry.counter(REQUESTS_METRIC, "cache", name, "tier", "redis", "result", "miss");
+        meterRegistry.gauge(LOCAL_SIZE_METRIC, Tags.of("cache", name), local,
+                com.github.benmanes.caffeine.cache.Cache::estimatedSize);
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        localMisses.increment();
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            remoteMisses.increment();
+            return wrapper;
+        }
+        remoteHits.increment();
+        local.put(localKey, wrapper.get());
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object cached = local.getIfPresent(localKey);
+        if (cached != null) {
+            localHits.increment();
+            return (T) cached;
+        }
+        localMisses.increment();
+        AtomicBoolean loaded = new AtomicBoolean();
+        T value = remote.get(key, () -> {
+            loaded.set(true);
+            return valueLoader.call();
+        });
+        (loaded.get() ? remoteMisses : remoteHits).increment();
+        if (value != null) {
+            local.put(localKey, value);
+        }
+        if (loaded.get()) {
+            invalidationPublisher.accept(localKey);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        String localKey = localKey(key);
+        if (value != null) {
+            local.put(localKey, value);
+        } else {
+            local.invalidate(localKey);
+        }
+        invalidationPublisher.accept(localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        String localKey = localKey(key);
+        Object current = existing != null ? existing.get() : value;
+        if (current != null) {
+            local.put(localKey, current);
+        }
+        if (existing == null) {
+            invalidationPublisher.accept(localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        String localKey = localKey(key);
+        local.invalidate(localKey);
+        invalidationPublisher.accept(localKey);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = remote.evictIfPresent(key);
+        String localKey = localKey(key);
+        local.invalidate(localKey);
+        invalidationPublisher.accept(localKey);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationPublisher.accept(null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remote.invalidate();
+        local.invalidateAll();
+        invalidationPublisher.accept(null);
+        return invalidated;
+    }
+
+    /** Scarta solo la copia locale: invocato alla ricezione di un'invalidazione da un'altra replica. */
+    void evictLocal(String localKey) {
+        if (localKey == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(localKey);
+        }
+    }
+
+    /** Le chiavi locali sono la forma stringa della chiave, la stessa usata da Redis e inviata alle altre repliche. */
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,123 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link CacheManager} composito: le cache con un {@link LocalTier} configurato diventano {@link TwoLevelCache}
+ * (Caffeine + Redis), le altre restano le cache Redis di {@code remote}.
+ * <p>
+ * Scritture ed eviction sulle cache a due livelli vengono pubblicate sul canale {@link #INVALIDATION_CHANNEL};
+ * ricevendo il messaggio di un'altra replica si scarta la copia locale, così nessuna istanza serve un valore locale
+ * più vecchio di quello in Redis oltre il tempo di propagazione del pub/sub. Il TTL del tier locale limita comunque
+ * la durata di un valore se un messaggio va perso.
+ * <p>
+ * Le cache in memoria gestite altrove possono usare lo stesso canale con {@link #registerLocalCache}.
+ */
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+    public static final String INVALIDATION_CHANNEL = "nexabudget:cache:invalidation";
+
+    /** Marcatore dell'invalidazione dell'intera cache al posto della chiave. */
+    private static final String CLEAR_ALL = "\u0000*";
+
+    /** Dimensione massima e TTL della copia locale di una cache. */
+    public record LocalTier(long maxSize, Duration ttl) {
+    }
+
+    private final CacheManager remote;
+    private final Map<String, LocalTier> localTiers;
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> twoLevelCaches = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<String>> localCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, Map<String, LocalTier> localTiers,
+                                MeterRegistry meterRegistry, StringRedisTemplate redisTemplate) {
+        this.remote = remote;
+        this.localTiers = Map.copyOf(localTiers);
+        this.meterRegistry = meterRegistry;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        LocalTier tier = localTiers.get(name);
+        if (tier == null) {
+            return remote.getCache(name);
+        }
+        TwoLevelCache cache = twoLevelCaches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return twoLevelCaches.computeIfAbsent(name, n -> new TwoLevelCache(remoteCache,
+                Caffeine.newBuilder().maximumSize(tier.maxSize()).expireAfterWrite(tier.ttl()).build(),
+                meterRegistry, key -> publishInvalidation(n, key)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * Collega al canale di invalidazione una cache in memoria che non passa da questo manager: {@code onRemoteInvalidation}
+     * riceve le chiavi invalidate dalle altre repliche ({@code null} per l'intera cache), la funzione restituita
+     * pubblica quelle invalidate da questa istanza.
+     */
+    public Consumer<String> registerLocalCache(String name, Consumer<String> onRemoteInvalidation) {
+        localCaches.put(name, onRemoteInvalidation);
+        return key -> publishInvalidation(name, key);
+    }
+
+    /** Messaggio {@code instanceId \n cacheName \n chiave}: la chiave è l'ultimo campo e può contenere qualsiasi carattere. */
+    private void publishInvalidation(String cacheName, String key) {
+        String message = instanceId + '\n' + cacheName + '\n' + (key != null ? key : CLEAR_ALL);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (Exception e) {
+            // Le altre repliche scadranno la copia locale entro il TTL del tier
+            logger.warn("Invalidazione della cache {} non pubblicata: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length != 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        String key = CLEAR_ALL.equals(parts[2]) ? null : parts[2];
+        TwoLevelCache cache = twoLevelCaches.get(parts[1]);
+        if (cache != null) {
+            cache.evictLocal(key);
+            return;
+        }
+        Consumer<String> localCache = localCaches.get(parts[1]);
+        if (localCache != null) {
+            localCache.accept(key);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package it.iacovelli.nexabudgetbe.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.iacovelli.nexabudgetbe.dto.DashboardDto;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.service.DashboardService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@Tag(name = "Dashboard", description = "Dati aggregati della dashboard in una sola chiamata")
+@SecurityRequirement(name = "bearerAuth")
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    public DashboardController(DashboardService dashboardService) {
+        this.dashboardService = dashboardService;
+    }
+
+    @GetMapping
+    @Operation(summary = "Dashboard", description = "Conti, trend mensile, breakdown per categoria del mese, andamento del saldo, proiezione e riepilogo budget. Le sezioni non completate entro il timeout sono null e sono elencate in unavailableSections")
+    public ResponseEntity<DashboardDto.DashboardResponse> getDashboard(
+            @AuthenticationPrincipal User currentUser,
+            @Parameter(description = "Numero di mesi per trend e andamento del saldo, almeno 1 (default 12)") @RequestParam(defaultValue = "12") int months,
+            @Parameter(description = "Data di riferimento (ISO yyyy-MM-dd), default oggi") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        if (months < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "months deve essere almeno 1");
+        }
+        return ResponseEntity.ok(dashboardService.getDashboard(currentUser, months, date));
+    }
+}
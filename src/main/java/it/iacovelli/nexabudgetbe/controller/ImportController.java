@@ -123,7 +123,7 @@ public class ImportController {
 
     private Category resolveDefaultCategory(ImportDto.ImportConfirmRequest confirm, User user) {
         if (confirm != null && confirm.getDefaultCategoryId() != null) {
-            return categoryService.getCategoryByIdAndUser(confirm.getDefaultCategoryId(), user)
+            return categoryService.getCatalog(user).findById(confirm.getDefaultCategoryId())
                     .orElse(null);
         }
         return null;
@@ -13,27 +13,33 @@ import it.iacovelli.nexabudgetbe.model.User;
 import it.iacovelli.nexabudgetbe.service.AccountService;
 import it.iacovelli.nexabudgetbe.service.BulkCategorizationService;
 import it.iacovelli.nexabudgetbe.service.CategoryService;
+import it.iacovelli.nexabudgetbe.service.TransactionExportService;
 import it.iacovelli.nexabudgetbe.service.TransactionService;
 import it.iacovelli.nexabudgetbe.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.server.ResponseStatusException;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/transactions")
@@ -42,22 +48,28 @@ public class TransactionController {
 
     private static final Logger logger = LoggerFactory.getLogger(TransactionController.class);
 
+    /** Timeout dell'export in streaming: storie lunghe richiedono minuti, le altre richieste async restano sul default */
+    private static final Duration EXPORT_TIMEOUT = Duration.ofMinutes(10);
+
     private final TransactionService transactionService;
     private final UserService userService;
     private final AccountService accountService;
     private final CategoryService categoryService;
     private final BulkCategorizationService bulkCategorizationService;
+    private final TransactionExportService transactionExportService;
 
     public TransactionController(TransactionService transactionService,
                                  UserService userService,
                                  AccountService accountService,
                                  CategoryService categoryService,
-                                 BulkCategorizationService bulkCategorizationService) {
+                                 BulkCategorizationService bulkCategorizationService,
+                                 TransactionExportService transactionExportService) {
         this.transactionService = transactionService;
         this.userService = userService;
         this.accountService = accountService;
         this.categoryService = categoryService;
         this.bulkCategorizationService = bulkCategorizationService;
+        this.transactionExportService = transactionExportService;
     }
 
     @PostMapping
@@ -168,9 +180,46 @@ public class TransactionController {
         return ResponseEntity.ok(transactions);
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "Export transazioni", description = "Esporta in streaming le transazioni dell'utente (o di un conto) in CSV o NDJSON, "
+            + "opzionalmente compresse gzip. La memoria usata non dipende dal numero di righe")
+    public WebAsyncTask<Void> exportTransactions(
+            @AuthenticationPrincipal User currentUser,
+            HttpServletResponse response,
+            @Parameter(description = "Formato: CSV o NDJSON") @RequestParam(defaultValue = "CSV") TransactionExportService.Format format,
+            @Parameter(description = "Comprime l'output in gzip (.gz)") @RequestParam(defaultValue = "false") boolean gzip,
+            @Parameter(description = "ID conto (opzionale)") @RequestParam(required = false) UUID accountId,
+            @Parameter(description = "Data inizio (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @Parameter(description = "Data fine (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        User user = userService.getUserById(currentUser.getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
+        if (accountId != null) {
+            accountService.getAccountEntityByIdAndUser(accountId, user)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato"));
+        }
+        if (startDate != null && endDate != null && endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate deve essere uguale o successiva a startDate");
+        }
+
+        String filename = "transazioni-" + LocalDate.now() + "." + format.extension() + (gzip ? ".gz" : "");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        response.setContentType(gzip ? "application/gzip" : format.contentType());
+
+        // Lo streaming gira sull'executor async di MVC con un timeout proprio, senza alzare quello globale
+        UUID userId = user.getId();
+        return new WebAsyncTask<>(EXPORT_TIMEOUT.toMillis(), () -> {
+            OutputStream outputStream = response.getOutputStream();
+            try (OutputStream target = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream) {
+                transactionExportService.export(userId, accountId, startDate, endDate, format, target);
+            }
+            return null;
+        });
+    }
+
     @GetMapping("/paged")
-    @Operation(summary = "Transazioni utente (paginato)", description = "Transazioni dell'utente con paginazione, filtri e ordinamento opzionali")
-    public ResponseEntity<Page<TransactionDto.TransactionResponse>> getTransactionsByUserIdPaged(
+    @Operation(summary = "Transazioni utente (paginato)", description = "Transazioni dell'utente con paginazione, filtri e ordinamento opzionali. "
+            + "Con cursor/limit usa la paginazione a cursore su (data, id) e restituisce un CursorPageResponse")
+    public ResponseEntity<?> getTransactionsByUserIdPaged(
             @AuthenticationPrincipal User currentUser,
             @Parameter(description = "Numero pagina (0-based)") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Dimensione pagina") @RequestParam(defaultValue = "20") int size,
@@ -180,11 +229,19 @@ public class TransactionController {
             @Parameter(description = "ID categoria") @RequestParam(required = false) UUID categoryId,
             @Parameter(description = "Data inizio (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @Parameter(description = "Data fine (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
-            @Parameter(description = "Testo libero su descrizione o conto") @RequestParam(required = false) String search) {
+            @Parameter(description = "Testo libero su descrizione o conto") @RequestParam(required = false) String search,
+            @Parameter(description = "Estende la ricerca testuale alle note") @RequestParam(defaultValue = "false") boolean includeNotes,
+            @Parameter(description = "Cursore restituito dalla pagina precedente (attiva la paginazione a cursore)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Elementi per pagina in paginazione a cursore (attiva la paginazione a cursore)") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Paginazione a cursore: include il conteggio totale") @RequestParam(defaultValue = "false") boolean includeTotal) {
         User user = userService.getUserById(currentUser.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
+        if (isCursorMode(cursor, limit)) {
+            return cursorPage(user.getId(), null, type, categoryId, startDate, endDate, search, includeNotes,
+                    cursor, limit, sortBy, sortDir, includeTotal);
+        }
         return ResponseEntity.ok(transactionService.getTransactionsFiltered(
-                user.getId(), null, type, categoryId, startDate, endDate, search,
+                user.getId(), null, type, categoryId, startDate, endDate, search, includeNotes,
                 PageRequest.of(page, size, Sort.by(sortDir, resolveTransactionSortField(sortBy)))));
     }
 
@@ -201,8 +258,9 @@ public class TransactionController {
     }
 
     @GetMapping("/account/{accountId}/paged")
-    @Operation(summary = "Transazioni conto (paginate)", description = "Transazioni di un conto con paginazione, filtri e ordinamento opzionali")
-    public ResponseEntity<Page<TransactionDto.TransactionResponse>> getTransactionsByAccountIdPaged(
+    @Operation(summary = "Transazioni conto (paginate)", description = "Transazioni di un conto con paginazione, filtri e ordinamento opzionali. "
+            + "Con cursor/limit usa la paginazione a cursore su (data, id) e restituisce un CursorPageResponse")
+    public ResponseEntity<?> getTransactionsByAccountIdPaged(
             @Parameter(description = "ID conto") @PathVariable UUID accountId,
             @Parameter(description = "Numero pagina") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Dimensione pagina") @RequestParam(defaultValue = "20") int size,
@@ -213,29 +271,42 @@ public class TransactionController {
             @Parameter(description = "Data inizio (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @Parameter(description = "Data fine (ISO)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @Parameter(description = "Testo libero su descrizione o conto") @RequestParam(required = false) String search,
+            @Parameter(description = "Estende la ricerca testuale alle note") @RequestParam(defaultValue = "false") boolean includeNotes,
+            @Parameter(description = "Cursore restituito dalla pagina precedente (attiva la paginazione a cursore)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Elementi per pagina in paginazione a cursore (attiva la paginazione a cursore)") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Paginazione a cursore: include il conteggio totale") @RequestParam(defaultValue = "false") boolean includeTotal,
             @AuthenticationPrincipal User currentUser) {
         User user = userService.getUserById(currentUser.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
         accountService.getAccountEntityByIdAndUser(accountId, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato"));
+        if (isCursorMode(cursor, limit)) {
+            return cursorPage(user.getId(), accountId, type, categoryId, startDate, endDate, search, includeNotes,
+                    cursor, limit, sortBy, sortDir, includeTotal);
+        }
         return ResponseEntity.ok(transactionService.getTransactionsFiltered(
-                user.getId(), accountId, type, categoryId, startDate, endDate, search,
+                user.getId(), accountId, type, categoryId, startDate, endDate, search, includeNotes,
                 PageRequest.of(page, size, Sort.by(sortDir, resolveTransactionSortField(sortBy)))));
     }
 
     @GetMapping("/category/{categoryId}")
-    @Operation(summary = "Transazioni categoria", description = "Transazioni associate ad una categoria")
-    public ResponseEntity<List<TransactionDto.TransactionResponse>> getTransactionsByCategoryId(@Parameter(description = "ID categoria") @PathVariable UUID categoryId,
-                                                                                                @AuthenticationPrincipal User currentUser) {
+    @Operation(summary = "Transazioni categoria", description = "Transazioni associate ad una categoria, "
+            + "paginate a cursore: " + DEFAULT_CURSOR_LIMIT + " elementi se limit non è indicato, al massimo "
+            + TransactionService.MAX_CURSOR_PAGE_SIZE)
+    public ResponseEntity<TransactionDto.CursorPageResponse> getTransactionsByCategoryId(
+            @Parameter(description = "ID categoria") @PathVariable UUID categoryId,
+            @Parameter(description = "Cursore restituito dalla pagina precedente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Elementi per pagina") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Paginazione a cursore: include il conteggio totale") @RequestParam(defaultValue = "false") boolean includeTotal,
+            @AuthenticationPrincipal User currentUser) {
         Category category = categoryService.getCategoryByIdAndUser(categoryId, currentUser)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Categoria non trovata"));
 
         User user = userService.getUserById(currentUser.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
 
-        // Chiama direttamente il metodo che restituisce DTO
-        List<TransactionDto.TransactionResponse> transactions = transactionService.getTransactionsByCategoryAndUser(category, user);
-        return ResponseEntity.ok(transactions);
+        return cursorPage(user.getId(), null, null, category.getId(), null, null, null, false,
+                cursor, limit, "date", Sort.Direction.DESC, includeTotal);
     }
 
     @GetMapping("/transfer/{transferId}")
@@ -251,18 +322,22 @@ public class TransactionController {
     }
 
     @GetMapping("/daterange")
-    @Operation(summary = "Transazioni per periodo (utente)", description = "Transazioni utente in un intervallo temporale")
-    public ResponseEntity<List<TransactionDto.TransactionResponse>> getTransactionsByDateRange(
+    @Operation(summary = "Transazioni per periodo (utente)", description = "Transazioni utente in un intervallo temporale, "
+            + "paginate a cursore: " + DEFAULT_CURSOR_LIMIT + " elementi se limit non è indicato, al massimo "
+            + TransactionService.MAX_CURSOR_PAGE_SIZE)
+    public ResponseEntity<TransactionDto.CursorPageResponse> getTransactionsByDateRange(
             @AuthenticationPrincipal User currentUser,
             @Parameter(description = "Data inizio (ISO)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
-            @Parameter(description = "Data fine (ISO)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+            @Parameter(description = "Data fine (ISO)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            @Parameter(description = "Cursore restituito dalla pagina precedente") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Elementi per pagina") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Paginazione a cursore: include il conteggio totale") @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.getUserById(currentUser.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
 
-        // Chiama direttamente il metodo che restituisce DTO
-        List<TransactionDto.TransactionResponse> transactions = transactionService.getTransactionsByUserAndDateRange(user, start, end);
-        return ResponseEntity.ok(transactions);
+        return cursorPage(user.getId(), null, null, null, start, end, null, false,
+                cursor, limit, "date", Sort.Direction.DESC, includeTotal);
     }
 
     @GetMapping("/account/{accountId}/daterange")
@@ -282,19 +357,27 @@ public class TransactionController {
     }
 
     @GetMapping("/account/{accountId}/daterange/paged")
-    @Operation(summary = "Transazioni per periodo (conto, paginate)", description = "Transazioni di un conto in un intervallo temporale, con paginazione")
-    public ResponseEntity<Page<TransactionDto.TransactionResponse>> getTransactionsByAccountAndDateRangePaged(
+    @Operation(summary = "Transazioni per periodo (conto, paginate)", description = "Transazioni di un conto in un intervallo temporale, con paginazione. "
+            + "Con cursor/limit usa la paginazione a cursore su (data, id) e restituisce un CursorPageResponse")
+    public ResponseEntity<?> getTransactionsByAccountAndDateRangePaged(
             @Parameter(description = "ID conto") @PathVariable UUID accountId,
             @AuthenticationPrincipal User currentUser,
             @Parameter(description = "Data inizio (ISO)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
             @Parameter(description = "Data fine (ISO)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
             @Parameter(description = "Numero pagina") @RequestParam(defaultValue = "0") int page,
-            @Parameter(description = "Dimensione pagina") @RequestParam(defaultValue = "20") int size) {
+            @Parameter(description = "Dimensione pagina") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Cursore restituito dalla pagina precedente (attiva la paginazione a cursore)") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Elementi per pagina in paginazione a cursore (attiva la paginazione a cursore)") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Paginazione a cursore: include il conteggio totale") @RequestParam(defaultValue = "false") boolean includeTotal) {
 
         User user = userService.getUserById(currentUser.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Utente non trovato"));
         Account account = accountService.getAccountEntityByIdAndUser(accountId, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato"));
+        if (isCursorMode(cursor, limit)) {
+            return cursorPage(user.getId(), account.getId(), null, null, start, end, null, false,
+                    cursor, limit, "date", Sort.Direction.DESC, includeTotal);
+        }
         return ResponseEntity.ok(transactionService.getTransactionsByAccountAndDateRangePaged(
                 account, start, end, PageRequest.of(page, size)));
     }
@@ -438,4 +521,31 @@ public class TransactionController {
         }
         return sortBy.toLowerCase();
     }
+
+    private static final int DEFAULT_CURSOR_LIMIT = 20;
+
+    /**
+     * Sugli endpoint che hanno anche la paginazione a offset quella a cursore è opt-in: si attiva passando cursor
+     * (pagine successive) o limit (prima pagina). Gli elenchi per categoria e per periodo sono invece sempre a
+     * cursore.
+     */
+    private boolean isCursorMode(String cursor, Integer limit) {
+        return cursor != null || limit != null;
+    }
+
+    private ResponseEntity<TransactionDto.CursorPageResponse> cursorPage(
+            UUID userId, UUID accountId, TransactionType type, UUID categoryId,
+            LocalDate startDate, LocalDate endDate, String search, boolean includeNotes,
+            String cursor, Integer limit, String sortBy, Sort.Direction sortDir, boolean includeTotal) {
+        if (!"date".equals(resolveTransactionSortField(sortBy))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La paginazione a cursore supporta solo l'ordinamento per data");
+        }
+        try {
+            return ResponseEntity.ok(transactionService.getTransactionsFilteredByCursor(
+                    userId, accountId, type, categoryId, startDate, endDate, search, includeNotes,
+                    cursor, limit != null ? limit : DEFAULT_CURSOR_LIMIT, sortDir, includeTotal));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
 }
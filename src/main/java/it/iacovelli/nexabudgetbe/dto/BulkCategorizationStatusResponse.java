@@ -19,5 +19,8 @@ public record BulkCategorizationStatusResponse(
         int processed,
 
         @Schema(description = "Numero di transazioni effettivamente categorizzate dall'AI")
-        int categorized
+        int categorized,
+
+        @Schema(description = "Transazioni processate al minuto dall'avvio del job (null finché non ne è stata processata nessuna)")
+        Double transactionsPerMinute
 ) {}
@@ -0,0 +1,33 @@
+package it.iacovelli.nexabudgetbe.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class DashboardDto {
+
+    /**
+     * Sezioni della dashboard calcolate in una sola richiesta. Una sezione scaduta o fallita resta {@code null}
+     * e il suo nome compare in {@code unavailableSections}.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DashboardResponse {
+        private String currency;
+        private List<AccountDto.AccountResponse> accounts;
+        /** Saldo di tutti i conti convertito nella valuta dell'utente al tasso corrente. */
+        private BigDecimal totalBalance;
+        private ReportDto.MonthlyTrendResponse monthlyTrend;
+        private ReportDto.CategoryBreakdownResponse categoryBreakdown;
+        private ReportDto.BalanceTrendResponse balanceTrend;
+        private ReportDto.MonthlyProjection projection;
+        private List<BudgetDto.MonthlySummaryResponse> budgets;
+        private List<String> unavailableSections;
+    }
+}
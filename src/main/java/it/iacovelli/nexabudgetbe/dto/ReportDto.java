@@ -127,4 +127,17 @@ public class ReportDto {
         private int daysElapsed;
         private int daysInMonth;
     }
+
+    /** Report di un periodo calcolati insieme da una sola lettura dei dati (PDF del report AI). */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReportBundle {
+        private MonthlyTrendResponse monthlyTrend;
+        private CategoryBreakdownResponse categoryBreakdown;
+        private MonthComparisonResponse monthComparison;
+        private BalanceTrendResponse balanceTrend;
+        private MonthlyProjection projection;
+    }
 }
@@ -13,6 +13,7 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 public class TransactionDto {
@@ -131,4 +132,19 @@ public class TransactionDto {
         private BigDecimal expense;
         private BigDecimal net;
     }
+
+    /**
+     * Pagina della paginazione a cursore: {@code nextCursor} va ripassato come {@code cursor} per la pagina
+     * successiva ed è null sull'ultima. {@code totalElements} è valorizzato solo se richiesto con includeTotal.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CursorPageResponse {
+        private List<TransactionResponse> items;
+        private String nextCursor;
+        private boolean hasNext;
+        private Long totalElements;
+    }
 }
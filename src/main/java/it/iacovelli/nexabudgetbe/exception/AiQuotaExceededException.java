@@ -0,0 +1,13 @@
+package it.iacovelli.nexabudgetbe.exception;
+
+/**
+ * Sollevata dalla categorizzazione AI quando Gemini risponde 429 / RESOURCE_EXHAUSTED e il chiamante ha chiesto di
+ * saperlo invece di saltare le righe: serve a chi gestisce da sé backoff e ritentativi, come la categorizzazione
+ * massiva.
+ */
+public class AiQuotaExceededException extends RuntimeException {
+
+    public AiQuotaExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -62,6 +62,15 @@ public class Account {
     @Column(name = "requires_reauth")
     private Boolean requiresReauth;
 
+    /** Prossimo sync in background pianificato (null = da sincronizzare appena stantio). */
+    @Column(name = "next_sync_at")
+    private LocalDateTime nextSyncAt;
+
+    /** Sync falliti consecutivi, base del backoff; azzerato da un sync riuscito o da un nuovo collegamento. */
+    @Column(name = "sync_failures", nullable = false)
+    @Builder.Default
+    private Integer syncFailures = 0;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -81,6 +90,7 @@ public class Account {
         if (requiresReauth == null) {
             requiresReauth = false;
         }
+        if (syncFailures == null) syncFailures = 0;
         if (deleted == null) deleted = false;
     }
 }
@@ -0,0 +1,33 @@
+package it.iacovelli.nexabudgetbe.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read model del saldo di un conto, mantenuto incrementalmente da {@code AccountBalanceService}
+ * a ogni scrittura sulle transazioni: evita la SUM sull'intera storia del conto a ogni lettura.
+ * Non ha FK verso {@code accounts}: le righe orfane vengono rimosse dal purge del cestino.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "account_balances")
+public class AccountBalance {
+
+    @Id
+    @Column(name = "account_id")
+    private UUID accountId;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal balance;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,40 @@
+package it.iacovelli.nexabudgetbe.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Tasso di cambio base->quote registrato in un giorno: quante unità di {@code quote} vale un'unità di {@code base}.
+ * Scritto una volta al giorno da {@code HistoricalExchangeRateService} per la valuta pivot.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "exchange_rates", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_exchange_rate_day", columnNames = {"rate_date", "base", "quote"})
+})
+public class ExchangeRate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "rate_date", nullable = false)
+    private LocalDate rateDate;
+
+    @Column(nullable = false, length = 3)
+    private String base;
+
+    @Column(nullable = false, length = 3)
+    private String quote;
+
+    @Column(nullable = false, precision = 24, scale = 10)
+    private BigDecimal rate;
+}
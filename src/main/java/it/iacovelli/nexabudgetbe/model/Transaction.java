@@ -17,8 +17,8 @@ import java.util.UUID;
 @Entity
 @SQLRestriction("deleted = false")
 @Table(name = "transactions", indexes = {
-        @Index(name = "idx_transaction_user_date", columnList = "user_id, transaction_date"),
-        @Index(name = "idx_transaction_account_date", columnList = "account_id, transaction_date"),
+        @Index(name = "idx_transaction_user_date_id", columnList = "user_id, transaction_date, id"),
+        @Index(name = "idx_transaction_account_date_id", columnList = "account_id, transaction_date, id"),
         @Index(name = "idx_transaction_category", columnList = "category_id")
 })
 public class Transaction {
@@ -54,7 +54,7 @@ public class Transaction {
     @Column(name = "transaction_date", nullable = false)
     private LocalDate date;
 
-    @Lob
+    @Column(columnDefinition = "text")
     private String note;
 
     @Column(name = "transfer_id")
@@ -0,0 +1,57 @@
+package it.iacovelli.nexabudgetbe.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Read model mensile delle transazioni: per (utente, mese, categoria, valuta del conto, tipo, trasferimento)
+ * la somma degli importi e il numero di movimenti. Mantenuto incrementalmente da {@code MonthlyRollupService}
+ * a ogni scrittura, alimenta report e budget senza scansionare l'intera storia dell'utente.
+ * <p>
+ * {@code amount} è sempre positivo per costruzione (il segno è dato da {@code type}). Nessuna FK verso utenti,
+ * categorie o conti: le righe di categorie/conti eliminati vengono riassegnate o riallineate dal service.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "transaction_monthly_rollups", indexes = {
+        @Index(name = "idx_rollup_user_month", columnList = "user_id, year_month")
+})
+public class TransactionMonthlyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    /** Anno e mese nel formato {@code yyyyMM} (es. 202604). */
+    @Column(name = "year_month", nullable = false)
+    private Integer yearMonth;
+
+    @Column(name = "category_id")
+    private UUID categoryId;
+
+    @Column(nullable = false)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TransactionType type;
+
+    @Column(name = "is_transfer", nullable = false)
+    private Boolean transfer;
+
+    @Column(nullable = false, precision = 19, scale = 4)
+    private BigDecimal amount;
+
+    @Column(name = "tx_count", nullable = false)
+    private Long transactionCount;
+}
@@ -0,0 +1,31 @@
+package it.iacovelli.nexabudgetbe.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Generazione dei dati di un utente: incrementata a ogni scrittura su transazioni, conti e categorie da
+ * {@code UserDataGenerationService}, versiona le voci della cache dei report. Non ha FK verso {@code users}.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "user_data_generations")
+public class UserDataGeneration {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(nullable = false)
+    private long generation;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,68 @@
+package it.iacovelli.nexabudgetbe.repository;
+
+import it.iacovelli.nexabudgetbe.model.AccountBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface AccountBalanceRepository extends JpaRepository<AccountBalance, UUID> {
+
+    /**
+     * Incremento atomico lato DB (lock di riga implicito): ritorna 0 se il conto non ha ancora una riga nel ledger.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE AccountBalance b SET b.balance = b.balance + :delta, b.updatedAt = :now WHERE b.accountId = :accountId")
+    int applyDelta(@Param("accountId") UUID accountId, @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE AccountBalance b SET b.balance = :balance, b.updatedAt = :now WHERE b.accountId = :accountId")
+    int setBalance(@Param("accountId") UUID accountId, @Param("balance") BigDecimal balance, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO account_balances (account_id, balance, updated_at) VALUES (:accountId, :balance, :now)", nativeQuery = true)
+    void insertBalance(@Param("accountId") UUID accountId, @Param("balance") BigDecimal balance, @Param("now") LocalDateTime now);
+
+    /**
+     * Crea la riga con {@code initial} o, se esiste già, le somma {@code delta}, in un solo statement: due primi
+     * movimenti concorrenti si serializzano sulla chiave invece di fallire con una violazione di chiave primaria.
+     * Solo Postgres.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO account_balances (account_id, balance, updated_at) VALUES (:accountId, :initial, :now) " +
+            "ON CONFLICT (account_id) DO UPDATE SET balance = account_balances.balance + :delta, " +
+            "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    void upsertDelta(@Param("accountId") UUID accountId, @Param("initial") BigDecimal initial,
+                     @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    /** Imposta il saldo, creando la riga se manca, in un solo statement. Solo Postgres. */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO account_balances (account_id, balance, updated_at) VALUES (:accountId, :balance, :now) " +
+            "ON CONFLICT (account_id) DO UPDATE SET balance = EXCLUDED.balance, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void upsertBalance(@Param("accountId") UUID accountId, @Param("balance") BigDecimal balance,
+                       @Param("now") LocalDateTime now);
+
+    /** Blocca la riga del ledger fino a fine transazione: serializza la riconciliazione con gli incrementi concorrenti. */
+    @Query(value = "SELECT balance FROM account_balances WHERE account_id = :accountId FOR UPDATE", nativeQuery = true)
+    List<BigDecimal> lockBalance(@Param("accountId") UUID accountId);
+
+    /** Proiezione (non entity) per non lasciare istanze managed che diventerebbero stale dopo {@link #applyDelta}. */
+    @Query("SELECT b.accountId, b.balance FROM AccountBalance b WHERE b.accountId IN :accountIds")
+    List<Object[]> findBalances(@Param("accountIds") Collection<UUID> accountIds);
+
+    @Query("SELECT b.accountId, b.balance FROM AccountBalance b")
+    List<Object[]> findAllBalances();
+
+    @Modifying
+    @Query(value = "DELETE FROM account_balances WHERE account_id NOT IN (SELECT id FROM accounts)", nativeQuery = true)
+    int deleteOrphans();
+}
@@ -3,6 +3,7 @@ package it.iacovelli.nexabudgetbe.repository;
 import it.iacovelli.nexabudgetbe.model.Account;
 import it.iacovelli.nexabudgetbe.model.AccountType;
 import it.iacovelli.nexabudgetbe.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -22,6 +23,23 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
     List<Account> findByUserAndType(User user, AccountType type);
     List<Account> findByUserAndCurrency(User user, String currency);
 
+    /** Id dei conti dell'utente con il nome che soddisfa {@code lower(name) LIKE :pattern}. */
+    @Query("SELECT a.id FROM Account a WHERE a.user.id = :userId AND LOWER(a.name) LIKE :pattern")
+    List<UUID> findIdsByUserIdAndNameLike(@Param("userId") UUID userId, @Param("pattern") String pattern);
+
+    @Query("SELECT a FROM Account a JOIN FETCH a.user WHERE a.id = :id")
+    Optional<Account> findWithUserById(@Param("id") UUID id);
+
+    /**
+     * Conti collegati a un provider da sincronizzare in background: scadenza pianificata raggiunta (o mai
+     * pianificata), dal più stantio. La scadenza contiene già intervallo, jitter e backoff.
+     */
+    @Query("SELECT a.id AS id, a.provider AS provider FROM Account a " +
+            "WHERE a.provider IS NOT NULL AND a.isSynchronizing = false " +
+            "AND (a.nextSyncAt IS NULL OR a.nextSyncAt <= :now) " +
+            "ORDER BY a.lastExternalSync ASC NULLS FIRST, a.id")
+    List<AccountSyncView> findDueForBackgroundSync(@Param("now") LocalDateTime now, Pageable pageable);
+
     @Transactional
     @Modifying(clearAutomatically = true, flushAutomatically = true)
     @Query("UPDATE Account a SET a.isSynchronizing = true WHERE a.id = :id AND a.isSynchronizing = false")
@@ -45,6 +63,9 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
     @Query(value = "SELECT * FROM accounts WHERE id = :id AND user_id = :userId AND deleted = true", nativeQuery = true)
     Optional<Account> findDeletedByIdAndUserId(@Param("id") UUID id, @Param("userId") UUID userId);
 
+    @Query(value = "SELECT currency FROM accounts WHERE id = :id", nativeQuery = true)
+    Optional<String> findCurrencyByIdIncludingDeleted(@Param("id") UUID id);
+
     @Modifying
     @Query(value = "DELETE FROM accounts WHERE deleted = true AND deleted_at < :cutoff", nativeQuery = true)
     int purgeOldDeleted(@Param("cutoff") LocalDateTime cutoff);
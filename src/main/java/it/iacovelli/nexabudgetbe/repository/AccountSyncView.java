@@ -0,0 +1,10 @@
+package it.iacovelli.nexabudgetbe.repository;
+
+import it.iacovelli.nexabudgetbe.model.BankProvider;
+
+import java.util.UUID;
+
+public interface AccountSyncView {
+    UUID getId();
+    BankProvider getProvider();
+}
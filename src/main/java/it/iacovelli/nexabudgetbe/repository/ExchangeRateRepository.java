@@ -0,0 +1,20 @@
+package it.iacovelli.nexabudgetbe.repository;
+
+import it.iacovelli.nexabudgetbe.model.ExchangeRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, UUID> {
+
+    boolean existsByRateDateAndBase(LocalDate rateDate, String base);
+
+    /** Proiezione (base, quote, data, tasso) in ordine di data, per costruire le serie in memoria. */
+    @Query("SELECT r.base, r.quote, r.rateDate, r.rate FROM ExchangeRate r ORDER BY r.rateDate")
+    List<Object[]> findAllRatesOrderByDate();
+}
@@ -0,0 +1,121 @@
+package it.iacovelli.nexabudgetbe.repository;
+
+import it.iacovelli.nexabudgetbe.model.TransactionMonthlyRollup;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TransactionMonthlyRollupRepository extends JpaRepository<TransactionMonthlyRollup, UUID> {
+
+    /** Incremento atomico lato DB: ritorna 0 se la chiave non ha ancora una riga. */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE TransactionMonthlyRollup r SET r.amount = r.amount + :amount, r.transactionCount = r.transactionCount + :count " +
+            "WHERE r.userId = :userId AND r.yearMonth = :yearMonth AND r.categoryId = :categoryId " +
+            "AND r.currency = :currency AND r.type = :type AND r.transfer = :transfer")
+    int applyDelta(@Param("userId") UUID userId, @Param("yearMonth") int yearMonth, @Param("categoryId") UUID categoryId,
+                   @Param("currency") String currency, @Param("type") TransactionType type, @Param("transfer") boolean transfer,
+                   @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    /** Variante di {@link #applyDelta} per le transazioni senza categoria (evita il confronto con un parametro null). */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE TransactionMonthlyRollup r SET r.amount = r.amount + :amount, r.transactionCount = r.transactionCount + :count " +
+            "WHERE r.userId = :userId AND r.yearMonth = :yearMonth AND r.categoryId IS NULL " +
+            "AND r.currency = :currency AND r.type = :type AND r.transfer = :transfer")
+    int applyDeltaUncategorized(@Param("userId") UUID userId, @Param("yearMonth") int yearMonth,
+                                @Param("currency") String currency, @Param("type") TransactionType type,
+                                @Param("transfer") boolean transfer,
+                                @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    /**
+     * Somma la variazione alla riga della chiave, creandola se manca, in un solo statement: due prime scritture
+     * concorrenti sulla stessa chiave non falliscono su {@code uq_rollup_key}. {@code type} è il nome dell'enum.
+     * Solo Postgres.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO transaction_monthly_rollups " +
+            "(id, user_id, year_month, category_id, currency, type, is_transfer, amount, tx_count) " +
+            "VALUES (gen_random_uuid(), :userId, :yearMonth, CAST(:categoryId AS uuid), :currency, :type, :transfer, :amount, :count) " +
+            "ON CONFLICT (user_id, year_month, COALESCE(category_id, '00000000-0000-0000-0000-000000000000'::uuid), " +
+            "currency, type, is_transfer) DO UPDATE SET " +
+            "amount = transaction_monthly_rollups.amount + EXCLUDED.amount, " +
+            "tx_count = transaction_monthly_rollups.tx_count + EXCLUDED.tx_count", nativeQuery = true)
+    void upsertDelta(@Param("userId") UUID userId, @Param("yearMonth") int yearMonth, @Param("categoryId") UUID categoryId,
+                     @Param("currency") String currency, @Param("type") String type, @Param("transfer") boolean transfer,
+                     @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    /** Totali esclusi i trasferimenti: [yearMonth, categoryId, currency, type, amount]. */
+    @Query("SELECT r.yearMonth, r.categoryId, r.currency, r.type, SUM(r.amount) FROM TransactionMonthlyRollup r " +
+            "WHERE r.userId = :userId AND r.transfer = false AND r.yearMonth BETWEEN :from AND :to " +
+            "GROUP BY r.yearMonth, r.categoryId, r.currency, r.type")
+    List<Object[]> findNonTransferTotals(@Param("userId") UUID userId, @Param("from") int from, @Param("to") int to);
+
+    /**
+     * Come {@link #findNonTransferTotals} più, con {@code yearMonth = 0}, i totali dei mesi precedenti a {@code from}
+     * (saldo di apertura dei report) in una sola query.
+     */
+    @Query("SELECT r.yearMonth, r.categoryId, r.currency, r.type, SUM(r.amount) FROM TransactionMonthlyRollup r " +
+            "WHERE r.userId = :userId AND r.transfer = false AND r.yearMonth BETWEEN :from AND :to " +
+            "GROUP BY r.yearMonth, r.categoryId, r.currency, r.type " +
+            "UNION ALL " +
+            "SELECT 0, r.categoryId, r.currency, r.type, SUM(r.amount) FROM TransactionMonthlyRollup r " +
+            "WHERE r.userId = :userId AND r.transfer = false AND r.yearMonth < :from " +
+            "GROUP BY r.categoryId, r.currency, r.type")
+    List<Object[]> findNonTransferTotalsWithOpening(@Param("userId") UUID userId, @Param("from") int from, @Param("to") int to);
+
+    /** Netto (IN-OUT) per valuta dei mesi precedenti a {@code yearMonth}, esclusi i trasferimenti. */
+    @Query("SELECT r.currency, COALESCE(SUM(CASE WHEN r.type = 'IN' THEN r.amount ELSE -r.amount END), 0) " +
+            "FROM TransactionMonthlyRollup r WHERE r.userId = :userId AND r.transfer = false AND r.yearMonth < :yearMonth " +
+            "GROUP BY r.currency")
+    List<Object[]> sumNetBeforePerCurrency(@Param("userId") UUID userId, @Param("yearMonth") int yearMonth);
+
+    /**
+     * Speso netto (OUT-IN) per categoria nel mese, trasferimenti inclusi e senza conversione di valuta:
+     * stessa semantica di {@code TransactionRepository.sumNetByUserAndCategoryAndDateRange}.
+     */
+    @Query("SELECT r.categoryId, COALESCE(SUM(CASE WHEN r.type = 'OUT' THEN r.amount ELSE -r.amount END), 0) " +
+            "FROM TransactionMonthlyRollup r WHERE r.userId = :userId AND r.yearMonth = :yearMonth " +
+            "AND r.categoryId IN :categoryIds GROUP BY r.categoryId")
+    List<Object[]> sumNetByCategory(@Param("userId") UUID userId, @Param("yearMonth") int yearMonth,
+                                    @Param("categoryIds") Collection<UUID> categoryIds);
+
+    /** Righe della categoria (proiezione): [yearMonth, currency, type, transfer, amount, count]. */
+    @Query("SELECT r.yearMonth, r.currency, r.type, r.transfer, SUM(r.amount), SUM(r.transactionCount) " +
+            "FROM TransactionMonthlyRollup r WHERE r.userId = :userId AND r.categoryId = :categoryId " +
+            "GROUP BY r.yearMonth, r.currency, r.type, r.transfer")
+    List<Object[]> findByCategory(@Param("userId") UUID userId, @Param("categoryId") UUID categoryId);
+
+    /** Utenti con almeno una riga di rollup, per la riconciliazione. */
+    @Query("SELECT DISTINCT r.userId FROM TransactionMonthlyRollup r")
+    List<UUID> findUserIds();
+
+    /**
+     * Chiavi di un utente con i loro totali, per la riconciliazione:
+     * [userId, yearMonth, categoryId, currency, type, transfer, amount, count].
+     */
+    @Query("SELECT r.userId, r.yearMonth, r.categoryId, r.currency, r.type, r.transfer, SUM(r.amount), SUM(r.transactionCount) " +
+            "FROM TransactionMonthlyRollup r WHERE r.userId = :userId " +
+            "GROUP BY r.userId, r.yearMonth, r.categoryId, r.currency, r.type, r.transfer")
+    List<Object[]> findTotalsByUserId(@Param("userId") UUID userId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM TransactionMonthlyRollup r WHERE r.userId = :userId AND r.categoryId = :categoryId")
+    int deleteByCategory(@Param("userId") UUID userId, @Param("categoryId") UUID categoryId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM TransactionMonthlyRollup r WHERE r.userId = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /** Chiavi svuotate da cancellazioni o spostamenti: non contribuiscono ad alcuna somma. */
+    @Modifying
+    @Query("DELETE FROM TransactionMonthlyRollup r WHERE r.transactionCount = 0 AND r.amount = 0")
+    int deleteEmpty();
+}
@@ -1,10 +1,13 @@
 package it.iacovelli.nexabudgetbe.repository;
 
 import it.iacovelli.nexabudgetbe.model.*;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Repository;
@@ -15,16 +18,32 @@ import org.springframework.data.domain.Pageable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, UUID>, JpaSpecificationExecutor<Transaction> {
 
+       /** Dimensione massima delle liste IN nelle query di dedup degli import. */
+       int DEDUP_IN_CHUNK = 1000;
+
        @Query("SELECT COALESCE(SUM(CASE WHEN t.type = 'IN' THEN t.amount ELSE -t.amount END), 0) FROM Transaction t WHERE t.account = :account")
        BigDecimal calculateBalanceForAccount(@Param("account") Account account);
 
+       @Query("SELECT COALESCE(SUM(CASE WHEN t.type = 'IN' THEN t.amount ELSE -t.amount END), 0) FROM Transaction t WHERE t.account.id = :accountId")
+       BigDecimal calculateBalanceForAccountId(@Param("accountId") UUID accountId);
+
+       /** Saldo ricalcolato per ogni conto con almeno una transazione attiva: usata dalla riconciliazione del ledger. */
+       @Query("SELECT t.account.id, COALESCE(SUM(CASE WHEN t.type = 'IN' THEN t.amount ELSE -t.amount END), 0) FROM Transaction t GROUP BY t.account.id")
+       List<Object[]> calculateBalancesGroupedByAccount();
+
        @Query("SELECT t FROM Transaction t JOIN FETCH t.account LEFT JOIN FETCH t.category WHERE t.id = :id AND t.user = :user")
        Optional<Transaction> findByIdAndUser(UUID id, User user);
 
@@ -38,6 +57,35 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>,
 
        boolean existsByImportHash(String importHash);
 
+       /** Dedup set-based dell'import bancario: externalId del lotto già presenti nel conto. */
+       @Query("SELECT t.externalId FROM Transaction t WHERE t.account = :account AND t.externalId IN :externalIds")
+       List<String> findExistingExternalIds(@Param("account") Account account,
+                     @Param("externalIds") Collection<String> externalIds);
+
+       /** Dedup set-based per hash di contenuto, per le righe importate senza un id stabile. */
+       @Query("SELECT t.importHash FROM Transaction t WHERE t.account = :account AND t.importHash IN :importHashes")
+       List<String> findExistingImportHashes(@Param("account") Account account,
+                     @Param("importHashes") Collection<String> importHashes);
+
+       /** externalId già presenti nel conto tra quelli dati, con una query ogni {@link #DEDUP_IN_CHUNK} valori. */
+       default Set<String> existingExternalIds(Account account, Collection<String> externalIds) {
+              return inChunks(externalIds, chunk -> findExistingExternalIds(account, chunk));
+       }
+
+       /** Hash di import già presenti nel conto tra quelli dati, con una query ogni {@link #DEDUP_IN_CHUNK} valori. */
+       default Set<String> existingImportHashes(Account account, Collection<String> importHashes) {
+              return inChunks(importHashes, chunk -> findExistingImportHashes(account, chunk));
+       }
+
+       private static Set<String> inChunks(Collection<String> values, Function<Collection<String>, List<String>> query) {
+              Set<String> found = new HashSet<>();
+              List<String> all = new ArrayList<>(values);
+              for (int i = 0; i < all.size(); i += DEDUP_IN_CHUNK) {
+                     found.addAll(query.apply(all.subList(i, Math.min(i + DEDUP_IN_CHUNK, all.size()))));
+              }
+              return found;
+       }
+
        @Query("SELECT t FROM Transaction t JOIN FETCH t.account LEFT JOIN FETCH t.category WHERE t.user = :user")
        List<Transaction> findByUser(User user);
 
@@ -56,6 +104,37 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>,
 
        List<Transaction> findByCategoryAndUser(Category category, User user);
 
+       /**
+        * Storico categorizzato dell'utente raggruppato per (descrizione, tipo, categoria), con il numero di
+        * transazioni: è il training set del categorizzatore locale. I trasferimenti sono esclusi.
+        */
+       @Query("SELECT t.description, t.type, t.category.id, COUNT(t) FROM Transaction t " +
+                     "WHERE t.user.id = :userId AND t.category IS NOT NULL AND t.transferId IS NULL " +
+                     "GROUP BY t.description, t.type, t.category.id")
+       List<Object[]> countCategorizedDescriptions(@Param("userId") UUID userId);
+
+       /**
+        * Cursore forward-only per l'export in streaming: righe lette a blocchi di fetch size e in sola lettura
+        * (nessuno snapshot di dirty checking). Va consumato dentro una transazione e chiuso.
+        */
+       @QueryHints({
+                     @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                     @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+       })
+       @Query("SELECT t FROM Transaction t JOIN FETCH t.account LEFT JOIN FETCH t.category " +
+                     "WHERE t.user.id = :userId AND t.date BETWEEN :start AND :end ORDER BY t.date DESC, t.id DESC")
+       Stream<Transaction> streamByUserForExport(@Param("userId") UUID userId,
+                     @Param("start") LocalDate start, @Param("end") LocalDate end);
+
+       @QueryHints({
+                     @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                     @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+       })
+       @Query("SELECT t FROM Transaction t JOIN FETCH t.account LEFT JOIN FETCH t.category " +
+                     "WHERE t.account.id = :accountId AND t.date BETWEEN :start AND :end ORDER BY t.date DESC, t.id DESC")
+       Stream<Transaction> streamByAccountForExport(@Param("accountId") UUID accountId,
+                     @Param("start") LocalDate start, @Param("end") LocalDate end);
+
        List<Transaction> findByTransferIdAndUser(String transferId, User user);
 
        List<Transaction> findByUserAndDateBetween(User user, LocalDate start, LocalDate end);
@@ -215,4 +294,40 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>,
                      "ORDER BY YEAR(t.date), MONTH(t.date)")
        List<Object[]> findMonthlyUncategorizedTotalsByType(@Param("user") User user,
                      @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+       /**
+        * Totali per mese/categoria/valuta/tipo esclusi i trasferimenti: [year, month, categoryId, currency, type, amount].
+        * Usata dal rollup mensile per i mesi solo parzialmente coperti dal periodo richiesto.
+        */
+       @Query("SELECT YEAR(t.date), MONTH(t.date), c.id, t.account.currency, t.type, COALESCE(SUM(t.amount), 0) " +
+                     "FROM Transaction t LEFT JOIN t.category c WHERE t.user = :user " +
+                     "AND t.date BETWEEN :from AND :to " +
+                     "AND t.transferId IS NULL " +
+                     "GROUP BY YEAR(t.date), MONTH(t.date), c.id, t.account.currency, t.type")
+       List<Object[]> findMonthlyTotalsByCategoryAndType(@Param("user") User user,
+                     @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+       /**
+        * Aggregazione completa nel formato del rollup mensile per un utente:
+        * [userId, yearMonth, categoryId, currency, type, transfer, amount, count]. Usata per ricostruirlo.
+        */
+       @Query(value = """
+                     SELECT t.user_id,
+                            EXTRACT(YEAR FROM t.transaction_date) * 100 + EXTRACT(MONTH FROM t.transaction_date),
+                            t.category_id, a.currency, t.type,
+                            CASE WHEN t.transfer_id IS NULL THEN false ELSE true END,
+                            SUM(t.amount), COUNT(*)
+                     FROM transactions t
+                     JOIN accounts a ON t.account_id = a.id
+                     WHERE t.deleted = false AND t.user_id = :userId
+                     GROUP BY t.user_id,
+                              EXTRACT(YEAR FROM t.transaction_date) * 100 + EXTRACT(MONTH FROM t.transaction_date),
+                              t.category_id, a.currency, t.type,
+                              CASE WHEN t.transfer_id IS NULL THEN false ELSE true END
+                     """, nativeQuery = true)
+       List<Object[]> aggregateMonthlyRollupsByUserId(@Param("userId") UUID userId);
+
+       /** Utenti con transazioni attive, per la riconciliazione del rollup mensile. */
+       @Query(value = "SELECT DISTINCT t.user_id FROM transactions t WHERE t.deleted = false", nativeQuery = true)
+       List<UUID> findActiveUserIds();
 }
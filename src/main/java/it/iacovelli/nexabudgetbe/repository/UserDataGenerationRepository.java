@@ -0,0 +1,38 @@
+package it.iacovelli.nexabudgetbe.repository;
+
+import it.iacovelli.nexabudgetbe.model.UserDataGeneration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface UserDataGenerationRepository extends JpaRepository<UserDataGeneration, UUID> {
+
+    /** Incremento atomico lato DB: ritorna 0 se l'utente non ha ancora una riga. */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE UserDataGeneration g SET g.generation = g.generation + 1, g.updatedAt = :now WHERE g.userId = :userId")
+    int increment(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO user_data_generations (user_id, generation, updated_at) VALUES (:userId, 1, :now)", nativeQuery = true)
+    void insertFirst(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    /**
+     * Incremento in un solo statement, con la riga creata alla prima scrittura dell'utente: due prime scritture
+     * concorrenti si serializzano sulla chiave invece di fallire con una violazione di chiave primaria. Solo Postgres.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO user_data_generations (user_id, generation, updated_at) VALUES (:userId, 1, :now) " +
+            "ON CONFLICT (user_id) DO UPDATE SET generation = user_data_generations.generation + 1, " +
+            "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    void upsertIncrement(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT g.generation FROM UserDataGeneration g WHERE g.userId = :userId")
+    Optional<Long> findGeneration(@Param("userId") UUID userId);
+}
@@ -0,0 +1,178 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import it.iacovelli.nexabudgetbe.repository.AccountBalanceRepository;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Mantiene il read model {@code account_balances}: ogni scrittura sulle transazioni applica al saldo del conto
+ * la variazione con segno ({@code IN} positivo, {@code OUT} negativo) nella stessa transazione DB della scrittura,
+ * così la lista conti costa O(numero di conti) invece di una SUM sull'intera storia per conto.
+ * <p>
+ * Un conto senza riga nel ledger (nuovo o precedente alla migrazione) viene inizializzato dalla SUM completa al
+ * primo movimento; in lettura, in assenza di riga, si ricade sulla SUM. La riconciliazione notturna rileva e
+ * ripara eventuali derive (scritture che bypassano il service, bug, restore manuali).
+ * <p>
+ * La creazione della riga è un upsert su Postgres ({@code app.persistence.upsert=on-conflict}): due primi movimenti
+ * concorrenti sullo stesso conto non falliscono sulla chiave primaria. Senza {@code ON CONFLICT} (H2) si usano
+ * UPDATE e INSERT.
+ */
+@Service
+public class AccountBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountBalanceService.class);
+
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean onConflictUpsert;
+
+    public AccountBalanceService(AccountBalanceRepository accountBalanceRepository,
+                                 TransactionRepository transactionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.persistence.upsert:on-conflict}") String upsert) {
+        this.accountBalanceRepository = accountBalanceRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.onConflictUpsert = "on-conflict".equalsIgnoreCase(upsert);
+    }
+
+    public static BigDecimal signedAmount(TransactionType type, BigDecimal amount) {
+        if (amount == null) return BigDecimal.ZERO;
+        return type == TransactionType.IN ? amount : amount.negate();
+    }
+
+    /**
+     * Applica al ledger le transazioni rimosse ({@code removed}) e aggiunte ({@code added}) da una scrittura,
+     * con una sola variazione per conto. Da invocare dopo la scrittura su {@code transactions}.
+     */
+    @Transactional
+    public void apply(Collection<TransactionSnapshot> removed, Collection<TransactionSnapshot> added) {
+        Map<UUID, BigDecimal> deltas = new LinkedHashMap<>();
+        removed.forEach(s -> deltas.merge(s.accountId(), s.signedAmount().negate(), BigDecimal::add));
+        added.forEach(s -> deltas.merge(s.accountId(), s.signedAmount(), BigDecimal::add));
+        deltas.forEach(this::applyDelta);
+    }
+
+    /**
+     * Applica una variazione al saldo del conto. Deve essere chiamato DOPO la scrittura su {@code transactions}:
+     * se la riga del ledger non esiste ancora viene creata dalla SUM completa, che include già la scrittura corrente
+     * (per questo in quel caso {@code delta} non viene sommato). Se nel frattempo un'altra transazione ha creato la
+     * riga, l'upsert le somma {@code delta}: la SUM di quella transazione non include la scrittura corrente.
+     */
+    @Transactional
+    public void applyDelta(UUID accountId, BigDecimal delta) {
+        if (accountId == null || delta == null || delta.signum() == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (accountBalanceRepository.applyDelta(accountId, delta, now) == 0) {
+            BigDecimal balance = transactionRepository.calculateBalanceForAccountId(accountId);
+            if (onConflictUpsert) {
+                accountBalanceRepository.upsertDelta(accountId, balance, delta, now);
+            } else {
+                accountBalanceRepository.insertBalance(accountId, balance, now);
+            }
+            logger.debug("Ledger saldo inizializzato per account ID: {} a {}", accountId, balance);
+        }
+    }
+
+    /** Ricalcola da zero il saldo di un conto (operazioni massive: soft-delete/restore di tutte le transazioni). */
+    @Transactional
+    public BigDecimal recalculate(UUID accountId) {
+        accountBalanceRepository.lockBalance(accountId);
+        BigDecimal balance = transactionRepository.calculateBalanceForAccountId(accountId);
+        LocalDateTime now = LocalDateTime.now();
+        if (onConflictUpsert) {
+            accountBalanceRepository.upsertBalance(accountId, balance, now);
+        } else if (accountBalanceRepository.setBalance(accountId, balance, now) == 0) {
+            accountBalanceRepository.insertBalance(accountId, balance, now);
+        }
+        return balance;
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(Account account) {
+        return getBalances(List.of(account)).getOrDefault(account.getId(), BigDecimal.ZERO);
+    }
+
+    /**
+     * Saldi di più conti con una sola query sul ledger; per i conti non ancora presenti nel ledger
+     * si ricade sulla SUM (verranno popolati al primo movimento o dalla riconciliazione).
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, BigDecimal> getBalances(Collection<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return Map.of();
+        }
+        List<UUID> ids = accounts.stream().map(Account::getId).toList();
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        for (Object[] row : accountBalanceRepository.findBalances(ids)) {
+            balances.put((UUID) row[0], (BigDecimal) row[1]);
+        }
+        for (Account account : accounts) {
+            if (!balances.containsKey(account.getId())) {
+                balances.put(account.getId(), transactionRepository.calculateBalanceForAccount(account));
+            }
+        }
+        return balances;
+    }
+
+    /** Rimuove le righe del ledger dei conti eliminati definitivamente. */
+    @Transactional
+    public int deleteOrphans() {
+        return accountBalanceRepository.deleteOrphans();
+    }
+
+    /**
+     * Confronta il ledger con i saldi ricalcolati e ripara le derive. Ogni conto divergente viene riparato in una
+     * transazione dedicata che prima blocca la riga del ledger e poi ricalcola la SUM: gli incrementi concorrenti
+     * attendono il lock, quindi la riparazione non può perdere né duplicare un movimento in corso.
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void reconcile() {
+        Map<UUID, BigDecimal> expected = new HashMap<>();
+        for (Object[] row : transactionRepository.calculateBalancesGroupedByAccount()) {
+            expected.put((UUID) row[0], (BigDecimal) row[1]);
+        }
+        Map<UUID, BigDecimal> actual = new HashMap<>();
+        for (Object[] row : accountBalanceRepository.findAllBalances()) {
+            actual.put((UUID) row[0], (BigDecimal) row[1]);
+        }
+
+        Set<UUID> drifted = new HashSet<>();
+        actual.forEach((accountId, balance) -> {
+            if (balance.compareTo(expected.getOrDefault(accountId, BigDecimal.ZERO)) != 0) {
+                drifted.add(accountId);
+            }
+        });
+        expected.keySet().stream().filter(id -> !actual.containsKey(id)).forEach(drifted::add);
+
+        int repaired = 0;
+        for (UUID accountId : drifted) {
+            try {
+                BigDecimal balance = transactionTemplate.execute(status -> recalculate(accountId));
+                logger.warn("Deriva saldo riparata per account ID: {} — ledger: {}, ricalcolato: {}",
+                        accountId, actual.get(accountId), balance);
+                repaired++;
+            } catch (Exception e) {
+                logger.error("Errore nella riparazione del saldo per account ID: {}: {}", accountId, e.getMessage());
+            }
+        }
+        logger.info("Riconciliazione ledger saldi completata: {} divergenze rilevate, {} riparate",
+                drifted.size(), repaired);
+    }
+}
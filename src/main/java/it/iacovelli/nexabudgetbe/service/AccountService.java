@@ -7,6 +7,7 @@ import it.iacovelli.nexabudgetbe.exception.BankReauthRequiredException;
 import it.iacovelli.nexabudgetbe.model.*;
 import it.iacovelli.nexabudgetbe.repository.AccountRepository;
 import it.iacovelli.nexabudgetbe.service.bank.BankAggregationProvider;
+import it.iacovelli.nexabudgetbe.service.bank.BankSyncSchedule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -20,6 +21,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
@@ -33,17 +35,31 @@ public class AccountService {
     private final TransactionService transactionService;
     private final UserService userService;
     private final CurrencyConversionService currencyConversionService;
+    private final MonthlyRollupService monthlyRollupService;
     private final Map<BankProvider, BankAggregationProvider> bankProviders;
+    private final BankSyncSchedule bankSyncSchedule;
+
+    /** Esito di un sync bancario, usato dallo scheduler per metriche e log. */
+    public enum SyncOutcome {
+        SYNCED,
+        SKIPPED,
+        REAUTH_REQUIRED,
+        FAILED
+    }
 
     public AccountService(AccountRepository accountRepository,
                           TransactionService transactionService,
                           UserService userService,
                           CurrencyConversionService currencyConversionService,
-                          List<BankAggregationProvider> bankAggregationProviders) {
+                          MonthlyRollupService monthlyRollupService,
+                          List<BankAggregationProvider> bankAggregationProviders,
+                          BankSyncSchedule bankSyncSchedule) {
         this.accountRepository = accountRepository;
         this.transactionService = transactionService;
         this.userService = userService;
         this.currencyConversionService = currencyConversionService;
+        this.monthlyRollupService = monthlyRollupService;
+        this.bankSyncSchedule = bankSyncSchedule;
         this.bankProviders = bankAggregationProviders.stream()
                 .collect(java.util.stream.Collectors.toMap(BankAggregationProvider::getProvider, Function.identity()));
     }
@@ -162,24 +178,15 @@ public class AccountService {
     }
 
     public List<AccountDto.AccountResponse> getAccountsByUser(User user) {
-        return accountRepository.findByUser(user)
-                .stream()
-                .map(this::mapAccountToDto)
-                .toList();
+        return mapAccountsToDto(accountRepository.findByUser(user));
     }
 
     public List<AccountDto.AccountResponse> getAccountsByUserAndType(User user, AccountType type) {
-        return accountRepository.findByUserAndType(user, type)
-                .stream()
-                .map(this::mapAccountToDto)
-                .toList();
+        return mapAccountsToDto(accountRepository.findByUserAndType(user, type));
     }
 
     public List<AccountDto.AccountResponse> getAccountsByUserAndCurrency(User user, String currency) {
-        return accountRepository.findByUserAndCurrency(user, currency)
-                .stream()
-                .map(this::mapAccountToDto)
-                .toList();
+        return mapAccountsToDto(accountRepository.findByUserAndCurrency(user, currency));
     }
 
     @Transactional
@@ -188,10 +195,15 @@ public class AccountService {
         Account account = getAccountEntityByIdAndUser(accountId, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato"));
 
+        boolean currencyChanged = !Objects.equals(account.getCurrency(), newCurrency);
         account.setName(newName);
         account.setType(newType);
         account.setCurrency(newCurrency);
         Account updatedAccount = accountRepository.save(account);
+        if (currencyChanged) {
+            // Il rollup mensile è raggruppato per valuta del conto
+            monthlyRollupService.rebuildForUser(user.getId());
+        }
         return mapAccountToDto(updatedAccount);
     }
 
@@ -212,8 +224,7 @@ public class AccountService {
         List<Account> accounts = accountRepository.findByUserAndCurrency(user, currency);
         BigDecimal totalBalance = BigDecimal.ZERO;
 
-        for (Account account : accounts) {
-            BigDecimal balance = transactionService.calculateBalanceForAccount(account);
+        for (BigDecimal balance : transactionService.calculateBalancesForAccounts(accounts).values()) {
             totalBalance = totalBalance.add(balance);
         }
 
@@ -224,9 +235,10 @@ public class AccountService {
         List<Account> accounts = accountRepository.findByUser(user);
         BigDecimal totalBalance = BigDecimal.ZERO;
         String defaultCurrency = user.getDefaultCurrency() != null ? user.getDefaultCurrency() : "EUR";
+        Map<UUID, BigDecimal> balances = transactionService.calculateBalancesForAccounts(accounts);
 
         for (Account account : accounts) {
-            BigDecimal balance = transactionService.calculateBalanceForAccount(account);
+            BigDecimal balance = balances.getOrDefault(account.getId(), BigDecimal.ZERO);
             if (balance.compareTo(BigDecimal.ZERO) != 0) {
                 BigDecimal convertedBalance = currencyConversionService.convert(balance, account.getCurrency(), defaultCurrency);
                 totalBalance = totalBalance.add(convertedBalance);
@@ -248,6 +260,7 @@ public class AccountService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato con ID: " + accountId));
         account.setRequisitionId(requisitionId);
         account.setProvider(provider);
+        resetSyncSchedule(account);
         accountRepository.save(account);
     }
 
@@ -263,9 +276,16 @@ public class AccountService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato con ID: " + accountId));
         account.setExternalAccountId(providerAccountId);
         account.setProvider(provider);
+        resetSyncSchedule(account);
         accountRepository.save(account);
     }
 
+    /** Un nuovo collegamento annulla il backoff: il conto torna sincronizzabile al prossimo giro dello scheduler. */
+    private void resetSyncSchedule(Account account) {
+        account.setNextSyncAt(null);
+        account.setSyncFailures(0);
+    }
+
     public String getRequisitionIdForAccount(UUID accountId, User user) {
         Account account = accountRepository.findByIdAndUser(accountId, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato con ID: " + accountId));
@@ -293,7 +313,7 @@ public class AccountService {
 
         LocalDateTime lastExternalSync = account.getLastExternalSync();
 
-        if (lastExternalSync != null && lastExternalSync.isAfter(LocalDateTime.now().minusHours(6))) {
+        if (lastExternalSync != null && lastExternalSync.isAfter(LocalDateTime.now().minus(bankSyncSchedule.interval()))) {
             logger.info("Account ID: {} già sincronizzato di recente, skip sincronizzazione", accountId);
             return;
         }
@@ -306,6 +326,41 @@ public class AccountService {
         account = accountRepository.findByIdAndUser(accountId, user)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato con ID: " + accountId));
 
+        runSync(account, user, request.getActualBalance());
+    }
+
+    /**
+     * Sync invocato dallo scheduler in background, sul thread chiamante: stesso lock e stesso percorso di import
+     * del sync richiesto dal client, senza allineamento al saldo atteso (disponibile solo dal client).
+     */
+    public SyncOutcome syncAccountInBackground(UUID accountId) {
+        if (!tryAcquireSyncLock(accountId)) {
+            logger.debug("Sync in background saltato per account ID: {}: sincronizzazione già in corso", accountId);
+            return SyncOutcome.SKIPPED;
+        }
+
+        Optional<Account> found = accountRepository.findWithUserById(accountId);
+        if (found.isEmpty()) {
+            return SyncOutcome.SKIPPED;
+        }
+        Account account = found.get();
+        if (account.getNextSyncAt() != null && account.getNextSyncAt().isAfter(LocalDateTime.now())) {
+            // Sincronizzato (o ripianificato) da un'altra richiesta dopo la lettura dello scheduler
+            account.setIsSynchronizing(false);
+            accountRepository.save(account);
+            return SyncOutcome.SKIPPED;
+        }
+        logger.info("Sincronizzazione in background transazioni bancarie per account ID: {}", accountId);
+        return runSync(account, account.getUser(), null);
+    }
+
+    /**
+     * Scarica e importa le transazioni del conto (lock {@code isSynchronizing} già acquisito), allinea il saldo
+     * se richiesto e pianifica il prossimo sync in background secondo {@link BankSyncSchedule}. Rilascia il lock.
+     */
+    private SyncOutcome runSync(Account account, User user, BigDecimal actualBalance) {
+        UUID accountId = account.getId();
+        LocalDateTime lastExternalSync = account.getLastExternalSync();
         LocalDate startDate = lastExternalSync != null ? lastExternalSync.toLocalDate() : null;
 
         try {
@@ -313,19 +368,19 @@ public class AccountService {
             List<NormalizedBankTransaction> bankTransactions = provider.fetchTransactions(account, startDate);
             logger.info("Recuperate {} transazioni da {} per account ID: {}", bankTransactions.size(), provider.getProvider(), accountId);
 
-            transactionService.importNormalizedTransactions(bankTransactions, user, account, startDate);
+            transactionService.importNormalizedTransactions(bankTransactions, user, account);
 
-            if (request.getActualBalance() != null) {
+            if (actualBalance != null) {
                 // Controlla adesso il bilancio del conto corrente e lo allinea con quello atteso della request
                 BigDecimal savedBalance = transactionService.calculateBalanceForAccount(account);
-                if (savedBalance.compareTo(request.getActualBalance()) != 0) {
+                if (savedBalance.compareTo(actualBalance) != 0) {
                     logger.info("Allineamento bilancio necessario per account ID: {}, bilancio attuale: {}, atteso: {}",
-                            accountId, savedBalance, request.getActualBalance());
+                            accountId, savedBalance, actualBalance);
                     Transaction alignmentTransaction = Transaction.builder()
                             .account(account)
                             .user(user)
-                            .amount(savedBalance.compareTo(request.getActualBalance()) < 0 ? request.getActualBalance().subtract(savedBalance) : savedBalance.subtract(request.getActualBalance()))
-                            .type(savedBalance.compareTo(request.getActualBalance()) < 0 ? TransactionType.IN : TransactionType.OUT)
+                            .amount(savedBalance.compareTo(actualBalance) < 0 ? actualBalance.subtract(savedBalance) : savedBalance.subtract(actualBalance))
+                            .type(savedBalance.compareTo(actualBalance) < 0 ? TransactionType.IN : TransactionType.OUT)
                             .description("Allineamento conto")
                             .date(LocalDate.now())
                             .build();
@@ -335,23 +390,48 @@ public class AccountService {
                 }
             }
 
-            account.setLastExternalSync(LocalDateTime.now());
+            LocalDateTime now = LocalDateTime.now();
+            account.setLastExternalSync(now);
             account.setRequiresReauth(false);
+            account.setSyncFailures(0);
+            account.setNextSyncAt(bankSyncSchedule.afterSuccess(now));
             logger.info("Sincronizzazione completata per account ID: {}", accountId);
+            return SyncOutcome.SYNCED;
         } catch (BankReauthRequiredException e) {
             account.setRequiresReauth(true);
+            account.setSyncFailures(failuresOf(account) + 1);
+            account.setNextSyncAt(bankSyncSchedule.afterReauthRequired(LocalDateTime.now(), account.getSyncFailures()));
             logger.warn("Consenso scaduto per account ID: {} — errorCode: {}, providerStatus: {}, renewable: {}. Serve un nuovo collegamento.",
                     accountId, e.getErrorCode(), e.getProviderStatus(), e.isRenewable());
+            return SyncOutcome.REAUTH_REQUIRED;
         } catch (Exception e) {
+            account.setSyncFailures(failuresOf(account) + 1);
+            account.setNextSyncAt(bankSyncSchedule.afterFailure(LocalDateTime.now(), account.getSyncFailures()));
             logger.error("Errore durante la sincronizzazione delle transazioni bancarie per account ID: {}, motivo: {}", accountId, e.getMessage());
+            return SyncOutcome.FAILED;
         } finally {
             account.setIsSynchronizing(false);
             accountRepository.save(account);
         }
     }
 
+    private static int failuresOf(Account account) {
+        return account.getSyncFailures() != null ? account.getSyncFailures() : 0;
+    }
+
+    /** Mappa più conti leggendo i saldi dal ledger con una sola query, invece di una lettura per conto. */
+    private List<AccountDto.AccountResponse> mapAccountsToDto(List<Account> accounts) {
+        Map<UUID, BigDecimal> balances = transactionService.calculateBalancesForAccounts(accounts);
+        return accounts.stream()
+                .map(account -> mapAccountToDto(account, balances.getOrDefault(account.getId(), BigDecimal.ZERO)))
+                .toList();
+    }
+
     public AccountDto.AccountResponse mapAccountToDto(Account account) {
-        BigDecimal balance = transactionService.calculateBalanceForAccount(account);
+        return mapAccountToDto(account, transactionService.calculateBalanceForAccount(account));
+    }
+
+    private AccountDto.AccountResponse mapAccountToDto(Account account, BigDecimal balance) {
         return AccountDto.AccountResponse
                 .builder()
                 .id(account.getId())
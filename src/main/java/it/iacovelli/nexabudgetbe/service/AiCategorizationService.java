@@ -8,6 +8,7 @@ import com.google.genai.types.GenerateContentConfig;
 import com.google.genai.types.GenerateContentResponse;
 import com.google.genai.types.Part;
 import com.google.genai.types.Schema;
+import it.iacovelli.nexabudgetbe.exception.AiQuotaExceededException;
 import it.iacovelli.nexabudgetbe.model.Category;
 import it.iacovelli.nexabudgetbe.model.TransactionType;
 import it.iacovelli.nexabudgetbe.model.User;
@@ -16,9 +17,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class AiCategorizationService {
@@ -30,6 +34,10 @@ public class AiCategorizationService {
     @Value("${nexabudget.ai.chat.model}")
     private String modelName;
 
+    /** Descrizioni per richiesta di categorizzazione a batch. */
+    @Value("${nexabudget.ai.categorization.batch-size:25}")
+    private int batchSize;
+
     private static final String RESPONSE_SCHEMA_JSON = """
             {
               "type": "object",
@@ -40,65 +48,163 @@ public class AiCategorizationService {
             }
             """;
 
+    private static final String BATCH_RESPONSE_SCHEMA_JSON = """
+            {
+              "type": "object",
+              "properties": {
+                "results": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "id": { "type": "integer" },
+                      "category": { "type": "string" }
+                    },
+                    "required": ["id", "category"],
+                    "propertyOrdering": ["id", "category"]
+                  }
+                }
+              },
+              "required": ["results"]
+            }
+            """;
+
     private final CategoryService categoryService;
     private final SemanticCacheService semanticCacheService;
     private final Models genaiModels;
     private final ObjectMapper objectMapper;
+    private final LocalCategorizer localCategorizer;
+    private final SemanticCacheWriter semanticCacheWriter;
 
     public AiCategorizationService(CategoryService categoryService, SemanticCacheService semanticCacheService,
-                                   Models genaiModels, ObjectMapper objectMapper) {
+                                   Models genaiModels, ObjectMapper objectMapper, LocalCategorizer localCategorizer,
+                                   SemanticCacheWriter semanticCacheWriter) {
         this.categoryService = categoryService;
         this.semanticCacheService = semanticCacheService;
         this.genaiModels = genaiModels;
         this.objectMapper = objectMapper;
+        this.localCategorizer = localCategorizer;
+        this.semanticCacheWriter = semanticCacheWriter;
     }
 
     public record AiCategoryResponse(String category) {}
 
+    public record AiBatchItem(Integer id, String category) {}
+
+    public record AiBatchResponse(List<AiBatchItem> results) {}
+
     /**
      * Tenta di associare una descrizione a una categoria esistente usando l'AI.
-     * Usa la cache semantica per evitare chiamate ridondanti.
+     * Prima prova il categorizzatore locale, poi la cache semantica, per evitare chiamate ridondanti.
      */
     public Optional<Category> categorizeTransaction(String description, User user, TransactionType type) {
         if (description == null || description.isBlank()) {
             return Optional.empty();
         }
 
-        List<Category> availableCategories = categoryService.getAllAvailableCategoriesForUser(user);
-        if (availableCategories.isEmpty()) {
+        CategoryCatalog catalog = categoryService.getCatalog(user);
+        if (catalog.isEmpty()) {
             return Optional.empty();
         }
+        return categorize(description, user, type, catalog);
+    }
+
+    /**
+     * Categorizza un gruppo di descrizioni dello stesso tipo: le categorie dell'utente vengono caricate una sola
+     * volta e ogni descrizione distinta viene risolta una sola volta, anche se nel gruppo compare più volte.
+     * Quelle che il categorizzatore locale e la cache semantica non risolvono vanno all'AI a blocchi di
+     * {@code batchSize} per richiesta; le righe a cui il modello non risponde ripassano con una chiamata singola.
+     *
+     * @return categoria trovata per ciascuna descrizione distinta non vuota
+     */
+    public Map<String, Optional<Category>> categorizeDistinct(Collection<String> descriptions, User user, TransactionType type) {
+        return categorizeDistinct(descriptions, user, type, false);
+    }
+
+    /**
+     * Come {@link #categorizeDistinct}, ma a quota esaurita solleva {@link AiQuotaExceededException} invece di
+     * saltare le descrizioni: il chiamante rallenta e ritenta il blocco.
+     */
+    public Map<String, Optional<Category>> categorizeDistinctFailingOnQuota(Collection<String> descriptions, User user,
+                                                                           TransactionType type) {
+        return categorizeDistinct(descriptions, user, type, true);
+    }
+
+    private Map<String, Optional<Category>> categorizeDistinct(Collection<String> descriptions, User user,
+                                                               TransactionType type, boolean failOnQuota) {
+        Map<String, Optional<Category>> result = new LinkedHashMap<>();
+        CategoryCatalog catalog = categoryService.getCatalog(user);
+        List<String> misses = new ArrayList<>();
+        for (String description : descriptions) {
+            if (description == null || description.isBlank() || result.containsKey(description)) {
+                continue;
+            }
+            Optional<Category> known = catalog.isEmpty()
+                    ? Optional.empty()
+                    : resolveWithoutAi(description, user, type, catalog);
+            result.put(description, known);
+            if (known.isEmpty() && !catalog.isEmpty()) {
+                misses.add(description);
+            }
+        }
+
+        int chunkSize = Math.max(1, batchSize);
+        for (int from = 0; from < misses.size(); from += chunkSize) {
+            List<String> chunk = misses.subList(from, Math.min(from + chunkSize, misses.size()));
+            Map<String, Optional<Category>> answered = chunk.size() > 1
+                    ? askModelBatch(chunk, user, type, catalog, failOnQuota)
+                    : Map.of();
+            for (String description : chunk) {
+                Optional<Category> category = answered.get(description);
+                result.put(description, category != null
+                        ? category
+                        : askModel(description, user, type, catalog, failOnQuota));
+            }
+        }
+        return result;
+    }
+
+    private Optional<Category> categorize(String description, User user, TransactionType type,
+                                          CategoryCatalog catalog) {
+        Optional<Category> known = resolveWithoutAi(description, user, type, catalog);
+        return known.isPresent() ? known : askModel(description, user, type, catalog, false);
+    }
+
+    /** Categorizzatore locale, poi cache semantica: nessuna chiamata al modello. */
+    private Optional<Category> resolveWithoutAi(String description, User user, TransactionType type,
+                                                CategoryCatalog catalog) {
+        Optional<CategorizerModel.Prediction> local = localCategorizer.predict(user, description, type);
+        if (local.isPresent()) {
+            Optional<Category> localMatch = catalog.findById(local.get().categoryId());
+            if (localMatch.isPresent()) {
+                log.debug("Categorizzatore locale per '{}': '{}' (confidenza {})",
+                        description, localMatch.get().getName(), String.format("%.2f", local.get().confidence()));
+                return localMatch;
+            }
+        }
 
         Optional<String> cached = semanticCacheService.findSimilar(description, user.getId());
         if (cached.isPresent()) {
             String cachedName = cached.get();
-            Optional<Category> cachedMatch = availableCategories.stream()
-                    .filter(c -> c.getName().equalsIgnoreCase(cachedName))
-                    .findFirst();
+            Optional<Category> cachedMatch = catalog.findByName(cachedName);
             if (cachedMatch.isPresent()) {
                 log.debug("Cache hit per '{}': '{}'", description, cachedName);
                 return cachedMatch;
             }
             log.debug("Cache hit per '{}' ma categoria '{}' non trovata, fallback AI", description, cachedName);
         }
+        return Optional.empty();
+    }
 
-        String prompt = buildPrompt(description, availableCategories, type);
+    private Optional<Category> askModel(String description, User user, TransactionType type,
+                                        CategoryCatalog catalog, boolean failOnQuota) {
+        String prompt = buildPrompt(description, catalog, type);
 
         try {
             log.debug("Categorizzazione AI per: '{}'", description);
 
-            Content userContent = Content.builder()
-                    .role("user")
-                    .parts(List.of(Part.fromText(prompt)))
-                    .build();
-
-            GenerateContentConfig cfg = GenerateContentConfig.builder()
-                    .temperature(0.1f)
-                    .responseMimeType("application/json")
-                    .responseSchema(Schema.fromJson(RESPONSE_SCHEMA_JSON))
-                    .build();
-
-            GenerateContentResponse resp = genaiModels.generateContent(modelName, userContent, cfg);
+            GenerateContentResponse resp = genaiModels.generateContent(modelName, userContent(prompt),
+                    jsonConfig(RESPONSE_SCHEMA_JSON));
             String raw = resp.text();
 
             final String aiResponse = parseAiResponse(raw);
@@ -110,12 +216,10 @@ public class AiCategorizationService {
                 return Optional.empty();
             }
 
-            Optional<Category> matched = availableCategories.stream()
-                    .filter(c -> c.getName().equalsIgnoreCase(aiResponse))
-                    .findFirst();
+            Optional<Category> matched = catalog.findByName(aiResponse);
 
             if (matched.isPresent()) {
-                semanticCacheService.saveToCache(description, matched.get().getName(), user.getId());
+                semanticCacheWriter.enqueue(description, matched.get().getName(), user.getId());
                 log.info("Transazione '{}' categorizzata come '{}' (AI)", description, matched.get().getName());
             } else {
                 log.warn("Risposta AI '{}' non corrisponde a nessuna categoria per '{}'", aiResponse, description);
@@ -124,7 +228,10 @@ public class AiCategorizationService {
             return matched;
 
         } catch (ApiException e) {
-            if (e.code() == 429) {
+            if (isQuotaExceeded(e)) {
+                if (failOnQuota) {
+                    throw new AiQuotaExceededException("Quota Gemini API esaurita", e);
+                }
                 log.warn("Quota Gemini API esaurita, categorizzazione saltata per: '{}'", description);
             } else {
                 log.error("Errore API Gemini ({}): {}", e.code(), e.getMessage());
@@ -136,8 +243,101 @@ public class AiCategorizationService {
         }
     }
 
-    public void updateSemanticCache(String description, Category oldCategory, Category newCategory, User user, TransactionType type) {
-        semanticCacheService.saveToCache(description, newCategory.getName(), user.getId());
+    /**
+     * Una sola richiesta per tutte le descrizioni di {@code chunk}, numerate da 1 nel prompt; la risposta è un
+     * array di coppie (id, categoria). Restituisce solo le righe a cui il modello ha risposto: le altre, o tutte
+     * se la risposta non è leggibile, ripassano dal percorso singolo. A quota esaurita il blocco viene saltato
+     * per intero, senza ritentare riga per riga.
+     */
+    private Map<String, Optional<Category>> askModelBatch(List<String> chunk, User user, TransactionType type,
+                                                          CategoryCatalog catalog, boolean failOnQuota) {
+        Map<String, Optional<Category>> answered = new LinkedHashMap<>();
+        try {
+            log.debug("Categorizzazione AI a batch per {} descrizioni", chunk.size());
+
+            GenerateContentResponse resp = genaiModels.generateContent(modelName,
+                    userContent(buildBatchPrompt(chunk, catalog, type)),
+                    jsonConfig(BATCH_RESPONSE_SCHEMA_JSON));
+            String raw = resp.text();
+            if (raw == null || raw.isBlank()) {
+                log.warn("Risposta AI a batch vuota, fallback su {} chiamate singole", chunk.size());
+                return answered;
+            }
+            AiBatchResponse parsed = objectMapper.readValue(raw, AiBatchResponse.class);
+            if (parsed.results() == null) {
+                return answered;
+            }
+
+            for (AiBatchItem item : parsed.results()) {
+                if (item == null || item.id() == null || item.id() < 1 || item.id() > chunk.size()
+                        || item.category() == null) {
+                    continue;
+                }
+                String description = chunk.get(item.id() - 1);
+                String aiResponse = item.category().trim();
+                if (NONE.equalsIgnoreCase(aiResponse) || aiResponse.isBlank()) {
+                    answered.put(description, Optional.empty());
+                    continue;
+                }
+                Optional<Category> matched = catalog.findByName(aiResponse);
+                if (matched.isPresent()) {
+                    semanticCacheWriter.enqueue(description, matched.get().getName(), user.getId());
+                } else {
+                    log.warn("Risposta AI '{}' non corrisponde a nessuna categoria per '{}'", aiResponse, description);
+                }
+                answered.put(description, matched);
+            }
+            log.info("Categorizzazione AI a batch: {}/{} righe con risposta, {} categorizzate", answered.size(),
+                    chunk.size(), answered.values().stream().filter(Optional::isPresent).count());
+            return answered;
+
+        } catch (ApiException e) {
+            if (isQuotaExceeded(e)) {
+                if (failOnQuota) {
+                    throw new AiQuotaExceededException("Quota Gemini API esaurita", e);
+                }
+                log.warn("Quota Gemini API esaurita, categorizzazione saltata per {} descrizioni", chunk.size());
+                chunk.forEach(description -> answered.put(description, Optional.empty()));
+                return answered;
+            }
+            log.error("Errore API Gemini ({}) nella categorizzazione a batch: {}", e.code(), e.getMessage());
+            return Map.of();
+        } catch (Exception e) {
+            log.error("Errore inatteso nella categorizzazione AI a batch, fallback su chiamate singole: {}",
+                    e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private static boolean isQuotaExceeded(ApiException e) {
+        return e.code() == 429 || (e.getMessage() != null && e.getMessage().contains("RESOURCE_EXHAUSTED"));
+    }
+
+    private static Content userContent(String prompt) {
+        return Content.builder()
+                .role("user")
+                .parts(List.of(Part.fromText(prompt)))
+                .build();
+    }
+
+    private static GenerateContentConfig jsonConfig(String schemaJson) {
+        return GenerateContentConfig.builder()
+                .temperature(0.1f)
+                .responseMimeType("application/json")
+                .responseSchema(Schema.fromJson(schemaJson))
+                .build();
+    }
+
+    /**
+     * Ricategorizzazione manuale: la descrizione attuale entra nella cache semantica con la nuova categoria e il
+     * categorizzatore locale sposta l'osservazione da descrizione, tipo e categoria precedenti a quelli nuovi.
+     * Entrambi gli aggiornamenti avvengono al commit della transazione corrente.
+     */
+    public void updateSemanticCache(String oldDescription, TransactionType oldType, Category oldCategory,
+                                    String newDescription, TransactionType newType, Category newCategory, User user) {
+        semanticCacheWriter.enqueue(newDescription, newCategory.getName(), user.getId());
+        localCategorizer.learn(user.getId(), oldDescription, oldType, oldCategory != null ? oldCategory.getId() : null,
+                newDescription, newType, newCategory.getId());
     }
 
     private String parseAiResponse(String raw) {
@@ -151,11 +351,8 @@ public class AiCategorizationService {
         }
     }
 
-    private String buildPrompt(String description, List<Category> categories, TransactionType type) {
+    private String buildPrompt(String description, CategoryCatalog catalog, TransactionType type) {
         String typeLabel = type == TransactionType.OUT ? "USCITA (spesa)" : "ENTRATA (accredito)";
-        String categoryList = categories.stream()
-                .map(Category::getName)
-                .collect(Collectors.joining("\n- ", "- ", ""));
 
         return """
                 Sei un classificatore di transazioni bancarie italiane.
@@ -167,6 +364,27 @@ public class AiCategorizationService {
                 TRANSAZIONE DA CLASSIFICARE:
                 Tipo: %s
                 Descrizione: "%s"
-                """.formatted(categoryList, typeLabel, description);
+                """.formatted(catalog.promptList(), typeLabel, description);
+    }
+
+    private String buildBatchPrompt(List<String> descriptions, CategoryCatalog catalog, TransactionType type) {
+        String typeLabel = type == TransactionType.OUT ? "USCITA (spesa)" : "ENTRATA (accredito)";
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < descriptions.size(); i++) {
+            // Una riga per transazione: a capo e virgolette nella descrizione romperebbero la numerazione
+            String description = descriptions.get(i).replaceAll("[\r\n\"]+", " ");
+            rows.append(i + 1).append(". \"").append(description).append("\"\n");
+        }
+
+        return """
+                Sei un classificatore di transazioni bancarie italiane.
+                Per ogni transazione scegli la categoria più adatta dalla lista. Se nessuna è adatta, usa esattamente: NONE
+                Rispondi con un elemento per ogni transazione, con lo stesso id numerico.
+
+                CATEGORIE DISPONIBILI (scegli solo da questa lista):
+                %s
+
+                TRANSAZIONI DA CLASSIFICARE (tutte di tipo %s):
+                %s""".formatted(catalog.promptList(), typeLabel, rows);
     }
 }
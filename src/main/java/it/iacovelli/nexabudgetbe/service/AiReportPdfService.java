@@ -64,11 +64,12 @@ public class AiReportPdfService {
     }
 
     public byte[] buildReportPdf(User user, LocalDate startDate, LocalDate endDate, String reportMarkdown) {
-        ReportDto.MonthlyTrendResponse monthlyTrend = reportService.getMonthlyTrendByRange(user, startDate, endDate);
-        ReportDto.CategoryBreakdownResponse categoryBreakdown = reportService.getCategoryBreakdown(user, startDate, endDate);
-        ReportDto.MonthComparisonResponse monthComparison = reportService.getMonthComparison(user, endDate.getYear(), endDate.getMonthValue());
-        ReportDto.BalanceTrendResponse balanceTrend = reportService.getBalanceTrend(user, startDate, endDate);
-        ReportDto.MonthlyProjection projection = reportService.getMonthlyProjection(user);
+        ReportDto.ReportBundle reports = reportService.getReportBundle(user, startDate, endDate);
+        ReportDto.MonthlyTrendResponse monthlyTrend = reports.getMonthlyTrend();
+        ReportDto.CategoryBreakdownResponse categoryBreakdown = reports.getCategoryBreakdown();
+        ReportDto.MonthComparisonResponse monthComparison = reports.getMonthComparison();
+        ReportDto.BalanceTrendResponse balanceTrend = reports.getBalanceTrend();
+        ReportDto.MonthlyProjection projection = reports.getProjection();
         List<BudgetDto.MonthlySummaryResponse> budgetSummary = budgetService.getBudgetMonthlySummary(user, endDate);
 
         try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
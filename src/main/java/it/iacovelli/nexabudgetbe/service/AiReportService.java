@@ -24,7 +24,8 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.io.StringWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
@@ -122,7 +123,7 @@ public class AiReportService {
         SecurityContextHolder.getContext().setAuthentication(authToken);
         try {
             List<TransactionResponse> transactions = transactionService.getTransactionsByUserAndDateRangeForReport(user, startDate, endDate);
-            byte[] csvBytes = generateCsv(transactions).getBytes(StandardCharsets.UTF_8);
+            byte[] csvBytes = generateCsv(transactions);
 
             String instruction = String.format(SYSTEM_PROMPT, startDate, endDate, language);
 
@@ -250,13 +251,14 @@ public class AiReportService {
         }
     }
 
-    private String generateCsv(List<TransactionResponse> transactions) throws Exception {
-        StringWriter sw = new StringWriter();
+    /** Scrive il CSV direttamente in UTF-8, senza passare da una String intermedia da ricodificare. */
+    private byte[] generateCsv(List<TransactionResponse> transactions) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(transactions.size() * 64);
         CSVFormat format = CSVFormat.DEFAULT.builder()
                 .setHeader("Data", "Importo", "Tipo", "Categoria", "Descrizione")
                 .build();
 
-        try (CSVPrinter printer = new CSVPrinter(sw, format)) {
+        try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(out, StandardCharsets.UTF_8), format)) {
             for (TransactionResponse tx : transactions) {
                 printer.printRecord(
                         tx.getDate(),
@@ -267,6 +269,6 @@ public class AiReportService {
                 );
             }
         }
-        return sw.toString();
+        return out.toByteArray();
     }
 }
@@ -0,0 +1,110 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.Refill;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Regola le richieste AI della categorizzazione massiva sulla quota del modello, condivisa da tutti i job:
+ * <ul>
+ *   <li>token bucket Bucket4j con il ritmo della quota ({@code requests-per-minute}), con un burst pari alla
+ *   concorrenza massima;</li>
+ *   <li>limite di richieste in volo adattivo (AIMD): +1/limite a ogni risposta riuscita, dimezzato a ogni 429,
+ *   mai sotto 1 né sopra {@code concurrency};</li>
+ *   <li>dopo un 429 nessuna nuova richiesta parte per un backoff che raddoppia a ogni 429 consecutivo e torna al
+ *   valore base alla prima risposta riuscita.</li>
+ * </ul>
+ * Ogni {@link #acquire()} va chiuso da un {@link #release(Outcome)}.
+ */
+@Component
+public class AiRequestThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(AiRequestThrottle.class);
+
+    /** Esito della richiesta, che guida l'adattamento del limite. */
+    public enum Outcome {
+        SUCCESS, QUOTA_EXCEEDED, FAILED
+    }
+
+    private final Bucket bucket;
+    private final int maxConcurrency;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private double limit;
+    private int inFlight;
+    private long backoffNanos;
+    private long pausedUntil;
+
+    public AiRequestThrottle(@Value("${nexabudget.ai.bulk.categorization.requests-per-minute:60}") int requestsPerMinute,
+                             @Value("${nexabudget.ai.bulk.categorization.concurrency:4}") int concurrency,
+                             @Value("${nexabudget.ai.bulk.categorization.backoff-ms:2000}") long backoffMs,
+                             @Value("${nexabudget.ai.bulk.categorization.max-backoff-ms:60000}") long maxBackoffMs) {
+        this.maxConcurrency = Math.max(1, concurrency);
+        Bandwidth quota = Bandwidth.classic(maxConcurrency,
+                Refill.greedy(Math.max(1, requestsPerMinute), Duration.ofMinutes(1)));
+        this.bucket = Bucket4j.builder()
+                .addLimit(quota)
+                .build();
+        this.baseBackoffNanos = Duration.ofMillis(backoffMs).toNanos();
+        this.maxBackoffNanos = Duration.ofMillis(Math.max(backoffMs, maxBackoffMs)).toNanos();
+        this.limit = maxConcurrency;
+        this.backoffNanos = baseBackoffNanos;
+    }
+
+    /** Attende un posto tra le richieste in volo, la fine dell'eventuale backoff e un token della quota. */
+    public void acquire() throws InterruptedException {
+        synchronized (this) {
+            while (true) {
+                long pause = pausedUntil - System.nanoTime();
+                if (pause > 0) {
+                    wait(Math.max(1, pause / 1_000_000));
+                } else if (inFlight >= (int) limit) {
+                    wait();
+                } else {
+                    break;
+                }
+            }
+            inFlight++;
+        }
+        try {
+            bucket.asBlocking().consume(1);
+        } catch (InterruptedException e) {
+            release(Outcome.FAILED);
+            throw e;
+        }
+    }
+
+    public synchronized void release(Outcome outcome) {
+        inFlight--;
+        switch (outcome) {
+            case SUCCESS -> {
+                limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+                backoffNanos = baseBackoffNanos;
+            }
+            case QUOTA_EXCEEDED -> {
+                limit = Math.max(1.0, limit / 2);
+                pausedUntil = System.nanoTime() + backoffNanos;
+                log.warn("Quota AI esaurita: richieste in volo ridotte a {}, pausa di {} ms",
+                        (int) limit, backoffNanos / 1_000_000);
+                backoffNanos = Math.min(maxBackoffNanos, backoffNanos * 2);
+            }
+            case FAILED -> {
+                // Errori non di quota: il limite resta com'è
+            }
+        }
+        notifyAll();
+    }
+
+    /** Limite corrente di richieste in volo. */
+    public synchronized int currentLimit() {
+        return (int) limit;
+    }
+}
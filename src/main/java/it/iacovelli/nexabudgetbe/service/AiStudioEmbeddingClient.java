@@ -5,9 +5,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Service
 public class AiStudioEmbeddingClient {
 
@@ -19,14 +16,10 @@ public class AiStudioEmbeddingClient {
         this.embeddingModel = embeddingModel;
     }
 
-    public List<Double> getEmbedding(String text) {
-        float[] embeddingsArray = embeddingModel.embed(text);
+    public float[] getEmbedding(String text) {
+        float[] embeddings = embeddingModel.embed(text);
 
-        if (embeddingsArray.length > 0) {
-            List<Double> embeddings = new ArrayList<>();
-            for (float v : embeddingsArray) {
-                embeddings.add((double) v);
-            }
+        if (embeddings.length > 0) {
             log.debug("Embeddings generated successfully");
             return embeddings;
         }
@@ -0,0 +1,190 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.iacovelli.nexabudgetbe.dto.bank.NormalizedBankTransaction;
+import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.Category;
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Import set-based delle transazioni bancarie normalizzate, in una sola transazione DB:
+ * <ol>
+ *     <li>dedup: una query per lotto sugli externalId già presenti nel conto (hash di contenuto per le righe
+ *     senza externalId) e rimozione dei doppioni interni al lotto;</li>
+ *     <li>categorizzazione: ogni descrizione distinta viene categorizzata una sola volta per tipo;</li>
+ *     <li>insert: {@code saveAll} con batching JDBC ({@code hibernate.jdbc.batch_size});</li>
+ *     <li>read model: saldo e rollup aggiornati una volta per l'intero lotto.</li>
+ * </ol>
+ * Ogni fase è misurata sul timer {@value #STAGE_TIMER} (tag {@code stage}).
+ */
+@Service
+public class BankTransactionImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankTransactionImportService.class);
+
+    static final String STAGE_TIMER = "nexabudget.bank.import.stage";
+    static final String ROWS_COUNTER = "nexabudget.bank.import.rows";
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private final TransactionRepository transactionRepository;
+    private final AiCategorizationService aiCategorizationService;
+    private final TransactionReadModelService transactionReadModelService;
+    private final MeterRegistry meterRegistry;
+
+    public BankTransactionImportService(TransactionRepository transactionRepository,
+                                        AiCategorizationService aiCategorizationService,
+                                        TransactionReadModelService transactionReadModelService,
+                                        MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.aiCategorizationService = aiCategorizationService;
+        this.transactionReadModelService = transactionReadModelService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Riga in ingresso già normalizzata: chiave di dedup e campi della transazione da creare. */
+    private record Candidate(String externalId, String importHash, LocalDate date, TransactionType type,
+                             BigDecimal amount, String description) {
+    }
+
+    /** @return numero di transazioni effettivamente importate */
+    @Transactional
+    public int importTransactions(List<NormalizedBankTransaction> transactions, User user, Account account) {
+        if (transactions == null || transactions.isEmpty()) {
+            return 0;
+        }
+
+        List<Candidate> candidates = timed("dedup", () -> newCandidates(transactions, account));
+        Map<TransactionType, Map<String, Optional<Category>>> categories =
+                timed("categorize", () -> categorize(candidates, user));
+
+        List<Transaction> toSave = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) {
+            toSave.add(Transaction.builder()
+                    .user(user)
+                    .account(account)
+                    .externalId(c.externalId())
+                    .importHash(c.importHash())
+                    .amount(c.amount())
+                    .type(c.type())
+                    .description(c.description())
+                    .date(c.date())
+                    .category(categories.getOrDefault(c.type(), Map.of())
+                            .getOrDefault(c.description(), Optional.empty())
+                            .orElse(null))
+                    .build());
+        }
+
+        List<Transaction> saved = timed("insert", () -> {
+            List<Transaction> result = transactionRepository.saveAll(toSave);
+            transactionRepository.flush();
+            return result;
+        });
+        timed("read_model", () -> {
+            transactionReadModelService.addedAll(saved);
+            return null;
+        });
+
+        int duplicates = transactions.size() - saved.size();
+        meterRegistry.counter(ROWS_COUNTER, "outcome", "imported").increment(saved.size());
+        meterRegistry.counter(ROWS_COUNTER, "outcome", "duplicate").increment(duplicates);
+        logger.info("Import bancario account ID: {}: {} importate, {} già presenti o duplicate",
+                account.getId(), saved.size(), duplicates);
+        return saved.size();
+    }
+
+    /** Normalizza il lotto e scarta le righe già presenti nel conto o ripetute nel lotto stesso. */
+    private List<Candidate> newCandidates(List<NormalizedBankTransaction> transactions, Account account) {
+        Map<String, Candidate> byKey = new LinkedHashMap<>();
+        for (NormalizedBankTransaction nt : transactions) {
+            Candidate candidate = toCandidate(nt, account);
+            String key = candidate.externalId() != null ? "ext:" + candidate.externalId() : "hash:" + candidate.importHash();
+            if (byKey.putIfAbsent(key, candidate) != null) {
+                logger.debug("Transazione bancaria duplicata nel lotto: {}", key);
+            }
+        }
+
+        Set<String> externalIds = byKey.values().stream()
+                .map(Candidate::externalId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<String> hashes = byKey.values().stream()
+                .filter(c -> c.externalId() == null).map(Candidate::importHash).collect(Collectors.toSet());
+        Set<String> existingExternalIds = transactionRepository.existingExternalIds(account, externalIds);
+        Set<String> existingHashes = transactionRepository.existingImportHashes(account, hashes);
+
+        return byKey.values().stream()
+                .filter(c -> c.externalId() != null
+                        ? !existingExternalIds.contains(c.externalId())
+                        : !existingHashes.contains(c.importHash()))
+                .toList();
+    }
+
+    private Candidate toCandidate(NormalizedBankTransaction nt, Account account) {
+        BigDecimal rawAmount = nt.getAmount();
+        TransactionType type = rawAmount.signum() > 0 ? TransactionType.IN : TransactionType.OUT;
+        String description = resolveDescription(nt, type);
+        LocalDate date = LocalDate.parse(nt.getDate(), DATE_FORMAT);
+        String externalId = nt.getExternalId() != null && !nt.getExternalId().isBlank() ? nt.getExternalId() : null;
+        // Senza externalId l'unica dedup possibile sui re-sync è per contenuto
+        String importHash = externalId == null
+                ? TransactionImportHash.compute(account.getId(), date, rawAmount, description)
+                : null;
+        return new Candidate(externalId, importHash, date, type, rawAmount.abs(), description);
+    }
+
+    private Map<TransactionType, Map<String, Optional<Category>>> categorize(List<Candidate> candidates, User user) {
+        Map<TransactionType, Set<String>> descriptionsByType = new EnumMap<>(TransactionType.class);
+        for (Candidate c : candidates) {
+            descriptionsByType.computeIfAbsent(c.type(), t -> new HashSet<>()).add(c.description());
+        }
+        Map<TransactionType, Map<String, Optional<Category>>> result = new EnumMap<>(TransactionType.class);
+        descriptionsByType.forEach((type, descriptions) ->
+                result.put(type, aiCategorizationService.categorizeDistinct(descriptions, user, type)));
+        return result;
+    }
+
+    private <T> T timed(String stage, Supplier<T> work) {
+        return meterRegistry.timer(STAGE_TIMER, "stage", stage).record(work);
+    }
+
+    /**
+     * Builds the best available description from a normalized bank transaction.
+     * Priority: creditorName (OUT) / debtorName (IN) → remittanceInformation → payeeName.
+     */
+    private static String resolveDescription(NormalizedBankTransaction nt, TransactionType type) {
+        if (type == TransactionType.OUT && nt.getCreditorName() != null && !nt.getCreditorName().isBlank()) {
+            return nt.getCreditorName();
+        }
+        if (type == TransactionType.IN && nt.getDebtorName() != null && !nt.getDebtorName().isBlank()) {
+            return nt.getDebtorName();
+        }
+        if (nt.getRemittanceInformation() != null && !nt.getRemittanceInformation().isBlank()) {
+            return nt.getRemittanceInformation();
+        }
+        if (nt.getPayeeName() != null && !nt.getPayeeName().isBlank()) {
+            return nt.getPayeeName();
+        }
+        return "";
+    }
+}
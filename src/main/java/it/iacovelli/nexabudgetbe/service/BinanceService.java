@@ -9,6 +9,7 @@ import it.iacovelli.nexabudgetbe.config.CacheConfig;
 import it.iacovelli.nexabudgetbe.dto.CryptoBalance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
@@ -27,25 +28,26 @@ public class BinanceService {
     private static final Logger logger = LoggerFactory.getLogger(BinanceService.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final RestClient restClient;
-    private static final String BINANCE_API_BASE = "https://api.binance.com";
+    private final String baseUrl;
+    // Client per dati pubblici (prezzi)
+    private final SpotClient spotClient;
 
-    public BinanceService() {
+    public BinanceService(@Value("${binance.baseUrl:https://api.binance.com}") String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.spotClient = new SpotClientImpl(baseUrl);
         SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
         factory.setConnectTimeout(Duration.ofSeconds(5));
         factory.setReadTimeout(Duration.ofSeconds(5));
 
         this.restClient = RestClient.builder()
-                .baseUrl(BINANCE_API_BASE)
+                .baseUrl(baseUrl)
                 .requestFactory(factory)
                 .build();
     }
 
-    // Client per dati pubblici (prezzi)
-    private final SpotClient spotClient = new SpotClientImpl();
-
     // Client per dati privati (wallet) - da creare on-demand
     private SpotClient createPrivateSpotClient(String apiKey, String apiSecret) {
-        return new SpotClientImpl(apiKey, apiSecret);
+        return new SpotClientImpl(apiKey, apiSecret, baseUrl);
     }
 
     // Genera la signature HMAC SHA256 per chiamate SAPI firmate
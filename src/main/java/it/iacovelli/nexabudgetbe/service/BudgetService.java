@@ -5,7 +5,6 @@ import it.iacovelli.nexabudgetbe.model.Budget;
 import it.iacovelli.nexabudgetbe.model.Category;
 import it.iacovelli.nexabudgetbe.model.User;
 import it.iacovelli.nexabudgetbe.repository.BudgetRepository;
-import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,11 +16,11 @@ import java.util.*;
 @Service
 public class BudgetService {
     private final BudgetRepository budgetRepository;
-    private final TransactionRepository transactionRepository;
+    private final MonthlyRollupService monthlyRollupService;
 
-    public BudgetService(BudgetRepository budgetRepository, TransactionRepository transactionRepository) {
+    public BudgetService(BudgetRepository budgetRepository, MonthlyRollupService monthlyRollupService) {
         this.budgetRepository = budgetRepository;
-        this.transactionRepository = transactionRepository;
+        this.monthlyRollupService = monthlyRollupService;
     }
 
     public Budget createBudget(Budget budget) {
@@ -86,14 +85,13 @@ public class BudgetService {
         List<Budget> activeBudgets = getActiveBudgets(user, date);
         Map<Budget, BigDecimal> budgetUsage = new HashMap<>();
 
-        LocalDate startOfMonth = date.withDayOfMonth(1);
-        LocalDate endOfMonth = date.withDayOfMonth(date.lengthOfMonth());
+        // Speso del mese per tutte le categorie a budget con una sola query sul rollup mensile
+        Set<UUID> categoryIds = new HashSet<>();
+        activeBudgets.forEach(budget -> categoryIds.add(budget.getCategory().getId()));
+        Map<UUID, BigDecimal> spentByCategory = monthlyRollupService.sumNetByCategoryInMonth(user, categoryIds, date);
 
         for (Budget budget : activeBudgets) {
-            Category category = budget.getCategory();
-            BigDecimal spent = transactionRepository.sumNetByUserAndCategoryAndDateRange(
-                    user, category, startOfMonth, endOfMonth);
-            budgetUsage.put(budget, spent != null ? spent : BigDecimal.ZERO);
+            budgetUsage.put(budget, spentByCategory.getOrDefault(budget.getCategory().getId(), BigDecimal.ZERO));
         }
 
         return budgetUsage;
@@ -1,43 +1,83 @@
 package it.iacovelli.nexabudgetbe.service;
 
 import it.iacovelli.nexabudgetbe.dto.BulkCategorizationStatusResponse;
+import it.iacovelli.nexabudgetbe.exception.AiQuotaExceededException;
 import it.iacovelli.nexabudgetbe.model.Category;
 import it.iacovelli.nexabudgetbe.model.Transaction;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
 import it.iacovelli.nexabudgetbe.model.User;
 import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class BulkCategorizationService {
 
+    /** Tentativi per blocco quando il modello risponde 429: tra un tentativo e l'altro agisce il backoff. */
+    private static final int MAX_QUOTA_ATTEMPTS = 5;
+
     private final TransactionRepository transactionRepository;
     private final AiCategorizationService aiCategorizationService;
+    private final TransactionService transactionService;
+    private final AiRequestThrottle throttle;
+
+    /**
+     * Chiamate AI su thread di piattaforma dedicati, al massimo quanti la concorrenza configurata: OkHttp 4.x usa
+     * synchronized blocks che pinnano i virtual thread, e il common pool resta libero per il resto.
+     */
+    private final ExecutorService aiExecutor;
 
     @Value("${nexabudget.ai.bulk.categorization.timeout-seconds:90}")
     private int aiCallTimeoutSeconds;
 
-    @Value("${nexabudget.ai.bulk.categorization.delay-ms:500}")
-    private long delayBetweenCallsMs;
+    @Value("${nexabudget.ai.categorization.batch-size:25}")
+    private int batchSize;
 
     // In-memory store: non dipende da Redis, non blocca mai su rete
     private final ConcurrentHashMap<UUID, BulkCategorizationStatusResponse> jobStore = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<UUID, UUID> jobOwners = new ConcurrentHashMap<>();
 
+    public BulkCategorizationService(TransactionRepository transactionRepository,
+                                     AiCategorizationService aiCategorizationService,
+                                     TransactionService transactionService,
+                                     AiRequestThrottle throttle,
+                                     @Value("${nexabudget.ai.bulk.categorization.concurrency:4}") int concurrency) {
+        this.transactionRepository = transactionRepository;
+        this.aiCategorizationService = aiCategorizationService;
+        this.transactionService = transactionService;
+        this.throttle = throttle;
+        this.aiExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                Thread.ofPlatform().name("ai-bulk-categorization-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        aiExecutor.shutdownNow();
+    }
+
     public BulkCategorizationStatusResponse startBulkCategorizationJob(User user) {
         List<Transaction> uncategorized = transactionRepository.findUncategorizedByUser(user);
         if (uncategorized.isEmpty()) {
@@ -45,87 +85,185 @@ public class BulkCategorizationService {
         }
 
         UUID jobId = UUID.randomUUID();
-        BulkCategorizationStatusResponse initial = new BulkCategorizationStatusResponse(jobId, "PENDING", uncategorized.size(), 0, 0);
+        BulkCategorizationStatusResponse initial = new BulkCategorizationStatusResponse(jobId, "PENDING", uncategorized.size(), 0, 0, null);
         jobStore.put(jobId, initial);
         jobOwners.put(jobId, user.getId());
         return initial;
     }
 
+    /**
+     * Le transazioni vengono raggruppate per tipo e descrizione: ogni descrizione distinta è categorizzata una
+     * volta sola, a blocchi di {@code batchSize} per richiesta AI, e il risultato è assegnato a tutte le
+     * transazioni del gruppo. I blocchi partono in parallelo al ritmo concesso da {@link AiRequestThrottle};
+     * un blocco respinto per quota torna in coda e riparte dopo il backoff. Il timeout di un blocco decorre da
+     * quando ottiene un thread di {@code aiExecutor}; allo scadere il thread viene interrotto e le sue transazioni
+     * saltate. L'avanzamento è pubblicato a ogni blocco completato, con il ritmo effettivamente ottenuto.
+     */
     @Async
     public void executeBulkCategorization(UUID jobId, User user) {
         List<Transaction> uncategorized = transactionRepository.findUncategorizedByUser(user);
-        int total = uncategorized.size();
-        int processed = 0;
-        int categorized = 0;
+        Progress progress = new Progress(jobId, uncategorized.size());
 
-        jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "IN_PROGRESS", total, 0, 0));
-        log.info("[BulkCategorization] Job {} avviato: {} transazioni (timeout per chiamata: {}s)", jobId, total, aiCallTimeoutSeconds);
+        jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "IN_PROGRESS", progress.total, 0, 0, null));
+        log.info("[BulkCategorization] Job {} avviato: {} transazioni (timeout per blocco: {}s)",
+                jobId, progress.total, aiCallTimeoutSeconds);
 
         try {
+            Map<TransactionType, Map<String, List<Transaction>>> groups = new EnumMap<>(TransactionType.class);
+            int skipped = 0;
             for (Transaction tx : uncategorized) {
                 if (tx.getDescription() == null || tx.getDescription().isBlank()) {
                     log.debug("[BulkCategorization] Job {} - transazione {} saltata: descrizione vuota", jobId, tx.getId());
-                    processed++;
-                    jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "IN_PROGRESS", total, processed, categorized));
+                    skipped++;
                     continue;
                 }
-                Optional<Category> category = categorizeWithTimeout(jobId, tx, user);
+                groups.computeIfAbsent(tx.getType(), t -> new LinkedHashMap<>())
+                        .computeIfAbsent(tx.getDescription(), d -> new ArrayList<>())
+                        .add(tx);
+            }
+            progress.completed(skipped, 0);
+
+            BlockingQueue<Chunk> pending = new LinkedBlockingQueue<>();
+            int chunkSize = Math.max(1, batchSize);
+            groups.forEach((type, byDescription) -> {
+                List<String> descriptions = new ArrayList<>(byDescription.keySet());
+                for (int from = 0; from < descriptions.size(); from += chunkSize) {
+                    pending.add(new Chunk(type,
+                            List.copyOf(descriptions.subList(from, Math.min(from + chunkSize, descriptions.size()))),
+                            byDescription));
+                }
+            });
+
+            AtomicInteger remaining = new AtomicInteger(pending.size());
+            while (remaining.get() > 0) {
+                Chunk chunk = pending.poll(1, TimeUnit.SECONDS);
+                if (chunk == null) {
+                    continue;
+                }
+                throttle.acquire();
+                CompletableFuture<Map<String, Optional<Category>>> result = new CompletableFuture<>();
+                Future<?> task = aiExecutor.submit(() -> {
+                    // Il timeout parte quando il blocco ottiene un thread, non durante l'attesa in coda
+                    result.orTimeout(aiCallTimeoutSeconds, TimeUnit.SECONDS);
+                    try {
+                        result.complete(aiCategorizationService.categorizeDistinctFailingOnQuota(
+                                chunk.descriptions(), user, chunk.type()));
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+                result.whenComplete((categories, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        // Il blocco scaduto non deve tenere occupato un thread di aiExecutor: lo si interrompe
+                        task.cancel(true);
+                    }
+                    if (cause instanceof AiQuotaExceededException && chunk.attempts() + 1 < MAX_QUOTA_ATTEMPTS) {
+                        throttle.release(AiRequestThrottle.Outcome.QUOTA_EXCEEDED);
+                        pending.add(chunk.retry());
+                        return;
+                    }
+                    throttle.release(cause == null ? AiRequestThrottle.Outcome.SUCCESS
+                            : cause instanceof AiQuotaExceededException ? AiRequestThrottle.Outcome.QUOTA_EXCEEDED
+                            : AiRequestThrottle.Outcome.FAILED);
+                    try {
+                        if (cause != null) {
+                            logChunkFailure(jobId, chunk, cause);
+                        }
+                        assign(jobId, chunk, categories != null ? categories : Map.of(), progress);
+                    } finally {
+                        remaining.decrementAndGet();
+                    }
+                });
+            }
+
+            BulkCategorizationStatusResponse done = progress.snapshot("COMPLETED");
+            jobStore.put(jobId, done);
+            log.info("[BulkCategorization] Job {} completato: {}/{} transazioni categorizzate ({} transazioni/min)",
+                    jobId, done.categorized(), done.total(), done.transactionsPerMinute());
+
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("[BulkCategorization] Job {} interrotto", jobId);
+            jobStore.put(jobId, progress.snapshot("FAILED"));
+        } catch (Throwable t) {
+            log.error("[BulkCategorization] Job {} terminato con errore inatteso dopo {}/{} transazioni",
+                    jobId, progress.processed, progress.total, t);
+            jobStore.put(jobId, progress.snapshot("FAILED"));
+        }
+    }
+
+    private void assign(UUID jobId, Chunk chunk, Map<String, Optional<Category>> categories, Progress progress) {
+        int processed = 0;
+        int categorized = 0;
+        for (String description : chunk.descriptions()) {
+            Optional<Category> category = categories.getOrDefault(description, Optional.empty());
+            for (Transaction tx : chunk.transactions().get(description)) {
                 try {
                     if (category.isPresent()) {
-                        transactionRepository.updateCategoryById(tx.getId(), category.get().getId());
+                        transactionService.assignCategory(tx, category.get().getId());
                         categorized++;
                     }
                 } catch (Throwable t) {
                     log.warn("[BulkCategorization] Job {} - errore salvataggio transazione {} ({}): {}",
                             jobId, tx.getId(), t.getClass().getSimpleName(), t.getMessage());
                 }
-
                 processed++;
-                jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "IN_PROGRESS", total, processed, categorized));
-
-                if (processed < total && delayBetweenCallsMs > 0) {
-                    try {
-                        Thread.sleep(delayBetweenCallsMs);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        log.warn("[BulkCategorization] Job {} interrotto durante il delay", jobId);
-                        break;
-                    }
-                }
             }
+        }
+        progress.completed(processed, categorized);
+    }
 
-            jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "COMPLETED", total, processed, categorized));
-            log.info("[BulkCategorization] Job {} completato: {}/{} transazioni categorizzate", jobId, categorized, total);
+    private static void logChunkFailure(UUID jobId, Chunk chunk, Throwable cause) {
+        if (cause instanceof TimeoutException) {
+            log.warn("[BulkCategorization] Job {} - timeout su un blocco di {} descrizioni, transazioni saltate",
+                    jobId, chunk.descriptions().size());
+        } else if (cause instanceof AiQuotaExceededException) {
+            log.warn("[BulkCategorization] Job {} - quota AI esaurita dopo {} tentativi, blocco di {} descrizioni saltato",
+                    jobId, MAX_QUOTA_ATTEMPTS, chunk.descriptions().size());
+        } else {
+            log.warn("[BulkCategorization] Job {} - errore AI su un blocco di {} descrizioni ({}): {}",
+                    jobId, chunk.descriptions().size(), cause.getClass().getSimpleName(), cause.getMessage());
+        }
+    }
 
-        } catch (Throwable t) {
-            log.error("[BulkCategorization] Job {} terminato con errore inatteso dopo {}/{} transazioni",
-                    jobId, processed, total, t);
-            jobStore.put(jobId, new BulkCategorizationStatusResponse(jobId, "FAILED", total, processed, categorized));
+    /** Blocco di descrizioni distinte dello stesso tipo, con le transazioni di ciascuna. */
+    private record Chunk(TransactionType type, List<String> descriptions,
+                         Map<String, List<Transaction>> transactions, int attempts) {
+
+        Chunk(TransactionType type, List<String> descriptions, Map<String, List<Transaction>> transactions) {
+            this(type, descriptions, transactions, 0);
+        }
+
+        Chunk retry() {
+            return new Chunk(type, descriptions, transactions, attempts + 1);
         }
     }
 
-    /**
-     * Esegue la categorizzazione AI in un thread separato con un timeout esplicito.
-     * Necessario perché OkHttp 4.x usa synchronized blocks che pinnano i virtual thread,
-     * impedendo l'interruzione tramite callTimeout nativo del SDK.
-     */
-    private Optional<Category> categorizeWithTimeout(UUID jobId, Transaction tx, User user) {
-        CompletableFuture<Optional<Category>> future = CompletableFuture.supplyAsync(
-                () -> aiCategorizationService.categorizeTransaction(tx.getDescription(), user, tx.getType()));
-        try {
-            return future.get(aiCallTimeoutSeconds, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            future.cancel(true);
-            log.warn("[BulkCategorization] Job {} - timeout ({}s) su '{}', transazione saltata",
-                    jobId, aiCallTimeoutSeconds, tx.getDescription());
-        } catch (ExecutionException e) {
-            log.warn("[BulkCategorization] Job {} - errore AI su '{}' ({}): {}",
-                    jobId, tx.getDescription(), e.getCause().getClass().getSimpleName(), e.getCause().getMessage());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("[BulkCategorization] Job {} interrotto durante categorizzazione di '{}'", jobId, tx.getDescription());
+    /** Contatori del job, aggiornati dai thread che completano i blocchi. */
+    private final class Progress {
+        private final UUID jobId;
+        private final int total;
+        private final long startNanos = System.nanoTime();
+        private int processed;
+        private int categorized;
+
+        Progress(UUID jobId, int total) {
+            this.jobId = jobId;
+            this.total = total;
+        }
+
+        synchronized void completed(int processedDelta, int categorizedDelta) {
+            processed += processedDelta;
+            categorized += categorizedDelta;
+            jobStore.put(jobId, snapshot("IN_PROGRESS"));
+        }
+
+        synchronized BulkCategorizationStatusResponse snapshot(String status) {
+            double minutes = (System.nanoTime() - startNanos) / 60_000_000_000.0;
+            Double perMinute = minutes > 0 && processed > 0 ? Math.round(processed / minutes * 10) / 10.0 : null;
+            return new BulkCategorizationStatusResponse(jobId, status, total, processed, categorized, perMinute);
         }
-        return Optional.empty();
     }
 
     public BulkCategorizationStatusResponse getJobStatus(UUID jobId, User user) {
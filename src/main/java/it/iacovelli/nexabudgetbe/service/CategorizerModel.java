@@ -0,0 +1,231 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Modello locale di categorizzazione di un utente, addestrato sul suo storico già categorizzato. Per ogni tipo di
+ * transazione tiene:
+ * <ul>
+ *   <li>un dizionario dei merchant: descrizione normalizzata (minuscole, senza accenti, cifre e parole di rito
+ *   come "pagamento pos") -> quante volte è finita in ciascuna categoria;</li>
+ *   <li>un classificatore naive Bayes multinomiale sui trigrammi di caratteri, per le descrizioni mai viste ma
+ *   simili a quelle note (stesso merchant con un altro punto vendita, refusi, abbreviazioni).</li>
+ * </ul>
+ * La confidenza del dizionario è la quota della categoria prevalente, smorzata quando le osservazioni sono poche;
+ * quella del classificatore è la probabilità a posteriori, considerata solo con abbastanza esempi e se buona parte
+ * dei trigrammi della descrizione compare nello storico: la posteriori dice quale categoria è più probabile, non se
+ * la descrizione somigli a qualcosa di già visto, e un merchant nuovo prenderebbe comunque un valore alto. Thread-safe:
+ * letture e aggiornamenti incrementali sono serializzati sull'istanza, che ha dimensione limitata allo storico
+ * distinto dell'utente.
+ */
+public final class CategorizerModel {
+
+    /** Esempi minimi perché il classificatore a n-grammi dia una previsione. */
+    static final int MIN_NGRAM_EXAMPLES = 20;
+    /** Quota minima dei trigrammi della descrizione già visti nello storico perché il classificatore risponda. */
+    static final double MIN_NGRAM_COVERAGE = 0.65;
+    /** Token considerati per la chiave del merchant: il nome sta quasi sempre in testa alla descrizione. */
+    private static final int MERCHANT_TOKENS = 3;
+    private static final int NGRAM = 3;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_LETTERS = Pattern.compile("[^a-z]+");
+
+    /** Parole di rito delle descrizioni bancarie, ininfluenti per riconoscere il merchant. */
+    private static final Set<String> NOISE = Set.of(
+            "pagamento", "pag", "pos", "carta", "card", "debit", "credit", "acquisto", "acq", "addebito", "add",
+            "presso", "del", "della", "dei", "di", "da", "il", "la", "lo", "le", "op", "operazione", "ore", "rif",
+            "sdd", "contactless", "nfc", "ecommerce", "online", "www", "com", "it", "srl", "spa", "snc", "sas");
+
+    /** Previsione del modello: categoria e confidenza in [0, 1]. */
+    public record Prediction(UUID categoryId, double confidence) {
+    }
+
+    private final Map<TransactionType, TypeModel> models = new EnumMap<>(TransactionType.class);
+
+    /** Registra {@code count} transazioni con la descrizione e la categoria indicate. */
+    public synchronized void add(String description, TransactionType type, UUID categoryId, int count) {
+        if (categoryId == null || count <= 0) {
+            return;
+        }
+        List<String> tokens = tokens(description);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        models.computeIfAbsent(type, t -> new TypeModel()).update(tokens, categoryId, count);
+    }
+
+    /** Annulla una transazione registrata in precedenza (ricategorizzazione); i conteggi non scendono sotto zero. */
+    public synchronized void remove(String description, TransactionType type, UUID categoryId) {
+        TypeModel model = models.get(type);
+        List<String> tokens = tokens(description);
+        if (model == null || categoryId == null || tokens.isEmpty()) {
+            return;
+        }
+        model.update(tokens, categoryId, -1);
+    }
+
+    /** Previsione migliore tra dizionario e classificatore, vuota se il modello non sa nulla della descrizione. */
+    public synchronized Optional<Prediction> predict(String description, TransactionType type) {
+        TypeModel model = models.get(type);
+        List<String> tokens = tokens(description);
+        if (model == null || tokens.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<Prediction> merchant = model.merchant(merchantKey(tokens));
+        Optional<Prediction> ngram = model.ngram(ngrams(tokens));
+        if (merchant.isEmpty()) {
+            return ngram;
+        }
+        if (ngram.isEmpty()) {
+            return merchant;
+        }
+        return merchant.get().confidence() >= ngram.get().confidence() ? merchant : ngram;
+    }
+
+    /** Token significativi della descrizione: solo lettere, senza accenti e parole di rito. */
+    static List<String> tokens(String description) {
+        if (description == null || description.isBlank()) {
+            return List.of();
+        }
+        String stripped = DIACRITICS.matcher(Normalizer.normalize(description, Normalizer.Form.NFD)).replaceAll("");
+        String normalized = NON_LETTERS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split(" ")) {
+            if (token.length() > 1 && !NOISE.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    static String merchantKey(List<String> tokens) {
+        return String.join(" ", tokens.subList(0, Math.min(MERCHANT_TOKENS, tokens.size())));
+    }
+
+    /** Trigrammi di caratteri di ogni token, con i bordi marcati da uno spazio. */
+    static Map<String, Integer> ngrams(List<String> tokens) {
+        Map<String, Integer> grams = new HashMap<>();
+        for (String token : tokens) {
+            String padded = " " + token + " ";
+            for (int i = 0; i + NGRAM <= padded.length(); i++) {
+                grams.merge(padded.substring(i, i + NGRAM), 1, Integer::sum);
+            }
+        }
+        return grams;
+    }
+
+    private static final class TypeModel {
+        private final Map<String, Map<UUID, Integer>> merchants = new HashMap<>();
+        private final Map<UUID, CategoryStats> categories = new HashMap<>();
+        /** Frequenza globale di ogni trigramma: la dimensione è il vocabolario dello smoothing di Laplace. */
+        private final Map<String, Integer> vocabulary = new HashMap<>();
+        private int examples;
+
+        void update(List<String> tokens, UUID categoryId, int delta) {
+            String key = merchantKey(tokens);
+            Map<UUID, Integer> counts = merchants.computeIfAbsent(key, k -> new HashMap<>());
+            // Una rimozione non toglie più di quanto registrato per quel merchant e quella categoria
+            int applied = Math.max(delta, -counts.getOrDefault(categoryId, 0));
+            adjust(counts, categoryId, applied);
+            if (counts.isEmpty()) {
+                merchants.remove(key);
+            }
+            if (applied == 0) {
+                return;
+            }
+
+            CategoryStats stats = categories.computeIfAbsent(categoryId, id -> new CategoryStats());
+            stats.examples += applied;
+            examples += applied;
+            ngrams(tokens).forEach((gram, occurrences) -> {
+                int weighted = occurrences * applied;
+                adjust(stats.grams, gram, weighted);
+                adjust(vocabulary, gram, weighted);
+                stats.totalGrams += weighted;
+            });
+            if (stats.examples <= 0) {
+                categories.remove(categoryId);
+            }
+        }
+
+        Optional<Prediction> merchant(String key) {
+            Map<UUID, Integer> counts = merchants.get(key);
+            if (counts == null || counts.isEmpty()) {
+                return Optional.empty();
+            }
+            int total = 0;
+            Map.Entry<UUID, Integer> best = null;
+            for (Map.Entry<UUID, Integer> e : counts.entrySet()) {
+                total += e.getValue();
+                if (best == null || e.getValue() > best.getValue()) {
+                    best = e;
+                }
+            }
+            // Una sola osservazione vale 2/3 della quota, tre osservazioni concordi circa 0.86
+            double share = best.getValue() / (double) total;
+            return Optional.of(new Prediction(best.getKey(), share * total / (total + 0.5)));
+        }
+
+        Optional<Prediction> ngram(Map<String, Integer> grams) {
+            if (examples < MIN_NGRAM_EXAMPLES || categories.size() < 2 || grams.isEmpty()
+                    || coverage(grams) < MIN_NGRAM_COVERAGE) {
+                return Optional.empty();
+            }
+            int vocabularySize = vocabulary.size() + 1;
+            UUID bestCategory = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            Map<UUID, Double> scores = new HashMap<>();
+            for (Map.Entry<UUID, CategoryStats> e : categories.entrySet()) {
+                CategoryStats stats = e.getValue();
+                double score = Math.log(stats.examples / (double) examples);
+                double denominator = Math.log(stats.totalGrams + (double) vocabularySize);
+                for (Map.Entry<String, Integer> g : grams.entrySet()) {
+                    score += g.getValue() * (Math.log(stats.grams.getOrDefault(g.getKey(), 0) + 1.0) - denominator);
+                }
+                scores.put(e.getKey(), score);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestCategory = e.getKey();
+                }
+            }
+            // Softmax sui log-score, traslati sul massimo per stabilità numerica
+            double normalizer = 0;
+            for (double score : scores.values()) {
+                normalizer += Math.exp(score - bestScore);
+            }
+            return Optional.of(new Prediction(bestCategory, 1.0 / normalizer));
+        }
+
+        /** Quota delle occorrenze dei trigrammi presenti nel vocabolario dello storico. */
+        private double coverage(Map<String, Integer> grams) {
+            int seen = 0;
+            int total = 0;
+            for (Map.Entry<String, Integer> g : grams.entrySet()) {
+                total += g.getValue();
+                if (vocabulary.containsKey(g.getKey())) {
+                    seen += g.getValue();
+                }
+            }
+            return seen / (double) total;
+        }
+
+        private static <K> void adjust(Map<K, Integer> counts, K key, int delta) {
+            int updated = counts.getOrDefault(key, 0) + delta;
+            if (updated > 0) {
+                counts.put(key, updated);
+            } else {
+                counts.remove(key);
+            }
+        }
+    }
+
+    private static final class CategoryStats {
+        private final Map<String, Integer> grams = new HashMap<>();
+        private int examples;
+        private int totalGrams;
+    }
+}
@@ -0,0 +1,75 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.Category;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Fotografia immutabile delle categorie disponibili a un utente (personali e predefinite) a una certa versione del
+ * catalogo ({@link CategoryCatalogService}): indici per id e per nome e la lista già pronta per i prompt di
+ * categorizzazione. Le categorie sono copie staccate dal contesto di persistenza, condivise tra richieste: vanno
+ * solo lette o usate come riferimento, mai modificate.
+ */
+public final class CategoryCatalog {
+
+    private final long version;
+    private final List<Category> categories;
+    private final Map<UUID, Category> byId;
+    private final Map<String, Category> byName;
+    private final String promptList;
+
+    private CategoryCatalog(long version, List<Category> categories) {
+        this.version = version;
+        this.categories = List.copyOf(categories);
+        this.byId = new HashMap<>();
+        this.byName = new HashMap<>();
+        for (Category category : this.categories) {
+            byId.put(category.getId(), category);
+            // A parità di nome vince la prima, come la ricerca lineare che sostituisce
+            byName.putIfAbsent(nameKey(category.getName()), category);
+        }
+        this.promptList = this.categories.stream()
+                .map(Category::getName)
+                .collect(Collectors.joining("\n- ", "- ", ""));
+    }
+
+    public static CategoryCatalog of(long version, List<Category> categories) {
+        return new CategoryCatalog(version, categories);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public List<Category> categories() {
+        return categories;
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty();
+    }
+
+    public Optional<Category> findById(UUID id) {
+        return Optional.ofNullable(id != null ? byId.get(id) : null);
+    }
+
+    /** Ricerca per nome senza distinzione tra maiuscole e minuscole. */
+    public Optional<Category> findByName(String name) {
+        return Optional.ofNullable(name != null ? byName.get(nameKey(name)) : null);
+    }
+
+    /** Elenco puntato dei nomi, una categoria per riga, come compare nei prompt di categorizzazione. */
+    public String promptList() {
+        return promptList;
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
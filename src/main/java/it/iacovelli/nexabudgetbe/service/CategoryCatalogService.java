@@ -0,0 +1,127 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import it.iacovelli.nexabudgetbe.config.TwoLevelCacheManager;
+import it.iacovelli.nexabudgetbe.model.Category;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Catalogo delle categorie per utente: una {@link CategoryCatalog} in memoria per utente, letta dal database una
+ * volta e servita finché la versione non cambia. Ogni scrittura sulle categorie ({@link CategoryService}) chiama
+ * {@link #changed}: la versione dell'utente (o quella delle predefinite, comune a tutti) sale subito, così la
+ * transazione che scrive rilegge i propri dati, e di nuovo a transazione conclusa, così nessuna lettura fatta nel
+ * frattempo resta in memoria. La versione è letta prima della query: una fotografia caricata mentre la versione
+ * cambia nasce già vecchia e viene ricaricata alla lettura successiva.
+ * <p>
+ * Con la cache Redis attiva le modifiche sono pubblicate sul canale di invalidazione di {@link TwoLevelCacheManager}
+ * e le altre repliche scartano la loro copia; senza, o se un messaggio va perso, la copia scade con il TTL.
+ */
+@Service
+public class CategoryCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryCatalogService.class);
+
+    static final String CATALOG_CACHE = "categoryCatalog";
+
+    private final CategoryRepository categoryRepository;
+    private final Cache<UUID, CategoryCatalog> catalogs;
+    // Versioni delle sole utenze con modifiche dall'avvio: poche voci, non scadono
+    private final Map<UUID, Long> userVersions = new ConcurrentHashMap<>();
+    private final AtomicLong defaultsVersion = new AtomicLong();
+    private final Consumer<String> invalidationPublisher;
+
+    public CategoryCatalogService(CategoryRepository categoryRepository,
+                                  ObjectProvider<TwoLevelCacheManager> cacheManager,
+                                  @Value("${nexabudget.categories.catalog.max-users:5000}") long maxUsers,
+                                  @Value("${nexabudget.categories.catalog.ttl-minutes:30}") long ttlMinutes) {
+        this.categoryRepository = categoryRepository;
+        this.catalogs = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        TwoLevelCacheManager twoLevelCacheManager = cacheManager.getIfAvailable();
+        this.invalidationPublisher = twoLevelCacheManager != null
+                ? twoLevelCacheManager.registerLocalCache(CATALOG_CACHE, this::onRemoteInvalidation)
+                : key -> { };
+    }
+
+    /** Catalogo corrente dell'utente: dalla memoria se la versione non è cambiata, altrimenti dal database. */
+    public CategoryCatalog get(User user) {
+        UUID userId = user.getId();
+        long version = version(userId);
+        CategoryCatalog cached = catalogs.getIfPresent(userId);
+        if (cached != null && cached.version() == version) {
+            return cached;
+        }
+        CategoryCatalog loaded = CategoryCatalog.of(version, categoryRepository.findByUserOrDefault(user).stream()
+                .map(category -> detached(category, user))
+                .toList());
+        catalogs.put(userId, loaded);
+        log.debug("Catalogo categorie caricato: {} categorie, versione {} (user={})",
+                loaded.categories().size(), version, userId);
+        return loaded;
+    }
+
+    /**
+     * Segnala una modifica alle categorie dell'utente, o alle predefinite se {@code userId} è {@code null}.
+     * Va chiamato nella transazione della scrittura, se ce n'è una.
+     */
+    public void changed(UUID userId) {
+        bump(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    bump(userId);
+                    invalidationPublisher.accept(userId != null ? userId.toString() : null);
+                }
+            });
+        } else {
+            invalidationPublisher.accept(userId != null ? userId.toString() : null);
+        }
+    }
+
+    private long version(UUID userId) {
+        return userVersions.getOrDefault(userId, 0L) + defaultsVersion.get();
+    }
+
+    private void bump(UUID userId) {
+        if (userId == null) {
+            defaultsVersion.incrementAndGet();
+            catalogs.invalidateAll();
+        } else {
+            userVersions.merge(userId, 1L, Long::sum);
+            catalogs.invalidate(userId);
+        }
+    }
+
+    private void onRemoteInvalidation(String key) {
+        bump(key != null ? UUID.fromString(key) : null);
+    }
+
+    /** Copia fuori dal contesto di persistenza: l'utente è quello della richiesta, per non toccare il proxy lazy. */
+    private static Category detached(Category category, User user) {
+        return Category.builder()
+                .id(category.getId())
+                .name(category.getName())
+                .user(category.getUser() != null ? user : null)
+                .build();
+    }
+}
@@ -19,13 +19,22 @@ public class CategoryService {
     private final CategoryRepository categoryRepository;
     private final TransactionRepository transactionRepository;
     private final BudgetRepository budgetRepository;
+    private final MonthlyRollupService monthlyRollupService;
+    private final UserDataGenerationService generationService;
+    private final CategoryCatalogService catalogService;
 
     public CategoryService(CategoryRepository categoryRepository,
                            TransactionRepository transactionRepository,
-                           BudgetRepository budgetRepository) {
+                           BudgetRepository budgetRepository,
+                           MonthlyRollupService monthlyRollupService,
+                           UserDataGenerationService generationService,
+                           CategoryCatalogService catalogService) {
         this.categoryRepository = categoryRepository;
         this.transactionRepository = transactionRepository;
         this.budgetRepository = budgetRepository;
+        this.monthlyRollupService = monthlyRollupService;
+        this.generationService = generationService;
+        this.catalogService = catalogService;
     }
 
     public Category createCategory(Category category) {
@@ -35,7 +44,9 @@ public class CategoryService {
                 throw new IllegalStateException("Categoria '" + category.getName() + "' già esistente per questo utente");
             }
         }
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        catalogChanged(saved);
+        return saved;
     }
 
     public Optional<Category> getCategoryById(UUID id) {
@@ -55,23 +66,45 @@ public class CategoryService {
     }
 
     public List<Category> getCategoriesByUser(User user) {
-        return categoryRepository.findByUserOrDefault(user);
+        return catalogService.get(user).categories();
     }
 
     public List<Category> getAllAvailableCategoriesForUser(User user) {
-        return categoryRepository.findByUserOrDefault(user);
+        return catalogService.get(user).categories();
     }
 
+    /** Categorie disponibili all'utente con gli indici per id e nome, dalla memoria finché non cambiano. */
+    public CategoryCatalog getCatalog(User user) {
+        return catalogService.get(user);
+    }
+
+    // Nome e tipo delle categorie compaiono nei report: le modifiche invalidano quelli in cache dell'utente,
+    // e ogni modifica invalida il catalogo di chi vede la categoria
+
+    @Transactional
     public Category updateCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        bumpGeneration(saved);
+        catalogChanged(saved);
+        return saved;
     }
 
+    @Transactional
     public void deleteCategory(UUID categoryId) {
+        categoryRepository.findById(categoryId).ifPresent(category -> {
+            bumpGeneration(category);
+            catalogChanged(category);
+        });
         categoryRepository.deleteById(categoryId);
     }
 
+    @Transactional
     public void deleteCategoryWithUser(UUID id, User user) {
-        categoryRepository.findByIdAndUser(id, user).ifPresent(categoryRepository::delete);
+        categoryRepository.findByIdAndUser(id, user).ifPresent(category -> {
+            categoryRepository.delete(category);
+            bumpGeneration(category);
+            catalogChanged(category);
+        });
     }
 
     public void createDefaultCategories() {
@@ -84,6 +117,7 @@ public class CategoryService {
                 category.setName(name);
                 categoryRepository.save(category);
             }
+            catalogService.changed(null);
         }
     }
 
@@ -103,8 +137,19 @@ public class CategoryService {
                         "Categoria target non trovata"));
 
         transactionRepository.updateCategoryBulk(source, target, user);
+        monthlyRollupService.moveCategory(user.getId(), source.getId(), target.getId());
         budgetRepository.updateCategoryBulk(source, target, user);
         categoryRepository.delete(source);
+        catalogChanged(source);
     }
 
+    private void bumpGeneration(Category category) {
+        if (category.getUser() != null) {
+            generationService.bump(category.getUser().getId());
+        }
+    }
+
+    private void catalogChanged(Category category) {
+        catalogService.changed(category.getUser() != null ? category.getUser().getId() : null);
+    }
 }
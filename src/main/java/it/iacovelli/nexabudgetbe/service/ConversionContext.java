@@ -0,0 +1,56 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversioni verso una valuta fissa nell'ambito di una richiesta: il tasso di ogni (valuta, data) viene letto
+ * una volta sola e poi riusato, così un report con migliaia di righe fa tante ricerche quante sono le coppie
+ * valuta/mese distinte. Thread-safe, può essere condiviso tra le sezioni calcolate in parallelo.
+ * <p>
+ * {@link #convert} non arrotonda: i totali si sommano a precisione piena e si arrotondano con {@link #money}
+ * solo al momento di esporli.
+ */
+public final class ConversionContext {
+
+    private record RateKey(String currency, LocalDate date) {
+    }
+
+    private final CurrencyConversionService conversionService;
+    private final String targetCurrency;
+    private final Map<RateKey, BigDecimal> rates = new ConcurrentHashMap<>();
+
+    ConversionContext(CurrencyConversionService conversionService, String targetCurrency) {
+        this.conversionService = conversionService;
+        this.targetCurrency = targetCurrency;
+    }
+
+    public String targetCurrency() {
+        return targetCurrency;
+    }
+
+    /** Tasso da {@code currency} alla valuta target alla data indicata; {@code null} o valuta target valgono 1. */
+    public BigDecimal rate(String currency, LocalDate date) {
+        if (currency == null || currency.isBlank() || currency.equalsIgnoreCase(targetCurrency)) {
+            return BigDecimal.ONE;
+        }
+        return rates.computeIfAbsent(new RateKey(currency.toUpperCase(), date),
+                k -> conversionService.rateOn(k.currency(), targetCurrency, k.date()));
+    }
+
+    public BigDecimal convert(BigDecimal amount, String currency, LocalDate date) {
+        if (amount == null) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal rate = rate(currency, date);
+        return rate.compareTo(BigDecimal.ONE) == 0 ? amount : amount.multiply(rate);
+    }
+
+    /** Arrotondamento degli importi esposti, lo stesso di {@link CurrencyConversionService#convert}. */
+    public static BigDecimal money(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -6,11 +6,14 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Optional;
 
 /**
  * Servizio di alto livello per conversione importi tra valute.
- * Delegata la responsabilità di recupero (e caching) dei tassi a {@link ExchangeRateService}.
+ * Delegata la responsabilità di recupero (e caching) dei tassi a {@link ExchangeRateService} (tasso corrente)
+ * e a {@link HistoricalExchangeRateService} (tasso a una data).
  */
 @Service
 public class CurrencyConversionService {
@@ -19,9 +22,19 @@ public class CurrencyConversionService {
     private static final String USD_CURRENCY = "USD";
 
     private final ExchangeRateService exchangeRateService;
+    private final HistoricalExchangeRateService historicalExchangeRateService;
 
-    public CurrencyConversionService(ExchangeRateService exchangeRateService) {
+    public CurrencyConversionService(ExchangeRateService exchangeRateService,
+                                     HistoricalExchangeRateService historicalExchangeRateService) {
         this.exchangeRateService = exchangeRateService;
+        this.historicalExchangeRateService = historicalExchangeRateService;
+    }
+
+    /** Data del tasso con cui convertire i totali di un mese: l'ultimo giorno, o oggi per il mese in corso. */
+    public static LocalDate monthRateDate(int year, int month) {
+        LocalDate monthEnd = YearMonth.of(year, month).atEndOfMonth();
+        LocalDate today = LocalDate.now();
+        return monthEnd.isAfter(today) ? today : monthEnd;
     }
 
     /**
@@ -52,4 +65,50 @@ public class CurrencyConversionService {
         logger.warn("Tasso {}->{} non disponibile. Ritorno valore originale.", sourceCurrency, targetCurrency);
         return amount;
     }
+
+    /**
+     * Converte un importo al tasso valido alla data indicata, letto dallo storico in memoria.
+     * Se lo storico non quota la coppia ricade sul tasso corrente ({@link #convert(BigDecimal, String, String)}).
+     */
+    public BigDecimal convert(BigDecimal amount, String sourceCurrency, String targetCurrency, LocalDate date) {
+        if (amount == null || date == null || sourceCurrency == null || targetCurrency == null ||
+                sourceCurrency.isBlank() || targetCurrency.isBlank()) {
+            return convert(amount, sourceCurrency, targetCurrency);
+        }
+        if (sourceCurrency.equalsIgnoreCase(targetCurrency)) {
+            return amount;
+        }
+
+        Optional<BigDecimal> rateOpt = historicalExchangeRateService.getRate(sourceCurrency, targetCurrency, date);
+        if (rateOpt.isPresent()) {
+            return amount.multiply(rateOpt.get()).setScale(2, RoundingMode.HALF_UP);
+        }
+        return convert(amount, sourceCurrency, targetCurrency);
+    }
+
+    /**
+     * Tasso valido alla data indicata con lo stesso fallback di {@link #convert(BigDecimal, String, String, LocalDate)}:
+     * storico, poi tasso corrente, poi 1 (importo lasciato invariato) se la coppia non è quotata.
+     */
+    public BigDecimal rateOn(String sourceCurrency, String targetCurrency, LocalDate date) {
+        if (sourceCurrency == null || targetCurrency == null || sourceCurrency.isBlank() || targetCurrency.isBlank()
+                || sourceCurrency.equalsIgnoreCase(targetCurrency)) {
+            return BigDecimal.ONE;
+        }
+        Optional<BigDecimal> rateOpt = date != null
+                ? historicalExchangeRateService.getRate(sourceCurrency, targetCurrency, date)
+                : Optional.empty();
+        if (rateOpt.isEmpty()) {
+            rateOpt = exchangeRateService.getRate(sourceCurrency.toUpperCase(), targetCurrency.toUpperCase());
+        }
+        if (rateOpt.isEmpty()) {
+            logger.warn("Tasso {}->{} non disponibile. Ritorno valore originale.", sourceCurrency, targetCurrency);
+        }
+        return rateOpt.orElse(BigDecimal.ONE);
+    }
+
+    /** Contesto di conversione verso {@code targetCurrency} che ricorda i tassi già letti (vedi {@link ConversionContext}). */
+    public ConversionContext newContext(String targetCurrency) {
+        return new ConversionContext(this, targetCurrency);
+    }
 }
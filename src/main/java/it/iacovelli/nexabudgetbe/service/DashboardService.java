@@ -0,0 +1,118 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.dto.AccountDto;
+import it.iacovelli.nexabudgetbe.dto.BudgetDto;
+import it.iacovelli.nexabudgetbe.dto.DashboardDto;
+import it.iacovelli.nexabudgetbe.dto.ReportDto;
+import it.iacovelli.nexabudgetbe.model.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Dashboard dell'utente in una sola richiesta: conti, trend mensile, breakdown per categoria del mese, andamento del
+ * saldo, proiezione e riepilogo dei budget. Le sezioni sono indipendenti e girano in parallelo su virtual thread,
+ * condividendo un {@link ReportService.RequestContext} (tassi già letti, nomi delle categorie).
+ * <p>
+ * Tutte le sezioni hanno la stessa scadenza ({@code app.dashboard.section-timeout-ms} dall'inizio della richiesta):
+ * quelle non concluse in tempo vengono interrotte e la risposta le elenca in {@code unavailableSections} invece di
+ * fallire per intero.
+ */
+@Service
+public class DashboardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardService.class);
+
+    private final AccountService accountService;
+    private final ReportService reportService;
+    private final BudgetService budgetService;
+    private final Duration sectionTimeout;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DashboardService(AccountService accountService,
+                            ReportService reportService,
+                            BudgetService budgetService,
+                            @Value("${app.dashboard.section-timeout-ms:3000}") long sectionTimeoutMs) {
+        this.accountService = accountService;
+        this.reportService = reportService;
+        this.budgetService = budgetService;
+        this.sectionTimeout = Duration.ofMillis(sectionTimeoutMs);
+    }
+
+    private record AccountsSection(List<AccountDto.AccountResponse> accounts, BigDecimal totalBalance) {
+    }
+
+    public DashboardDto.DashboardResponse getDashboard(User user, int months, LocalDate date) {
+        LocalDate today = date != null ? date : LocalDate.now();
+        // Stessa finestra del trend mensile (ReportService.getMonthlyTrend): dal primo del mese di months mesi fa a today
+        LocalDate trendStart = today.minusMonths(months).withDayOfMonth(1);
+        ReportService.RequestContext context = reportService.newRequestContext(user);
+        ConversionContext conversions = context.conversions();
+
+        Future<AccountsSection> accounts = executor.submit(() -> {
+            List<AccountDto.AccountResponse> list = accountService.getAccountsByUser(user);
+            BigDecimal total = BigDecimal.ZERO;
+            for (AccountDto.AccountResponse account : list) {
+                // Tasso corrente, come il saldo totale di /api/accounts/total-balance/preferred
+                total = total.add(conversions.convert(account.getActualBalance(), account.getCurrency(), null));
+            }
+            return new AccountsSection(list, ConversionContext.money(total));
+        });
+        Future<ReportDto.MonthlyTrendResponse> monthlyTrend =
+                executor.submit(() -> reportService.getMonthlyTrend(user, months, context, today));
+        Future<ReportDto.CategoryBreakdownResponse> categoryBreakdown =
+                executor.submit(() -> reportService.getCategoryBreakdown(user, today.withDayOfMonth(1), today, context));
+        Future<ReportDto.BalanceTrendResponse> balanceTrend =
+                executor.submit(() -> reportService.getBalanceTrend(user, trendStart, today, context));
+        Future<ReportDto.MonthlyProjection> projection =
+                executor.submit(() -> reportService.getMonthlyProjection(user, context, today));
+        Future<List<BudgetDto.MonthlySummaryResponse>> budgets =
+                executor.submit(() -> budgetService.getBudgetMonthlySummary(user, today));
+
+        long deadline = System.nanoTime() + sectionTimeout.toNanos();
+        List<String> unavailable = new ArrayList<>();
+        AccountsSection accountsSection = await("accounts", accounts, deadline, unavailable);
+        return DashboardDto.DashboardResponse.builder()
+                .currency(conversions.targetCurrency())
+                .accounts(accountsSection != null ? accountsSection.accounts() : null)
+                .totalBalance(accountsSection != null ? accountsSection.totalBalance() : null)
+                .monthlyTrend(await("monthlyTrend", monthlyTrend, deadline, unavailable))
+                .categoryBreakdown(await("categoryBreakdown", categoryBreakdown, deadline, unavailable))
+                .balanceTrend(await("balanceTrend", balanceTrend, deadline, unavailable))
+                .projection(await("projection", projection, deadline, unavailable))
+                .budgets(await("budgets", budgets, deadline, unavailable))
+                .unavailableSections(unavailable)
+                .build();
+    }
+
+    /** Risultato della sezione entro {@code deadline} (System.nanoTime), oppure {@code null} se scaduta o fallita. */
+    private static <T> T await(String section, Future<T> future, long deadline, List<String> unavailable) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Sezione dashboard '{}' non completata entro il timeout", section);
+        } catch (ExecutionException e) {
+            logger.error("Errore nella sezione dashboard '{}': {}", section, e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        unavailable.add(section);
+        return null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,82 +1,167 @@
 package it.iacovelli.nexabudgetbe.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import it.iacovelli.nexabudgetbe.config.CacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-import org.springframework.web.client.RestClientException;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Responsabile del recupero (e caching) dei tassi di cambio.
  * Fornisce rate generic source->target.
+ * <p>
+ * Le tabelle complete per valuta base ({@link ExchangeRateTable}) restano in una near cache in-process limitata
+ * e vengono rilette periodicamente da {@link ExchangeRateTableClient} (Redis, poi provider): a regime una
+ * conversione non fa I/O. Le coppie non quotate direttamente si ricavano dall'inverso o per triangolazione su una
+ * tabella in memoria, a partire dalla valuta pivot.
  */
 @Service
 public class ExchangeRateService {
 
     private static final Logger logger = LoggerFactory.getLogger(ExchangeRateService.class);
 
-    private static final String EXCHANGE_RATE_API_URL = "https://api.exchangerate-api.com/v4/latest/";
+    private static final MathContext CROSS_RATE_CONTEXT = MathContext.DECIMAL64;
 
-    private final RestClient restClient;
-    private final ObjectMapper objectMapper;
+    /** Dopo un caricamento fallito la stessa base non viene richiesta di nuovo prima di questo intervallo. */
+    private static final Duration FAILED_LOAD_COOLDOWN = Duration.ofMinutes(1);
 
-    public ExchangeRateService() {
-        this.restClient = RestClient.builder()
-                .baseUrl(EXCHANGE_RATE_API_URL)
-                .requestFactory(new SimpleClientHttpRequestFactory() {{
-                    setConnectTimeout(Duration.ofSeconds(5));
-                    setReadTimeout(Duration.ofSeconds(5));
-                }})
-                .build();
-        this.objectMapper = new ObjectMapper();
+    private final ExchangeRateTableClient tableClient;
+    private final String pivotCurrency;
+    private final int maxTables;
+    private final Map<String, ExchangeRateTable> tables = new ConcurrentHashMap<>();
+    private final Map<String, Instant> failedLoads = new ConcurrentHashMap<>();
+
+    public ExchangeRateService(ExchangeRateTableClient tableClient,
+                               @Value("${app.exchange-rates.pivot-currency:USD}") String pivotCurrency,
+                               @Value("${app.exchange-rates.near-cache.max-tables:16}") int maxTables) {
+        this.tableClient = tableClient;
+        this.pivotCurrency = pivotCurrency.toUpperCase();
+        this.maxTables = maxTables;
     }
 
     /**
-     * Recupera e cache il tasso source->target.
-     * Caching per chiave = targetCurrency + '|' + sourceCurrency così da distinguere basi diverse.
-     * I risultati vuoti (Optional.empty) non vengono cachati per permettere retry successivi.
+     * Tasso source->target: quante unità di target vale un'unità di source.
+     * Vuoto se nessuna tabella disponibile quota entrambe le valute.
      */
-    @Cacheable(value = CacheConfig.EXCHANGE_RATES_CACHE, key = "#sourceCurrency + '|' + #targetCurrency",
-               unless = "#result == null")
-    @Retryable(retryFor = RestClientException.class, maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2))
     public Optional<BigDecimal> getRate(String sourceCurrency, String targetCurrency) {
-        logger.info("Tasso non in cache: {} -> {}", sourceCurrency, targetCurrency);
-        String jsonResponse = restClient.get()
-                .uri(sourceCurrency.toUpperCase())
-                .retrieve()
-                .body(String.class);
-        try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            JsonNode ratesNode = root.get("rates");
-            if (ratesNode != null && ratesNode.has(targetCurrency.toUpperCase())) {
-                BigDecimal rate = new BigDecimal(ratesNode.get(targetCurrency.toUpperCase()).asText());
-                logger.debug("Rate {}->{} = {}", sourceCurrency, targetCurrency, rate);
+        String source = sourceCurrency.toUpperCase();
+        String target = targetCurrency.toUpperCase();
+        if (source.equals(target)) {
+            return Optional.of(BigDecimal.ONE);
+        }
+
+        Optional<BigDecimal> rate = resolve(source, target);
+        if (rate.isPresent()) {
+            return rate;
+        }
+        // Miss della near cache: prima la tabella della valuta sorgente, poi quella pivot per la triangolazione
+        if (!tables.containsKey(source) && loadTable(source) != null) {
+            rate = resolve(source, target);
+        }
+        if (rate.isEmpty() && !tables.containsKey(pivotCurrency) && loadTable(pivotCurrency) != null) {
+            rate = resolve(source, target);
+        }
+        if (rate.isEmpty()) {
+            logger.warn("Tasso {} -> {} non disponibile", source, target);
+        }
+        return rate;
+    }
+
+    /**
+     * Rilegge le tabelle in memoria: da Redis finché la voce è valida, dal provider quando scade. In caso di errore
+     * resta in uso la tabella precedente.
+     */
+    @Scheduled(fixedDelayString = "${app.exchange-rates.refresh-interval-ms:3600000}",
+            initialDelayString = "${app.exchange-rates.refresh-interval-ms:3600000}")
+    public void refreshTables() {
+        for (String base : List.copyOf(tables.keySet())) {
+            ExchangeRateTable table = tableClient.fetchTable(base);
+            if (table != null && table.getRates() != null) {
+                tables.put(base, table);
+            }
+        }
+        logger.debug("Tabelle tassi in memoria aggiornate: {}", tables.keySet());
+    }
+
+    private Optional<BigDecimal> resolve(String source, String target) {
+        ExchangeRateTable direct = tables.get(source);
+        if (direct != null) {
+            BigDecimal rate = direct.getRates().get(target);
+            if (rate != null) {
                 return Optional.of(rate);
             }
-            logger.warn("Valuta target {} non trovata per base {}", targetCurrency, sourceCurrency);
+        }
+        ExchangeRateTable inverse = tables.get(target);
+        if (inverse != null) {
+            BigDecimal rate = inverse.getRates().get(source);
+            if (rate != null && rate.signum() != 0) {
+                return Optional.of(BigDecimal.ONE.divide(rate, CROSS_RATE_CONTEXT));
+            }
+        }
+        Optional<BigDecimal> cross = crossRate(tables.get(pivotCurrency), source, target);
+        if (cross.isPresent()) {
+            return cross;
+        }
+        for (ExchangeRateTable table : tables.values()) {
+            cross = crossRate(table, source, target);
+            if (cross.isPresent()) {
+                return cross;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** source->target passando per la base della tabella: base->target / base->source. */
+    private static Optional<BigDecimal> crossRate(ExchangeRateTable table, String source, String target) {
+        if (table == null) {
             return Optional.empty();
-        } catch (Exception e) {
-            logger.error("Errore parsing tasso {}->{}: {}", sourceCurrency, targetCurrency, e.getMessage());
+        }
+        BigDecimal baseToSource = table.getRates().get(source);
+        BigDecimal baseToTarget = table.getRates().get(target);
+        if (baseToSource == null || baseToTarget == null || baseToSource.signum() == 0) {
             return Optional.empty();
         }
+        return Optional.of(baseToTarget.divide(baseToSource, CROSS_RATE_CONTEXT));
     }
 
-    @Recover
-    public Optional<BigDecimal> recoverGetRate(RestClientException e, String sourceCurrency, String targetCurrency) {
-        logger.error("Tasso {}->{} non disponibile dopo i retry: {}", sourceCurrency, targetCurrency, e.getMessage());
-        return Optional.empty();
+    private ExchangeRateTable loadTable(String base) {
+        Instant failedAt = failedLoads.get(base);
+        if (failedAt != null && failedAt.isAfter(Instant.now().minus(FAILED_LOAD_COOLDOWN))) {
+            return null;
+        }
+        ExchangeRateTable table = tableClient.fetchTable(base);
+        if (table == null || table.getRates() == null) {
+            failedLoads.put(base, Instant.now());
+            return null;
+        }
+        failedLoads.remove(base);
+        tables.put(base, table);
+        evictOverflow(base);
+        return table;
     }
-}
 
+    /** Oltre {@code maxTables} basi esce la tabella più vecchia, mai quella pivot né quella appena caricata. */
+    private void evictOverflow(String justLoaded) {
+        while (tables.size() > maxTables) {
+            Optional<String> oldest = tables.entrySet().stream()
+                    .filter(e -> !e.getKey().equals(pivotCurrency) && !e.getKey().equals(justLoaded))
+                    .min(Comparator.comparing((Map.Entry<String, ExchangeRateTable> e) -> e.getValue().getFetchedAt(),
+                            Comparator.nullsFirst(Comparator.<Instant>naturalOrder())))
+                    .map(Map.Entry::getKey);
+            if (oldest.isEmpty()) {
+                return;
+            }
+            tables.remove(oldest.get());
+        }
+    }
+}
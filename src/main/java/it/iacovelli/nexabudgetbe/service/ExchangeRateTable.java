@@ -0,0 +1,22 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Tabella completa dei tassi di una valuta base ({@code /latest/{base}}): valuta target -> quante unità di target
+ * vale un'unità di base. Cachata per intero, una sola voce per base.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeRateTable {
+    private String base;
+    private Map<String, BigDecimal> rates;
+    private Instant fetchedAt;
+}
@@ -0,0 +1,86 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.iacovelli.nexabudgetbe.config.CacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Recover;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Client del provider dei tassi di cambio: scarica la tabella completa di una valuta base e la cacha su Redis
+ * come voce unica. Separato da {@link ExchangeRateService} perché la cache e i retry passano dal proxy Spring.
+ */
+@Service
+public class ExchangeRateTableClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeRateTableClient.class);
+
+    private final RestClient restClient;
+    private final ObjectMapper objectMapper;
+
+    public ExchangeRateTableClient(
+            @Value("${app.exchange-rates.api-url:https://api.exchangerate-api.com/v4/latest/}") String apiUrl) {
+        this.restClient = RestClient.builder()
+                .baseUrl(apiUrl)
+                .requestFactory(new SimpleClientHttpRequestFactory() {{
+                    setConnectTimeout(Duration.ofSeconds(5));
+                    setReadTimeout(Duration.ofSeconds(5));
+                }})
+                .build();
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Tabella dei tassi per {@code base}, da Redis se presente altrimenti dal provider.
+     * I fallimenti (null) non vengono cachati per permettere retry successivi.
+     */
+    @Cacheable(value = CacheConfig.EXCHANGE_RATE_TABLES_CACHE, key = "#base", unless = "#result == null")
+    @Retryable(retryFor = RestClientException.class, maxAttempts = 3, backoff = @Backoff(delay = 1000, multiplier = 2))
+    public ExchangeRateTable fetchTable(String base) {
+        logger.info("Tabella tassi non in cache per base: {}", base);
+        String jsonResponse = restClient.get()
+                .uri(base)
+                .retrieve()
+                .body(String.class);
+        try {
+            JsonNode ratesNode = objectMapper.readTree(jsonResponse).get("rates");
+            if (ratesNode == null || !ratesNode.isObject()) {
+                logger.warn("Risposta senza tassi per base {}", base);
+                return null;
+            }
+            Map<String, BigDecimal> rates = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = ratesNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                rates.put(field.getKey().toUpperCase(), new BigDecimal(field.getValue().asText()));
+            }
+            logger.debug("Tabella tassi {} caricata: {} valute", base, rates.size());
+            return new ExchangeRateTable(base, rates, Instant.now());
+        } catch (Exception e) {
+            logger.error("Errore parsing tabella tassi per base {}: {}", base, e.getMessage());
+            return null;
+        }
+    }
+
+    @Recover
+    public ExchangeRateTable recoverFetchTable(RestClientException e, String base) {
+        logger.error("Tabella tassi {} non disponibile dopo i retry: {}", base, e.getMessage());
+        return null;
+    }
+}
@@ -0,0 +1,203 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.ExchangeRate;
+import it.iacovelli.nexabudgetbe.repository.ExchangeRateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Storico giornaliero dei tassi di cambio ({@code exchange_rates}). Ogni giorno viene registrata la tabella della
+ * valuta pivot; all'avvio l'intero storico viene caricato in memoria come serie ordinate per coppia, così che
+ * {@link #getRate(String, String, LocalDate)} risponda con una ricerca binaria, senza I/O.
+ * <p>
+ * Per una data vale l'ultimo tasso registrato fino a quel giorno; per le date precedenti l'inizio dello storico
+ * vale il primo tasso registrato, l'approssimazione più vicina disponibile (il provider non espone tassi passati).
+ */
+@Service
+public class HistoricalExchangeRateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalExchangeRateService.class);
+
+    private static final MathContext CROSS_RATE_CONTEXT = MathContext.DECIMAL64;
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final ExchangeRateTableClient tableClient;
+    private final String pivotCurrency;
+    private final boolean recordOnStartup;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public HistoricalExchangeRateService(ExchangeRateRepository exchangeRateRepository,
+                                         ExchangeRateTableClient tableClient,
+                                         @Value("${app.exchange-rates.pivot-currency:USD}") String pivotCurrency,
+                                         @Value("${app.exchange-rates.history.record-on-startup:true}") boolean recordOnStartup) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.tableClient = tableClient;
+        this.pivotCurrency = pivotCurrency.toUpperCase();
+        this.recordOnStartup = recordOnStartup;
+    }
+
+    /**
+     * Tasso source->target valido alla data indicata. Vuoto se lo storico non quota una delle due valute:
+     * il chiamante ricade sul tasso corrente.
+     */
+    public Optional<BigDecimal> getRate(String sourceCurrency, String targetCurrency, LocalDate date) {
+        String source = sourceCurrency.toUpperCase();
+        String target = targetCurrency.toUpperCase();
+        if (source.equals(target)) {
+            return Optional.of(BigDecimal.ONE);
+        }
+        BigDecimal direct = rateAt(source, target, date);
+        if (direct != null) {
+            return Optional.of(direct);
+        }
+        BigDecimal inverse = rateAt(target, source, date);
+        if (inverse != null && inverse.signum() != 0) {
+            return Optional.of(BigDecimal.ONE.divide(inverse, CROSS_RATE_CONTEXT));
+        }
+        // Triangolazione sulla pivot: pivot->target / pivot->source
+        BigDecimal pivotToSource = source.equals(pivotCurrency) ? BigDecimal.ONE : rateAt(pivotCurrency, source, date);
+        BigDecimal pivotToTarget = target.equals(pivotCurrency) ? BigDecimal.ONE : rateAt(pivotCurrency, target, date);
+        if (pivotToSource == null || pivotToTarget == null || pivotToSource.signum() == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(pivotToTarget.divide(pivotToSource, CROSS_RATE_CONTEXT));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        loadSeries();
+        if (recordOnStartup && !exchangeRateRepository.existsByRateDateAndBase(LocalDate.now(), pivotCurrency)) {
+            CompletableFuture.runAsync(this::recordDailyRates);
+        }
+    }
+
+    /** Ricostruisce le serie in memoria dall'intero storico su DB. */
+    public void loadSeries() {
+        Map<String, List<Object[]>> rowsByPair = new HashMap<>();
+        for (Object[] row : exchangeRateRepository.findAllRatesOrderByDate()) {
+            rowsByPair.computeIfAbsent(pairKey((String) row[0], (String) row[1]), k -> new ArrayList<>()).add(row);
+        }
+        Map<String, Series> loaded = new HashMap<>();
+        rowsByPair.forEach((pair, rows) -> {
+            int[] days = new int[rows.size()];
+            BigDecimal[] rates = new BigDecimal[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                days[i] = (int) ((LocalDate) rows.get(i)[2]).toEpochDay();
+                rates[i] = (BigDecimal) rows.get(i)[3];
+            }
+            loaded.put(pair, new Series(days, rates));
+        });
+        series.keySet().retainAll(loaded.keySet());
+        series.putAll(loaded);
+        logger.info("Storico tassi di cambio caricato: {} coppie", loaded.size());
+    }
+
+    /**
+     * Registra la tabella odierna della valuta pivot. Una sola fotografia al giorno: se un'altra istanza l'ha già
+     * scritta la rilegge dal DB, così anche le serie in memoria di questa replica includono il giorno.
+     */
+    @Scheduled(cron = "${app.exchange-rates.history.cron:0 30 0 * * *}")
+    public void recordDailyRates() {
+        LocalDate today = LocalDate.now();
+        try {
+            if (exchangeRateRepository.existsByRateDateAndBase(today, pivotCurrency)) {
+                loadSeries();
+                return;
+            }
+            ExchangeRateTable table = tableClient.fetchTable(pivotCurrency);
+            if (table == null || table.getRates() == null || table.getRates().isEmpty()) {
+                logger.warn("Tabella dei tassi {} non disponibile: storico del {} non registrato", pivotCurrency, today);
+                return;
+            }
+            List<ExchangeRate> rows = table.getRates().entrySet().stream()
+                    .filter(e -> !e.getKey().equals(pivotCurrency) && e.getKey().length() == 3 && e.getValue() != null)
+                    .map(e -> ExchangeRate.builder()
+                            .rateDate(today).base(pivotCurrency).quote(e.getKey()).rate(e.getValue())
+                            .build())
+                    .toList();
+            exchangeRateRepository.saveAll(rows);
+            rows.forEach(r -> series.merge(pairKey(r.getBase(), r.getQuote()),
+                    Series.of((int) today.toEpochDay(), r.getRate()),
+                    (current, point) -> current.with((int) today.toEpochDay(), r.getRate())));
+            logger.info("Storico tassi di cambio del {} registrato: {} valute", today, rows.size());
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Storico tassi del {} già registrato da un'altra istanza", today);
+            reloadSeries();
+        } catch (Exception e) {
+            logger.error("Errore nella registrazione dello storico tassi del {}", today, e);
+        }
+    }
+
+    private void reloadSeries() {
+        try {
+            loadSeries();
+        } catch (Exception e) {
+            logger.error("Errore nel ricaricamento dello storico tassi", e);
+        }
+    }
+
+    private BigDecimal rateAt(String base, String quote, LocalDate date) {
+        Series s = series.get(pairKey(base, quote));
+        return s != null ? s.rateAt((int) date.toEpochDay()) : null;
+    }
+
+    private static String pairKey(String base, String quote) {
+        return base + '/' + quote;
+    }
+
+    /** Serie immutabile di una coppia: giorni (epoch day) crescenti e tassi corrispondenti. */
+    static final class Series {
+
+        private final int[] days;
+        private final BigDecimal[] rates;
+
+        Series(int[] days, BigDecimal[] rates) {
+            this.days = days;
+            this.rates = rates;
+        }
+
+        static Series of(int day, BigDecimal rate) {
+            return new Series(new int[]{day}, new BigDecimal[]{rate});
+        }
+
+        /** Ultimo tasso fino al giorno indicato, o il primo della serie se il giorno la precede. */
+        BigDecimal rateAt(int day) {
+            int i = Arrays.binarySearch(days, day);
+            if (i < 0) {
+                i = Math.max(0, -i - 2);
+            }
+            return rates[i];
+        }
+
+        /** Copia con il punto del giorno aggiunto in coda, o sostituito se è già l'ultimo. */
+        Series with(int day, BigDecimal rate) {
+            int last = days.length - 1;
+            if (days[last] == day) {
+                BigDecimal[] replaced = rates.clone();
+                replaced[last] = rate;
+                return new Series(days, replaced);
+            }
+            if (days[last] > day) {
+                return this;
+            }
+            int[] newDays = Arrays.copyOf(days, days.length + 1);
+            BigDecimal[] newRates = Arrays.copyOf(rates, rates.length + 1);
+            newDays[days.length] = day;
+            newRates[rates.length] = rate;
+            return new Series(newDays, newRates);
+        }
+    }
+}
@@ -15,12 +15,9 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.*;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class ImportService {
@@ -31,11 +28,14 @@ public class ImportService {
 
     private final TransactionRepository transactionRepository;
     private final AiCategorizationService aiCategorizationService;
+    private final TransactionReadModelService transactionReadModelService;
 
     public ImportService(TransactionRepository transactionRepository,
-                         AiCategorizationService aiCategorizationService) {
+                         AiCategorizationService aiCategorizationService,
+                         TransactionReadModelService transactionReadModelService) {
         this.transactionRepository = transactionRepository;
         this.aiCategorizationService = aiCategorizationService;
+        this.transactionReadModelService = transactionReadModelService;
     }
 
     // ─── Preview ────────────────────────────────────────────────────────────────
@@ -43,13 +43,11 @@ public class ImportService {
     public ImportDto.ImportPreviewResponse previewCsv(MultipartFile file,
                                                        ImportDto.CsvColumnMapping mapping,
                                                        Account account) throws IOException {
-        List<ParsedRow> rows = parseCsv(file, mapping);
-        return buildPreview(rows, account);
+        return buildPreview(parseCsv(file, mapping).rows(), account);
     }
 
     public ImportDto.ImportPreviewResponse previewOfx(MultipartFile file, Account account) throws IOException {
-        List<ParsedRow> rows = parseOfx(file);
-        return buildPreview(rows, account);
+        return buildPreview(parseOfx(file).rows(), account);
     }
 
     // ─── Import ─────────────────────────────────────────────────────────────────
@@ -61,8 +59,7 @@ public class ImportService {
                                              User user,
                                              ImportDto.ImportConfirmRequest confirm,
                                              Category defaultCategory) throws IOException {
-        List<ParsedRow> rows = parseCsv(file, mapping);
-        return doImport(rows, account, user, confirm, defaultCategory);
+        return doImport(parseCsv(file, mapping), account, user, confirm, defaultCategory);
     }
 
     @Transactional
@@ -71,13 +68,12 @@ public class ImportService {
                                              User user,
                                              ImportDto.ImportConfirmRequest confirm,
                                              Category defaultCategory) throws IOException {
-        List<ParsedRow> rows = parseOfx(file);
-        return doImport(rows, account, user, confirm, defaultCategory);
+        return doImport(parseOfx(file), account, user, confirm, defaultCategory);
     }
 
     // ─── CSV Parsing ────────────────────────────────────────────────────────────
 
-    private List<ParsedRow> parseCsv(MultipartFile file, ImportDto.CsvColumnMapping mapping) throws IOException {
+    private ParsedFile parseCsv(MultipartFile file, ImportDto.CsvColumnMapping mapping) throws IOException {
         char delimiter = mapping.getDelimiter() != null && !mapping.getDelimiter().isEmpty()
                 ? mapping.getDelimiter().charAt(0) : ',';
 
@@ -89,6 +85,7 @@ public class ImportService {
                 .build();
 
         List<ParsedRow> result = new ArrayList<>();
+        int invalid = 0;
         DateTimeFormatter dtf = DateTimeFormatter.ofPattern(
                 mapping.getDateFormat() != null ? mapping.getDateFormat() : "yyyy-MM-dd");
 
@@ -128,114 +125,44 @@ public class ImportService {
                     result.add(new ParsedRow(date, amount, type, description, null));
                 } catch (Exception e) {
                     logger.warn("Riga CSV ignorata (riga {}): {}", record.getRecordNumber(), e.getMessage());
+                    invalid++;
                 }
             }
         }
-        return result;
+        return new ParsedFile(result, invalid);
     }
 
     // ─── OFX Parsing ────────────────────────────────────────────────────────────
 
-    private List<ParsedRow> parseOfx(MultipartFile file) throws IOException {
+    private ParsedFile parseOfx(MultipartFile file) throws IOException {
         if (file.getSize() > MAX_IMPORT_FILE_BYTES) {
             throw new IllegalArgumentException("File OFX troppo grande: dimensione massima consentita 10MB");
         }
-        String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-        // Detect OFX 2.x (XML) vs 1.x (SGML)
-        if (content.trim().startsWith("<?xml") || content.contains("<OFX>") && content.contains("</OFX>")) {
-            return parseOfxXml(content);
-        }
-        return parseOfxSgml(content);
-    }
-
-    /**
-     * Parses OFX 1.x SGML format (no closing tags, line-based key:value header).
-     */
-    private List<ParsedRow> parseOfxSgml(String content) {
-        List<ParsedRow> result = new ArrayList<>();
-        // Split on <STMTTRN> blocks
-        String[] blocks = content.split("(?i)<STMTTRN>");
-        for (int i = 1; i < blocks.length && result.size() < MAX_PARSED_ROWS; i++) {
-            try {
-                String block = blocks[i];
-                String dateStr = extractSgmlTag(block, "DTPOSTED");
-                String amountStr = extractSgmlTag(block, "TRNAMT");
-                String name = extractSgmlTag(block, "NAME");
-                String memo = extractSgmlTag(block, "MEMO");
-                String fitId = extractSgmlTag(block, "FITID");
-
-                if (dateStr == null || amountStr == null) continue;
-
-                // OFX date format: YYYYMMDD[HHmmss[.xxx][TZD]]
-                LocalDate date = LocalDate.parse(dateStr.substring(0, 8),
-                        DateTimeFormatter.ofPattern("yyyyMMdd"));
-                BigDecimal rawAmount = new BigDecimal(amountStr.replace(",", ".").trim());
-                TransactionType type = rawAmount.signum() >= 0 ? TransactionType.IN : TransactionType.OUT;
-                String description = name != null ? name : (memo != null ? memo : "");
-
-                result.add(new ParsedRow(date, rawAmount.abs(), type, description, fitId));
-            } catch (Exception e) {
-                logger.warn("Blocco OFX SGML ignorato: {}", e.getMessage());
-            }
-        }
-        return result;
-    }
-
-    /**
-     * Parses OFX 2.x XML format.
-     */
-    private List<ParsedRow> parseOfxXml(String content) {
+        // Lettura in streaming (OFX 1.x SGML e 2.x XML): il file non viene caricato per intero in memoria
         List<ParsedRow> result = new ArrayList<>();
-        Pattern stmtTrnPattern = Pattern.compile(
-                "<STMTTRN>(.*?)</STMTTRN>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        Matcher matcher = stmtTrnPattern.matcher(content);
-        while (matcher.find() && result.size() < MAX_PARSED_ROWS) {
-            try {
-                String block = matcher.group(1);
-                String dateStr = extractXmlTag(block, "DTPOSTED");
-                String amountStr = extractXmlTag(block, "TRNAMT");
-                String name = extractXmlTag(block, "NAME");
-                String memo = extractXmlTag(block, "MEMO");
-                String fitId = extractXmlTag(block, "FITID");
-
-                if (dateStr == null || amountStr == null) continue;
-
-                LocalDate date = LocalDate.parse(dateStr.substring(0, 8),
-                        DateTimeFormatter.ofPattern("yyyyMMdd"));
-                BigDecimal rawAmount = new BigDecimal(amountStr.replace(",", ".").trim());
-                TransactionType type = rawAmount.signum() >= 0 ? TransactionType.IN : TransactionType.OUT;
-                String description = name != null ? name : (memo != null ? memo : "");
-
-                result.add(new ParsedRow(date, rawAmount.abs(), type, description, fitId));
-            } catch (Exception e) {
-                logger.warn("Blocco OFX XML ignorato: {}", e.getMessage());
-            }
+        int[] invalid = {0};
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            OfxStatementParser.parse(reader, MAX_PARSED_ROWS, entry -> {
+                TransactionType type = entry.amount().signum() >= 0 ? TransactionType.IN : TransactionType.OUT;
+                String description = entry.name() != null ? entry.name() : (entry.memo() != null ? entry.memo() : "");
+                result.add(new ParsedRow(entry.date(), entry.amount().abs(), type, description, entry.fitId()));
+            }, () -> invalid[0]++);
         }
-        return result;
-    }
-
-    private String extractSgmlTag(String block, String tag) {
-        Pattern p = Pattern.compile("(?i)<" + tag + ">([^<\\r\\n]+)");
-        Matcher m = p.matcher(block);
-        return m.find() ? m.group(1).trim() : null;
-    }
-
-    private String extractXmlTag(String block, String tag) {
-        Pattern p = Pattern.compile("(?i)<" + tag + ">([^<]+)</" + tag + ">");
-        Matcher m = p.matcher(block);
-        if (m.find()) return m.group(1).trim();
-        // Fallback: SGML-style (no closing tag) inside XML file
-        return extractSgmlTag(block, tag);
+        return new ParsedFile(result, invalid[0]);
     }
 
     // ─── Common logic ───────────────────────────────────────────────────────────
 
     private ImportDto.ImportPreviewResponse buildPreview(List<ParsedRow> rows, Account account) {
+        List<String> hashes = importHashes(rows, account);
+        DuplicateIndex existing = loadDuplicateIndex(rows, hashes, account);
+
         List<ImportDto.ImportedTransactionPreview> previews = new ArrayList<>();
         int duplicateCount = 0;
-        for (ParsedRow row : rows) {
-            String hash = computeHash(account.getId(), row.date(), row.amount(), row.description());
-            boolean isDuplicate = isDuplicate(hash, row.fitId());
+        for (int i = 0; i < rows.size(); i++) {
+            ParsedRow row = rows.get(i);
+            String hash = hashes.get(i);
+            boolean isDuplicate = existing.contains(hash, row.fitId());
             if (isDuplicate) duplicateCount++;
             previews.add(ImportDto.ImportedTransactionPreview.builder()
                     .date(row.date())
@@ -254,18 +181,26 @@ public class ImportService {
                 .build();
     }
 
-    private ImportDto.ImportResult doImport(List<ParsedRow> rows,
+    /** Le righe scartate dal parser (data o importo non interpretabili) sono riportate come errori. */
+    private ImportDto.ImportResult doImport(ParsedFile file,
                                              Account account,
                                              User user,
                                              ImportDto.ImportConfirmRequest confirm,
                                              Category defaultCategory) {
+        List<ParsedRow> rows = file.rows();
         Set<String> selectedHashes = confirm != null && confirm.getSelectedHashes() != null
                 ? new HashSet<>(confirm.getSelectedHashes()) : null;
 
-        int imported = 0, skipped = 0, errors = 0;
+        List<String> hashes = importHashes(rows, account);
+        DuplicateIndex existing = loadDuplicateIndex(rows, hashes, account);
 
-        for (ParsedRow row : rows) {
-            String hash = computeHash(account.getId(), row.date(), row.amount(), row.description());
+        int skipped = 0;
+        List<ParsedRow> toImport = new ArrayList<>();
+        List<String> toImportHashes = new ArrayList<>();
+
+        for (int i = 0; i < rows.size(); i++) {
+            ParsedRow row = rows.get(i);
+            String hash = hashes.get(i);
 
             // Skip if not in selected set (when caller explicitly chose rows)
             if (selectedHashes != null && !selectedHashes.contains(hash)) {
@@ -273,66 +208,103 @@ public class ImportService {
                 continue;
             }
 
-            // Deduplication: skip existing
-            if (isDuplicate(hash, row.fitId())) {
+            // Deduplication: skip existing, and rows repeated earlier in the same file
+            if (existing.contains(hash, row.fitId())) {
                 skipped++;
                 continue;
             }
+            existing.add(hash, row.fitId());
+            toImport.add(row);
+            toImportHashes.add(hash);
+        }
 
-            try {
-                Category category = defaultCategory;
-                Optional<Category> aiCategory = aiCategorizationService
-                        .categorizeTransaction(row.description(), user, row.type());
-                if (aiCategory.isPresent()) {
-                    category = aiCategory.get();
-                }
+        Map<TransactionType, Map<String, Optional<Category>>> aiCategories = categorize(toImport, user);
 
-                Transaction t = Transaction.builder()
-                        .user(user)
-                        .account(account)
-                        .amount(row.amount())
-                        .type(row.type())
-                        .description(row.description())
-                        .date(row.date())
-                        .category(category)
-                        .importHash(hash)
-                        .externalId(row.fitId())
-                        .build();
-                transactionRepository.save(t);
-                imported++;
-            } catch (Exception e) {
-                logger.error("Errore importazione riga {}: {}", row.description(), e.getMessage());
-                errors++;
-            }
+        List<Transaction> transactions = new ArrayList<>(toImport.size());
+        for (int i = 0; i < toImport.size(); i++) {
+            ParsedRow row = toImport.get(i);
+            Category category = aiCategories.getOrDefault(row.type(), Map.of())
+                    .getOrDefault(row.description(), Optional.empty())
+                    .orElse(defaultCategory);
+
+            transactions.add(Transaction.builder()
+                    .user(user)
+                    .account(account)
+                    .amount(row.amount())
+                    .type(row.type())
+                    .description(row.description())
+                    .date(row.date())
+                    .category(category)
+                    .importHash(toImportHashes.get(i))
+                    .externalId(row.fitId())
+                    .build());
         }
 
-        logger.info("Importazione completata: imported={}, skipped={}, errors={}", imported, skipped, errors);
+        // Insert a lotti JDBC (hibernate.jdbc.batch_size) invece di una save per riga
+        List<Transaction> importedTransactions = transactionRepository.saveAll(transactions);
+        transactionRepository.flush();
+
+        transactionReadModelService.addedAll(importedTransactions);
+        int imported = importedTransactions.size();
+        logger.info("Importazione completata: imported={}, skipped={}, errors={}", imported, skipped, file.invalid());
         return ImportDto.ImportResult.builder()
                 .imported(imported)
                 .skipped(skipped)
-                .errors(errors)
+                .errors(file.invalid())
                 .build();
     }
 
-    private boolean isDuplicate(String importHash, String fitId) {
-        if (fitId != null && !fitId.isEmpty() && transactionRepository.findByExternalId(fitId).isPresent()) {
-            return true;
+    private List<String> importHashes(List<ParsedRow> rows, Account account) {
+        List<String> hashes = new ArrayList<>(rows.size());
+        for (ParsedRow row : rows) {
+            hashes.add(TransactionImportHash.compute(account.getId(), row.date(), row.amount(), row.description()));
         }
-        return transactionRepository.existsByImportHash(importHash);
+        return hashes;
     }
 
-    private static String computeHash(UUID accountId, LocalDate date, BigDecimal amount, String description) {
-        String raw = accountId + "|" + date + "|" + amount.toPlainString() + "|"
-                + (description != null ? description.toLowerCase().trim() : "");
-        try {
-            byte[] digest = MessageDigest.getInstance("SHA-256")
-                    .digest(raw.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(digest);
-        } catch (Exception e) {
-            throw new IllegalStateException("SHA-256 non disponibile", e);
+    /** FITID e hash delle righe del file già presenti nel conto, letti con poche query IN invece di due per riga. */
+    private DuplicateIndex loadDuplicateIndex(List<ParsedRow> rows, List<String> hashes, Account account) {
+        Set<String> fitIds = new HashSet<>();
+        for (ParsedRow row : rows) {
+            if (row.fitId() != null && !row.fitId().isEmpty()) {
+                fitIds.add(row.fitId());
+            }
+        }
+        return new DuplicateIndex(
+                transactionRepository.existingExternalIds(account, fitIds),
+                transactionRepository.existingImportHashes(account, new HashSet<>(hashes)));
+    }
+
+    /** Una chiamata di categorizzazione per descrizione distinta e tipo, non per riga. */
+    private Map<TransactionType, Map<String, Optional<Category>>> categorize(List<ParsedRow> rows, User user) {
+        Map<TransactionType, Set<String>> descriptionsByType = new EnumMap<>(TransactionType.class);
+        for (ParsedRow row : rows) {
+            descriptionsByType.computeIfAbsent(row.type(), t -> new HashSet<>()).add(row.description());
+        }
+        Map<TransactionType, Map<String, Optional<Category>>> result = new EnumMap<>(TransactionType.class);
+        descriptionsByType.forEach((type, descriptions) ->
+                result.put(type, aiCategorizationService.categorizeDistinct(descriptions, user, type)));
+        return result;
+    }
+
+    private record DuplicateIndex(Set<String> externalIds, Set<String> importHashes) {
+
+        boolean contains(String importHash, String fitId) {
+            return fitId != null && !fitId.isEmpty() && externalIds.contains(fitId)
+                    || importHashes.contains(importHash);
+        }
+
+        void add(String importHash, String fitId) {
+            importHashes.add(importHash);
+            if (fitId != null && !fitId.isEmpty()) {
+                externalIds.add(fitId);
+            }
         }
     }
 
     private record ParsedRow(LocalDate date, BigDecimal amount, TransactionType type,
                               String description, String fitId) {}
+
+    /** Righe lette dal file e numero di righe scartate perché non interpretabili. */
+    private record ParsedFile(List<ParsedRow> rows, int invalid) {}
 }
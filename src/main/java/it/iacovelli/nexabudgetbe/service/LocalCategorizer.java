@@ -0,0 +1,108 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Categorizzatore locale davanti alla cache semantica e all'AI: un {@link CategorizerModel} per utente, addestrato
+ * al primo uso con una lettura raggruppata dello storico categorizzato e tenuto in memoria con dimensione e durata
+ * limitate. Risponde in microsecondi; le previsioni sotto la soglia di confidenza vengono scartate e la
+ * categorizzazione prosegue sul percorso remoto.
+ * <p>
+ * Le ricategorizzazioni manuali aggiornano il modello già caricato al commit della loro transazione; il resto dello
+ * storico nuovo (import, sync) entra al riaddestramento, alla scadenza della voce.
+ */
+@Service
+public class LocalCategorizer {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalCategorizer.class);
+
+    private final TransactionRepository transactionRepository;
+    private final double threshold;
+    private final Cache<UUID, CategorizerModel> models;
+
+    public LocalCategorizer(TransactionRepository transactionRepository,
+                            @Value("${nexabudget.ai.local-categorizer.threshold:0.85}") double threshold,
+                            @Value("${nexabudget.ai.local-categorizer.max-users:2000}") long maxUsers,
+                            @Value("${nexabudget.ai.local-categorizer.ttl-minutes:360}") long ttlMinutes) {
+        this.transactionRepository = transactionRepository;
+        this.threshold = threshold;
+        this.models = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Previsione del modello dell'utente, solo se raggiunge la soglia di confidenza. Un errore nell'addestramento
+     * non blocca la categorizzazione: si ricade sul percorso remoto.
+     */
+    public Optional<CategorizerModel.Prediction> predict(User user, String description, TransactionType type) {
+        if (threshold > 1.0) {
+            return Optional.empty();
+        }
+        try {
+            return models.get(user.getId(), this::train)
+                    .predict(description, type)
+                    .filter(p -> p.confidence() >= threshold);
+        } catch (RuntimeException e) {
+            log.warn("Categorizzatore locale non disponibile per l'utente {}: {}", user.getId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Sposta una transazione modificata dall'osservazione precedente (descrizione, tipo, categoria) a quella nuova
+     * nel modello dell'utente, dopo il commit della transazione corrente: un rollback non addestra il modello. Se il
+     * modello non è in memoria la modifica sarà letta al prossimo addestramento.
+     */
+    public void learn(UUID userId, String oldDescription, TransactionType oldType, UUID oldCategoryId,
+                      String newDescription, TransactionType newType, UUID newCategoryId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    move(userId, oldDescription, oldType, oldCategoryId, newDescription, newType, newCategoryId);
+                }
+            });
+        } else {
+            move(userId, oldDescription, oldType, oldCategoryId, newDescription, newType, newCategoryId);
+        }
+    }
+
+    private void move(UUID userId, String oldDescription, TransactionType oldType, UUID oldCategoryId,
+                      String newDescription, TransactionType newType, UUID newCategoryId) {
+        CategorizerModel model = models.getIfPresent(userId);
+        if (model == null) {
+            return;
+        }
+        model.remove(oldDescription, oldType, oldCategoryId);
+        model.add(newDescription, newType, newCategoryId, 1);
+    }
+
+    private CategorizerModel train(UUID userId) {
+        long start = System.nanoTime();
+        CategorizerModel model = new CategorizerModel();
+        int rows = 0;
+        for (Object[] row : transactionRepository.countCategorizedDescriptions(userId)) {
+            model.add((String) row[0], (TransactionType) row[1], (UUID) row[2], ((Number) row[3]).intValue());
+            rows++;
+        }
+        log.debug("Categorizzatore locale addestrato per l'utente {}: {} descrizioni distinte in {} ms",
+                userId, rows, (System.nanoTime() - start) / 1_000_000);
+        return model;
+    }
+}
@@ -0,0 +1,353 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.TransactionMonthlyRollup;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.TransactionMonthlyRollupRepository;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Mantiene il read model {@code transaction_monthly_rollups}: per (utente, mese, categoria, valuta del conto, tipo,
+ * trasferimento) la somma degli importi e il numero di transazioni, aggiornati nella stessa transazione DB di ogni
+ * scrittura. Report e budget leggono da qui i mesi interi e interrogano {@code transactions} solo per gli eventuali
+ * mesi parziali agli estremi del periodo: un trend di 24 mesi costa qualche centinaio di righe di rollup invece
+ * della scansione dell'intera storia dell'utente.
+ * <p>
+ * La riconciliazione notturna confronta il rollup con l'aggregazione di {@code transactions} e ricostruisce gli
+ * utenti divergenti (scritture che bypassano il service, cancellazioni di categorie).
+ * <p>
+ * Su Postgres ({@code app.persistence.upsert=on-conflict}) ogni variazione è un upsert: due prime scritture
+ * concorrenti sulla stessa chiave (ad esempio la categorizzazione massiva in parallelo) si sommano invece di
+ * fallire sull'indice univoco. Senza {@code ON CONFLICT} (H2) si usano UPDATE e INSERT.
+ */
+@Service
+public class MonthlyRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyRollupService.class);
+
+    private final TransactionMonthlyRollupRepository rollupRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UserDataGenerationService generationService;
+    private final boolean onConflictUpsert;
+
+    public MonthlyRollupService(TransactionMonthlyRollupRepository rollupRepository,
+                                TransactionRepository transactionRepository,
+                                PlatformTransactionManager transactionManager,
+                                UserDataGenerationService generationService,
+                                @Value("${app.persistence.upsert:on-conflict}") String upsert) {
+        this.rollupRepository = rollupRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.generationService = generationService;
+        this.onConflictUpsert = "on-conflict".equalsIgnoreCase(upsert);
+    }
+
+    /** Totali di un mese per categoria, valuta e tipo (trasferimenti esclusi). {@code amount} è sempre positivo. */
+    public record MonthlyTotal(int year, int month, UUID categoryId, String currency, TransactionType type, BigDecimal amount) {
+    }
+
+    private record Key(UUID userId, int yearMonth, UUID categoryId, String currency, TransactionType type, boolean transfer) {
+    }
+
+    private record Delta(BigDecimal amount, long count) {
+        Delta plus(Delta other) {
+            return new Delta(amount.add(other.amount), count + other.count);
+        }
+
+        boolean isZero() {
+            return amount.signum() == 0 && count == 0;
+        }
+    }
+
+    public static int yearMonth(LocalDate date) {
+        return date.getYear() * 100 + date.getMonthValue();
+    }
+
+    // ─── Scrittura ──────────────────────────────────────────────────────────────
+
+    /**
+     * Applica al rollup le transazioni rimosse ({@code removed}) e aggiunte ({@code added}) da una scrittura,
+     * con un solo statement (upsert, o UPDATE e INSERT) per chiave toccata. Incrementa la generazione dei dati di ogni utente coinvolto,
+     * invalidando i report in cache.
+     */
+    @Transactional
+    public void apply(Collection<TransactionSnapshot> removed, Collection<TransactionSnapshot> added) {
+        Map<Key, Delta> deltas = new LinkedHashMap<>();
+        removed.forEach(s -> deltas.merge(keyOf(s), new Delta(s.amount().negate(), -1), Delta::plus));
+        added.forEach(s -> deltas.merge(keyOf(s), new Delta(s.amount(), 1), Delta::plus));
+        Set<UUID> users = new HashSet<>();
+        deltas.forEach((key, delta) -> {
+            if (!delta.isZero()) {
+                applyDelta(key, delta);
+                users.add(key.userId());
+            }
+        });
+        users.forEach(generationService::bump);
+    }
+
+    /** Sposta le righe di una categoria (merge di categorie) sommandole a quelle della categoria di destinazione. */
+    @Transactional
+    public void moveCategory(UUID userId, UUID sourceCategoryId, UUID targetCategoryId) {
+        for (Object[] r : rollupRepository.findByCategory(userId, sourceCategoryId)) {
+            Key key = new Key(userId, ((Number) r[0]).intValue(), targetCategoryId, (String) r[1],
+                    (TransactionType) r[2], (Boolean) r[3]);
+            applyDelta(key, new Delta((BigDecimal) r[4], ((Number) r[5]).longValue()));
+        }
+        rollupRepository.deleteByCategory(userId, sourceCategoryId);
+        generationService.bump(userId);
+    }
+
+    /**
+     * Ricostruisce da zero il rollup di un utente (operazioni massive: soft-delete/restore di un conto, cambio valuta).
+     * Le righe vengono cancellate PRIMA di rileggere {@code transactions}: gli incrementi concorrenti sulle stesse
+     * chiavi attendono il lock di riga invece di sommarsi a valori che la ricostruzione sta per sovrascrivere.
+     * Con l'upsert anche le righe ricostruite sono sommate: se una scrittura concorrente ha creato nel frattempo la
+     * stessa chiave, la sua variazione (esclusa dalla rilettura, non ancora committata) resta e non si conta due
+     * volte. Senza {@code ON CONFLICT} (H2) una delle due transazioni fallisce sull'indice univoco e viene annullata.
+     */
+    @Transactional
+    public void rebuildForUser(UUID userId) {
+        rollupRepository.deleteByUserId(userId);
+        List<TransactionMonthlyRollup> rows = transactionRepository.aggregateMonthlyRollupsByUserId(userId).stream()
+                .map(MonthlyRollupService::toEntity)
+                .toList();
+        if (onConflictUpsert) {
+            rows.forEach(row -> upsert(keyOf(row), new Delta(row.getAmount(), row.getTransactionCount())));
+        } else {
+            rollupRepository.saveAll(rows);
+        }
+        generationService.bump(userId);
+        logger.debug("Rollup mensile ricostruito per utente ID: {} ({} righe)", userId, rows.size());
+    }
+
+    private void applyDelta(Key key, Delta delta) {
+        if (onConflictUpsert) {
+            upsert(key, delta);
+            return;
+        }
+        int updated = key.categoryId() != null
+                ? rollupRepository.applyDelta(key.userId(), key.yearMonth(), key.categoryId(), key.currency(),
+                key.type(), key.transfer(), delta.amount(), delta.count())
+                : rollupRepository.applyDeltaUncategorized(key.userId(), key.yearMonth(), key.currency(),
+                key.type(), key.transfer(), delta.amount(), delta.count());
+        if (updated == 0) {
+            rollupRepository.save(TransactionMonthlyRollup.builder()
+                    .userId(key.userId())
+                    .yearMonth(key.yearMonth())
+                    .categoryId(key.categoryId())
+                    .currency(key.currency())
+                    .type(key.type())
+                    .transfer(key.transfer())
+                    .amount(delta.amount())
+                    .transactionCount(delta.count())
+                    .build());
+        }
+    }
+
+    private void upsert(Key key, Delta delta) {
+        rollupRepository.upsertDelta(key.userId(), key.yearMonth(), key.categoryId(), key.currency(),
+                key.type().name(), key.transfer(), delta.amount(), delta.count());
+    }
+
+    private static Key keyOf(TransactionSnapshot s) {
+        return new Key(s.userId(), yearMonth(s.date()), s.categoryId(), s.currency(), s.type(), s.transfer());
+    }
+
+    private static TransactionMonthlyRollup toEntity(Object[] r) {
+        return TransactionMonthlyRollup.builder()
+                .userId((UUID) r[0])
+                .yearMonth(((Number) r[1]).intValue())
+                .categoryId((UUID) r[2])
+                .currency((String) r[3])
+                .type(TransactionType.valueOf(r[4].toString()))
+                .transfer((Boolean) r[5])
+                .amount((BigDecimal) r[6])
+                .transactionCount(((Number) r[7]).longValue())
+                .build();
+    }
+
+    // ─── Lettura ────────────────────────────────────────────────────────────────
+
+    /**
+     * Totali mensili (trasferimenti esclusi) nel periodo {@code [start, end]}: i mesi interamente compresi vengono
+     * letti dal rollup, i mesi parziali agli estremi con una query raggruppata su {@code transactions}.
+     */
+    @Transactional(readOnly = true)
+    public List<MonthlyTotal> findMonthlyTotals(User user, LocalDate start, LocalDate end) {
+        List<MonthlyTotal> totals = new ArrayList<>();
+        if (end.isBefore(start)) {
+            return totals;
+        }
+        LocalDate fullStart = start.getDayOfMonth() == 1 ? start : start.withDayOfMonth(1).plusMonths(1);
+        LocalDate fullEnd = end.getDayOfMonth() == end.lengthOfMonth() ? end : end.withDayOfMonth(1).minusDays(1);
+
+        if (fullStart.isAfter(fullEnd)) {
+            addRawTotals(totals, user, start, end);
+            return totals;
+        }
+        for (Object[] r : rollupRepository.findNonTransferTotals(user.getId(), yearMonth(fullStart), yearMonth(fullEnd))) {
+            int ym = ((Number) r[0]).intValue();
+            totals.add(new MonthlyTotal(ym / 100, ym % 100, (UUID) r[1], (String) r[2], (TransactionType) r[3], (BigDecimal) r[4]));
+        }
+        if (start.isBefore(fullStart)) {
+            addRawTotals(totals, user, start, fullStart.minusDays(1));
+        }
+        if (end.isAfter(fullEnd)) {
+            addRawTotals(totals, user, fullEnd.plusDays(1), end);
+        }
+        return totals;
+    }
+
+    /**
+     * Totali di una finestra di report e netto (IN-OUT) per valuta dei mesi precedenti al mese di {@code start}
+     * (saldo di apertura). {@code totals} ha la stessa forma di {@link #findMonthlyTotals}.
+     */
+    public record ReportWindow(List<MonthlyTotal> totals, Map<String, BigDecimal> openingNetByCurrency) {
+    }
+
+    /**
+     * Come {@link #findMonthlyTotals} con in più il saldo di apertura, letto nella stessa query del rollup dei mesi
+     * interi: una sola query sul rollup più una su {@code transactions} per ciascun mese parziale agli estremi.
+     */
+    @Transactional(readOnly = true)
+    public ReportWindow findReportWindow(User user, LocalDate start, LocalDate end) {
+        LocalDate fullStart = start.getDayOfMonth() == 1 ? start : start.withDayOfMonth(1).plusMonths(1);
+        LocalDate fullEnd = end.getDayOfMonth() == end.lengthOfMonth() ? end : end.withDayOfMonth(1).minusDays(1);
+        if (end.isBefore(start) || fullStart.isAfter(fullEnd)) {
+            return new ReportWindow(findMonthlyTotals(user, start, end),
+                    sumNetBeforeMonthPerCurrency(user, start.withDayOfMonth(1)));
+        }
+
+        List<MonthlyTotal> totals = new ArrayList<>();
+        Map<String, BigDecimal> opening = new LinkedHashMap<>();
+        for (Object[] r : rollupRepository.findNonTransferTotalsWithOpening(
+                user.getId(), yearMonth(start.withDayOfMonth(1)), yearMonth(fullEnd))) {
+            int ym = ((Number) r[0]).intValue();
+            TransactionType type = (TransactionType) r[3];
+            BigDecimal amount = (BigDecimal) r[4];
+            if (ym == 0) {
+                opening.merge((String) r[2], type == TransactionType.IN ? amount : amount.negate(), BigDecimal::add);
+            } else if (ym >= yearMonth(fullStart)) {
+                totals.add(new MonthlyTotal(ym / 100, ym % 100, (UUID) r[1], (String) r[2], type, amount));
+            }
+        }
+        if (start.isBefore(fullStart)) {
+            addRawTotals(totals, user, start, fullStart.minusDays(1));
+        }
+        if (end.isAfter(fullEnd)) {
+            addRawTotals(totals, user, fullEnd.plusDays(1), end);
+        }
+        return new ReportWindow(totals, opening);
+    }
+
+    private void addRawTotals(List<MonthlyTotal> totals, User user, LocalDate from, LocalDate to) {
+        for (Object[] r : transactionRepository.findMonthlyTotalsByCategoryAndType(user, from, to)) {
+            totals.add(new MonthlyTotal(((Number) r[0]).intValue(), ((Number) r[1]).intValue(), (UUID) r[2],
+                    (String) r[3], TransactionType.valueOf(r[4].toString()), (BigDecimal) r[5]));
+        }
+    }
+
+    /** Netto (IN-OUT) per valuta prima del mese di {@code monthStart} (trasferimenti esclusi). */
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> sumNetBeforeMonthPerCurrency(User user, LocalDate monthStart) {
+        Map<String, BigDecimal> result = new LinkedHashMap<>();
+        for (Object[] r : rollupRepository.sumNetBeforePerCurrency(user.getId(), yearMonth(monthStart))) {
+            result.merge((String) r[0], (BigDecimal) r[1], BigDecimal::add);
+        }
+        return result;
+    }
+
+    /**
+     * Speso netto (OUT-IN) del mese per ciascuna categoria richiesta, trasferimenti inclusi e senza conversione:
+     * le categorie senza movimenti non compaiono nella mappa.
+     */
+    @Transactional(readOnly = true)
+    public Map<UUID, BigDecimal> sumNetByCategoryInMonth(User user, Collection<UUID> categoryIds, LocalDate date) {
+        if (categoryIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, BigDecimal> result = new HashMap<>();
+        for (Object[] r : rollupRepository.sumNetByCategory(user.getId(), yearMonth(date), categoryIds)) {
+            result.put((UUID) r[0], (BigDecimal) r[1]);
+        }
+        return result;
+    }
+
+    // ─── Riconciliazione ────────────────────────────────────────────────────────
+
+    /**
+     * Confronta il rollup con l'aggregazione di {@code transactions} e ricostruisce gli utenti divergenti,
+     * ciascuno in una transazione dedicata. Il confronto procede un utente alla volta, così la memoria resta quella
+     * dello storico mensile di un utente e non cresce con la base utenti. Rimuove poi le chiavi svuotate
+     * (conteggio e somma a zero).
+     */
+    @Scheduled(cron = "0 45 3 * * ?")
+    public void reconcile() {
+        Set<UUID> userIds = new LinkedHashSet<>(transactionRepository.findActiveUserIds());
+        userIds.addAll(rollupRepository.findUserIds());
+
+        int drifted = 0;
+        int repaired = 0;
+        for (UUID userId : userIds) {
+            try {
+                if (!hasDrifted(userId)) {
+                    continue;
+                }
+                drifted++;
+                transactionTemplate.executeWithoutResult(status -> rebuildForUser(userId));
+                logger.warn("Deriva rollup mensile riparata per utente ID: {}", userId);
+                repaired++;
+            } catch (Exception e) {
+                logger.error("Errore nella ricostruzione del rollup per utente ID: {}: {}", userId, e.getMessage());
+            }
+        }
+        int removed = transactionTemplate.execute(status -> rollupRepository.deleteEmpty());
+        logger.info("Riconciliazione rollup mensile completata: {} utenti divergenti, {} riparati, {} righe vuote rimosse",
+                drifted, repaired, removed);
+    }
+
+    /** Vero se il rollup dell'utente differisce, per almeno una chiave, dall'aggregazione delle sue transazioni. */
+    private boolean hasDrifted(UUID userId) {
+        Map<Key, Delta> expected = new HashMap<>();
+        for (Object[] r : transactionRepository.aggregateMonthlyRollupsByUserId(userId)) {
+            TransactionMonthlyRollup row = toEntity(r);
+            expected.merge(keyOf(row), new Delta(row.getAmount(), row.getTransactionCount()), Delta::plus);
+        }
+        Map<Key, Delta> actual = new HashMap<>();
+        for (Object[] r : rollupRepository.findTotalsByUserId(userId)) {
+            Key key = new Key((UUID) r[0], ((Number) r[1]).intValue(), (UUID) r[2], (String) r[3],
+                    (TransactionType) r[4], (Boolean) r[5]);
+            actual.merge(key, new Delta((BigDecimal) r[6], ((Number) r[7]).longValue()), Delta::plus);
+        }
+
+        Delta zero = new Delta(BigDecimal.ZERO, 0);
+        Set<Key> keys = new HashSet<>(expected.keySet());
+        keys.addAll(actual.keySet());
+        for (Key key : keys) {
+            Delta e = expected.getOrDefault(key, zero);
+            Delta a = actual.getOrDefault(key, zero);
+            if (e.amount().compareTo(a.amount()) != 0 || e.count() != a.count()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Key keyOf(TransactionMonthlyRollup row) {
+        return new Key(row.getUserId(), row.getYearMonth(), row.getCategoryId(), row.getCurrency(),
+                row.getType(), row.getTransfer());
+    }
+}
@@ -0,0 +1,210 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Tokenizer OFX a passata singola sul reader, valido sia per OFX 1.x (SGML, tag foglia senza chiusura) sia per
+ * OFX 2.x (XML). Ogni {@code <STMTTRN>} viene emesso appena completo, senza tenere il file in memoria né usare regex:
+ * si bufferizzano solo il nome del tag corrente e il valore dei cinque campi letti.
+ * <p>
+ * Un blocco si chiude con {@code </STMTTRN>}, con lo {@code <STMTTRN>} successivo (SGML senza chiusure),
+ * con {@code </BANKTRANLIST>} o a fine file. Di ogni campo vale la prima occorrenza nel blocco; il valore di un tag
+ * foglia termina al {@code <} successivo o a fine riga.
+ */
+public final class OfxStatementParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfxStatementParser.class);
+
+    private static final DateTimeFormatter OFX_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /** Oltre questa lunghezza il nome di un tag non può essere uno di quelli letti: il resto viene scartato. */
+    private static final int MAX_TAG_LENGTH = 16;
+
+    /** Transazione letta da un blocco {@code <STMTTRN>}: importo con il segno originale. */
+    public record Entry(LocalDate date, BigDecimal amount, String name, String memo, String fitId) {
+    }
+
+    private enum Field {DTPOSTED, TRNAMT, NAME, MEMO, FITID}
+
+    private static final Field[] FIELDS = Field.values();
+
+    private final Reader in;
+    private final StringBuilder tag = new StringBuilder(MAX_TAG_LENGTH);
+    private final StringBuilder text = new StringBuilder(64);
+    private final String[] values = new String[FIELDS.length];
+    private final Runnable onInvalid;
+    private boolean inTransaction;
+    private int pushedBack = -1;
+
+    private OfxStatementParser(Reader in, Runnable onInvalid) {
+        this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        this.onInvalid = onInvalid;
+    }
+
+    /**
+     * Legge le transazioni dal reader e le passa a {@code sink} una alla volta. I blocchi senza data o importo, o con
+     * valori non interpretabili, vengono saltati. Il reader non viene chiuso.
+     *
+     * @return numero di transazioni emesse, al massimo {@code maxRows}
+     */
+    public static int parse(Reader in, int maxRows, Consumer<Entry> sink) throws IOException {
+        return parse(in, maxRows, sink, () -> {
+        });
+    }
+
+    /** Come {@link #parse(Reader, int, Consumer)}, chiamando {@code onInvalid} per ogni blocco saltato. */
+    public static int parse(Reader in, int maxRows, Consumer<Entry> sink, Runnable onInvalid) throws IOException {
+        return new OfxStatementParser(in, onInvalid).run(maxRows, sink);
+    }
+
+    private int run(int maxRows, Consumer<Entry> sink) throws IOException {
+        int emitted = 0;
+        int c;
+        while (emitted < maxRows && (c = read()) != -1) {
+            if (c != '<') {
+                continue;
+            }
+            boolean closing = readTag();
+            if (closing) {
+                if (inTransaction && (tagIs("STMTTRN") || tagIs("BANKTRANLIST"))) {
+                    emitted += emit(sink);
+                }
+            } else if (tagIs("STMTTRN")) {
+                if (inTransaction) {
+                    emitted += emit(sink);
+                }
+                inTransaction = true;
+            } else if (inTransaction) {
+                Field field = field();
+                if (field != null && values[field.ordinal()] == null) {
+                    values[field.ordinal()] = readValue();
+                }
+            }
+        }
+        if (inTransaction && emitted < maxRows) {
+            emitted += emit(sink);
+        }
+        return emitted;
+    }
+
+    private int emit(Consumer<Entry> sink) {
+        inTransaction = false;
+        String dateStr = values[Field.DTPOSTED.ordinal()];
+        String amountStr = values[Field.TRNAMT.ordinal()];
+        try {
+            if (dateStr == null || amountStr == null) {
+                onInvalid.run();
+                return 0;
+            }
+            // OFX date format: YYYYMMDD[HHmmss[.xxx][TZD]]
+            LocalDate date = LocalDate.parse(dateStr.substring(0, 8), OFX_DATE);
+            BigDecimal amount = new BigDecimal(amountStr.replace(",", ".").trim());
+            sink.accept(new Entry(date, amount, values[Field.NAME.ordinal()], values[Field.MEMO.ordinal()],
+                    values[Field.FITID.ordinal()]));
+            return 1;
+        } catch (RuntimeException e) {
+            logger.warn("Blocco OFX ignorato: {}", e.getMessage());
+            onInvalid.run();
+            return 0;
+        } finally {
+            Arrays.fill(values, null);
+        }
+    }
+
+    /** Legge il nome del tag fino a {@code >}; restituisce true se è un tag di chiusura. */
+    private boolean readTag() throws IOException {
+        tag.setLength(0);
+        boolean closing = false;
+        boolean inName = true;
+        int c;
+        while ((c = read()) != -1 && c != '>') {
+            if (c == '<') {
+                // Tag non terminato: il '<' apre il tag successivo
+                pushedBack = c;
+                break;
+            }
+            if (c == '/' && tag.isEmpty() && !closing) {
+                closing = true;
+            } else if (Character.isWhitespace(c)) {
+                inName = false;
+            } else if (inName && tag.length() < MAX_TAG_LENGTH) {
+                tag.append((char) c);
+            } else {
+                inName = false;
+            }
+        }
+        return closing;
+    }
+
+    /** Valore di un tag foglia: testo fino al {@code <} successivo o a fine riga, senza spazi ai bordi. */
+    private String readValue() throws IOException {
+        text.setLength(0);
+        boolean hasContent = false;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                pushedBack = c;
+                break;
+            }
+            if (c == '\n' || c == '\r') {
+                if (hasContent) {
+                    break;
+                }
+                continue;
+            }
+            if (!hasContent && Character.isWhitespace(c)) {
+                continue;
+            }
+            hasContent = true;
+            text.append((char) c);
+        }
+        if (!hasContent) {
+            return null;
+        }
+        int end = text.length();
+        while (Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private Field field() {
+        for (Field field : FIELDS) {
+            if (tagIs(field.name())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private boolean tagIs(String name) {
+        if (tag.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toUpperCase(tag.charAt(i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return in.read();
+    }
+}
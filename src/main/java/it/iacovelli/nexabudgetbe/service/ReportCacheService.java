@@ -0,0 +1,67 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.config.CacheConfig;
+import it.iacovelli.nexabudgetbe.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Cache dei risultati dei report per utente. La chiave contiene utente, generazione dei dati
+ * ({@link UserDataGenerationService}), tipo di report, parametri, valuta dell'utente e data odierna: ogni scrittura
+ * su transazioni, conti o categorie cambia la generazione e rende irraggiungibili le voci precedenti, che scadono
+ * con il TTL della cache. La data nella chiave copre i report relativi a "oggi" (trend, proiezione, mese in corso).
+ * <p>
+ * Un report già calcolato costa la lettura della generazione (una riga per chiave primaria) e una lettura di cache.
+ */
+@Service
+public class ReportCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCacheService.class);
+
+    private final CacheManager cacheManager;
+    private final UserDataGenerationService generationService;
+
+    public ReportCacheService(CacheManager cacheManager, UserDataGenerationService generationService) {
+        this.cacheManager = cacheManager;
+        this.generationService = generationService;
+    }
+
+    public <T> T get(User user, String reportType, List<?> parameters, Class<T> type, Supplier<T> compute) {
+        Cache cache = cacheManager.getCache(CacheConfig.REPORTS_CACHE);
+        if (cache == null) {
+            return compute.get();
+        }
+        String key = key(user, reportType, parameters);
+        try {
+            T cached = cache.get(key, type);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Lettura della cache report fallita per {}: {}", reportType, e.getMessage());
+            return compute.get();
+        }
+        T result = compute.get();
+        try {
+            cache.put(key, result);
+        } catch (RuntimeException e) {
+            logger.warn("Scrittura della cache report fallita per {}: {}", reportType, e.getMessage());
+        }
+        return result;
+    }
+
+    private String key(User user, String reportType, List<?> parameters) {
+        String currency = user.getDefaultCurrency() != null ? user.getDefaultCurrency() : "EUR";
+        return user.getId() + ":" + generationService.current(user.getId()) + ":" + reportType + ":" + currency
+                + ":" + LocalDate.now() + ":" + parameters.stream().map(Objects::toString).collect(Collectors.joining(","));
+    }
+}
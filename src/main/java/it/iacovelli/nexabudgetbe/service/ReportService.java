@@ -3,7 +3,7 @@ package it.iacovelli.nexabudgetbe.service;
 import it.iacovelli.nexabudgetbe.dto.ReportDto;
 import it.iacovelli.nexabudgetbe.model.TransactionType;
 import it.iacovelli.nexabudgetbe.model.User;
-import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import it.iacovelli.nexabudgetbe.repository.CategoryRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,26 +12,55 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.*;
 
+import static it.iacovelli.nexabudgetbe.service.ConversionContext.money;
+
+/**
+ * Report dell'utente calcolati dal rollup mensile. I risultati passano da {@link ReportCacheService}: finché i dati
+ * dell'utente non cambiano, una nuova visualizzazione della dashboard non rilegge il database.
+ * <p>
+ * Ogni report legge una sola volta i totali raggruppati per (mese, categoria, valuta, tipo) del periodo più ampio
+ * che gli serve ({@link ReportData}); la conversione nella valuta dell'utente avviene in quella stessa passata, con un
+ * tasso per (valuta, mese), e tutte le forme dei report si ricavano in memoria. {@link #getReportBundle} calcola
+ * più report dalla stessa lettura.
+ */
 @Service
 public class ReportService {
 
-    private final TransactionRepository transactionRepository;
+    private final MonthlyRollupService monthlyRollupService;
+    private final CategoryRepository categoryRepository;
     private final CurrencyConversionService currencyConversionService;
-
-    public ReportService(TransactionRepository transactionRepository,
-                         CurrencyConversionService currencyConversionService) {
-        this.transactionRepository = transactionRepository;
+    private final ReportCacheService reportCacheService;
+
+    public ReportService(MonthlyRollupService monthlyRollupService,
+                         CategoryRepository categoryRepository,
+                         CurrencyConversionService currencyConversionService,
+                         ReportCacheService reportCacheService) {
+        this.monthlyRollupService = monthlyRollupService;
+        this.categoryRepository = categoryRepository;
         this.currencyConversionService = currencyConversionService;
+        this.reportCacheService = reportCacheService;
     }
 
     private String targetCurrency(User user) {
         return user.getDefaultCurrency() != null ? user.getDefaultCurrency() : "EUR";
     }
 
-    private BigDecimal convertToUserCurrency(BigDecimal amount, String sourceCurrency, String target) {
-        if (amount == null) return BigDecimal.ZERO;
-        String src = sourceCurrency != null && !sourceCurrency.isBlank() ? sourceCurrency : target;
-        return currencyConversionService.convert(amount, src, target);
+    private static int monthKey(int year, int month) {
+        return year * 12 + month;
+    }
+
+    private static int monthKey(LocalDate date) {
+        return monthKey(date.getYear(), date.getMonthValue());
+    }
+
+    private static LocalDate monthStart(int monthKey) {
+        int y = (monthKey - 1) / 12;
+        return LocalDate.of(y, monthKey - y * 12, 1);
+    }
+
+    private static LocalDate rateDate(int monthKey) {
+        int y = (monthKey - 1) / 12;
+        return CurrencyConversionService.monthRateDate(y, monthKey - y * 12);
     }
 
     private record NetTotals(BigDecimal expense, BigDecimal income) {
@@ -39,167 +68,264 @@ public class ReportService {
     }
 
     /**
-     * Aggrega il netto per-categoria in expense/income, stessa logica di getCategoryBreakdown.
-     * catRows: [catId, catName, currency, net]  (da findCategoryNetBreakdown)
-     * uncatRows: [currency, type, amount]        (da findUncategorizedTotalsByType)
+     * Netto convertito per categoria (OUT positivo, IN negativo) e, per le transazioni senza categoria,
+     * totali separati per tipo (no netting).
      */
-    private NetTotals aggregateNetTotals(List<Object[]> catRows, List<Object[]> uncatRows, String target) {
-        Map<String, BigDecimal> netByCat = new LinkedHashMap<>();
-        for (Object[] r : catRows) {
-            String catKey = r[0] != null ? r[0].toString() : "__null__";
-            String currency = r[2] != null ? r[2].toString() : target;
-            BigDecimal converted = convertToUserCurrency((BigDecimal) r[3], currency, target);
-            netByCat.merge(catKey, converted, BigDecimal::add);
+    private record CategoryNets(Map<UUID, BigDecimal> byCategory, Map<TransactionType, BigDecimal> uncategorized) {
+        NetTotals totals() {
+            BigDecimal expense = byCategory.values().stream()
+                    .filter(n -> n.compareTo(BigDecimal.ZERO) > 0)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .add(uncategorized.getOrDefault(TransactionType.OUT, BigDecimal.ZERO));
+            BigDecimal income = byCategory.values().stream()
+                    .filter(n -> n.compareTo(BigDecimal.ZERO) < 0)
+                    .map(BigDecimal::abs)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .add(uncategorized.getOrDefault(TransactionType.IN, BigDecimal.ZERO));
+            return new NetTotals(expense, income);
         }
-        BigDecimal expense = netByCat.values().stream()
-                .filter(n -> n.compareTo(BigDecimal.ZERO) > 0)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal income = netByCat.values().stream()
-                .filter(n -> n.compareTo(BigDecimal.ZERO) < 0)
-                .map(BigDecimal::abs)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        for (Object[] r : uncatRows) {
-            String currency = r[0] != null ? r[0].toString() : target;
-            TransactionType type = TransactionType.valueOf(r[1].toString());
-            BigDecimal converted = convertToUserCurrency((BigDecimal) r[2], currency, target);
-            if (type == TransactionType.OUT) expense = expense.add(converted);
-            else income = income.add(converted);
+    }
+
+    /** Totali di un mese nella valuta dell'utente, a precisione piena. */
+    private static final class MonthBucket {
+        final Map<UUID, BigDecimal> netByCategory = new LinkedHashMap<>();
+        final Map<TransactionType, BigDecimal> uncategorized = new EnumMap<>(TransactionType.class);
+        final Map<TransactionType, BigDecimal> gross = new EnumMap<>(TransactionType.class);
+        /** Netto (IN-OUT) per valuta, non convertito: serve al saldo di apertura, convertito a un'altra data. */
+        final Map<String, BigDecimal> nativeNetByCurrency = new HashMap<>();
+
+        BigDecimal gross(TransactionType type) {
+            return gross.getOrDefault(type, BigDecimal.ZERO);
+        }
+
+        NetTotals netTotals() {
+            return new CategoryNets(netByCategory, uncategorized).totals();
         }
-        return new NetTotals(expense, income);
     }
 
+    private static final MonthBucket EMPTY_MONTH = new MonthBucket();
+
     /**
-     * Costruisce una mappa year*12+month → MonthlyTrendItem usando la logica netta per-categoria.
-     * Usa le query findMonthlyCategoryNetBreakdown e findMonthlyUncategorizedTotalsByType.
+     * Totali di una finestra raggruppati per mese e già convertiti: una riga del rollup (mese, categoria, valuta, tipo)
+     * viene letta e convertita una sola volta, qualunque sia il numero di report che la usano.
      */
-    private Map<Integer, ReportDto.MonthlyTrendItem> buildMonthlyNetMap(User user, LocalDate from, LocalDate to, String target) {
-        List<Object[]> catRows = transactionRepository.findMonthlyCategoryNetBreakdown(user, from, to);
-        List<Object[]> uncatRows = transactionRepository.findMonthlyUncategorizedTotalsByType(user, from, to);
-
-        // catRows: [year, month, catId, currency, net]
-        Map<Integer, Map<String, BigDecimal>> netByCatByMonth = new TreeMap<>();
-        for (Object[] r : catRows) {
-            int y = ((Number) r[0]).intValue(), m = ((Number) r[1]).intValue();
-            int key = y * 12 + m;
-            String catKey = r[2] != null ? r[2].toString() : "__null__";
-            String currency = r[3] != null ? r[3].toString() : target;
-            BigDecimal converted = convertToUserCurrency((BigDecimal) r[4], currency, target);
-            netByCatByMonth.computeIfAbsent(key, k -> new LinkedHashMap<>())
-                    .merge(catKey, converted, BigDecimal::add);
+    private static final class ReportData {
+        final ConversionContext conversions;
+        final NavigableMap<Integer, MonthBucket> months = new TreeMap<>();
+        final Map<String, BigDecimal> openingNetByCurrency;
+
+        ReportData(ConversionContext conversions, Collection<MonthlyRollupService.MonthlyTotal> totals,
+                   Map<String, BigDecimal> openingNetByCurrency) {
+            this.conversions = conversions;
+            this.openingNetByCurrency = openingNetByCurrency;
+            String target = conversions.targetCurrency();
+            for (MonthlyRollupService.MonthlyTotal t : totals) {
+                int key = monthKey(t.year(), t.month());
+                String currency = t.currency() != null ? t.currency() : target;
+                BigDecimal converted = conversions.convert(t.amount(), currency, rateDate(key));
+                MonthBucket bucket = months.computeIfAbsent(key, k -> new MonthBucket());
+                bucket.gross.merge(t.type(), converted, BigDecimal::add);
+                bucket.nativeNetByCurrency.merge(currency,
+                        t.type() == TransactionType.IN ? t.amount() : t.amount().negate(), BigDecimal::add);
+                if (t.categoryId() != null) {
+                    bucket.netByCategory.merge(t.categoryId(),
+                            t.type() == TransactionType.OUT ? converted : converted.negate(), BigDecimal::add);
+                } else {
+                    bucket.uncategorized.merge(t.type(), converted, BigDecimal::add);
+                }
+            }
         }
 
-        // uncatRows: [year, month, currency, type, amount] — no netting, bucket separati
-        Map<Integer, List<Object[]>> uncatByMonth = new TreeMap<>();
-        for (Object[] r : uncatRows) {
-            int y = ((Number) r[0]).intValue(), m = ((Number) r[1]).intValue();
-            uncatByMonth.computeIfAbsent(y * 12 + m, k -> new ArrayList<>())
-                    .add(new Object[]{r[2], r[3], r[4]});
+        String target() {
+            return conversions.targetCurrency();
         }
 
-        Set<Integer> allKeys = new TreeSet<>(netByCatByMonth.keySet());
-        allKeys.addAll(uncatByMonth.keySet());
+        MonthBucket month(int key) {
+            return months.getOrDefault(key, EMPTY_MONTH);
+        }
 
-        Map<Integer, ReportDto.MonthlyTrendItem> result = new TreeMap<>();
-        for (int key : allKeys) {
-            int y = (key - 1) / 12, m = key - y * 12;
+        /** Netti per categoria sommati sui mesi {@code [fromKey, toKey]}. */
+        CategoryNets categoryNets(int fromKey, int toKey) {
+            Map<UUID, BigDecimal> byCategory = new LinkedHashMap<>();
+            Map<TransactionType, BigDecimal> uncategorized = new EnumMap<>(TransactionType.class);
+            for (MonthBucket bucket : months.subMap(fromKey, true, toKey, true).values()) {
+                bucket.netByCategory.forEach((id, net) -> byCategory.merge(id, net, BigDecimal::add));
+                bucket.uncategorized.forEach((type, amount) -> uncategorized.merge(type, amount, BigDecimal::add));
+            }
+            return new CategoryNets(byCategory, uncategorized);
+        }
 
-            Map<String, BigDecimal> netByCat = netByCatByMonth.getOrDefault(key, Map.of());
-            BigDecimal expense = netByCat.values().stream()
-                    .filter(n -> n.compareTo(BigDecimal.ZERO) > 0)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            BigDecimal income = netByCat.values().stream()
-                    .filter(n -> n.compareTo(BigDecimal.ZERO) < 0)
-                    .map(BigDecimal::abs)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-            for (Object[] r : uncatByMonth.getOrDefault(key, List.of())) {
-                String currency = r[0] != null ? r[0].toString() : target;
-                TransactionType type = TransactionType.valueOf(r[1].toString());
-                BigDecimal converted = convertToUserCurrency((BigDecimal) r[2], currency, target);
-                if (type == TransactionType.OUT) expense = expense.add(converted);
-                else income = income.add(converted);
+        /**
+         * Saldo prima del mese {@code key}: netto per valuta dei mesi precedenti alla finestra più quello dei mesi
+         * della finestra prima di {@code key}, convertito al tasso del giorno precedente.
+         */
+        BigDecimal openingBalance(int key) {
+            Map<String, BigDecimal> nativeNet = new HashMap<>(openingNetByCurrency);
+            for (MonthBucket bucket : months.headMap(key, false).values()) {
+                bucket.nativeNetByCurrency.forEach((currency, net) -> nativeNet.merge(currency, net, BigDecimal::add));
+            }
+            LocalDate openingRateDate = monthStart(key).minusDays(1);
+            BigDecimal opening = BigDecimal.ZERO;
+            for (Map.Entry<String, BigDecimal> e : nativeNet.entrySet()) {
+                opening = opening.add(conversions.convert(e.getValue(), e.getKey(), openingRateDate));
             }
+            return opening;
+        }
+    }
 
-            result.put(key, ReportDto.MonthlyTrendItem.builder()
-                    .year(y).month(m)
-                    .income(income).expense(expense).net(income.subtract(expense))
-                    .build());
+    /**
+     * Stato condiviso dai report di una stessa richiesta (es. la dashboard): tassi già letti e nomi delle categorie
+     * visibili all'utente, caricati una volta sola. Thread-safe.
+     */
+    public record RequestContext(ConversionContext conversions, Map<UUID, String> categoryNames) {
+    }
+
+    @Transactional(readOnly = true)
+    public RequestContext newRequestContext(User user) {
+        Map<UUID, String> names = new HashMap<>();
+        categoryRepository.findByUserOrDefault(user).forEach(c -> names.put(c.getId(), c.getName()));
+        return new RequestContext(currencyConversionService.newContext(targetCurrency(user)), Map.copyOf(names));
+    }
+
+    /** Legge la finestra {@code [from, to]}; con {@code withOpening} anche il saldo precedente, nella stessa query. */
+    private ReportData load(User user, LocalDate from, LocalDate to, boolean withOpening, RequestContext context) {
+        ConversionContext conversions = context != null
+                ? context.conversions()
+                : currencyConversionService.newContext(targetCurrency(user));
+        if (withOpening) {
+            MonthlyRollupService.ReportWindow window = monthlyRollupService.findReportWindow(user, from, to);
+            return new ReportData(conversions, window.totals(), window.openingNetByCurrency());
+        }
+        return new ReportData(conversions, monthlyRollupService.findMonthlyTotals(user, from, to), Map.of());
+    }
+
+    private static void requireOrderedRange(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("endDate must be on or after startDate");
         }
-        return result;
     }
 
+    // ─── Report ─────────────────────────────────────────────────────────────────
+
     @Transactional(readOnly = true)
     public ReportDto.MonthlyTrendResponse getMonthlyTrend(User user, int months) {
-        String target = targetCurrency(user);
-        LocalDate from = LocalDate.now().minusMonths(months).withDayOfMonth(1);
-        LocalDate to = LocalDate.now();
-        Map<Integer, ReportDto.MonthlyTrendItem> map = buildMonthlyNetMap(user, from, to, target);
+        return getMonthlyTrend(user, months, null);
+    }
+
+    @Transactional(readOnly = true)
+    public ReportDto.MonthlyTrendResponse getMonthlyTrend(User user, int months, RequestContext context) {
+        return getMonthlyTrend(user, months, context, LocalDate.now());
+    }
+
+    /** Trend degli ultimi {@code months} mesi fino a {@code today} compreso (la data di riferimento della dashboard). */
+    @Transactional(readOnly = true)
+    public ReportDto.MonthlyTrendResponse getMonthlyTrend(User user, int months, RequestContext context, LocalDate today) {
+        return reportCacheService.get(user, "monthly-trend", List.of(months, today), ReportDto.MonthlyTrendResponse.class,
+                () -> computeMonthlyTrend(user, months, context, today));
+    }
+
+    private ReportDto.MonthlyTrendResponse computeMonthlyTrend(User user, int months, RequestContext context, LocalDate today) {
+        LocalDate from = today.minusMonths(months).withDayOfMonth(1);
+        LocalDate to = today;
+        ReportData data = load(user, from, to, false, context);
         return ReportDto.MonthlyTrendResponse.builder()
-                .currency(target)
-                .items(new ArrayList<>(map.values()))
+                .currency(data.target())
+                .items(new ArrayList<>(buildMonthlyNetMap(data, monthKey(from), monthKey(to)).values()))
+                .build();
+    }
+
+    /** Mappa year*12+month → MonthlyTrendItem dei mesi con movimenti, con la logica netta per-categoria. */
+    private static Map<Integer, ReportDto.MonthlyTrendItem> buildMonthlyNetMap(ReportData data, int fromKey, int toKey) {
+        Map<Integer, ReportDto.MonthlyTrendItem> result = new TreeMap<>();
+        data.months.subMap(fromKey, true, toKey, true).forEach((key, bucket) ->
+                result.put(key, trendItem(key, bucket.netTotals())));
+        return result;
+    }
+
+    private static ReportDto.MonthlyTrendItem trendItem(int key, NetTotals totals) {
+        LocalDate month = monthStart(key);
+        return ReportDto.MonthlyTrendItem.builder()
+                .year(month.getYear()).month(month.getMonthValue())
+                .income(money(totals.income())).expense(money(totals.expense())).net(money(totals.net()))
                 .build();
     }
 
     @Transactional(readOnly = true)
     public ReportDto.MonthlyTrendResponse getMonthlyTrendByRange(User user, LocalDate startDate, LocalDate endDate) {
-        if (endDate.isBefore(startDate)) {
-            throw new IllegalArgumentException("endDate must be on or after startDate");
-        }
-        String target = targetCurrency(user);
+        return reportCacheService.get(user, "monthly-trend-range", List.of(startDate, endDate), ReportDto.MonthlyTrendResponse.class,
+                () -> computeMonthlyTrendByRange(user, startDate, endDate));
+    }
+
+    private ReportDto.MonthlyTrendResponse computeMonthlyTrendByRange(User user, LocalDate startDate, LocalDate endDate) {
+        requireOrderedRange(startDate, endDate);
         LocalDate rangeStart = startDate.withDayOfMonth(1);
         LocalDate rangeEnd = endDate.withDayOfMonth(endDate.lengthOfMonth());
+        return monthlyTrendByRange(load(user, rangeStart, rangeEnd, false, null), rangeStart, rangeEnd);
+    }
 
-        Map<Integer, ReportDto.MonthlyTrendItem> map = buildMonthlyNetMap(user, rangeStart, rangeEnd, target);
-
+    private static ReportDto.MonthlyTrendResponse monthlyTrendByRange(ReportData data, LocalDate rangeStart, LocalDate rangeEnd) {
         // Riempie i mesi senza transazioni con zeri
         List<ReportDto.MonthlyTrendItem> items = new ArrayList<>();
-        LocalDate cursor = rangeStart;
-        while (!cursor.isAfter(rangeEnd)) {
-            int key = cursor.getYear() * 12 + cursor.getMonthValue();
-            items.add(map.getOrDefault(key, ReportDto.MonthlyTrendItem.builder()
-                    .year(cursor.getYear()).month(cursor.getMonthValue())
-                    .income(BigDecimal.ZERO).expense(BigDecimal.ZERO).net(BigDecimal.ZERO)
-                    .build()));
-            cursor = cursor.plusMonths(1);
+        for (int key = monthKey(rangeStart); key <= monthKey(rangeEnd); key++) {
+            items.add(trendItem(key, data.month(key).netTotals()));
         }
-
         return ReportDto.MonthlyTrendResponse.builder()
-                .currency(target)
+                .currency(data.target())
                 .items(items)
                 .build();
     }
 
     @Transactional(readOnly = true)
     public ReportDto.CategoryBreakdownResponse getCategoryBreakdown(User user, LocalDate startDate, LocalDate endDate) {
-        if (endDate.isBefore(startDate)) {
-            throw new IllegalArgumentException("endDate must be on or after startDate");
+        return getCategoryBreakdown(user, startDate, endDate, null);
+    }
+
+    @Transactional(readOnly = true)
+    public ReportDto.CategoryBreakdownResponse getCategoryBreakdown(User user, LocalDate startDate, LocalDate endDate,
+                                                                    RequestContext context) {
+        return reportCacheService.get(user, "category-breakdown", List.of(startDate, endDate), ReportDto.CategoryBreakdownResponse.class,
+                () -> computeCategoryBreakdown(user, startDate, endDate, context));
+    }
+
+    private ReportDto.CategoryBreakdownResponse computeCategoryBreakdown(User user, LocalDate startDate, LocalDate endDate,
+                                                                         RequestContext context) {
+        requireOrderedRange(startDate, endDate);
+        return categoryBreakdown(load(user, startDate, endDate, false, context), startDate, endDate,
+                context != null ? context.categoryNames() : Map.of());
+    }
+
+    /**
+     * Breakdown dei mesi di {@code [startDate, endDate]}: la finestra di {@code data} deve iniziare e finire con il periodo.
+     * I nomi non presenti in {@code knownNames} vengono letti dal database.
+     */
+    private ReportDto.CategoryBreakdownResponse categoryBreakdown(ReportData data, LocalDate startDate, LocalDate endDate,
+                                                                  Map<UUID, String> knownNames) {
+        CategoryNets nets = data.categoryNets(monthKey(startDate), monthKey(endDate));
+        Map<UUID, String> categoryNames = new HashMap<>();
+        Set<UUID> missing = new HashSet<>();
+        for (UUID id : nets.byCategory().keySet()) {
+            String name = knownNames.get(id);
+            if (name != null) {
+                categoryNames.put(id, name);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            categoryRepository.findAllById(missing).forEach(c -> categoryNames.put(c.getId(), c.getName()));
         }
-        String target = targetCurrency(user);
-        List<Object[]> rows = transactionRepository.findCategoryNetBreakdown(user, startDate, endDate);
 
-        // Each row: [categoryId, categoryName, currency, net]
-        // Aggregate by category (sum converted nets across currencies).
         record CatKey(UUID id, String name, TransactionType forcedType) {}
         Map<CatKey, BigDecimal> aggregatedNet = new LinkedHashMap<>();
-        for (Object[] r : rows) {
-            UUID catId = r[0] != null ? UUID.fromString(r[0].toString()) : null;
-            String catName = r[1] != null ? r[1].toString() : "n/a";
-            String currency = r[2] != null ? r[2].toString() : target;
-            BigDecimal net = (BigDecimal) r[3];
-            BigDecimal converted = convertToUserCurrency(net, currency, target);
-            aggregatedNet.merge(new CatKey(catId, catName, null), converted, BigDecimal::add);
-        }
+        nets.byCategory().forEach((catId, net) ->
+                aggregatedNet.merge(new CatKey(catId, categoryNames.getOrDefault(catId, "n/a"), null), net, BigDecimal::add));
 
         // Senza categoria: due bucket separati per IN e OUT (no netting)
-        for (Object[] r : transactionRepository.findUncategorizedTotalsByType(user, startDate, endDate)) {
-            String currency = r[0] != null ? r[0].toString() : target;
-            TransactionType type = TransactionType.valueOf(r[1].toString());
-            BigDecimal amount = (BigDecimal) r[2];
-            BigDecimal converted = convertToUserCurrency(amount, currency, target);
+        nets.uncategorized().forEach((type, converted) -> {
             // Per coerenza con il netting: OUT positivo, IN negativo
             BigDecimal signed = type == TransactionType.OUT ? converted : converted.negate();
             aggregatedNet.merge(new CatKey(null, "n/a", type), signed, BigDecimal::add);
-        }
+        });
 
         BigDecimal outGroupTotal = aggregatedNet.values().stream()
                 .filter(n -> n.compareTo(BigDecimal.ZERO) > 0)
@@ -224,139 +350,135 @@ public class ReportService {
                             : net.abs().divide(groupTotal, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100)).doubleValue();
                     return ReportDto.CategoryBreakdownItem.builder()
                             .categoryId(e.getKey().id()).categoryName(e.getKey().name())
-                            .net(net.abs()).percentage(percentage).inferredType(inferredType)
+                            .net(money(net.abs())).percentage(percentage).inferredType(inferredType)
                             .build();
                 })
                 .toList();
 
         return ReportDto.CategoryBreakdownResponse.builder()
                 .startDate(startDate).endDate(endDate)
-                .currency(target)
-                .totalExpense(outGroupTotal)
-                .totalIncome(inGroupTotal)
-                .grandTotal(outGroupTotal)  // retro-compatibilità: valorizzato come totalExpense
+                .currency(data.target())
+                .totalExpense(money(outGroupTotal))
+                .totalIncome(money(inGroupTotal))
+                .grandTotal(money(outGroupTotal))  // retro-compatibilità: valorizzato come totalExpense
                 .categories(categories)
                 .build();
     }
 
     @Transactional(readOnly = true)
     public ReportDto.MonthComparisonResponse getMonthComparison(User user, int year, int month) {
-        String target = targetCurrency(user);
+        return reportCacheService.get(user, "month-comparison", List.of(year, month), ReportDto.MonthComparisonResponse.class,
+                () -> computeMonthComparison(user, year, month));
+    }
+
+    private ReportDto.MonthComparisonResponse computeMonthComparison(User user, int year, int month) {
         LocalDate currentStart = LocalDate.of(year, month, 1);
         LocalDate currentEnd = currentStart.withDayOfMonth(currentStart.lengthOfMonth());
-        LocalDate prevStart = currentStart.minusMonths(1);
-        LocalDate prevEnd = prevStart.withDayOfMonth(prevStart.lengthOfMonth());
-
-        NetTotals current = aggregateNetTotals(
-                transactionRepository.findCategoryNetBreakdown(user, currentStart, currentEnd),
-                transactionRepository.findUncategorizedTotalsByType(user, currentStart, currentEnd),
-                target);
-        NetTotals previous = aggregateNetTotals(
-                transactionRepository.findCategoryNetBreakdown(user, prevStart, prevEnd),
-                transactionRepository.findUncategorizedTotalsByType(user, prevStart, prevEnd),
-                target);
-
-        ReportDto.MonthComparisonItem currentItem = ReportDto.MonthComparisonItem.builder()
-                .year(year).month(month)
-                .income(current.income()).expense(current.expense()).net(current.net())
-                .build();
-        ReportDto.MonthComparisonItem previousItem = ReportDto.MonthComparisonItem.builder()
-                .year(prevStart.getYear()).month(prevStart.getMonthValue())
-                .income(previous.income()).expense(previous.expense()).net(previous.net())
-                .build();
+        return monthComparison(load(user, currentStart.minusMonths(1), currentEnd, false, null), monthKey(year, month));
+    }
 
+    private static ReportDto.MonthComparisonResponse monthComparison(ReportData data, int currentKey) {
+        NetTotals current = data.month(currentKey).netTotals();
+        NetTotals previous = data.month(currentKey - 1).netTotals();
         return ReportDto.MonthComparisonResponse.builder()
-                .currency(target)
-                .currentMonth(currentItem).previousMonth(previousItem)
-                .incomeChange(current.income().subtract(previous.income()))
-                .expenseChange(current.expense().subtract(previous.expense()))
+                .currency(data.target())
+                .currentMonth(comparisonItem(currentKey, current))
+                .previousMonth(comparisonItem(currentKey - 1, previous))
+                .incomeChange(money(current.income().subtract(previous.income())))
+                .expenseChange(money(current.expense().subtract(previous.expense())))
                 .build();
     }
 
-    private BigDecimal sumConverted(User user, TransactionType type, LocalDate start, LocalDate end, String target) {
-        List<Object[]> rows = transactionRepository.sumByUserAndTypeAndDateRangePerCurrency(user, type, start, end);
-        BigDecimal sum = BigDecimal.ZERO;
-        for (Object[] row : rows) {
-            String currency = row[0] != null ? row[0].toString() : target;
-            BigDecimal amount = (BigDecimal) row[1];
-            sum = sum.add(convertToUserCurrency(amount, currency, target));
-        }
-        return sum;
+    private static ReportDto.MonthComparisonItem comparisonItem(int key, NetTotals totals) {
+        LocalDate month = monthStart(key);
+        return ReportDto.MonthComparisonItem.builder()
+                .year(month.getYear()).month(month.getMonthValue())
+                .income(money(totals.income())).expense(money(totals.expense())).net(money(totals.net()))
+                .build();
     }
 
     @Transactional(readOnly = true)
     public ReportDto.BalanceTrendResponse getBalanceTrend(User user, LocalDate startDate, LocalDate endDate) {
-        if (endDate.isBefore(startDate)) {
-            throw new IllegalArgumentException("endDate must be on or after startDate");
-        }
-        String target = targetCurrency(user);
+        return getBalanceTrend(user, startDate, endDate, null);
+    }
+
+    @Transactional(readOnly = true)
+    public ReportDto.BalanceTrendResponse getBalanceTrend(User user, LocalDate startDate, LocalDate endDate,
+                                                          RequestContext context) {
+        return reportCacheService.get(user, "balance-trend", List.of(startDate, endDate), ReportDto.BalanceTrendResponse.class,
+                () -> computeBalanceTrend(user, startDate, endDate, context));
+    }
 
+    private ReportDto.BalanceTrendResponse computeBalanceTrend(User user, LocalDate startDate, LocalDate endDate,
+                                                               RequestContext context) {
+        requireOrderedRange(startDate, endDate);
         LocalDate rangeStart = startDate.withDayOfMonth(1);
         LocalDate rangeEnd = endDate.withDayOfMonth(endDate.lengthOfMonth());
+        return balanceTrend(load(user, rangeStart, rangeEnd, true, context), rangeStart, rangeEnd);
+    }
 
-        // Opening balance: sum (IN-OUT) before rangeStart, per currency, then convert.
-        BigDecimal opening = BigDecimal.ZERO;
-        for (Object[] row : transactionRepository.sumNetByUserBeforePerCurrency(user, rangeStart)) {
-            String currency = row[0] != null ? row[0].toString() : target;
-            BigDecimal amount = (BigDecimal) row[1];
-            opening = opening.add(convertToUserCurrency(amount, currency, target));
-        }
-
-        List<Object[]> rows = transactionRepository.findMonthlyNetTotals(user, rangeStart, rangeEnd);
-        // Each row: [year, month, currency, net]
-        Map<String, BigDecimal> netByMonth = new LinkedHashMap<>();
-        for (Object[] row : rows) {
-            int y = ((Number) row[0]).intValue();
-            int m = ((Number) row[1]).intValue();
-            String currency = row[2] != null ? row[2].toString() : target;
-            BigDecimal net = (BigDecimal) row[3];
-            BigDecimal converted = convertToUserCurrency(net, currency, target);
-            netByMonth.merge(y + "-" + m, converted, BigDecimal::add);
-        }
+    private static ReportDto.BalanceTrendResponse balanceTrend(ReportData data, LocalDate rangeStart, LocalDate rangeEnd) {
+        // Saldo di apertura: netto (IN-OUT) per valuta prima di rangeStart, convertito al giorno precedente
+        BigDecimal opening = data.openingBalance(monthKey(rangeStart));
 
         List<ReportDto.BalanceTrendItem> items = new ArrayList<>();
         BigDecimal running = opening;
-        LocalDate cursor = rangeStart;
-        while (!cursor.isAfter(rangeEnd)) {
-            int y = cursor.getYear();
-            int m = cursor.getMonthValue();
-            BigDecimal net = netByMonth.getOrDefault(y + "-" + m, BigDecimal.ZERO);
+        for (int key = monthKey(rangeStart); key <= monthKey(rangeEnd); key++) {
+            MonthBucket bucket = data.month(key);
+            BigDecimal net = bucket.gross(TransactionType.IN).subtract(bucket.gross(TransactionType.OUT));
             running = running.add(net);
+            LocalDate month = monthStart(key);
             items.add(ReportDto.BalanceTrendItem.builder()
-                    .year(y).month(m)
-                    .monthlyNet(net).closingBalance(running)
+                    .year(month.getYear()).month(month.getMonthValue())
+                    .monthlyNet(money(net)).closingBalance(money(running))
                     .build());
-            cursor = cursor.plusMonths(1);
         }
 
         return ReportDto.BalanceTrendResponse.builder()
                 .startDate(rangeStart).endDate(rangeEnd)
-                .currency(target)
-                .openingBalance(opening).items(items)
+                .currency(data.target())
+                .openingBalance(money(opening)).items(items)
                 .build();
     }
 
     @Transactional(readOnly = true)
     public ReportDto.MonthlyProjection getMonthlyProjection(User user) {
-        String target = targetCurrency(user);
-        LocalDate today = LocalDate.now();
-        LocalDate monthStart = today.withDayOfMonth(1);
+        return getMonthlyProjection(user, null);
+    }
+
+    @Transactional(readOnly = true)
+    public ReportDto.MonthlyProjection getMonthlyProjection(User user, RequestContext context) {
+        return getMonthlyProjection(user, context, LocalDate.now());
+    }
+
+    /** Proiezione del mese di {@code today}, con i giorni trascorsi contati fino a quella data. */
+    @Transactional(readOnly = true)
+    public ReportDto.MonthlyProjection getMonthlyProjection(User user, RequestContext context, LocalDate today) {
+        return reportCacheService.get(user, "monthly-projection", List.of(today), ReportDto.MonthlyProjection.class,
+                () -> computeMonthlyProjection(user, context, today));
+    }
+
+    private ReportDto.MonthlyProjection computeMonthlyProjection(User user, RequestContext context, LocalDate today) {
+        // Una sola lettura: i 3 mesi di storico dal rollup, il mese corrente (parziale) dalle transazioni
+        return monthlyProjection(load(user, today.withDayOfMonth(1).minusMonths(3), today, false, context), today);
+    }
+
+    private static ReportDto.MonthlyProjection monthlyProjection(ReportData data, LocalDate today) {
         int daysElapsed = today.getDayOfMonth();
         int daysInMonth = today.lengthOfMonth();
+        int currentKey = monthKey(today);
 
-        BigDecimal currentExpense = sumConverted(user, TransactionType.OUT, monthStart, today, target);
-        BigDecimal currentIncome = sumConverted(user, TransactionType.IN, monthStart, today, target);
+        BigDecimal currentExpense = data.month(currentKey).gross(TransactionType.OUT);
+        BigDecimal currentIncome = data.month(currentKey).gross(TransactionType.IN);
 
         BigDecimal totalHistoricExpense = BigDecimal.ZERO;
         BigDecimal totalHistoricIncome = BigDecimal.ZERO;
         int monthsWithData = 0;
 
         for (int i = 1; i <= 3; i++) {
-            LocalDate refMonthStart = monthStart.minusMonths(i);
-            LocalDate refMonthEnd = refMonthStart.withDayOfMonth(refMonthStart.lengthOfMonth());
-
-            BigDecimal monthExpense = sumConverted(user, TransactionType.OUT, refMonthStart, refMonthEnd, target);
-            BigDecimal monthIncome = sumConverted(user, TransactionType.IN, refMonthStart, refMonthEnd, target);
+            MonthBucket ref = data.month(currentKey - i);
+            BigDecimal monthExpense = ref.gross(TransactionType.OUT);
+            BigDecimal monthIncome = ref.gross(TransactionType.IN);
 
             if (monthExpense.compareTo(BigDecimal.ZERO) > 0 || monthIncome.compareTo(BigDecimal.ZERO) > 0) {
                 totalHistoricExpense = totalHistoricExpense.add(monthExpense);
@@ -383,10 +505,46 @@ public class ReportService {
 
         return ReportDto.MonthlyProjection.builder()
                 .year(today.getYear()).month(today.getMonthValue())
-                .currency(target)
-                .currentMonthExpense(currentExpense).currentMonthIncome(currentIncome)
+                .currency(data.target())
+                .currentMonthExpense(money(currentExpense)).currentMonthIncome(money(currentIncome))
                 .projectedMonthlyExpense(projectedExpense).projectedMonthlyIncome(projectedIncome)
                 .projectionDate(today).daysElapsed(daysElapsed).daysInMonth(daysInMonth)
                 .build();
     }
+
+    /**
+     * Trend, breakdown per categoria, confronto dell'ultimo mese col precedente, andamento del saldo e proiezione di
+     * {@code [startDate, endDate]} da una sola lettura della finestra che li comprende tutti. Il breakdown di un
+     * periodo che non inizia e finisce a cavallo di mese legge a parte i mesi parziali; se il periodo comprende il
+     * mese corrente, la proiezione lo considera per intero (come trend e saldo).
+     */
+    @Transactional(readOnly = true)
+    public ReportDto.ReportBundle getReportBundle(User user, LocalDate startDate, LocalDate endDate) {
+        return reportCacheService.get(user, "bundle", List.of(startDate, endDate), ReportDto.ReportBundle.class,
+                () -> computeReportBundle(user, startDate, endDate));
+    }
+
+    private ReportDto.ReportBundle computeReportBundle(User user, LocalDate startDate, LocalDate endDate) {
+        requireOrderedRange(startDate, endDate);
+        LocalDate today = LocalDate.now();
+        LocalDate rangeStart = startDate.withDayOfMonth(1);
+        LocalDate rangeEnd = endDate.withDayOfMonth(endDate.lengthOfMonth());
+        LocalDate projectionStart = today.withDayOfMonth(1).minusMonths(3);
+        LocalDate comparisonStart = rangeEnd.withDayOfMonth(1).minusMonths(1);
+
+        LocalDate windowStart = Collections.min(List.of(rangeStart, projectionStart, comparisonStart));
+        LocalDate windowEnd = rangeEnd.isAfter(today) ? rangeEnd : today;
+        ReportData data = load(user, windowStart, windowEnd, true, null);
+
+        boolean wholeMonths = startDate.equals(rangeStart) && endDate.equals(rangeEnd);
+        return ReportDto.ReportBundle.builder()
+                .monthlyTrend(monthlyTrendByRange(data, rangeStart, rangeEnd))
+                .categoryBreakdown(wholeMonths
+                        ? categoryBreakdown(data, startDate, endDate, Map.of())
+                        : computeCategoryBreakdown(user, startDate, endDate, null))
+                .monthComparison(monthComparison(data, monthKey(endDate)))
+                .balanceTrend(balanceTrend(data, rangeStart, rangeEnd))
+                .projection(monthlyProjection(data, today))
+                .build();
+    }
 }
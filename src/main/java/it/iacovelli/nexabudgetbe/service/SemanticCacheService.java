@@ -1,54 +1,103 @@
 package it.iacovelli.nexabudgetbe.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import it.iacovelli.nexabudgetbe.service.semantic.EmbeddingEncoding;
+import it.iacovelli.nexabudgetbe.service.semantic.SemanticCacheEntryCodec;
+import it.iacovelli.nexabudgetbe.service.semantic.UserVectorIndex;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Cache semantica descrizione -> categoria. Le ricerche girano su un indice in memoria per utente
+ * ({@link UserVectorIndex}), caricato da Mongo alla prima ricerca; il vector store resta la copia durevole, scritta
+ * a ogni salvataggio. L'embedding della descrizione passa dalla cache per hash del testo dell'{@link EmbeddingModel},
+ * quindi la ricerca e il salvataggio successivo della stessa descrizione costano una sola chiamata remota.
+ * Gli indici tengono gli embedding nella forma di {@link EmbeddingEncoding} (dimensioni ridotte, int8).
+ * Le voci scritte da altre istanze diventano visibili al ricaricamento dell'indice, entro il TTL.
+ */
 @Service
 public class SemanticCacheService {
 
     private static final Logger log = LoggerFactory.getLogger(SemanticCacheService.class);
 
+    // Soglia di similarità: valori > 0.82 considerati semanticamente equivalenti. È sulla scala dello score di
+    // Atlas per la metrica coseno, (1 + coseno) / 2, usata quando la ricerca era delegata al vector store
+    private static final double SIMILARITY_THRESHOLD = 0.82;
+
     private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+    private final String collectionName;
+    private final String embeddingPath;
+    private final int hnswThreshold;
+    private final EmbeddingEncoding encoding;
+    private final Cache<UUID, UserVectorIndex> indexes;
 
-    // Soglia di similarità: valori > 0.82 considerati semanticamente equivalenti
-    private static final double SIMILARITY_THRESHOLD = 0.82;
+    /** Voce della cache: la descrizione di un utente e la sua categoria. */
+    public record Entry(UUID userId, String description, String category) {
+    }
 
-    public SemanticCacheService(VectorStore vectorStore) {
+    public SemanticCacheService(VectorStore vectorStore,
+                                EmbeddingModel embeddingModel,
+                                @Value("${spring.ai.vectorstore.mongodb.collection-name:vector_store}") String collectionName,
+                                @Value("${spring.ai.vectorstore.mongodb.path-name:embedding}") String embeddingPath,
+                                @Value("${nexabudget.ai.semantic-cache.hnsw-threshold:2000}") int hnswThreshold,
+                                @Value("${nexabudget.ai.semantic-cache.dimensions:0}") int dimensions,
+                                @Value("${nexabudget.ai.semantic-cache.quantization:FLOAT32}") EmbeddingEncoding.Quantization quantization,
+                                @Value("${nexabudget.ai.semantic-cache.index.max-mb:256}") long indexMaxMb,
+                                @Value("${nexabudget.ai.semantic-cache.index.ttl-minutes:360}") long indexTtlMinutes) {
         this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+        this.collectionName = collectionName;
+        this.embeddingPath = embeddingPath;
+        this.hnswThreshold = hnswThreshold;
+        this.encoding = new EmbeddingEncoding(dimensions, quantization);
+        Duration ttl = Duration.ofMinutes(indexTtlMinutes);
+        // La scadenza parte dal caricamento e non si sposta con i salvataggi locali (che ri-pesano la voce):
+        // è il limite al ritardo con cui si vedono le voci scritte dalle altre istanze
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, indexMaxMb) * 1024)
+                .weigher((UUID userId, UserVectorIndex index) -> index.weightKb())
+                .expireAfter(Expiry.creating((UUID userId, UserVectorIndex index) -> ttl))
+                .build();
     }
 
     public Optional<String> findSimilar(String description, UUID userId) {
         try {
-            String filter = "userId == '%s'".formatted(userId.toString());
-
-            List<Document> results = vectorStore.similaritySearch(
-                    SearchRequest.builder()
-                            .query(description)
-                            .similarityThreshold(SIMILARITY_THRESHOLD)
-                            .topK(1)
-                            .filterExpression(filter)
-                            .build()
-            );
-
-            if (results.isEmpty()) {
+            UserVectorIndex index = indexes.get(userId, this::load);
+            if (index.size() == 0) {
                 log.debug("Cache miss per: '{}'", description);
                 return Optional.empty();
             }
 
-            Object categoryMeta = results.getFirst().getMetadata().get("category");
-            if (categoryMeta == null) return Optional.empty();
+            Optional<String> category = index.nearest(embeddingModel.embed(description))
+                    .filter(neighbor -> (1 + neighbor.cosine()) / 2 >= SIMILARITY_THRESHOLD)
+                    .map(neighbor -> neighbor.category());
+            if (category.isEmpty()) {
+                log.debug("Cache miss per: '{}'", description);
+                return Optional.empty();
+            }
 
-            log.debug("Cache hit per: '{}' → '{}'", description, categoryMeta);
-            return Optional.of(categoryMeta.toString());
+            log.debug("Cache hit per: '{}' → '{}'", description, category.get());
+            return category;
 
         } catch (Exception e) {
             log.warn("Errore ricerca cache semantica: {}", e.getMessage());
@@ -57,18 +106,77 @@ public class SemanticCacheService {
     }
 
     public void saveToCache(String description, String categoryName, UUID userId) {
+        saveAll(List.of(new Entry(userId, description, categoryName)));
+    }
+
+    /**
+     * Salva un blocco di voci: embedding delle descrizioni in una sola richiesta, un solo inserimento nel vector store
+     * (che ritrova gli stessi embedding nella cache del modello) e poi gli indici in memoria degli utenti.
+     *
+     * @return voci salvate: tutte, o nessuna se il vector store fallisce
+     */
+    public int saveAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
         try {
-            Document document = Document.builder()
-                    .text(description)
-                    .metadata(Map.of(
-                            "category", categoryName,
-                            "userId", userId.toString()
-                    ))
-                    .build();
-            vectorStore.add(List.of(document));
-            log.debug("Cache salvata: '{}' → '{}' (user={})", description, categoryName, userId);
+            // Caricati prima della scrittura su Mongo, altrimenti le nuove voci finirebbero due volte negli indici
+            Map<UUID, UserVectorIndex> userIndexes = new HashMap<>();
+            for (Entry entry : entries) {
+                userIndexes.computeIfAbsent(entry.userId(), userId -> indexes.get(userId, this::load));
+            }
+            List<float[]> embeddings = embeddingModel.embed(entries.stream().map(Entry::description).toList());
+            List<Document> documents = entries.stream()
+                    .map(entry -> Document.builder()
+                            .text(entry.description())
+                            .metadata(Map.of(
+                                    "category", entry.category(),
+                                    "userId", entry.userId().toString()
+                            ))
+                            .build())
+                    .toList();
+            vectorStore.add(documents);
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                userIndexes.get(entry.userId()).add(entry.description(), embeddings.get(i), entry.category());
+            }
+            userIndexes.forEach((userId, index) -> indexes.asMap().replace(userId, index, index));
+            log.debug("Cache salvata: {} voci per {} utenti", entries.size(), userIndexes.size());
+            return entries.size();
         } catch (Exception e) {
             log.warn("Errore salvataggio cache semantica: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Legge da Mongo embedding e categoria delle voci dell'utente. Con un vector store senza client Mongo (il profilo
+     * di load test, i test) l'indice parte vuoto e si riempie con i salvataggi.
+     */
+    private UserVectorIndex load(UUID userId) {
+        UserVectorIndex index = new UserVectorIndex(hnswThreshold, encoding);
+        Optional<Object> client = vectorStore.getNativeClient();
+        if (!(client.orElse(null) instanceof MongoTemplate mongo)) {
+            return index;
+        }
+        long start = System.nanoTime();
+        MongoCollection<org.bson.Document> collection = mongo.getCollection(collectionName);
+        MongoCollection<SemanticCacheEntryCodec.Entry> entries = collection
+                .withCodecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(new SemanticCacheEntryCodec(embeddingPath)),
+                        collection.getCodecRegistry()))
+                .withDocumentClass(SemanticCacheEntryCodec.Entry.class);
+        for (SemanticCacheEntryCodec.Entry entry : entries
+                .find(Filters.eq("metadata.userId", userId.toString()))
+                .projection(Projections.include(
+                        SemanticCacheEntryCodec.CONTENT_FIELD, "metadata.category", embeddingPath))) {
+            if (entry.category() != null && entry.embedding() != null) {
+                // Le voci ripetute della stessa descrizione si riducono a una, con la categoria dell'ultima letta
+                index.add(entry.description(), entry.embedding(), entry.category());
+            }
         }
+        log.debug("Indice cache semantica caricato: {} voci in {} ms (user={})",
+                index.size(), (System.nanoTime() - start) / 1_000_000, userId);
+        return index;
     }
 }
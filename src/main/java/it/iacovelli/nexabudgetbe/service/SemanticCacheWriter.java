@@ -0,0 +1,140 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scritture della cache semantica fuori dal percorso delle richieste. {@link #enqueue} mette la voce in un buffer
+ * limitato dopo il commit della transazione corrente (subito, se non ce n'è una): un rollback non lascia voci in
+ * cache. Le voci con la stessa coppia (utente, descrizione) si fondono, vale l'ultima categoria; a buffer pieno le
+ * nuove vengono scartate, tanto la cache è solo un'ottimizzazione. Il flush periodico le scrive a blocchi di
+ * {@code batchSize} con {@link SemanticCacheService#saveAll}, un embedding a batch e un inserimento per blocco.
+ */
+@Component
+public class SemanticCacheWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticCacheWriter.class);
+
+    static final String PENDING_METRIC = "nexabudget.semantic.cache.writes.pending";
+    static final String WRITES_COUNTER = "nexabudget.semantic.cache.writes";
+    static final String FLUSH_TIMER = "nexabudget.semantic.cache.flush";
+
+    private record Key(UUID userId, String description) {
+    }
+
+    private final SemanticCacheService semanticCacheService;
+    private final int capacity;
+    private final int batchSize;
+    private final Map<Key, String> pending = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter merged;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public SemanticCacheWriter(SemanticCacheService semanticCacheService,
+                               MeterRegistry meterRegistry,
+                               @Value("${nexabudget.ai.semantic-cache.writer.capacity:10000}") int capacity,
+                               @Value("${nexabudget.ai.semantic-cache.writer.batch-size:100}") int batchSize) {
+        this.semanticCacheService = semanticCacheService;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        meterRegistry.gauge(PENDING_METRIC, this, SemanticCacheWriter::pending);
+        this.merged = meterRegistry.counter(WRITES_COUNTER, "outcome", "merged");
+        this.dropped = meterRegistry.counter(WRITES_COUNTER, "outcome", "dropped");
+        this.written = meterRegistry.counter(WRITES_COUNTER, "outcome", "written");
+        this.failed = meterRegistry.counter(WRITES_COUNTER, "outcome", "failed");
+        this.flushTimer = meterRegistry.timer(FLUSH_TIMER);
+    }
+
+    /** Accoda la voce descrizione -> categoria dell'utente, dopo il commit della transazione corrente. */
+    public void enqueue(String description, String categoryName, UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(new Key(userId, description), categoryName);
+                }
+            });
+        } else {
+            offer(new Key(userId, description), categoryName);
+        }
+    }
+
+    private void offer(Key key, String categoryName) {
+        synchronized (pending) {
+            if (pending.containsKey(key)) {
+                pending.put(key, categoryName);
+                merged.increment();
+            } else if (pending.size() >= capacity) {
+                dropped.increment();
+                log.debug("Buffer cache semantica pieno, voce scartata: '{}'", key.description());
+            } else {
+                pending.put(key, categoryName);
+            }
+        }
+    }
+
+    public int pending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /** Scrive tutto il buffer, un blocco alla volta; un solo flush per volta. */
+    @Scheduled(fixedDelayString = "${nexabudget.ai.semantic-cache.writer.flush-interval-ms:1000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            List<SemanticCacheService.Entry> batch;
+            while (!(batch = drain()).isEmpty()) {
+                Timer.Sample sample = Timer.start();
+                int saved = semanticCacheService.saveAll(batch);
+                sample.stop(flushTimer);
+                written.increment(saved);
+                failed.increment(batch.size() - saved);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<SemanticCacheService.Entry> drain() {
+        synchronized (pending) {
+            List<SemanticCacheService.Entry> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<Map.Entry<Key, String>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<Key, String> entry = iterator.next();
+                batch.add(new SemanticCacheService.Entry(entry.getKey().userId(), entry.getKey().description(),
+                        entry.getValue()));
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
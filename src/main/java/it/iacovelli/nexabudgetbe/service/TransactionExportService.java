@@ -0,0 +1,147 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import it.iacovelli.nexabudgetbe.dto.TransactionDto;
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Export delle transazioni scritto direttamente sull'output stream della risposta: le righe arrivano da un cursore
+ * forward-only e il persistence context viene svuotato ogni {@link #CLEAR_EVERY} righe, quindi la memoria resta
+ * costante a prescindere dalla lunghezza della storia.
+ */
+@Service
+public class TransactionExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionExportService.class);
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /** Righe dopo cui si fa flush dell'output e clear del persistence context: allineato al fetch size del cursore. */
+    static final int CLEAR_EVERY = 500;
+
+    // Date senza limiti dal client: estremi compatibili con il tipo DATE di Postgres
+    private static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private static final String[] CSV_HEADER = {
+            "id", "date", "accountId", "accountName", "categoryId", "categoryName", "amount", "type",
+            "description", "note", "transferId", "exchangeRate", "originalCurrency", "originalAmount"
+    };
+
+    private static final ObjectWriter NDJSON_WRITER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            // Un generator per riga sullo stesso writer: né chiusura né flush a ogni valore
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET, JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+            .writerFor(TransactionDto.TransactionResponse.class);
+
+    private final TransactionRepository transactionRepository;
+    private final EntityManager entityManager;
+
+    public TransactionExportService(TransactionRepository transactionRepository, EntityManager entityManager) {
+        this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Scrive su {@code out} le transazioni dell'utente (o di un suo conto) nel periodo, dalla più recente.
+     * Lo stream non viene chiuso: la compressione e la chiusura restano al chiamante.
+     *
+     * @param accountId conto già verificato come appartenente all'utente, oppure null per tutti i conti
+     * @return numero di righe scritte
+     */
+    @Transactional(readOnly = true)
+    public long export(UUID userId, UUID accountId, LocalDate start, LocalDate end, Format format,
+                       OutputStream out) throws IOException {
+        LocalDate from = start != null ? start : MIN_DATE;
+        LocalDate to = end != null ? end : MAX_DATE;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        CSVPrinter csv = format == Format.CSV
+                ? new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(CSV_HEADER).build())
+                : null;
+
+        long count = 0;
+        try (Stream<Transaction> rows = accountId != null
+                ? transactionRepository.streamByAccountForExport(accountId, from, to)
+                : transactionRepository.streamByUserForExport(userId, from, to)) {
+            Iterator<Transaction> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                TransactionDto.TransactionResponse row = TransactionService.mapTransactionToResponse(iterator.next());
+                if (csv != null) {
+                    writeCsv(csv, row);
+                } else {
+                    NDJSON_WRITER.writeValue(writer, row);
+                    writer.write('\n');
+                }
+                if (++count % CLEAR_EVERY == 0) {
+                    writer.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        writer.flush();
+        logger.info("Export {} completato per utente ID: {} ({} righe)", format, userId, count);
+        return count;
+    }
+
+    private void writeCsv(CSVPrinter csv, TransactionDto.TransactionResponse row) throws IOException {
+        csv.printRecord(
+                row.getId(),
+                row.getDate(),
+                row.getAccountId(),
+                row.getAccountName(),
+                row.getCategoryId(),
+                row.getCategoryName(),
+                row.getAmount() != null ? row.getAmount().toPlainString() : null,
+                row.getType(),
+                row.getDescription(),
+                row.getNote(),
+                row.getTransferId(),
+                row.getExchangeRate() != null ? row.getExchangeRate().toPlainString() : null,
+                row.getOriginalCurrency(),
+                row.getOriginalAmount() != null ? row.getOriginalAmount().toPlainString() : null
+        );
+    }
+}
@@ -0,0 +1,30 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Hash di contenuto di una riga importata ({@code transactions.import_hash}), usato per la dedup quando la
+ * sorgente non fornisce un id stabile: file CSV/OFX e transazioni bancarie senza externalId.
+ */
+public final class TransactionImportHash {
+
+    private TransactionImportHash() {
+    }
+
+    public static String compute(UUID accountId, LocalDate date, BigDecimal amount, String description) {
+        String raw = accountId + "|" + date + "|" + amount.toPlainString() + "|"
+                + (description != null ? description.toLowerCase().trim() : "");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(raw.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
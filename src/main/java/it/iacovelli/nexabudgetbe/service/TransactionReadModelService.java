@@ -0,0 +1,68 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Punto unico attraverso cui le scritture sulle transazioni aggiornano i read model derivati
+ * (saldo per conto e rollup mensile), sempre dopo la scrittura e nella stessa transazione DB.
+ */
+@Service
+public class TransactionReadModelService {
+
+    private final AccountBalanceService accountBalanceService;
+    private final MonthlyRollupService monthlyRollupService;
+
+    public TransactionReadModelService(AccountBalanceService accountBalanceService,
+                                       MonthlyRollupService monthlyRollupService) {
+        this.accountBalanceService = accountBalanceService;
+        this.monthlyRollupService = monthlyRollupService;
+    }
+
+    @Transactional
+    public void added(Transaction transaction) {
+        apply(List.of(), List.of(TransactionSnapshot.of(transaction)));
+    }
+
+    @Transactional
+    public void added(TransactionSnapshot snapshot) {
+        apply(List.of(), List.of(snapshot));
+    }
+
+    @Transactional
+    public void addedAll(Collection<Transaction> transactions) {
+        apply(List.of(), transactions.stream().map(TransactionSnapshot::of).toList());
+    }
+
+    @Transactional
+    public void removed(Transaction transaction) {
+        apply(List.of(TransactionSnapshot.of(transaction)), List.of());
+    }
+
+    /** {@code before} va catturato prima di modificare l'entity, {@code after} è lo stato salvato. */
+    @Transactional
+    public void changed(TransactionSnapshot before, Transaction after) {
+        apply(List.of(before), List.of(TransactionSnapshot.of(after)));
+    }
+
+    @Transactional
+    public void apply(Collection<TransactionSnapshot> removed, Collection<TransactionSnapshot> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        accountBalanceService.apply(removed, added);
+        monthlyRollupService.apply(removed, added);
+    }
+
+    /** Dopo operazioni massive su tutte le transazioni di un conto (soft-delete, restore, hard delete). */
+    @Transactional
+    public void accountRewritten(UUID accountId, UUID userId) {
+        accountBalanceService.recalculate(accountId);
+        monthlyRollupService.rebuildForUser(userId);
+    }
+}
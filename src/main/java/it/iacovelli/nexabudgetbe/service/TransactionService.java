@@ -4,8 +4,12 @@ import it.iacovelli.nexabudgetbe.dto.TransactionDto;
 import it.iacovelli.nexabudgetbe.dto.bank.NormalizedBankTransaction;
 import it.iacovelli.nexabudgetbe.model.*;
 import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import it.iacovelli.nexabudgetbe.service.search.TransactionSearch;
+import it.iacovelli.nexabudgetbe.service.search.TransactionSearchBackend;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,13 +19,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -33,19 +38,35 @@ public class TransactionService {
     private final AiCategorizationService aiCategorizationService;
     private final ExchangeRateService exchangeRateService;
     private final CurrencyConversionService currencyConversionService;
+    private final AccountBalanceService accountBalanceService;
+    private final TransactionReadModelService transactionReadModelService;
+    private final MonthlyRollupService monthlyRollupService;
+    private final TransactionSearchBackend transactionSearchBackend;
+    private final BankTransactionImportService bankTransactionImportService;
 
-    private final Logger logger = LoggerFactory.getLogger(TransactionService.class);
+    /** Limite massimo di elementi per pagina nella paginazione a cursore. */
+    public static final int MAX_CURSOR_PAGE_SIZE = 200;
 
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private final Logger logger = LoggerFactory.getLogger(TransactionService.class);
 
     public TransactionService(TransactionRepository transactionRepository, UserService userService,
                               AiCategorizationService aiCategorizationService, ExchangeRateService exchangeRateService,
-                              CurrencyConversionService currencyConversionService) {
+                              CurrencyConversionService currencyConversionService,
+                              AccountBalanceService accountBalanceService,
+                              TransactionReadModelService transactionReadModelService,
+                              MonthlyRollupService monthlyRollupService,
+                              TransactionSearchBackend transactionSearchBackend,
+                              BankTransactionImportService bankTransactionImportService) {
         this.transactionRepository = transactionRepository;
         this.userService = userService;
         this.aiCategorizationService = aiCategorizationService;
         this.exchangeRateService = exchangeRateService;
         this.currencyConversionService = currencyConversionService;
+        this.accountBalanceService = accountBalanceService;
+        this.transactionReadModelService = transactionReadModelService;
+        this.monthlyRollupService = monthlyRollupService;
+        this.transactionSearchBackend = transactionSearchBackend;
+        this.bankTransactionImportService = bankTransactionImportService;
     }
 
     @Transactional
@@ -53,6 +74,7 @@ public class TransactionService {
         logger.info("Creazione transazione: {} {} per account ID: {}",
                 transaction.getType(), transaction.getAmount(), transaction.getAccount().getId());
         Transaction savedTransaction = transactionRepository.save(transaction);
+        transactionReadModelService.added(savedTransaction);
         logger.debug("Transazione creata con successo: ID: {}", savedTransaction.getId());
         return mapTransactionToResponse(savedTransaction);
     }
@@ -118,6 +140,7 @@ public class TransactionService {
 
         Transaction savedOut = transactionRepository.save(outTransaction);
         Transaction savedIn = transactionRepository.save(inTransaction);
+        transactionReadModelService.addedAll(List.of(savedOut, savedIn));
 
         logger.info("Trasferimento creato con successo: transferId: {}", transferId);
         return List.of(mapTransactionToResponse(savedOut), mapTransactionToResponse(savedIn));
@@ -137,7 +160,8 @@ public class TransactionService {
         }
 
         String transferId = UUID.randomUUID().toString();
-        
+        TransactionSnapshot sourceBefore = TransactionSnapshot.of(sourceTransaction);
+
         String sourceCurrency = sourceTransaction.getAccount().getCurrency();
         String targetCurrency = targetAccount.getCurrency();
         boolean multiCurrency = sourceCurrency != null && targetCurrency != null
@@ -191,6 +215,9 @@ public class TransactionService {
 
         Transaction savedNew = transactionRepository.save(newTransaction);
         Transaction savedSource = transactionRepository.save(sourceTransaction);
+        // La transazione sorgente mantiene importo, tipo e conto (saldo invariato) ma diventa un trasferimento senza categoria
+        transactionReadModelService.apply(List.of(sourceBefore),
+                List.of(TransactionSnapshot.of(savedSource), TransactionSnapshot.of(savedNew)));
 
         logger.info("Transazione convertita in trasferimento con successo: transferId: {}", transferId);
         return sourceTransaction.getType() == TransactionType.IN 
@@ -220,6 +247,8 @@ public class TransactionService {
         Transaction inTransaction = (firstTransaction.getType() == TransactionType.IN) ? firstTransaction : secondTransaction;
         Transaction outTransaction = (firstTransaction.getType() == TransactionType.OUT) ? firstTransaction : secondTransaction;
 
+        List<TransactionSnapshot> before = List.of(TransactionSnapshot.of(inTransaction), TransactionSnapshot.of(outTransaction));
+
         // Normalizza importo, data e note basandosi sulla prima transazione
         BigDecimal amount = firstTransaction.getAmount();
         LocalDate date = firstTransaction.getDate();
@@ -241,6 +270,7 @@ public class TransactionService {
 
         Transaction savedIn = transactionRepository.save(inTransaction);
         Transaction savedOut = transactionRepository.save(outTransaction);
+        transactionReadModelService.apply(before, List.of(TransactionSnapshot.of(savedIn), TransactionSnapshot.of(savedOut)));
 
         logger.info("Transazioni convertite a trasferimento con successo: transferId: {}", transferId);
         return List.of(mapTransactionToResponse(savedIn), mapTransactionToResponse(savedOut));
@@ -254,29 +284,80 @@ public class TransactionService {
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByUser(User user) {
         return transactionRepository.findByUser(user).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public Page<TransactionDto.TransactionResponse> getTransactionsByUserPaged(User user, Pageable pageable) {
         return transactionRepository.findByUserPaged(user, pageable)
-                .map(this::mapTransactionToResponse);
+                .map(TransactionService::mapTransactionToResponse);
     }
 
     @Transactional(readOnly = true)
     public Page<TransactionDto.TransactionResponse> getTransactionsFiltered(
             UUID userId, UUID accountId, TransactionType type, UUID categoryId,
-            LocalDate startDate, LocalDate endDate, String search, Pageable pageable) {
-        Specification<Transaction> spec = buildFilterSpec(userId, accountId, type, categoryId, startDate, endDate, search);
+            LocalDate startDate, LocalDate endDate, String search, boolean includeNotes, Pageable pageable) {
+        Specification<Transaction> spec = buildFilterSpec(userId, accountId, type, categoryId, startDate, endDate,
+                prepareSearch(search, includeNotes, userId));
         return transactionRepository.findAll(spec, pageable)
-                .map(this::mapTransactionToResponse);
+                .map(TransactionService::mapTransactionToResponse);
+    }
+
+    /**
+     * Variante a cursore di {@link #getTransactionsFiltered}: ordina per {@code (date, id)} e prosegue dopo il
+     * cursore con un predicato di seek invece di un OFFSET, leggendo {@code limit + 1} righe per sapere se esiste
+     * una pagina successiva. La COUNT viene eseguita solo con {@code includeTotal}.
+     *
+     * @throws IllegalArgumentException se il cursore non è valido
+     */
+    @Transactional(readOnly = true)
+    public TransactionDto.CursorPageResponse getTransactionsFilteredByCursor(
+            UUID userId, UUID accountId, TransactionType type, UUID categoryId,
+            LocalDate startDate, LocalDate endDate, String search, boolean includeNotes,
+            String cursor, int limit, Sort.Direction direction, boolean includeTotal) {
+        int pageSize = Math.clamp(limit, 1, MAX_CURSOR_PAGE_SIZE);
+        TransactionCursor after = TransactionCursor.decode(cursor);
+
+        Specification<Transaction> filter = buildFilterSpec(userId, accountId, type, categoryId, startDate, endDate,
+                prepareSearch(search, includeNotes, userId));
+        Specification<Transaction> spec = after != null ? filter.and(seekAfter(after, direction)) : filter;
+        Sort sort = Sort.by(direction, "date").and(Sort.by(direction, "id"));
+
+        List<Transaction> rows = transactionRepository.findBy(spec, q -> q.sortBy(sort).limit(pageSize + 1).all());
+        boolean hasNext = rows.size() > pageSize;
+        List<Transaction> content = hasNext ? rows.subList(0, pageSize) : rows;
+
+        return TransactionDto.CursorPageResponse.builder()
+                .items(content.stream().map(TransactionService::mapTransactionToResponse).toList())
+                .nextCursor(hasNext ? TransactionCursor.of(content.getLast()).encode() : null)
+                .hasNext(hasNext)
+                .totalElements(includeTotal ? transactionRepository.count(filter) : null)
+                .build();
+    }
+
+    private static Specification<Transaction> seekAfter(TransactionCursor after, Sort.Direction direction) {
+        return (root, query, cb) -> {
+            Path<LocalDate> date = root.get("date");
+            Path<UUID> id = root.get("id");
+            if (direction.isAscending()) {
+                return cb.or(cb.greaterThan(date, after.date()),
+                        cb.and(cb.equal(date, after.date()), cb.greaterThan(id, after.id())));
+            }
+            return cb.or(cb.lessThan(date, after.date()),
+                    cb.and(cb.equal(date, after.date()), cb.lessThan(id, after.id())));
+        };
+    }
+
+    private TransactionSearch prepareSearch(String text, boolean includeNotes, UUID userId) {
+        TransactionSearch search = TransactionSearch.of(text, includeNotes);
+        return search != null ? transactionSearchBackend.prepare(search, userId) : null;
     }
 
     @SuppressWarnings("unchecked")
     private Specification<Transaction> buildFilterSpec(
             UUID userId, UUID accountId, TransactionType type, UUID categoryId,
-            LocalDate startDate, LocalDate endDate, String search) {
+            LocalDate startDate, LocalDate endDate, TransactionSearch search) {
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
@@ -309,16 +390,20 @@ public class TransactionService {
             if (endDate != null) {
                 predicates.add(cb.lessThanOrEqualTo(root.get("date"), endDate));
             }
-            if (search != null && !search.isBlank()) {
-                String pattern = "%" + search.trim().toLowerCase() + "%";
-                predicates.add(cb.or(
-                        cb.like(cb.lower(root.get("description")), pattern),
-                        cb.like(cb.lower(accountJoin.get("name")), pattern)
-                ));
+            if (search != null) {
+                predicates.add(transactionSearchBackend.matches(search, root, accountJoin, cb));
             }
 
+            // Ordinamento di default, sostituito da quello del Pageable se presente: per rilevanza quando si cerca
+            // testo e il backend la supporta, altrimenti per data
             if (!isCountQuery) {
-                query.orderBy(cb.desc(root.get("date")));
+                Expression<? extends Number> relevance = search != null
+                        ? transactionSearchBackend.relevance(search, root, cb) : null;
+                if (relevance != null) {
+                    query.orderBy(cb.desc(relevance), cb.desc(root.get("date")));
+                } else {
+                    query.orderBy(cb.desc(root.get("date")));
+                }
             }
             return cb.and(predicates.toArray(new Predicate[0]));
         };
@@ -327,34 +412,34 @@ public class TransactionService {
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByAccount(Account account) {
         return transactionRepository.findByAccount(account).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public Page<TransactionDto.TransactionResponse> getTransactionsByAccountPaged(Account account, Pageable pageable) {
         return transactionRepository.findByAccountPaged(account, pageable)
-                .map(this::mapTransactionToResponse);
+                .map(TransactionService::mapTransactionToResponse);
     }
 
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByCategoryAndUser(Category category, User user) {
         return transactionRepository.findByCategoryAndUser(category, user).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByTransferId(String transferId, User user) {
         return transactionRepository.findByTransferIdAndUser(transferId, user).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByUserAndDateRange(User user, LocalDate start, LocalDate end) {
         return transactionRepository.findByUserAndDateBetween(user, start, end).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
@@ -362,7 +447,7 @@ public class TransactionService {
     public List<TransactionDto.TransactionResponse> getTransactionsByUserAndDateRangeForReport(User user, LocalDate start, LocalDate end) {
         List<Transaction> all = transactionRepository.findByUserAndDateBetween(user, start, end);
 
-        java.util.Map<String, List<Transaction>> transferGroups = all.stream()
+        Map<String, List<Transaction>> transferGroups = all.stream()
                 .filter(t -> t.getTransferId() != null)
                 .collect(Collectors.groupingBy(Transaction::getTransferId));
 
@@ -379,21 +464,21 @@ public class TransactionService {
 
         return all.stream()
                 .filter(t -> !sameTypeTransferIds.contains(t.getId()))
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<TransactionDto.TransactionResponse> getTransactionsByAccountAndDateRange(Account account, LocalDate start, LocalDate end) {
         return transactionRepository.findByAccountAndDateRangeOrderByDateDesc(account, start, end).stream()
-                .map(this::mapTransactionToResponse)
+                .map(TransactionService::mapTransactionToResponse)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public Page<TransactionDto.TransactionResponse> getTransactionsByAccountAndDateRangePaged(Account account, LocalDate start, LocalDate end, Pageable pageable) {
         return transactionRepository.findByAccountAndDateRangePaged(account, start, end, pageable)
-                .map(this::mapTransactionToResponse);
+                .map(TransactionService::mapTransactionToResponse);
     }
 
     @Transactional
@@ -410,14 +495,15 @@ public class TransactionService {
                     .orElse(null);
 
             if (otherTransaction != null) {
+                TransactionSnapshot otherBefore = TransactionSnapshot.of(otherTransaction);
                 otherTransaction.setAmount(newAmount);
                 otherTransaction.setDate(newDate);
                 otherTransaction.setNote(newNotes);
-                transactionRepository.save(otherTransaction);
+                transactionReadModelService.changed(otherBefore, transactionRepository.save(otherTransaction));
             }
         }
 
-        // Aggiorna la cache semantica se la categoria è cambiata
+        // Aggiorna la cache semantica se la categoria è cambiata: la scrittura viene accodata al commit
         if (newCategory != null &&
                 (oldTransaction.getCategory() == null ||
                         !oldTransaction.getCategory().getId().equals(newCategory.getId()))) {
@@ -427,13 +513,17 @@ public class TransactionService {
 
             aiCategorizationService.updateSemanticCache(
                     oldTransaction.getDescription(),
+                    oldTransaction.getType(),
                     oldTransaction.getCategory(),
+                    newDescription,
+                    newType,
                     newCategory,
-                    oldTransaction.getUser(),
-                    newType
+                    oldTransaction.getUser()
             );
         }
 
+        TransactionSnapshot before = TransactionSnapshot.of(oldTransaction);
+
         oldTransaction.setAccount(newAccount);
         oldTransaction.setAmount(newAmount);
         oldTransaction.setType(newType);
@@ -443,6 +533,7 @@ public class TransactionService {
         oldTransaction.setCategory(newCategory);
 
         Transaction savedTransaction = transactionRepository.save(oldTransaction);
+        transactionReadModelService.changed(before, savedTransaction);
         return mapTransactionToResponse(savedTransaction);
     }
 
@@ -451,23 +542,34 @@ public class TransactionService {
     public void deleteTransaction(Transaction transaction) {
         LocalDateTime now = LocalDateTime.now();
         // Se la transazione fa parte di un trasferimento, soft-elimina anche le altre collegate
-        if (transaction.getTransferId() != null) {
-            List<Transaction> transferTransactions = transactionRepository.findByTransferIdAndUser(transaction.getTransferId(), transaction.getUser());
-            for (Transaction t : transferTransactions) {
-                transactionRepository.softDeleteById(t.getId(), now);
-            }
-        } else {
-            transactionRepository.softDeleteById(transaction.getId(), now);
+        List<Transaction> toDelete = transaction.getTransferId() != null
+                ? transactionRepository.findByTransferIdAndUser(transaction.getTransferId(), transaction.getUser())
+                : List.of(transaction);
+        // Snapshot prima del soft-delete: la query di update svuota il persistence context
+        List<TransactionSnapshot> removed = toDelete.stream().map(TransactionSnapshot::of).toList();
+        for (Transaction t : toDelete) {
+            transactionRepository.softDeleteById(t.getId(), now);
         }
+        transactionReadModelService.apply(removed, List.of());
+    }
+
+    /** Assegna una categoria con un update puntuale (categorizzazione massiva) mantenendo allineato il rollup mensile. */
+    @Transactional
+    public void assignCategory(Transaction transaction, UUID categoryId) {
+        TransactionSnapshot before = TransactionSnapshot.of(transaction);
+        transactionRepository.updateCategoryById(transaction.getId(), categoryId);
+        transactionReadModelService.apply(List.of(before), List.of(before.withCategoryId(categoryId)));
     }
 
     @Transactional
     public void softDeleteAllTransactionByAccount(Account account) {
         transactionRepository.softDeleteAllByAccountId(account.getId(), LocalDateTime.now());
+        transactionReadModelService.accountRewritten(account.getId(), account.getUser().getId());
     }
 
     public void deleteAllTransactionByAccount(Account account) {
         transactionRepository.deleteAllByAccount(account);
+        transactionReadModelService.accountRewritten(account.getId(), account.getUser().getId());
     }
 
     public BigDecimal getIncomeForAccountInPeriod(Account account, LocalDateTime start, LocalDateTime end) {
@@ -489,8 +591,10 @@ public class TransactionService {
     @Transactional(readOnly = true)
     public TransactionDto.PeriodTotalsResponse getTotalsForUserInPeriod(User user, LocalDate start, LocalDate end) {
         String target = user.getDefaultCurrency() != null ? user.getDefaultCurrency() : "EUR";
-        BigDecimal income = sumConvertedByType(user, TransactionType.IN, start, end, target);
-        BigDecimal expense = sumConvertedByType(user, TransactionType.OUT, start, end, target);
+        List<MonthlyRollupService.MonthlyTotal> totals = monthlyRollupService.findMonthlyTotals(user, start, end);
+        ConversionContext conversions = currencyConversionService.newContext(target);
+        BigDecimal income = sumConvertedByType(totals, TransactionType.IN, conversions);
+        BigDecimal expense = sumConvertedByType(totals, TransactionType.OUT, conversions);
         return TransactionDto.PeriodTotalsResponse.builder()
                 .startDate(start).endDate(end)
                 .currency(target)
@@ -498,62 +602,32 @@ public class TransactionService {
                 .build();
     }
 
-    private BigDecimal sumConvertedByType(User user, TransactionType type, LocalDate start, LocalDate end, String target) {
-        List<Object[]> rows = transactionRepository.sumByUserAndTypeAndDateRangePerCurrency(user, type, start, end);
+    /**
+     * Somma convertita al tasso storico di fine mese di ogni bucket, letto una volta per (valuta, mese) dal contesto:
+     * nessuna chiamata di rete. Arrotondata solo sul totale.
+     */
+    private BigDecimal sumConvertedByType(List<MonthlyRollupService.MonthlyTotal> totals, TransactionType type,
+                                          ConversionContext conversions) {
         BigDecimal sum = BigDecimal.ZERO;
-        for (Object[] row : rows) {
-            String currency = row[0] != null ? row[0].toString() : target;
-            BigDecimal amount = (BigDecimal) row[1];
-            if (amount == null) continue;
-            String src = currency != null && !currency.isBlank() ? currency : target;
-            sum = sum.add(currencyConversionService.convert(amount, src, target));
+        for (MonthlyRollupService.MonthlyTotal total : totals) {
+            if (total.type() == type && total.amount() != null) {
+                sum = sum.add(conversions.convert(total.amount(), total.currency(),
+                        CurrencyConversionService.monthRateDate(total.year(), total.month())));
+            }
         }
-        return sum;
+        return ConversionContext.money(sum);
     }
 
     /**
      * Importa transazioni bancarie normalizzate provenienti da un {@link it.iacovelli.nexabudgetbe.service.bank.BankAggregationProvider}
-     * (GoCardless, Enable Banking, ...). Generalizzazione della precedente {@code importTransactionsFromGocardless}:
-     * stessa dedup per externalId (scoped al conto, per evitare collisioni tra provider diversi), stessa
-     * hook di categorizzazione AI.
+     * (GoCardless, Enable Banking, ...). Dedup per externalId scoped al conto (hash di contenuto se manca),
+     * categorizzazione AI e insert vengono eseguiti a lotti da {@link BankTransactionImportService}.
+     * Transazionale perché le righe importate e i read model (saldo del conto, rollup mensile) vengano scritti
+     * atomicamente.
      */
-    public void importNormalizedTransactions(List<NormalizedBankTransaction> transactions, User user, Account account, LocalDate startDate) {
-        transactions
-                //.filter(nt -> startDate == null || LocalDate.parse(nt.getDate()).isAfter(startDate.minusDays(1L)))
-                .forEach(nt -> {
-                    if (transactionRepository.findByExternalIdAndAccount(nt.getExternalId(), account).isEmpty()) {
-                        logger.debug("Importing bank transaction: {}", nt.getExternalId());
-                        BigDecimal rawAmount = nt.getAmount();
-                        TransactionType txType = rawAmount.signum() > 0 ? TransactionType.IN : TransactionType.OUT;
-                        String description = resolveBankTransactionDescription(nt, txType);
-
-                        Transaction t = new Transaction();
-                        t.setExternalId(nt.getExternalId());
-                        t.setAmount(rawAmount.abs());
-                        t.setType(txType);
-                        t.setUser(user);
-                        t.setDescription(description);
-                        t.setDate(LocalDate.parse(nt.getDate(), formatter));
-                        t.setAccount(account);
-
-                        Optional<Category> foundCategory = aiCategorizationService.categorizeTransaction(description, user, t.getType());
-
-                        if (foundCategory.isPresent()) {
-                            t.setCategory(foundCategory.get());
-                            logger.debug("Transazione {} categorizzata automaticamente come: {}", nt.getExternalId(), foundCategory.get().getName());
-                        } else {
-                            // Se l'AI fallisce o non trova, la categoria resta null (come prima)
-                            // L'utente dovrà categorizzarla manualmente
-                            logger.debug("Transazione {} non categorizzata automaticamente.", nt.getExternalId());
-                            t.setCategory(null);
-                        }
-
-                        transactionRepository.save(t);
-                    } else {
-                        logger.debug("Bank transaction already exists: {}", nt.getExternalId());
-                    }
-                });
-
+    @Transactional
+    public void importNormalizedTransactions(List<NormalizedBankTransaction> transactions, User user, Account account) {
+        bankTransactionImportService.importTransactions(transactions, user, account);
     }
 
     @Transactional(readOnly = true)
@@ -561,32 +635,18 @@ public class TransactionService {
         return transactionRepository.findByUserAndDateBetween(user, start, end).stream().map(t -> mapTransactionToResponse(t)).toList();
     }
 
+    /** Saldo letto dal ledger {@code account_balances} (O(1)), non più dalla SUM sull'intera storia del conto. */
     @Transactional(readOnly = true)
     public BigDecimal calculateBalanceForAccount(Account account) {
-        return transactionRepository.calculateBalanceForAccount(account);
+        return accountBalanceService.getBalance(account);
     }
 
-    /**
-     * Builds the best available description from a normalized bank transaction.
-     * Priority: creditorName (OUT) / debtorName (IN) → remittanceInformation → payeeName.
-     */
-    private String resolveBankTransactionDescription(NormalizedBankTransaction nt, TransactionType type) {
-        if (type == TransactionType.OUT && nt.getCreditorName() != null && !nt.getCreditorName().isBlank()) {
-            return nt.getCreditorName();
-        }
-        if (type == TransactionType.IN && nt.getDebtorName() != null && !nt.getDebtorName().isBlank()) {
-            return nt.getDebtorName();
-        }
-        if (nt.getRemittanceInformation() != null && !nt.getRemittanceInformation().isBlank()) {
-            return nt.getRemittanceInformation();
-        }
-        if (nt.getPayeeName() != null && !nt.getPayeeName().isBlank()) {
-            return nt.getPayeeName();
-        }
-        return "";
+    @Transactional(readOnly = true)
+    public Map<UUID, BigDecimal> calculateBalancesForAccounts(List<Account> accounts) {
+        return accountBalanceService.getBalances(accounts);
     }
 
-    private TransactionDto.TransactionResponse mapTransactionToResponse(Transaction transaction) {
+    static TransactionDto.TransactionResponse mapTransactionToResponse(Transaction transaction) {
         return TransactionDto.TransactionResponse.builder()
                 .id(transaction.getId())
                 .accountId(transaction.getAccount().getId())
@@ -0,0 +1,41 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Valori di una transazione rilevanti per i read model (saldo conto e rollup mensile), catturati prima e dopo
+ * una scrittura: le entity vengono modificate in place, quindi lo stato "prima" va copiato prima dei setter.
+ */
+public record TransactionSnapshot(UUID userId, UUID accountId, String currency, UUID categoryId,
+                                  LocalDate date, TransactionType type, BigDecimal amount, boolean transfer) {
+
+    public static TransactionSnapshot of(Transaction transaction) {
+        return of(transaction, transaction.getAccount().getCurrency());
+    }
+
+    /** Per le transazioni il cui conto non è caricabile come entity (es. conto nel cestino). */
+    public static TransactionSnapshot of(Transaction transaction, String accountCurrency) {
+        return new TransactionSnapshot(
+                transaction.getUser().getId(),
+                transaction.getAccount().getId(),
+                accountCurrency,
+                transaction.getCategory() != null ? transaction.getCategory().getId() : null,
+                transaction.getDate(),
+                transaction.getType(),
+                transaction.getAmount() != null ? transaction.getAmount() : BigDecimal.ZERO,
+                transaction.getTransferId() != null);
+    }
+
+    public BigDecimal signedAmount() {
+        return AccountBalanceService.signedAmount(type, amount);
+    }
+
+    public TransactionSnapshot withCategoryId(UUID newCategoryId) {
+        return new TransactionSnapshot(userId, accountId, currency, newCategoryId, date, type, amount, transfer);
+    }
+}
@@ -1,6 +1,7 @@
 package it.iacovelli.nexabudgetbe.service;
 
 import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.Transaction;
 import it.iacovelli.nexabudgetbe.model.User;
 import it.iacovelli.nexabudgetbe.repository.AccountRepository;
 import it.iacovelli.nexabudgetbe.repository.TrashTransactionView;
@@ -25,10 +26,16 @@ public class TrashService {
 
     private final TransactionRepository transactionRepository;
     private final AccountRepository accountRepository;
+    private final AccountBalanceService accountBalanceService;
+    private final TransactionReadModelService transactionReadModelService;
 
-    public TrashService(TransactionRepository transactionRepository, AccountRepository accountRepository) {
+    public TrashService(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                        AccountBalanceService accountBalanceService,
+                        TransactionReadModelService transactionReadModelService) {
         this.transactionRepository = transactionRepository;
         this.accountRepository = accountRepository;
+        this.accountBalanceService = accountBalanceService;
+        this.transactionReadModelService = transactionReadModelService;
     }
 
     @Transactional(readOnly = true)
@@ -43,9 +50,14 @@ public class TrashService {
 
     @Transactional
     public void restoreTransaction(UUID transactionId, User user) {
-        transactionRepository.findDeletedByIdAndUserId(transactionId, user.getId())
+        Transaction deleted = transactionRepository.findDeletedByIdAndUserId(transactionId, user.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transazione non trovata nel cestino"));
+        // La valuta si legge ignorando il soft-delete: il conto potrebbe essere a sua volta nel cestino
+        String currency = accountRepository.findCurrencyByIdIncludingDeleted(deleted.getAccount().getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto della transazione non trovato"));
+        TransactionSnapshot restored = TransactionSnapshot.of(deleted, currency);
         transactionRepository.restoreById(transactionId);
+        transactionReadModelService.added(restored);
         logger.info("Transazione {} ripristinata dall'utente {}", transactionId, user.getId());
     }
 
@@ -55,6 +67,7 @@ public class TrashService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Conto non trovato nel cestino"));
         accountRepository.restoreById(accountId);
         transactionRepository.restoreAllByAccountId(accountId);
+        transactionReadModelService.accountRewritten(accountId, user.getId());
         logger.info("Conto {} e relative transazioni ripristinati dall'utente {}", accountId, user.getId());
     }
 
@@ -64,6 +77,7 @@ public class TrashService {
         LocalDateTime cutoff = LocalDateTime.now().minusDays(TRASH_RETENTION_DAYS);
         int deletedTransactions = transactionRepository.purgeOldDeleted(cutoff);
         int deletedAccounts = accountRepository.purgeOldDeleted(cutoff);
+        accountBalanceService.deleteOrphans();
         logger.info("Pulizia cestino completata: {} transazioni e {} conti eliminati definitivamente",
                 deletedTransactions, deletedAccounts);
     }
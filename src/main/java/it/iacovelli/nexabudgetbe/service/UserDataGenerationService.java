@@ -0,0 +1,48 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.repository.UserDataGenerationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Contatore per utente delle modifiche ai dati da cui derivano i report. Viene incrementato nella stessa transazione
+ * di ogni scrittura sul rollup mensile ({@link MonthlyRollupService}), sui conti e sulle categorie: un report letto
+ * dopo il commit vede la nuova generazione, quindi non può trovare in cache un risultato calcolato sui dati precedenti.
+ * <p>
+ * Su Postgres l'incremento è un upsert ({@code app.persistence.upsert=on-conflict}); sui database senza
+ * {@code ON CONFLICT} (H2 di test e load test) UPDATE e, alla prima scrittura, INSERT.
+ */
+@Service
+public class UserDataGenerationService {
+
+    private final UserDataGenerationRepository generationRepository;
+    private final boolean onConflictUpsert;
+
+    public UserDataGenerationService(UserDataGenerationRepository generationRepository,
+                                     @Value("${app.persistence.upsert:on-conflict}") String upsert) {
+        this.generationRepository = generationRepository;
+        this.onConflictUpsert = "on-conflict".equalsIgnoreCase(upsert);
+    }
+
+    @Transactional
+    public void bump(UUID userId) {
+        if (userId == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (onConflictUpsert) {
+            generationRepository.upsertIncrement(userId, now);
+        } else if (generationRepository.increment(userId, now) == 0) {
+            generationRepository.insertFirst(userId, now);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long current(UUID userId) {
+        return generationRepository.findGeneration(userId).orElse(0L);
+    }
+}
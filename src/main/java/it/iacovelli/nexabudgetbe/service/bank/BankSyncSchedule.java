@@ -0,0 +1,75 @@
+package it.iacovelli.nexabudgetbe.service.bank;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Politica di pianificazione delle sincronizzazioni bancarie ({@code accounts.next_sync_at}): intervallo regolare
+ * dopo un sync riuscito, backoff esponenziale dopo un errore o un consenso scaduto. Ogni scadenza viene spostata
+ * di un jitter casuale (± {@code jitterRatio}) perché i conti collegati insieme non restino sincronizzati in blocco
+ * alla stessa ora.
+ */
+@Component
+public class BankSyncSchedule {
+
+    private final Duration interval;
+    private final Duration retryBase;
+    private final Duration reauthBase;
+    private final Duration maxBackoff;
+    private final double jitterRatio;
+
+    public BankSyncSchedule(@Value("${app.bank-sync.interval-minutes:360}") long intervalMinutes,
+                            @Value("${app.bank-sync.retry-base-minutes:30}") long retryBaseMinutes,
+                            @Value("${app.bank-sync.reauth-backoff-base-minutes:1440}") long reauthBaseMinutes,
+                            @Value("${app.bank-sync.max-backoff-minutes:10080}") long maxBackoffMinutes,
+                            @Value("${app.bank-sync.jitter-ratio:0.2}") double jitterRatio) {
+        this.interval = Duration.ofMinutes(intervalMinutes);
+        this.retryBase = Duration.ofMinutes(retryBaseMinutes);
+        this.reauthBase = Duration.ofMinutes(reauthBaseMinutes);
+        this.maxBackoff = Duration.ofMinutes(maxBackoffMinutes);
+        this.jitterRatio = jitterRatio;
+    }
+
+    /** Età oltre la quale l'ultimo sync di un conto è considerato stantio. */
+    public Duration interval() {
+        return interval;
+    }
+
+    public LocalDateTime afterSuccess(LocalDateTime now) {
+        return now.plus(jittered(interval));
+    }
+
+    /**
+     * Errore transitorio (provider non raggiungibile, risposta inattesa): si riprova presto, raddoppiando
+     * l'attesa a ogni fallimento consecutivo fino all'intervallo regolare.
+     */
+    public LocalDateTime afterFailure(LocalDateTime now, int consecutiveFailures) {
+        return now.plus(jittered(backoff(retryBase, consecutiveFailures, interval)));
+    }
+
+    /**
+     * Consenso scaduto: finché l'utente non ricollega il conto ogni tentativo fallisce, quindi si parte da
+     * un'attesa lunga e si raddoppia fino a {@code maxBackoff}.
+     */
+    public LocalDateTime afterReauthRequired(LocalDateTime now, int consecutiveFailures) {
+        return now.plus(jittered(backoff(reauthBase, consecutiveFailures, maxBackoff)));
+    }
+
+    static Duration backoff(Duration base, int consecutiveFailures, Duration cap) {
+        int exponent = Math.clamp(consecutiveFailures - 1, 0, 20);
+        Duration delay = base.multipliedBy(1L << exponent);
+        return delay.compareTo(cap) > 0 ? cap : delay;
+    }
+
+    private Duration jittered(Duration delay) {
+        if (jitterRatio <= 0) {
+            return delay;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitterRatio, jitterRatio);
+        return Duration.ofSeconds(Math.round(delay.toSeconds() * factor));
+    }
+}
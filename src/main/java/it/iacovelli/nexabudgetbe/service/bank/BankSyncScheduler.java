@@ -0,0 +1,104 @@
+package it.iacovelli.nexabudgetbe.service.bank;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.iacovelli.nexabudgetbe.model.BankProvider;
+import it.iacovelli.nexabudgetbe.repository.AccountRepository;
+import it.iacovelli.nexabudgetbe.repository.AccountSyncView;
+import it.iacovelli.nexabudgetbe.service.AccountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sync in background di tutti i conti collegati a un provider bancario, così che l'utente trovi i dati già
+ * aggiornati all'apertura dell'app. A ogni giro legge i conti scaduti ({@code next_sync_at}) dal più stantio e li
+ * sincronizza su virtual thread, con un limite di sync concorrenti per {@link BankProvider}
+ * ({@code app.bank-sync.max-concurrency.<PROVIDER>}). Jitter e backoff delle scadenze sono in {@link BankSyncSchedule};
+ * il lock {@code is_synchronizing} evita doppi sync con le richieste del client o con altre istanze.
+ */
+@Component
+@ConditionalOnProperty(name = "app.bank-sync.scheduler.enabled", havingValue = "true", matchIfMissing = true)
+public class BankSyncScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BankSyncScheduler.class);
+
+    static final String SYNC_COUNTER = "nexabudget.bank.sync.background";
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 2;
+
+    private final AccountRepository accountRepository;
+    private final AccountService accountService;
+    private final MeterRegistry meterRegistry;
+    private final Map<BankProvider, Semaphore> permits = new EnumMap<>(BankProvider.class);
+    private final int batchSize;
+
+    public BankSyncScheduler(AccountRepository accountRepository,
+                             AccountService accountService,
+                             MeterRegistry meterRegistry,
+                             Environment environment,
+                             @Value("${app.bank-sync.scheduler.batch-size:200}") int batchSize) {
+        this.accountRepository = accountRepository;
+        this.accountService = accountService;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        for (BankProvider provider : BankProvider.values()) {
+            int maxConcurrency = environment.getProperty("app.bank-sync.max-concurrency." + provider.name(),
+                    Integer.class, DEFAULT_MAX_CONCURRENCY);
+            permits.put(provider, new Semaphore(Math.max(1, maxConcurrency)));
+        }
+    }
+
+    /**
+     * Un giro di sync. Con fixedDelay il giro successivo parte solo dopo la fine di questo: la chiusura
+     * dell'executor attende tutti i sync avviati.
+     */
+    @Scheduled(fixedDelayString = "${app.bank-sync.scheduler.poll-interval-ms:300000}",
+            initialDelayString = "${app.bank-sync.scheduler.initial-delay-ms:60000}")
+    public void syncDueAccounts() {
+        LocalDateTime now = LocalDateTime.now();
+        List<AccountSyncView> due = accountRepository.findDueForBackgroundSync(now, PageRequest.ofSize(batchSize));
+        if (due.isEmpty()) {
+            return;
+        }
+        logger.info("[BankSync] Avvio sync in background di {} conti", due.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (AccountSyncView account : due) {
+                executor.submit(() -> syncWithPermit(account));
+            }
+        }
+        logger.info("[BankSync] Giro di sync in background completato");
+    }
+
+    private void syncWithPermit(AccountSyncView account) {
+        Semaphore permit = permits.get(account.getProvider());
+        try {
+            permit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            AccountService.SyncOutcome outcome = accountService.syncAccountInBackground(account.getId());
+            meterRegistry.counter(SYNC_COUNTER,
+                    "provider", account.getProvider().name(), "outcome", outcome.name()).increment();
+        } catch (Exception e) {
+            logger.error("[BankSync] Errore nel sync in background dell'account ID: {}", account.getId(), e);
+        } finally {
+            permit.release();
+        }
+    }
+}
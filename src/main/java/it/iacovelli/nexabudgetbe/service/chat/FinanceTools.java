@@ -19,7 +19,6 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -228,18 +227,17 @@ public class FinanceTools {
     @Tool(name = "listCategories", description = "Restituisce la lista delle categorie disponibili per l'utente (personali + predefinite).")
     public String listCategories() {
         User user = currentUser();
-        List<Category> categories = categoryService.getAllAvailableCategoriesForUser(user);
-        String names = categories.stream().map(Category::getName).collect(Collectors.joining(", "));
+        String names = categoryService.getCatalog(user).categories().stream().map(Category::getName).collect(Collectors.joining(", "));
         return "Categorie disponibili: " + names;
     }
 
-    @Tool(name = "searchTransactions", description = "Ricerca avanzata delle transazioni con filtri opzionali: tipo (IN/OUT), nome categoria, intervallo di date, testo libero nella descrizione. Restituisce le transazioni che corrispondono ai criteri.")
+    @Tool(name = "searchTransactions", description = "Ricerca avanzata delle transazioni con filtri opzionali: tipo (IN/OUT), nome categoria, intervallo di date, testo libero nella descrizione o nelle note. Restituisce le transazioni che corrispondono ai criteri, le più pertinenti per prime.")
     public String searchTransactions(
             @ToolParam(required = false, description = "Tipo di transazione: IN (entrate) o OUT (uscite)") String type,
             @ToolParam(required = false, description = "Nome della categoria da filtrare") String categoryName,
             @ToolParam(required = false, description = "Data inizio in formato yyyy-MM-dd") String startDate,
             @ToolParam(required = false, description = "Data fine in formato yyyy-MM-dd") String endDate,
-            @ToolParam(required = false, description = "Testo da cercare nella descrizione o nel nome del conto") String search,
+            @ToolParam(required = false, description = "Testo da cercare nella descrizione, nelle note o nel nome del conto") String search,
             @ToolParam(required = false, description = "Numero massimo di risultati (default 20, max 50)") Integer limit) {
         User user = currentUser();
         int effectiveLimit = limit == null ? 20 : Math.min(limit, 50);
@@ -255,9 +253,7 @@ public class FinanceTools {
 
         UUID categoryId = null;
         if (categoryName != null && !categoryName.isBlank()) {
-            Optional<Category> cat = categoryService.getAllAvailableCategoriesForUser(user).stream()
-                    .filter(c -> c.getName().equalsIgnoreCase(categoryName.trim()))
-                    .findFirst();
+            Optional<Category> cat = categoryService.getCatalog(user).findByName(categoryName.trim());
             if (cat.isEmpty()) {
                 return "Categoria non trovata: '" + categoryName + "'. Usa listCategories per vedere quelle disponibili.";
             }
@@ -269,7 +265,7 @@ public class FinanceTools {
 
         var page = transactionService.getTransactionsFiltered(
                 user.getId(), null, txType, categoryId, start, end,
-                (search != null && !search.isBlank()) ? search.trim() : null,
+                (search != null && !search.isBlank()) ? search.trim() : null, true,
                 PageRequest.of(0, effectiveLimit));
 
         if (page.isEmpty()) {
@@ -290,9 +286,7 @@ public class FinanceTools {
     public String getTransactionsByCategory(
             @ToolParam(required = true, description = "Nome esatto della categoria (usa listCategories per vedere quelle disponibili)") String categoryName) {
         User user = currentUser();
-        Optional<Category> cat = categoryService.getAllAvailableCategoriesForUser(user).stream()
-                .filter(c -> c.getName().equalsIgnoreCase(categoryName.trim()))
-                .findFirst();
+        Optional<Category> cat = categoryService.getCatalog(user).findByName(categoryName.trim());
         if (cat.isEmpty()) {
             return "Categoria non trovata: '" + categoryName + "'. Usa listCategories per vedere quelle disponibili.";
         }
@@ -0,0 +1,35 @@
+package it.iacovelli.nexabudgetbe.service.search;
+
+import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code lower(colonna) LIKE '%testo%'} su descrizione, nome del conto e, se richiesto, note. Portabile su
+ * qualsiasi database ma non servibile da indici B-tree: default quando il backend non è configurato.
+ */
+@Component
+@ConditionalOnProperty(value = "app.transactions.search.backend", havingValue = "like", matchIfMissing = true)
+public class LikeTransactionSearchBackend implements TransactionSearchBackend {
+
+    @Override
+    public Predicate matches(TransactionSearch search, Root<Transaction> root, Join<Transaction, Account> account,
+                             CriteriaBuilder cb) {
+        String pattern = search.likePattern();
+        List<Predicate> any = new ArrayList<>();
+        any.add(cb.like(cb.lower(root.get("description")), pattern));
+        any.add(cb.like(cb.lower(account.get("name")), pattern));
+        if (search.includeNotes()) {
+            any.add(cb.like(cb.lower(root.get("note")), pattern));
+        }
+        return cb.or(any.toArray(new Predicate[0]));
+    }
+}
@@ -0,0 +1,80 @@
+package it.iacovelli.nexabudgetbe.service.search;
+
+import it.iacovelli.nexabudgetbe.config.PostgresSearchFunctionContributor;
+import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import it.iacovelli.nexabudgetbe.repository.AccountRepository;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ricerca servita dagli indici GIN di {@code V16__add_transaction_search_indexes.sql}: full-text con prefix
+ * matching su ogni termine ({@code to_tsvector('simple', ...) @@ to_tsquery(...)}) e, per le sottostringhe a metà
+ * parola, LIKE su {@code lower(colonna)} coperto dall'indice trigram. I conti con il testo nel nome vengono letti
+ * prima, dalla tabella piccola dei conti dell'utente, e la query li confronta con {@code account_id}: tutti i
+ * predicati restano su colonne di {@code transactions} e Postgres può combinare gli indici in un BitmapOr, mentre
+ * un LIKE sul conto in join lo costringerebbe a scorrere le transazioni. La rilevanza è il {@code ts_rank} full-text.
+ */
+@Component
+@ConditionalOnProperty(value = "app.transactions.search.backend", havingValue = "postgres")
+public class PostgresTransactionSearchBackend implements TransactionSearchBackend {
+
+    private final AccountRepository accountRepository;
+
+    public PostgresTransactionSearchBackend(AccountRepository accountRepository) {
+        this.accountRepository = accountRepository;
+    }
+
+    @Override
+    public TransactionSearch prepare(TransactionSearch search, UUID userId) {
+        return search.withAccountIds(accountRepository.findIdsByUserIdAndNameLike(userId, search.likePattern()));
+    }
+
+    @Override
+    public Predicate matches(TransactionSearch search, Root<Transaction> root, Join<Transaction, Account> account,
+                             CriteriaBuilder cb) {
+        String pattern = search.likePattern();
+        String tsQuery = search.prefixTsQuery();
+        List<Predicate> any = new ArrayList<>();
+        addColumn(any, root.get("description"), pattern, tsQuery, cb);
+        if (search.includeNotes()) {
+            addColumn(any, root.get("note"), pattern, tsQuery, cb);
+        }
+        if (!search.accountIds().isEmpty()) {
+            any.add(root.get("account").get("id").in(search.accountIds()));
+        }
+        return cb.or(any.toArray(new Predicate[0]));
+    }
+
+    @Override
+    public Expression<? extends Number> relevance(TransactionSearch search, Root<Transaction> root, CriteriaBuilder cb) {
+        String tsQuery = search.prefixTsQuery();
+        if (tsQuery == null) {
+            return null;
+        }
+        Expression<Double> rank = rank(root.get("description"), tsQuery, cb);
+        return search.includeNotes() ? cb.sum(rank, rank(root.get("note"), tsQuery, cb)) : rank;
+    }
+
+    private static void addColumn(List<Predicate> any, Expression<String> column, String pattern, String tsQuery,
+                                  CriteriaBuilder cb) {
+        if (tsQuery != null) {
+            any.add(cb.isTrue(cb.function(PostgresSearchFunctionContributor.FTS_PREFIX_MATCH, Boolean.class,
+                    column, cb.literal(tsQuery))));
+        }
+        any.add(cb.like(cb.lower(column), pattern));
+    }
+
+    private static Expression<Double> rank(Expression<String> column, String tsQuery, CriteriaBuilder cb) {
+        return cb.function(PostgresSearchFunctionContributor.FTS_RANK, Double.class, column, cb.literal(tsQuery));
+    }
+}
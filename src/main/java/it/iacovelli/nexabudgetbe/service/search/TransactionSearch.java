@@ -0,0 +1,55 @@
+package it.iacovelli.nexabudgetbe.service.search;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Testo libero del filtro {@code search} sulle transazioni, normalizzato una volta sola per tutti i backend.
+ *
+ * @param text         testo già trimmato, mai vuoto
+ * @param includeNotes se cercare anche nelle note della transazione
+ * @param accountIds   conti dell'utente il cui nome contiene il testo, se il backend li risolve prima della query
+ *                     ({@link TransactionSearchBackend#prepare}); altrimenti vuota
+ */
+public record TransactionSearch(String text, boolean includeNotes, List<UUID> accountIds) {
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    /** @return {@code null} se il testo è assente o vuoto (nessun filtro) */
+    public static TransactionSearch of(String text, boolean includeNotes) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        return new TransactionSearch(text.trim(), includeNotes, List.of());
+    }
+
+    public TransactionSearch withAccountIds(List<UUID> ids) {
+        return new TransactionSearch(text, includeNotes, List.copyOf(ids));
+    }
+
+    /** Pattern per {@code lower(colonna) LIKE ?}: sottostringa case-insensitive. */
+    public String likePattern() {
+        return "%" + text.toLowerCase(Locale.ROOT) + "%";
+    }
+
+    /**
+     * Query {@code tsquery} con prefix matching su ogni termine, in AND: {@code "amaz pri"} diventa
+     * {@code "amaz:* & pri:*"}. Punteggiatura e operatori tsquery vengono scartati.
+     *
+     * @return {@code null} se il testo non contiene termini alfanumerici
+     */
+    public String prefixTsQuery() {
+        StringBuilder query = new StringBuilder();
+        Matcher matcher = TERM.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            if (!query.isEmpty()) {
+                query.append(" & ");
+            }
+            query.append(matcher.group()).append(":*");
+        }
+        return query.isEmpty() ? null : query.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package it.iacovelli.nexabudgetbe.service.search;
+
+import it.iacovelli.nexabudgetbe.model.Account;
+import it.iacovelli.nexabudgetbe.model.Transaction;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.util.UUID;
+
+/**
+ * Traduce il filtro testuale sulle transazioni in un predicato Criteria. L'implementazione attiva si sceglie con
+ * {@code app.transactions.search.backend}: {@code postgres} (indici trigram e full-text) oppure {@code like}
+ * (LIKE su colonne, usato con H2 nei test).
+ */
+public interface TransactionSearchBackend {
+
+    /**
+     * Completa la ricerca con i dati da leggere prima della query (una volta per richiesta, non per ogni
+     * esecuzione della Specification).
+     */
+    default TransactionSearch prepare(TransactionSearch search, UUID userId) {
+        return search;
+    }
+
+    /**
+     * @param account join (o fetch) sul conto già presente nella query, per la ricerca sul nome del conto
+     */
+    Predicate matches(TransactionSearch search, Root<Transaction> root, Join<Transaction, Account> account,
+                      CriteriaBuilder cb);
+
+    /**
+     * Rilevanza della riga rispetto alla ricerca (più alto = più pertinente), usata per ordinare quando il chiamante
+     * non impone un ordinamento.
+     *
+     * @return {@code null} se il backend non supporta il ranking
+     */
+    default Expression<? extends Number> relevance(TransactionSearch search, Root<Transaction> root, CriteriaBuilder cb) {
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.Arrays;
+
+/**
+ * Forma in cui gli embedding entrano negli indici in memoria. {@code dimensions} tiene solo le prime componenti
+ * (troncamento Matryoshka: i modelli Gemini concentrano l'informazione nelle prime dimensioni) e rinormalizza;
+ * 0 o un valore oltre la dimensione del modello le tiene tutte. {@code quantization} sceglie la rappresentazione
+ * delle righe. Mongo conserva sempre l'embedding completo: cambiare forma richiede solo di ricaricare gli indici.
+ */
+public record EmbeddingEncoding(int dimensions, Quantization quantization) {
+
+    public static final EmbeddingEncoding FULL = new EmbeddingEncoding(0, Quantization.FLOAT32);
+
+    public enum Quantization {
+        FLOAT32,
+        INT8
+    }
+
+    /** Embedding troncato e a norma 1; {@code null} se nullo o tutto zero. */
+    public float[] prepare(float[] embedding) {
+        if (embedding == null) {
+            return null;
+        }
+        if (dimensions > 0 && dimensions < embedding.length) {
+            return VectorMath.normalize(Arrays.copyOf(embedding, dimensions));
+        }
+        return VectorMath.normalize(embedding);
+    }
+
+    VectorStorage newStorage(int dimensions) {
+        return quantization == Quantization.INT8
+                ? new Int8VectorStorage(dimensions)
+                : new FloatVectorStorage(dimensions);
+    }
+}
@@ -0,0 +1,81 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Ricerca esatta a forza bruta: la query viene confrontata con tutte le righe, in ordine di memoria. Per le cache
+ * piccole (la grande maggioranza degli utenti) è più veloce di un grafo.
+ */
+final class FlatVectorIndex implements VectorIndex {
+
+    private final VectorStorage storage;
+    private final List<String> categories;
+
+    FlatVectorIndex(VectorStorage storage) {
+        this(storage, new ArrayList<>());
+    }
+
+    private FlatVectorIndex(VectorStorage storage, List<String> categories) {
+        this.storage = storage;
+        this.categories = categories;
+    }
+
+    @Override
+    public void add(float[] vector, String category) {
+        storage.add(vector);
+        categories.add(category);
+    }
+
+    @Override
+    public void setCategory(int row, String category) {
+        categories.set(row, category);
+    }
+
+    @Override
+    public Optional<Neighbor> nearest(float[] query) {
+        int best = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < categories.size(); i++) {
+            float score = storage.dot(i, query);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best < 0 ? Optional.empty() : Optional.of(new Neighbor(categories.get(best), bestScore));
+    }
+
+    @Override
+    public int size() {
+        return categories.size();
+    }
+
+    @Override
+    public long bytes() {
+        return storage.bytes();
+    }
+
+    FlatVectorIndex copy() {
+        return new FlatVectorIndex(storage.copy(), new ArrayList<>(categories));
+    }
+
+    /** Grafo HNSW sulle stesse righe: l'indice piatto non va più usato, le righe passano al grafo. */
+    HnswVectorIndex toHnsw() {
+        return new HnswVectorIndex(storage, categories);
+    }
+
+    /**
+     * Riapplica a {@code target} le modifiche arrivate durante la costruzione del grafo: le categorie sostituite
+     * nelle prime {@code from} righe e le voci dalla {@code from}-esima.
+     */
+    void replayInto(VectorIndex target, int from) {
+        for (int i = 0; i < from; i++) {
+            target.setCategory(i, categories.get(i));
+        }
+        for (int i = from; i < categories.size(); i++) {
+            target.add(storage.get(i), categories.get(i));
+        }
+    }
+}
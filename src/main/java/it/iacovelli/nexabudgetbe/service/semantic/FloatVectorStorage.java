@@ -0,0 +1,62 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.Arrays;
+
+/** Vettori a piena precisione in un unico array contiguo, riga dopo riga. */
+final class FloatVectorStorage implements VectorStorage {
+
+    private final int dimensions;
+    private float[] rows = new float[0];
+    private int size;
+
+    FloatVectorStorage(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int add(float[] unit) {
+        if ((size + 1) * dimensions > rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(16, size + (size >> 1) + 1) * dimensions);
+        }
+        System.arraycopy(unit, 0, rows, size * dimensions, dimensions);
+        return size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float dot(int row, float[] query) {
+        return VectorMath.dot(rows, row * dimensions, query);
+    }
+
+    @Override
+    public float dot(int row, int other) {
+        return VectorMath.dot(rows, row * dimensions, rows, other * dimensions, dimensions);
+    }
+
+    @Override
+    public float[] get(int row) {
+        return Arrays.copyOfRange(rows, row * dimensions, (row + 1) * dimensions);
+    }
+
+    @Override
+    public VectorStorage copy() {
+        FloatVectorStorage copy = new FloatVectorStorage(dimensions);
+        copy.rows = Arrays.copyOf(rows, size * dimensions);
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * dimensions * Float.BYTES;
+    }
+}
@@ -0,0 +1,268 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Ricerca approssimata su grafo HNSW (Hierarchical Navigable Small World) per le cache grandi: livelli superiori
+ * radi per avvicinarsi alla zona della query, livello 0 con tutti i nodi per la ricerca fine. La distanza è
+ * {@code 1 - coseno}. Solo inserimenti: la cache semantica non cancella voci, al più le riscrive.
+ */
+final class HnswVectorIndex implements VectorIndex {
+
+    static final int DEFAULT_M = 16;
+    static final int DEFAULT_EF_CONSTRUCTION = 100;
+    static final int DEFAULT_EF_SEARCH = 64;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelFactor;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final VectorStorage storage;
+    private final List<Node> nodes = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /** Grafo sulle righe già presenti in {@code storage}, una per categoria, collegate in ordine. */
+    HnswVectorIndex(VectorStorage storage, List<String> categories) {
+        this(storage, categories, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    HnswVectorIndex(VectorStorage storage, List<String> categories, int m, int efConstruction, int efSearch) {
+        this.storage = storage;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelFactor = 1.0 / Math.log(m);
+        for (String category : categories) {
+            insert(category);
+        }
+    }
+
+    /** Nodo del grafo: l'id è anche la riga del vettore in {@link VectorStorage}. */
+    private static final class Node {
+        String category;
+        final int[][] links;
+        final int[] linkCounts;
+
+        Node(String category, int level, int m, int maxM0) {
+            this.category = category;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                links[l] = new int[l == 0 ? maxM0 : m];
+            }
+        }
+
+        int level() {
+            return links.length - 1;
+        }
+    }
+
+    /** Candidato di una ricerca: id del nodo e distanza dalla query. */
+    private record Candidate(int id, float distance) {
+    }
+
+    @Override
+    public void add(float[] vector, String category) {
+        storage.add(vector);
+        insert(category);
+    }
+
+    @Override
+    public void setCategory(int row, String category) {
+        nodes.get(row).category = category;
+    }
+
+    /** Collega al grafo la riga successiva di {@link #storage}. */
+    private void insert(String category) {
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelFactor);
+        int id = nodes.size();
+        float[] vector = storage.get(id);
+        nodes.add(new Node(category, level, m, maxM0));
+        if (entryPoint < 0) {
+            entryPoint = id;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            int cap = l == 0 ? maxM0 : m;
+            for (Candidate neighbor : selectNeighbors(candidates, m)) {
+                connect(id, neighbor.id(), l, cap);
+                connect(neighbor.id(), id, l, cap);
+            }
+            current = candidates.getFirst().id();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = id;
+        }
+    }
+
+    @Override
+    public Optional<Neighbor> nearest(float[] query) {
+        if (entryPoint < 0) {
+            return Optional.empty();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        Candidate best = searchLayer(query, current, efSearch, 0).getFirst();
+        return Optional.of(new Neighbor(nodes.get(best.id()).category, 1.0 - best.distance()));
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public long bytes() {
+        long links = 0;
+        for (Node node : nodes) {
+            for (int[] level : node.links) {
+                links += level.length;
+            }
+        }
+        return storage.bytes() + links * Integer.BYTES;
+    }
+
+    private float distance(float[] query, int id) {
+        return 1f - storage.dot(id, query);
+    }
+
+    private float distance(int id, int other) {
+        return 1f - storage.dot(id, other);
+    }
+
+    /** Discesa greedy su un livello superiore: si sposta sul vicino più vicino finché migliora. */
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                int neighbor = node.links[level][i];
+                float d = distance(query, neighbor);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Ricerca best-first sul livello, con al più {@code ef} risultati; ordinati dal più vicino. */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> found = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        Candidate first = new Candidate(start, distance(query, start));
+        visited.set(start);
+        toVisit.add(first);
+        found.add(first);
+
+        while (!toVisit.isEmpty()) {
+            Candidate candidate = toVisit.poll();
+            if (candidate.distance() > found.peek().distance() && found.size() >= ef) {
+                break;
+            }
+            Node node = nodes.get(candidate.id());
+            if (node.level() < level) {
+                continue;
+            }
+            for (int i = 0; i < node.linkCounts[level]; i++) {
+                int neighbor = node.links[level][i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (found.size() < ef || d < found.peek().distance()) {
+                    Candidate next = new Candidate(neighbor, d);
+                    toVisit.add(next);
+                    found.add(next);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(found);
+        result.sort(Comparator.comparingDouble(Candidate::distance));
+        return result;
+    }
+
+    /**
+     * Euristica di selezione dei vicini (dall'articolo HNSW): un candidato, in ordine di distanza, entra solo se è più
+     * vicino al nodo che a tutti i vicini già scelti. Con dati a gruppi, come le descrizioni dello stesso merchant,
+     * evita che i vicini finiscano tutti nello stesso gruppo e tiene collegato il grafo tra un gruppo e l'altro.
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(candidate.id(), chosen.id()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /** Aggiunge l'arco {@code from -> to}; a lista piena riseleziona i vicini con {@link #selectNeighbors}. */
+    private void connect(int from, int to, int level, int cap) {
+        Node node = nodes.get(from);
+        int[] links = node.links[level];
+        int count = node.linkCounts[level];
+        for (int i = 0; i < count; i++) {
+            if (links[i] == to) {
+                return;
+            }
+        }
+        if (count < cap) {
+            links[count] = to;
+            node.linkCounts[level] = count + 1;
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        candidates.add(new Candidate(to, distance(from, to)));
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(links[i], distance(from, links[i])));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+        List<Candidate> selected = selectNeighbors(candidates, cap);
+        for (int i = 0; i < selected.size(); i++) {
+            links[i] = selected.get(i).id();
+        }
+        node.linkCounts[level] = selected.size();
+    }
+}
@@ -0,0 +1,104 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.Arrays;
+
+/**
+ * Quantizzazione scalare a 8 bit: ogni riga è scalata sul suo valore assoluto massimo ({@code max / 127}) e
+ * arrotondata a {@code byte}, un quarto della memoria dei {@code float}. La query resta a piena precisione
+ * (prodotto asimmetrico {@code byte x float}), così l'errore viene solo dalle righe memorizzate.
+ */
+final class Int8VectorStorage implements VectorStorage {
+
+    private final int dimensions;
+    private byte[] rows = new byte[0];
+    private float[] scales = new float[0];
+    private int size;
+
+    Int8VectorStorage(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int add(float[] unit) {
+        if ((size + 1) * dimensions > rows.length) {
+            int capacity = Math.max(16, size + (size >> 1) + 1);
+            rows = Arrays.copyOf(rows, capacity * dimensions);
+            scales = Arrays.copyOf(scales, capacity);
+        }
+        float max = 0;
+        for (int i = 0; i < dimensions; i++) {
+            max = Math.max(max, Math.abs(unit[i]));
+        }
+        float scale = max / 127f;
+        int offset = size * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            rows[offset + i] = scale == 0 ? 0 : (byte) Math.round(unit[i] / scale);
+        }
+        scales[size] = scale;
+        return size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float dot(int row, float[] query) {
+        byte[] rows = this.rows;
+        int offset = row * dimensions;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimensions; i += 4) {
+            s0 += rows[offset + i] * query[i];
+            s1 += rows[offset + i + 1] * query[i + 1];
+            s2 += rows[offset + i + 2] * query[i + 2];
+            s3 += rows[offset + i + 3] * query[i + 3];
+        }
+        for (; i < dimensions; i++) {
+            s0 += rows[offset + i] * query[i];
+        }
+        return (s0 + s1 + s2 + s3) * scales[row];
+    }
+
+    @Override
+    public float dot(int row, int other) {
+        byte[] rows = this.rows;
+        int a = row * dimensions;
+        int b = other * dimensions;
+        int sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += rows[a + i] * rows[b + i];
+        }
+        return sum * scales[row] * scales[other];
+    }
+
+    @Override
+    public float[] get(int row) {
+        float[] vector = new float[dimensions];
+        int offset = row * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = rows[offset + i] * scales[row];
+        }
+        return vector;
+    }
+
+    @Override
+    public VectorStorage copy() {
+        Int8VectorStorage copy = new Int8VectorStorage(dimensions);
+        copy.rows = Arrays.copyOf(rows, size * dimensions);
+        copy.scales = Arrays.copyOf(scales, size);
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * (dimensions + Float.BYTES);
+    }
+}
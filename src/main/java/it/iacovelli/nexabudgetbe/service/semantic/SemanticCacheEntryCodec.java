@@ -0,0 +1,99 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Arrays;
+
+/**
+ * Decodifica in lettura delle voci della collection della cache semantica: descrizione, categoria ed embedding, letto dal BSON
+ * direttamente in un {@code float[]} invece che in una {@code List<Double>} (per 3072 dimensioni, oltre 70 KB di
+ * oggetti per voce). Gli altri campi vengono saltati senza decodificarli. Solo lettura: le scritture restano al
+ * vector store.
+ */
+public final class SemanticCacheEntryCodec implements Codec<SemanticCacheEntryCodec.Entry> {
+
+    /** Campo del vector store con il testo del documento, cioè la descrizione della transazione. */
+    public static final String CONTENT_FIELD = "content";
+
+    public record Entry(String description, String category, float[] embedding) {
+    }
+
+    private final String embeddingPath;
+
+    public SemanticCacheEntryCodec(String embeddingPath) {
+        this.embeddingPath = embeddingPath;
+    }
+
+    @Override
+    public Entry decode(BsonReader reader, DecoderContext decoderContext) {
+        String description = null;
+        String category = null;
+        float[] embedding = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (name.equals(embeddingPath) && reader.getCurrentBsonType() == BsonType.ARRAY) {
+                embedding = readVector(reader);
+            } else if (name.equals(CONTENT_FIELD) && reader.getCurrentBsonType() == BsonType.STRING) {
+                description = reader.readString();
+            } else if (name.equals("metadata") && reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                category = readCategory(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Entry(description, category, embedding);
+    }
+
+    private static float[] readVector(BsonReader reader) {
+        float[] vector = new float[256];
+        int size = 0;
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (size == vector.length) {
+                vector = Arrays.copyOf(vector, size * 2);
+            }
+            vector[size++] = switch (reader.getCurrentBsonType()) {
+                case DOUBLE -> (float) reader.readDouble();
+                case INT32 -> reader.readInt32();
+                case INT64 -> reader.readInt64();
+                default -> {
+                    reader.skipValue();
+                    yield 0f;
+                }
+            };
+        }
+        reader.readEndArray();
+        return size == vector.length ? vector : Arrays.copyOf(vector, size);
+    }
+
+    private static String readCategory(BsonReader reader) {
+        String category = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.readName().equals("category") && reader.getCurrentBsonType() == BsonType.STRING) {
+                category = reader.readString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return category;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Entry value, EncoderContext encoderContext) {
+        throw new UnsupportedOperationException("Le voci della cache semantica si scrivono tramite il vector store");
+    }
+
+    @Override
+    public Class<Entry> getEncoderClass() {
+        return Entry.class;
+    }
+}
@@ -0,0 +1,129 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice della cache semantica di un utente: forza bruta finché le voci sono poche, poi ricostruito una volta come
+ * grafo HNSW al superamento di {@code hnswThreshold}. Le ricerche vanno in parallelo, gli inserimenti sono
+ * esclusivi; il grafo viene costruito su una copia, fuori dal lock, e sostituito alla fine con le voci arrivate
+ * nel frattempo. Gli embedding entrano nella forma di {@link EmbeddingEncoding}, le query sono preparate allo stesso
+ * modo. La dimensione dei vettori è fissata dal primo inserito: vettori di dimensione diversa (un cambio di modello di
+ * embedding) vengono ignorati.
+ * <p>
+ * Le voci sono indicizzate per descrizione: salvare di nuovo una descrizione già presente (una ricategorizzazione
+ * manuale) ne sostituisce la categoria. Un duplicato avrebbe lo stesso embedding e la ricerca, a parità di
+ * similarità, continuerebbe a restituire la riga più vecchia.
+ */
+public final class UserVectorIndex {
+
+    private final int hnswThreshold;
+    private final EmbeddingEncoding encoding;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private VectorIndex index;
+    private int dimensions = -1;
+    private boolean upgrading;
+    /** Riga di ogni descrizione indicizzata. */
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    public UserVectorIndex(int hnswThreshold) {
+        this(hnswThreshold, EmbeddingEncoding.FULL);
+    }
+
+    public UserVectorIndex(int hnswThreshold, EmbeddingEncoding encoding) {
+        this.hnswThreshold = hnswThreshold;
+        this.encoding = encoding;
+    }
+
+    /** Aggiunge un embedding (non normalizzato) con la sua categoria, senza descrizione che lo identifichi. */
+    public void add(float[] embedding, String category) {
+        add(null, embedding, category);
+    }
+
+    /**
+     * Aggiunge l'embedding (non normalizzato) di {@code description} con la sua categoria; se la descrizione è già
+     * nell'indice ne sostituisce soltanto la categoria.
+     */
+    public void add(String description, float[] embedding, String category) {
+        float[] unit = encoding.prepare(embedding);
+        if (unit == null) {
+            return;
+        }
+        FlatVectorIndex snapshot = null;
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                dimensions = unit.length;
+                index = new FlatVectorIndex(encoding.newStorage(dimensions));
+            } else if (unit.length != dimensions) {
+                return;
+            }
+            Integer row = description != null ? rows.get(description) : null;
+            if (row != null) {
+                index.setCategory(row, category);
+                return;
+            }
+            index.add(unit, category);
+            if (description != null) {
+                rows.put(description, index.size() - 1);
+            }
+            if (index instanceof FlatVectorIndex flat && flat.size() >= hnswThreshold && !upgrading) {
+                upgrading = true;
+                snapshot = flat.copy();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (snapshot != null) {
+            upgrade(snapshot);
+        }
+    }
+
+    private void upgrade(FlatVectorIndex snapshot) {
+        int built = snapshot.size();
+        HnswVectorIndex graph = snapshot.toHnsw();
+        lock.writeLock().lock();
+        try {
+            ((FlatVectorIndex) index).replayInto(graph, built);
+            index = graph;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Voce più simile all'embedding (non normalizzato), se l'indice non è vuoto. */
+    public Optional<VectorIndex.Neighbor> nearest(float[] embedding) {
+        float[] unit = encoding.prepare(embedding);
+        lock.readLock().lock();
+        try {
+            if (index == null || unit == null || unit.length != dimensions) {
+                return Optional.empty();
+            }
+            return index.nearest(unit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Memoria occupata dai vettori, in KB: è il peso della voce nella cache degli indici. */
+    public int weightKb() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 1 : (int) Math.max(1, index.bytes() / 1024);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import java.util.Optional;
+
+/**
+ * Indice in memoria dei vettori della cache semantica di un utente, ciascuno con la sua categoria. I vettori sono
+ * già normalizzati a norma 1, quindi la similarità coseno è il prodotto scalare. Non thread-safe: la
+ * sincronizzazione è di {@link UserVectorIndex}.
+ */
+public interface VectorIndex {
+
+    /** Vettore più vicino alla query, con la sua similarità coseno in [-1, 1]. */
+    record Neighbor(String category, double cosine) {
+    }
+
+    void add(float[] vector, String category);
+
+    /** Sostituisce la categoria della riga {@code row}, numerata in ordine di inserimento. */
+    void setCategory(int row, String category);
+
+    Optional<Neighbor> nearest(float[] query);
+
+    int size();
+
+    /** Memoria occupata dai vettori. */
+    long bytes();
+}
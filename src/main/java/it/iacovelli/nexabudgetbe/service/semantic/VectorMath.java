@@ -0,0 +1,52 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+/**
+ * Operazioni sui vettori degli indici. Il prodotto scalare usa quattro accumulatori indipendenti: il loop resta
+ * semplice da compilare per il JIT (e per l'immagine nativa) senza dipendere dal modulo incubator della Vector API.
+ */
+final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /** Copia del vettore a norma 1; {@code null} se il vettore è nullo o tutto zero. */
+    static float[] normalize(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += (double) v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = vector[i] * scale;
+        }
+        return unit;
+    }
+
+    /** Prodotto scalare tra {@code b} e la riga di {@code a} che inizia a {@code offset}. */
+    static float dot(float[] a, int offset, float[] b) {
+        return dot(a, offset, b, 0, b.length);
+    }
+
+    /** Prodotto scalare tra le righe di lunghezza {@code length} che iniziano a {@code aOffset} e {@code bOffset}. */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+}
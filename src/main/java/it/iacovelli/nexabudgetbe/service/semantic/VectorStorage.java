@@ -0,0 +1,30 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+/**
+ * Vettori a norma 1 di un indice, in righe contigue indirizzate per posizione. Le implementazioni differiscono
+ * solo per la rappresentazione: {@code float} a piena precisione o interi a 8 bit con una scala per riga.
+ */
+interface VectorStorage {
+
+    /** Aggiunge un vettore a norma 1 e ne restituisce la riga. */
+    int add(float[] unit);
+
+    int size();
+
+    int dimensions();
+
+    /** Prodotto scalare (coseno) tra la riga e una query a norma 1, a piena precisione. */
+    float dot(int row, float[] query);
+
+    /** Prodotto scalare (coseno) tra due righe. */
+    float dot(int row, int other);
+
+    /** La riga come {@code float[]}, eventualmente ricostruita dalla forma quantizzata. */
+    float[] get(int row);
+
+    /** Copia indipendente, per ricostruire l'indice fuori dal lock. */
+    VectorStorage copy();
+
+    /** Memoria occupata dai vettori. */
+    long bytes();
+}
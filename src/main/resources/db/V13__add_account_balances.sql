@@ -0,0 +1,19 @@
+-- Read model dei saldi per conto, aggiornato incrementalmente da AccountBalanceService a ogni scrittura
+-- su transactions (create/update/delete/trasferimenti/restore). Sostituisce la SUM sull'intera storia del
+-- conto eseguita a ogni lettura della lista conti. Nessuna FK verso accounts: le righe orfane dei conti
+-- eliminati definitivamente vengono rimosse dal purge del cestino.
+CREATE TABLE account_balances
+(
+    account_id UUID           NOT NULL PRIMARY KEY,
+    balance    NUMERIC(19, 4) NOT NULL,
+    updated_at TIMESTAMP
+);
+
+-- Backfill dai dati esistenti (solo transazioni non soft-eliminate, come la query di lettura precedente)
+INSERT INTO account_balances (account_id, balance, updated_at)
+SELECT a.id,
+       COALESCE(SUM(CASE WHEN t.type = 'IN' THEN t.amount ELSE -t.amount END), 0),
+       NOW()
+FROM accounts a
+         LEFT JOIN transactions t ON t.account_id = a.id AND t.deleted = false
+GROUP BY a.id;
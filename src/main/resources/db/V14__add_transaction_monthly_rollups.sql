@@ -0,0 +1,42 @@
+-- Read model mensile delle transazioni, aggiornato incrementalmente da MonthlyRollupService a ogni scrittura
+-- su transactions (create/update/delete/trasferimenti/import/restore/merge categorie). Alimenta report e budget:
+-- i mesi interi si leggono da qui invece di raggruppare per YEAR/MONTH l'intera storia dell'utente.
+-- amount è sempre positivo (il segno è dato da type). Nessuna FK: le righe vengono riallineate dal service
+-- e dalla riconciliazione notturna.
+CREATE TABLE transaction_monthly_rollups
+(
+    id          UUID           NOT NULL PRIMARY KEY,
+    user_id     UUID           NOT NULL,
+    year_month  INTEGER        NOT NULL,
+    category_id UUID,
+    currency    VARCHAR(255)   NOT NULL,
+    type        VARCHAR(255)   NOT NULL,
+    is_transfer BOOLEAN        NOT NULL,
+    amount      NUMERIC(19, 4) NOT NULL,
+    tx_count    BIGINT         NOT NULL
+);
+
+CREATE INDEX idx_rollup_user_month ON transaction_monthly_rollups (user_id, year_month);
+
+-- Una sola riga per chiave (category_id NULL = senza categoria): gli incrementi fanno UPDATE, l'INSERT avviene
+-- solo alla prima scrittura della chiave
+CREATE UNIQUE INDEX uq_rollup_key ON transaction_monthly_rollups
+    (user_id, year_month, COALESCE(category_id, '00000000-0000-0000-0000-000000000000'::uuid), currency, type, is_transfer);
+
+-- Backfill dai dati esistenti (solo transazioni non soft-eliminate)
+INSERT INTO transaction_monthly_rollups (id, user_id, year_month, category_id, currency, type, is_transfer, amount, tx_count)
+SELECT gen_random_uuid(),
+       t.user_id,
+       (EXTRACT(YEAR FROM t.transaction_date) * 100 + EXTRACT(MONTH FROM t.transaction_date))::INTEGER,
+       t.category_id,
+       a.currency,
+       t.type,
+       t.transfer_id IS NOT NULL,
+       SUM(t.amount),
+       COUNT(*)
+FROM transactions t
+         JOIN accounts a ON t.account_id = a.id
+WHERE t.deleted = false
+GROUP BY t.user_id,
+         (EXTRACT(YEAR FROM t.transaction_date) * 100 + EXTRACT(MONTH FROM t.transaction_date))::INTEGER,
+         t.category_id, a.currency, t.type, t.transfer_id IS NOT NULL;
@@ -0,0 +1,8 @@
+-- Indici per la paginazione a cursore delle liste transazioni: il seek su (transaction_date, id) e l'ordinamento
+-- per data con id come spareggio vengono serviti dall'indice senza sort né OFFSET. Sostituiscono gli indici
+-- (user_id, transaction_date) e (account_id, transaction_date), di cui sono un superset.
+DROP INDEX IF EXISTS idx_transaction_user_date;
+DROP INDEX IF EXISTS idx_transaction_account_date;
+
+CREATE INDEX IF NOT EXISTS idx_transaction_user_date_id ON transactions (user_id, transaction_date, id);
+CREATE INDEX IF NOT EXISTS idx_transaction_account_date_id ON transactions (account_id, transaction_date, id);
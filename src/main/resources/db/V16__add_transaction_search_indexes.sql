@@ -0,0 +1,31 @@
+-- Indici per il filtro testuale sulle transazioni (PostgresTransactionSearchBackend): full-text con prefix matching
+-- e trigram per le sottostringhe, su descrizione e note. Sostituiscono il seq scan di lower(col) LIKE '%x%'.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- note era mappata @Lob, che su Postgres diventa un large object (oid) non indicizzabile né cercabile via SQL:
+-- la colonna passa a text (mapping columnDefinition = "text" sull'entity) copiando il contenuto dei large object
+DO
+$$
+    BEGIN
+        IF (SELECT data_type
+            FROM information_schema.columns
+            WHERE table_name = 'transactions'
+              AND column_name = 'note') = 'oid' THEN
+            ALTER TABLE transactions ADD COLUMN note_text TEXT;
+            UPDATE transactions SET note_text = convert_from(lo_get(note), 'UTF8') WHERE note IS NOT NULL;
+            PERFORM lo_unlink(note) FROM transactions WHERE note IS NOT NULL;
+            ALTER TABLE transactions DROP COLUMN note;
+            ALTER TABLE transactions RENAME COLUMN note_text TO note;
+        END IF;
+    END
+$$;
+
+-- Le espressioni devono coincidere con quelle generate da PostgresSearchFunctionContributor e dal backend
+CREATE INDEX IF NOT EXISTS idx_transaction_description_fts
+    ON transactions USING gin (to_tsvector('simple', coalesce(description, '')));
+CREATE INDEX IF NOT EXISTS idx_transaction_note_fts
+    ON transactions USING gin (to_tsvector('simple', coalesce(note, '')));
+CREATE INDEX IF NOT EXISTS idx_transaction_description_trgm
+    ON transactions USING gin (lower(description) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_transaction_note_trgm
+    ON transactions USING gin (lower(note) gin_trgm_ops);
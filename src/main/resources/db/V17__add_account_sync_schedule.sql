@@ -0,0 +1,8 @@
+-- Pianificazione dei sync bancari in background (BankSyncScheduler): prossima scadenza con jitter e numero di
+-- fallimenti consecutivi per il backoff dei conti in errore o con consenso scaduto.
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS next_sync_at TIMESTAMP;
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS sync_failures INTEGER NOT NULL DEFAULT 0;
+
+-- Lo scheduler legge solo i conti collegati e non eliminati, in ordine di scadenza
+CREATE INDEX IF NOT EXISTS idx_account_next_sync
+    ON accounts (next_sync_at) WHERE provider IS NOT NULL AND deleted = false;
@@ -0,0 +1,13 @@
+-- Storico giornaliero dei tassi di cambio, scritto da HistoricalExchangeRateService con una fotografia al giorno
+-- della tabella della valuta pivot. I report convertono gli importi di un mese al tasso di quel mese leggendo
+-- questa serie (caricata in memoria all'avvio) invece di usare il tasso del giorno.
+CREATE TABLE exchange_rates
+(
+    id        UUID           NOT NULL PRIMARY KEY,
+    rate_date DATE           NOT NULL,
+    base      VARCHAR(3)     NOT NULL,
+    quote     VARCHAR(3)     NOT NULL,
+    rate      NUMERIC(24, 10) NOT NULL
+);
+
+CREATE UNIQUE INDEX uq_exchange_rate_day ON exchange_rates (rate_date, base, quote);
@@ -0,0 +1,10 @@
+-- Contatore per utente delle modifiche ai dati che alimentano i report (transazioni, conti, categorie),
+-- incrementato da UserDataGenerationService nella stessa transazione di ogni scrittura. Fa parte della chiave
+-- della cache dei report: una scrittura rende irraggiungibili le voci precedenti senza doverle cancellare.
+-- Nessun backfill: un utente senza riga è alla generazione 0. Nessuna FK verso users, come account_balances.
+CREATE TABLE user_data_generations
+(
+    user_id    UUID      NOT NULL PRIMARY KEY,
+    generation BIGINT    NOT NULL,
+    updated_at TIMESTAMP
+);
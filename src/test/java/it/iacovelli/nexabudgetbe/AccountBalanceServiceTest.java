@@ -0,0 +1,170 @@
+package it.iacovelli.nexabudgetbe;
+
+import it.iacovelli.nexabudgetbe.config.TestConfig;
+import it.iacovelli.nexabudgetbe.dto.TransactionDto;
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.*;
+import it.iacovelli.nexabudgetbe.service.AccountBalanceService;
+import it.iacovelli.nexabudgetbe.service.TransactionService;
+import it.iacovelli.nexabudgetbe.service.TrashService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica che il ledger {@code account_balances} resti allineato alla SUM delle transazioni attive
+ * per ogni tipo di scrittura, e che la riconciliazione ripari una deriva.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestConfig.class)
+@Transactional
+class AccountBalanceServiceTest {
+
+    @Autowired
+    private AccountBalanceService accountBalanceService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TrashService trashService;
+
+    @Autowired
+    private AccountBalanceRepository accountBalanceRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User testUser;
+    private Account testAccount;
+
+    @BeforeEach
+    void setUp() {
+        accountBalanceRepository.deleteAll();
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+
+        testUser = userRepository.save(User.builder()
+                .username("balanceuser")
+                .email("balance@example.com")
+                .passwordHash("hashedPassword")
+                .build());
+
+        testAccount = accountRepository.save(Account.builder()
+                .name("Conto Corrente")
+                .type(AccountType.CONTO_CORRENTE)
+                .currency("EUR")
+                .user(testUser)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountBalanceRepository.deleteAll();
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testLedgerFollowsCreateUpdateAndDelete() {
+        TransactionDto.TransactionResponse income = transactionService.createTransaction(tx(TransactionType.IN, "200"));
+        TransactionDto.TransactionResponse expense = transactionService.createTransaction(tx(TransactionType.OUT, "50"));
+        assertLedgerMatchesSum(testAccount, "150");
+
+        Transaction toUpdate = transactionService.getTransactionByIdAndUser(expense.getId(), testUser).orElseThrow();
+        transactionService.updateTransaction(toUpdate, testAccount, null, new BigDecimal("80"),
+                TransactionType.OUT, "Spesa", LocalDate.now(), null);
+        assertLedgerMatchesSum(testAccount, "120");
+
+        Transaction toDelete = transactionService.getTransactionByIdAndUser(income.getId(), testUser).orElseThrow();
+        transactionService.deleteTransaction(toDelete);
+        assertLedgerMatchesSum(testAccount, "-80");
+    }
+
+    @Test
+    void testLedgerFollowsAccountChangeAndTransfer() {
+        Account savings = accountRepository.save(Account.builder()
+                .name("Risparmio")
+                .type(AccountType.RISPARMIO)
+                .currency("EUR")
+                .user(testUser)
+                .build());
+
+        TransactionDto.TransactionResponse created = transactionService.createTransaction(tx(TransactionType.IN, "100"));
+        Transaction moved = transactionService.getTransactionByIdAndUser(created.getId(), testUser).orElseThrow();
+        transactionService.updateTransaction(moved, savings, null, new BigDecimal("100"),
+                TransactionType.IN, "Spostata", LocalDate.now(), null);
+        assertLedgerMatchesSum(testAccount, "0");
+        assertLedgerMatchesSum(savings, "100");
+
+        transactionService.createTransfer(savings, testAccount, new BigDecimal("40"), "Giroconto", LocalDate.now(), null);
+        assertLedgerMatchesSum(testAccount, "40");
+        assertLedgerMatchesSum(savings, "60");
+    }
+
+    @Test
+    void testLedgerFollowsTrashRestore() {
+        TransactionDto.TransactionResponse created = transactionService.createTransaction(tx(TransactionType.OUT, "30"));
+        transactionService.deleteTransaction(
+                transactionService.getTransactionByIdAndUser(created.getId(), testUser).orElseThrow());
+        assertLedgerMatchesSum(testAccount, "0");
+
+        trashService.restoreTransaction(created.getId(), testUser);
+        assertLedgerMatchesSum(testAccount, "-30");
+    }
+
+    @Test
+    void testReconcileRepairsDrift() {
+        transactionService.createTransaction(tx(TransactionType.IN, "500"));
+        accountBalanceRepository.setBalance(testAccount.getId(), new BigDecimal("999"), LocalDateTime.now());
+
+        accountBalanceService.reconcile();
+
+        assertLedgerMatchesSum(testAccount, "500");
+    }
+
+    private Transaction tx(TransactionType type, String amount) {
+        return Transaction.builder()
+                .user(testUser)
+                .account(testAccount)
+                .amount(new BigDecimal(amount))
+                .type(type)
+                .description("Movimento")
+                .date(LocalDate.now())
+                .build();
+    }
+
+    private void assertLedgerMatchesSum(Account account, String expected) {
+        List<Object[]> rows = accountBalanceRepository.findBalances(List.of(account.getId()));
+        assertEquals(1, rows.size(), "Il ledger deve contenere una riga per il conto");
+        BigDecimal ledger = (BigDecimal) rows.get(0)[1];
+        assertEquals(0, new BigDecimal(expected).compareTo(ledger));
+        assertEquals(0, transactionRepository.calculateBalanceForAccount(account).compareTo(ledger));
+    }
+}
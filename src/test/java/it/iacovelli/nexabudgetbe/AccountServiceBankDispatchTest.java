@@ -203,4 +203,41 @@ class AccountServiceBankDispatchTest {
         assertNull(updated.getLastExternalSync());
         assertFalse(updated.getIsSynchronizing());
     }
+
+    @Test
+    void syncAccountInBackground_schedulesNextSyncAndBacksOffOnReauth() {
+        Account account = createEnableBankingLinkedAccount();
+
+        when(enableBankingService.getTransactions(anyString(), any()))
+                .thenReturn(List.of(creditTransaction("tx-bg", "10.00", "2026-01-07", "Bonifico")));
+
+        assertEquals(AccountService.SyncOutcome.SYNCED, accountService.syncAccountInBackground(account.getId()));
+        Account synced = accountRepository.findById(account.getId()).orElseThrow();
+        assertNotNull(synced.getLastExternalSync());
+        assertTrue(synced.getNextSyncAt().isAfter(java.time.LocalDateTime.now()));
+        assertEquals(0, synced.getSyncFailures());
+        assertEquals(1, transactionRepository.findByAccount(synced).size());
+
+        // Già pianificato nel futuro: un secondo giro dello scheduler non lo risincronizza
+        assertEquals(AccountService.SyncOutcome.SKIPPED, accountService.syncAccountInBackground(account.getId()));
+        assertFalse(accountRepository.findById(account.getId()).orElseThrow().getIsSynchronizing());
+
+        synced.setNextSyncAt(null);
+        accountRepository.save(synced);
+        when(enableBankingService.getTransactions(anyString(), any()))
+                .thenThrow(new BankReauthRequiredException("Sessione scaduta", "401", "SESSION_EXPIRED", true));
+
+        assertEquals(AccountService.SyncOutcome.REAUTH_REQUIRED, accountService.syncAccountInBackground(account.getId()));
+        Account expired = accountRepository.findById(account.getId()).orElseThrow();
+        assertTrue(expired.getRequiresReauth());
+        assertEquals(1, expired.getSyncFailures());
+        assertTrue(expired.getNextSyncAt().isAfter(java.time.LocalDateTime.now().plusHours(12)),
+                "il consenso scaduto deve rimandare il prossimo tentativo di almeno mezza giornata");
+
+        // Un nuovo collegamento azzera il backoff
+        accountService.linkAccountToProvider(account.getId(), "uid-2", BankProvider.ENABLE_BANKING);
+        Account relinked = accountRepository.findById(account.getId()).orElseThrow();
+        assertNull(relinked.getNextSyncAt());
+        assertEquals(0, relinked.getSyncFailures());
+    }
 }
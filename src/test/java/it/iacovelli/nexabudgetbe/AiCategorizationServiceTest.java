@@ -7,16 +7,23 @@ import com.google.genai.types.GenerateContentResponse;
 import it.iacovelli.nexabudgetbe.model.Category;
 import it.iacovelli.nexabudgetbe.model.TransactionType;
 import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
 import it.iacovelli.nexabudgetbe.service.AiCategorizationService;
+import it.iacovelli.nexabudgetbe.service.CategorizerModel;
+import it.iacovelli.nexabudgetbe.service.CategoryCatalog;
 import it.iacovelli.nexabudgetbe.service.CategoryService;
+import it.iacovelli.nexabudgetbe.service.LocalCategorizer;
 import it.iacovelli.nexabudgetbe.service.SemanticCacheService;
+import it.iacovelli.nexabudgetbe.service.SemanticCacheWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -36,6 +43,12 @@ class AiCategorizationServiceTest {
     @Mock
     private Models genaiModels;
 
+    @Mock
+    private LocalCategorizer localCategorizer;
+
+    @Mock
+    private SemanticCacheWriter semanticCacheWriter;
+
     private AiCategorizationService service;
 
     private User user;
@@ -46,7 +59,8 @@ class AiCategorizationServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new AiCategorizationService(categoryService, semanticCacheService, genaiModels, new ObjectMapper());
+        service = new AiCategorizationService(categoryService, semanticCacheService, genaiModels, new ObjectMapper(),
+                localCategorizer, semanticCacheWriter);
 
         user = User.builder()
                 .id(UUID.randomUUID())
@@ -61,6 +75,10 @@ class AiCategorizationServiceTest {
         stipendio = Category.builder().id(UUID.randomUUID()).name("Stipendio").build();
     }
 
+    private static CategoryCatalog catalog(Category... categories) {
+        return CategoryCatalog.of(1, List.of(categories));
+    }
+
     private GenerateContentResponse fakeResponse(String text) {
         String safeText = text == null ? "" : text
                 .replace("\\", "\\\\")
@@ -78,31 +96,83 @@ class AiCategorizationServiceTest {
     void nullDescription_returnsEmpty() {
         Optional<Category> result = service.categorizeTransaction(null, user, TransactionType.OUT);
         assertTrue(result.isEmpty());
-        verifyNoInteractions(categoryService, genaiModels, semanticCacheService);
+        verifyNoInteractions(categoryService, genaiModels, semanticCacheService, semanticCacheWriter);
     }
 
     @Test
     void blankDescription_returnsEmpty() {
         Optional<Category> result = service.categorizeTransaction("   ", user, TransactionType.OUT);
         assertTrue(result.isEmpty());
-        verifyNoInteractions(categoryService, genaiModels, semanticCacheService);
+        verifyNoInteractions(categoryService, genaiModels, semanticCacheService, semanticCacheWriter);
     }
 
     @Test
     void noAvailableCategories_returnsEmpty() {
-        when(categoryService.getAllAvailableCategoriesForUser(user)).thenReturn(List.of());
+        when(categoryService.getCatalog(user)).thenReturn(catalog());
 
         Optional<Category> result = service.categorizeTransaction("Esselunga", user, TransactionType.OUT);
         assertTrue(result.isEmpty());
-        verifyNoInteractions(genaiModels, semanticCacheService);
+        verifyNoInteractions(genaiModels, semanticCacheService, semanticCacheWriter);
+    }
+
+    // ─── Categorizzatore locale ──────────────────────────────────────────────────
+
+    @Test
+    void localPrediction_returnsCategoryWithoutCacheOrAI() {
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
+        when(localCategorizer.predict(user, "ESSELUNGA 123 MILANO", TransactionType.OUT))
+                .thenReturn(Optional.of(new CategorizerModel.Prediction(alimentari.getId(), 0.97)));
+
+        Optional<Category> result = service.categorizeTransaction("ESSELUNGA 123 MILANO", user, TransactionType.OUT);
+
+        assertTrue(result.isPresent());
+        assertEquals("Alimentari e Supermercati", result.get().getName());
+        verifyNoInteractions(semanticCacheService, semanticCacheWriter, genaiModels);
+    }
+
+    @Test
+    void localPrediction_forUnavailableCategory_fallsBackToCache() {
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(trasporti));
+        when(localCategorizer.predict(user, "Trenitalia", TransactionType.OUT))
+                .thenReturn(Optional.of(new CategorizerModel.Prediction(UUID.randomUUID(), 0.99)));
+        when(semanticCacheService.findSimilar("Trenitalia", user.getId()))
+                .thenReturn(Optional.of("Trasporti"));
+
+        Optional<Category> result = service.categorizeTransaction("Trenitalia", user, TransactionType.OUT);
+
+        assertTrue(result.isPresent());
+        assertEquals("Trasporti", result.get().getName());
+        verifyNoInteractions(genaiModels);
+    }
+
+    @Test
+    void localModel_unrelatedMerchant_fallsThroughToAI() {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.countCategorizedDescriptions(user.getId())).thenReturn(List.of(
+                new Object[]{"Esselunga Milano", TransactionType.OUT, alimentari.getId(), 15},
+                new Object[]{"Trenitalia Roma Termini", TransactionType.OUT, trasporti.getId(), 15}));
+        service = new AiCategorizationService(categoryService, semanticCacheService, genaiModels, new ObjectMapper(),
+                new LocalCategorizer(transactionRepository, 0.85, 10, 60), semanticCacheWriter);
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti, abbonamenti));
+        when(semanticCacheService.findSimilar("NETFLIX", user.getId())).thenReturn(Optional.empty());
+        when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
+                .thenReturn(fakeResponse("{\"category\":\"Abbonamenti\"}"));
+
+        Optional<Category> result = service.categorizeTransaction("NETFLIX", user, TransactionType.OUT);
+
+        assertEquals("Abbonamenti", result.orElseThrow().getName());
+        verify(genaiModels).generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class));
     }
 
     // ─── Cache hit ───────────────────────────────────────────────────────────────
 
     @Test
     void cacheHit_returnsMatchedCategoryWithoutCallingAI() {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
         when(semanticCacheService.findSimilar("Esselunga", user.getId()))
                 .thenReturn(Optional.of("Alimentari e Supermercati"));
 
@@ -115,8 +185,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void cacheHit_butCategoryNotInUserList_fallsBackToAI() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(trasporti));
         when(semanticCacheService.findSimilar("Esselunga", user.getId()))
                 .thenReturn(Optional.of("Alimentari e Supermercati"));
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
@@ -132,8 +202,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void aiReturnsExactMatch_returnsCategoryAndSavesToCache() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("Alimentari e Supermercati"));
@@ -142,13 +212,13 @@ class AiCategorizationServiceTest {
 
         assertTrue(result.isPresent());
         assertEquals("Alimentari e Supermercati", result.get().getName());
-        verify(semanticCacheService).saveToCache("ESSELUNGA SPA", "Alimentari e Supermercati", user.getId());
+        verify(semanticCacheWriter).enqueue("ESSELUNGA SPA", "Alimentari e Supermercati", user.getId());
     }
 
     @Test
     void aiReturnsCaseInsensitiveMatch() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("alimentari e supermercati"));
@@ -163,8 +233,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void allCategoriesAvailableRegardlessOfTransactionFlow() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, trasporti, stipendio));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti, stipendio));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("Stipendio"));
@@ -179,8 +249,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void aiResponseWrappedInMarkdownBold_stillMatches() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, abbonamenti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, abbonamenti));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("**Abbonamenti**"));
@@ -193,8 +263,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void aiResponseWithTrailingWhitespace_stillMatches() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(trasporti));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("  Trasporti  \n"));
@@ -210,8 +280,8 @@ class AiCategorizationServiceTest {
     @Test
     void aiResponseWithDifferentAccents_doesNotMatch() throws Exception {
         Category salute = Category.builder().id(UUID.randomUUID()).name("Salute e Farmacìa").build();
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(salute));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(salute));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("Salute e Farmacia"));
@@ -225,8 +295,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void aiReturnsPartialName_doesNotMatch() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("Alimentari"));
@@ -240,8 +310,8 @@ class AiCategorizationServiceTest {
 
     @Test
     void aiReturnsNONE_returnsEmptyAndDoesNotSaveToCache() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("NONE"));
@@ -249,13 +319,13 @@ class AiCategorizationServiceTest {
         Optional<Category> result = service.categorizeTransaction("Pagamento generico", user, TransactionType.OUT);
 
         assertTrue(result.isEmpty());
-        verify(semanticCacheService, never()).saveToCache(any(), any(), any());
+        verify(semanticCacheWriter, never()).enqueue(any(), any(), any());
     }
 
     @Test
     void aiReturnsBlankResponse_returnsEmptyAndDoesNotSaveToCache() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("   "));
@@ -263,13 +333,13 @@ class AiCategorizationServiceTest {
         Optional<Category> result = service.categorizeTransaction("Qualcosa", user, TransactionType.OUT);
 
         assertTrue(result.isEmpty());
-        verify(semanticCacheService, never()).saveToCache(any(), any(), any());
+        verify(semanticCacheWriter, never()).enqueue(any(), any(), any());
     }
 
     @Test
     void aiReturnsUnknownCategory_returnsEmptyAndDoesNotSaveToCache() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari, trasporti));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(fakeResponse("Categoria Inventata"));
@@ -277,15 +347,15 @@ class AiCategorizationServiceTest {
         Optional<Category> result = service.categorizeTransaction("Descrizione strana", user, TransactionType.OUT);
 
         assertTrue(result.isEmpty());
-        verify(semanticCacheService, never()).saveToCache(any(), any(), any());
+        verify(semanticCacheWriter, never()).enqueue(any(), any(), any());
     }
 
     @Test
     void aiReturnsEmptyText_returnsEmptyAndDoesNotSaveToCache() throws Exception {
         // Simula una risposta senza testo (candidates vuoti)
         GenerateContentResponse emptyResp = GenerateContentResponse.fromJson("{\"candidates\":[]}");
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenReturn(emptyResp);
@@ -293,15 +363,15 @@ class AiCategorizationServiceTest {
         Optional<Category> result = service.categorizeTransaction("Test", user, TransactionType.OUT);
 
         assertTrue(result.isEmpty());
-        verify(semanticCacheService, never()).saveToCache(any(), any(), any());
+        verify(semanticCacheWriter, never()).enqueue(any(), any(), any());
     }
 
     // ─── AI: errori ──────────────────────────────────────────────────────────────
 
     @Test
     void aiThrowsException_returnsEmptyAndDoesNotSaveToCache() throws Exception {
-        when(categoryService.getAllAvailableCategoriesForUser(user))
-                .thenReturn(List.of(alimentari));
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari));
         when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
         when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
                 .thenThrow(new RuntimeException("Network error"));
@@ -309,7 +379,68 @@ class AiCategorizationServiceTest {
         Optional<Category> result = service.categorizeTransaction("Esselunga", user, TransactionType.OUT);
 
         assertTrue(result.isEmpty());
-        verify(semanticCacheService, never()).saveToCache(any(), any(), any());
+        verify(semanticCacheWriter, never()).enqueue(any(), any(), any());
+    }
+
+    // ─── categorizeDistinct: richieste a batch ───────────────────────────────────
+
+    @Test
+    void categorizeDistinct_sendsMissesInOneBatchRequest() {
+        ReflectionTestUtils.setField(service, "batchSize", 25);
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
+        when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
+        when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
+                .thenReturn(fakeResponse("{\"results\":[{\"id\":2,\"category\":\"Trasporti\"},"
+                        + "{\"id\":1,\"category\":\"Alimentari e Supermercati\"},{\"id\":3,\"category\":\"NONE\"}]}"));
+
+        Map<String, Optional<Category>> result = service.categorizeDistinct(
+                List.of("Esselunga", "Trenitalia", "Esselunga", "Bonifico"), user, TransactionType.OUT);
+
+        assertEquals(3, result.size());
+        assertEquals("Alimentari e Supermercati", result.get("Esselunga").orElseThrow().getName());
+        assertEquals("Trasporti", result.get("Trenitalia").orElseThrow().getName());
+        assertTrue(result.get("Bonifico").isEmpty());
+        verify(genaiModels, times(1)).generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class));
+        verify(semanticCacheWriter).enqueue("Trenitalia", "Trasporti", user.getId());
+    }
+
+    @Test
+    void categorizeDistinct_unansweredRowsFallBackToSingleCalls() {
+        ReflectionTestUtils.setField(service, "batchSize", 25);
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
+        when(semanticCacheService.findSimilar(anyString(), any())).thenReturn(Optional.empty());
+        when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
+                .thenReturn(fakeResponse("{\"results\":[{\"id\":1,\"category\":\"Alimentari e Supermercati\"}]}"))
+                .thenReturn(fakeResponse("Trasporti"));
+
+        Map<String, Optional<Category>> result = service.categorizeDistinct(
+                List.of("Esselunga", "Trenitalia"), user, TransactionType.OUT);
+
+        assertEquals("Alimentari e Supermercati", result.get("Esselunga").orElseThrow().getName());
+        assertEquals("Trasporti", result.get("Trenitalia").orElseThrow().getName());
+        verify(genaiModels, times(2)).generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class));
+    }
+
+    @Test
+    void categorizeDistinct_cachedDescriptionsStayOutOfTheBatch() {
+        ReflectionTestUtils.setField(service, "batchSize", 25);
+        when(categoryService.getCatalog(user))
+                .thenReturn(catalog(alimentari, trasporti));
+        when(semanticCacheService.findSimilar("Esselunga", user.getId()))
+                .thenReturn(Optional.of("Alimentari e Supermercati"));
+        when(semanticCacheService.findSimilar("Trenitalia", user.getId())).thenReturn(Optional.empty());
+        when(genaiModels.generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class)))
+                .thenReturn(fakeResponse("Trasporti"));
+
+        Map<String, Optional<Category>> result = service.categorizeDistinct(
+                List.of("Esselunga", "Trenitalia"), user, TransactionType.OUT);
+
+        // Una sola descrizione da chiedere al modello: chiamata singola, non batch
+        assertEquals("Alimentari e Supermercati", result.get("Esselunga").orElseThrow().getName());
+        assertEquals("Trasporti", result.get("Trenitalia").orElseThrow().getName());
+        verify(genaiModels, times(1)).generateContent(nullable(String.class), any(com.google.genai.types.Content.class), any(GenerateContentConfig.class));
     }
 
     // ─── updateSemanticCache ─────────────────────────────────────────────────────
@@ -319,8 +450,24 @@ class AiCategorizationServiceTest {
         Category oldCat = Category.builder().id(UUID.randomUUID()).name("Vecchia").build();
         Category newCat = Category.builder().id(UUID.randomUUID()).name("Nuova").build();
 
-        service.updateSemanticCache("Esselunga", oldCat, newCat, user, TransactionType.OUT);
+        service.updateSemanticCache("Esselunga", TransactionType.OUT, oldCat,
+                "Esselunga", TransactionType.OUT, newCat, user);
+
+        verify(semanticCacheWriter).enqueue("Esselunga", "Nuova", user.getId());
+        verify(localCategorizer).learn(user.getId(), "Esselunga", TransactionType.OUT, oldCat.getId(),
+                "Esselunga", TransactionType.OUT, newCat.getId());
+    }
+
+    @Test
+    void updateSemanticCache_editedDescriptionAndType_movesFromOldToNewObservation() {
+        Category oldCat = Category.builder().id(UUID.randomUUID()).name("Vecchia").build();
+        Category newCat = Category.builder().id(UUID.randomUUID()).name("Nuova").build();
+
+        service.updateSemanticCache("Rimborso Esselunga", TransactionType.IN, oldCat,
+                "Esselunga Milano", TransactionType.OUT, newCat, user);
 
-        verify(semanticCacheService).saveToCache("Esselunga", "Nuova", user.getId());
+        verify(semanticCacheWriter).enqueue("Esselunga Milano", "Nuova", user.getId());
+        verify(localCategorizer).learn(user.getId(), "Rimborso Esselunga", TransactionType.IN, oldCat.getId(),
+                "Esselunga Milano", TransactionType.OUT, newCat.getId());
     }
 }
@@ -0,0 +1,118 @@
+package it.iacovelli.nexabudgetbe;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.iacovelli.nexabudgetbe.config.TestConfig;
+import it.iacovelli.nexabudgetbe.dto.bank.NormalizedBankTransaction;
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.AccountRepository;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import it.iacovelli.nexabudgetbe.repository.UserRepository;
+import it.iacovelli.nexabudgetbe.service.BankTransactionImportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestConfig.class)
+@org.springframework.transaction.annotation.Transactional
+class BankTransactionImportServiceTest {
+
+    @Autowired
+    private BankTransactionImportService bankTransactionImportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User testUser;
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+
+        testUser = userRepository.save(User.builder()
+                .username("bankimportuser")
+                .email("bankimport@example.com")
+                .passwordHash("hashedPassword")
+                .build());
+        account = accountRepository.save(Account.builder()
+                .name("Conto Banca").type(AccountType.CONTO_CORRENTE).currency("EUR").user(testUser)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testImportSkipsDuplicatesWithinBatchAndOnResync() {
+        List<NormalizedBankTransaction> firstSync = List.of(
+                bankTx("ext-1", "-20.00", "2025-03-01", "Supermercato"),
+                bankTx("ext-1", "-20.00", "2025-03-01", "Supermercato"),
+                bankTx("ext-2", "1500.00", "2025-03-02", "Stipendio"));
+
+        assertEquals(2, bankTransactionImportService.importTransactions(firstSync, testUser, account));
+
+        List<NormalizedBankTransaction> secondSync = List.of(
+                bankTx("ext-2", "1500.00", "2025-03-02", "Stipendio"),
+                bankTx("ext-3", "-5.00", "2025-03-03", "Bar"));
+
+        assertEquals(1, bankTransactionImportService.importTransactions(secondSync, testUser, account));
+
+        List<Transaction> stored = transactionRepository.findByAccount(account);
+        assertEquals(3, stored.size());
+        Transaction salary = stored.stream().filter(t -> "ext-2".equals(t.getExternalId())).findFirst().orElseThrow();
+        assertEquals(TransactionType.IN, salary.getType());
+        assertEquals(0, new BigDecimal("1500.00").compareTo(salary.getAmount()));
+        assertTrue(meterRegistry.get("nexabudget.bank.import.stage").tag("stage", "dedup").timer().count() >= 2);
+    }
+
+    @Test
+    void testImportWithoutExternalIdDedupsByContentHash() {
+        List<NormalizedBankTransaction> batch = List.of(
+                bankTx(null, "-42.10", "2025-04-10", "Farmacia"),
+                bankTx("", "-42.10", "2025-04-10", "Farmacia"),
+                bankTx(null, "-42.10", "2025-04-11", "Farmacia"));
+
+        assertEquals(2, bankTransactionImportService.importTransactions(batch, testUser, account));
+        assertEquals(0, bankTransactionImportService.importTransactions(batch, testUser, account));
+
+        List<Transaction> stored = transactionRepository.findByAccount(account);
+        assertEquals(2, stored.size());
+        assertTrue(stored.stream().allMatch(t -> t.getExternalId() == null && t.getImportHash() != null));
+    }
+
+    private NormalizedBankTransaction bankTx(String externalId, String amount, String date, String remittance) {
+        return NormalizedBankTransaction.builder()
+                .externalId(externalId)
+                .amount(new BigDecimal(amount))
+                .currency("EUR")
+                .date(date)
+                .remittanceInformation(remittance)
+                .build();
+    }
+}
@@ -351,7 +351,7 @@ class BudgetServiceTest {
                 .category(expenseCategory)
                 .date(today)
                 .build();
-        transactionRepository.save(t1);
+        transactionService.createTransaction(t1);
 
         Transaction t2 = Transaction.builder()
                 .user(testUser)
@@ -362,7 +362,7 @@ class BudgetServiceTest {
                 .category(expenseCategory)
                 .date(today)
                 .build();
-        transactionRepository.save(t2);
+        transactionService.createTransaction(t2);
 
         Map<Budget, BigDecimal> usage = budgetService.getBudgetUsage(testUser, today);
 
@@ -386,12 +386,12 @@ class BudgetServiceTest {
                 .endDate(today.withDayOfMonth(today.lengthOfMonth()))
                 .build());
 
-        transactionRepository.save(Transaction.builder()
+        transactionService.createTransaction(Transaction.builder()
                 .user(testUser).account(testAccount)
                 .amount(new BigDecimal("100.00")).type(TransactionType.OUT)
                 .description("Spesa").category(expenseCategory).date(today).build());
 
-        transactionRepository.save(Transaction.builder()
+        transactionService.createTransaction(Transaction.builder()
                 .user(testUser).account(testAccount)
                 .amount(new BigDecimal("30.00")).type(TransactionType.IN)
                 .description("Rimborso").category(expenseCategory).date(today).build());
@@ -425,7 +425,7 @@ class BudgetServiceTest {
                 .category(expenseCategory)
                 .date(today)
                 .build();
-        transactionRepository.save(t);
+        transactionService.createTransaction(t);
 
         Map<Budget, BigDecimal> remaining = budgetService.getRemainingBudgets(testUser, today);
 
@@ -0,0 +1,161 @@
+package it.iacovelli.nexabudgetbe;
+
+import it.iacovelli.nexabudgetbe.config.TestConfig;
+import it.iacovelli.nexabudgetbe.dto.ImportDto;
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.AccountRepository;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import it.iacovelli.nexabudgetbe.repository.UserRepository;
+import it.iacovelli.nexabudgetbe.service.ImportService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Import CSV da 10.000 righe (il massimo accettato da ImportService): dedup con query IN a lotti e insert
+ * batched. Si contano gli statement preparati invece del tempo: una query o un insert per riga ne
+ * produrrebbe almeno uno ogni riga, sia al primo import sia al re-import dello stesso file.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestConfig.class)
+@Transactional
+class ImportServiceThroughputTest {
+
+    private static final int ROWS = 10_000;
+    /**
+     * Insert a lotti da hibernate.jdbc.batch_size (50): 200 statement, più le query IN di dedup (una ogni
+     * TransactionRepository.DEDUP_IN_CHUNK hash) e gli aggiornamenti di ledger e rollup mensili.
+     */
+    private static final long MAX_STATEMENTS = ROWS / 25;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User testUser;
+    private Account account;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+
+        testUser = userRepository.save(User.builder()
+                .username("importuser")
+                .email("import@example.com")
+                .passwordHash("hashedPassword")
+                .build());
+        account = accountRepository.save(Account.builder()
+                .name("Conto Import").type(AccountType.CONTO_CORRENTE).currency("EUR").user(testUser)
+                .build());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testTenThousandRowCsvImportUsesBatchedStatements() throws Exception {
+        MockMultipartFile file = csvFile();
+        ImportDto.CsvColumnMapping mapping = ImportDto.CsvColumnMapping.builder()
+                .dateColumn(0).amountColumn(1).descriptionColumn(2).hasHeader(false)
+                .build();
+
+        statistics.clear();
+        ImportDto.ImportResult first = importService.importCsv(file, mapping, account, testUser, null, null);
+        long firstStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(ROWS, first.getImported());
+        assertEquals(0, first.getSkipped());
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        assertTrue(firstStatements <= MAX_STATEMENTS, "import di " + ROWS + " righe con " + firstStatements + " statement");
+
+        statistics.clear();
+        ImportDto.ImportResult second = importService.importCsv(file, mapping, account, testUser, null, null);
+        long secondStatements = statistics.getPrepareStatementCount();
+
+        assertEquals(0, second.getImported());
+        assertEquals(ROWS, second.getSkipped());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertTrue(secondStatements <= MAX_STATEMENTS, "re-import di " + ROWS + " righe con " + secondStatements + " statement");
+        assertEquals(ROWS, transactionRepository.count());
+    }
+
+    @Test
+    void testDuplicatesWithinFileAreImportedOnce() throws Exception {
+        String csv = "2025-05-01,-3.50,Caffe\n2025-05-01,-3.50,Caffe\n2025-05-02,-3.50,Caffe\n";
+        MockMultipartFile file = new MockMultipartFile("file", "movimenti.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+        ImportDto.CsvColumnMapping mapping = ImportDto.CsvColumnMapping.builder()
+                .dateColumn(0).amountColumn(1).descriptionColumn(2).hasHeader(false)
+                .build();
+
+        ImportDto.ImportResult result = importService.importCsv(file, mapping, account, testUser, null, null);
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getSkipped());
+
+        ImportDto.ImportPreviewResponse preview = importService.previewCsv(file, mapping, account);
+        assertEquals(3, preview.getDuplicates());
+        assertEquals(0, preview.getToImport());
+    }
+
+    @Test
+    void testUnparseableRowsAreReportedAsErrors() throws Exception {
+        String csv = "2025-05-01,-3.50,Caffe\n2025-13-01,-4.00,Data errata\n2025-05-02,1.2.3,Importo errato\n";
+        MockMultipartFile file = new MockMultipartFile("file", "movimenti.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+        ImportDto.CsvColumnMapping mapping = ImportDto.CsvColumnMapping.builder()
+                .dateColumn(0).amountColumn(1).descriptionColumn(2).hasHeader(false)
+                .build();
+
+        ImportDto.ImportResult result = importService.importCsv(file, mapping, account, testUser, null, null);
+        assertEquals(1, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertEquals(2, result.getErrors());
+    }
+
+    private MockMultipartFile csvFile() {
+        StringBuilder csv = new StringBuilder();
+        LocalDate base = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(base.plusDays(i % 365)).append(',')
+                    .append(i % 2 == 0 ? "-" : "").append(i % 500).append('.').append(i % 100 < 10 ? "0" : "").append(i % 100)
+                    .append(",Movimento ").append(i).append('\n');
+        }
+        return new MockMultipartFile("file", "movimenti.csv", "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
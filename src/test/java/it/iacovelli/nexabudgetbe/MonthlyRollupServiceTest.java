@@ -0,0 +1,231 @@
+package it.iacovelli.nexabudgetbe;
+
+import it.iacovelli.nexabudgetbe.config.TestConfig;
+import it.iacovelli.nexabudgetbe.dto.ReportDto;
+import it.iacovelli.nexabudgetbe.dto.TransactionDto;
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.*;
+import it.iacovelli.nexabudgetbe.service.CategoryService;
+import it.iacovelli.nexabudgetbe.service.MonthlyRollupService;
+import it.iacovelli.nexabudgetbe.service.ReportService;
+import it.iacovelli.nexabudgetbe.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifica che il rollup {@code transaction_monthly_rollups} resti allineato all'aggregazione delle transazioni
+ * attive per ogni tipo di scrittura, che i report letti dal rollup coincidano con i valori attesi e che la
+ * riconciliazione ricostruisca un rollup divergente.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestConfig.class)
+@org.springframework.transaction.annotation.Transactional
+class MonthlyRollupServiceTest {
+
+    @Autowired
+    private MonthlyRollupService monthlyRollupService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private TransactionMonthlyRollupRepository rollupRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User testUser;
+    private Account testAccount;
+    private Category groceries;
+
+    @BeforeEach
+    void setUp() {
+        rollupRepository.deleteAll();
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+
+        testUser = userRepository.save(User.builder()
+                .username("rollupuser")
+                .email("rollup@example.com")
+                .passwordHash("hashedPassword")
+                .build());
+
+        testAccount = accountRepository.save(Account.builder()
+                .name("Conto Corrente")
+                .type(AccountType.CONTO_CORRENTE)
+                .currency("EUR")
+                .user(testUser)
+                .build());
+
+        groceries = categoryRepository.save(Category.builder()
+                .name("Alimentari")
+                .user(testUser)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        rollupRepository.deleteAll();
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        categoryRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRollupFollowsCreateUpdateDeleteAndTransfer() {
+        LocalDate lastMonth = LocalDate.now().minusMonths(1).withDayOfMonth(10);
+        TransactionDto.TransactionResponse expense = transactionService.createTransaction(
+                tx(TransactionType.OUT, "40", groceries, lastMonth));
+        transactionService.createTransaction(tx(TransactionType.IN, "1000", null, lastMonth));
+        assertRollupMatchesTransactions();
+
+        // Cambio di importo, categoria e mese: la riga vecchia si svuota, quella nuova si popola
+        Transaction toUpdate = transactionService.getTransactionByIdAndUser(expense.getId(), testUser).orElseThrow();
+        transactionService.updateTransaction(toUpdate, testAccount, null, new BigDecimal("55"),
+                TransactionType.OUT, "Spesa", LocalDate.now(), null);
+        assertRollupMatchesTransactions();
+
+        Account savings = accountRepository.save(Account.builder()
+                .name("Risparmio")
+                .type(AccountType.RISPARMIO)
+                .currency("EUR")
+                .user(testUser)
+                .build());
+        transactionService.createTransfer(testAccount, savings, new BigDecimal("200"), "Giroconto", LocalDate.now(), null);
+        assertRollupMatchesTransactions();
+
+        Transaction toDelete = transactionService.getTransactionByIdAndUser(expense.getId(), testUser).orElseThrow();
+        transactionService.deleteTransaction(toDelete);
+        assertRollupMatchesTransactions();
+    }
+
+    @Test
+    void testReportsReadFromRollupAndPartialMonths() {
+        LocalDate twoMonthsAgo = LocalDate.now().minusMonths(2).withDayOfMonth(5);
+        transactionService.createTransaction(tx(TransactionType.OUT, "100", groceries, twoMonthsAgo));
+        transactionService.createTransaction(tx(TransactionType.IN, "30", groceries, twoMonthsAgo.plusDays(10)));
+        transactionService.createTransaction(tx(TransactionType.IN, "500", null, twoMonthsAgo));
+
+        ReportDto.MonthlyTrendResponse trend = reportService.getMonthlyTrendByRange(testUser, twoMonthsAgo, twoMonthsAgo);
+        assertEquals(1, trend.getItems().size());
+        ReportDto.MonthlyTrendItem month = trend.getItems().get(0);
+        assertEquals(0, new BigDecimal("70").compareTo(month.getExpense()));
+        assertEquals(0, new BigDecimal("500").compareTo(month.getIncome()));
+
+        // Periodo che copre solo una parte del mese: letto dalle transazioni, non dal rollup
+        ReportDto.CategoryBreakdownResponse partial = reportService.getCategoryBreakdown(
+                testUser, twoMonthsAgo, twoMonthsAgo.plusDays(2));
+        assertEquals(0, new BigDecimal("100").compareTo(partial.getTotalExpense()));
+        assertEquals(0, new BigDecimal("500").compareTo(partial.getTotalIncome()));
+        assertTrue(partial.getCategories().stream().anyMatch(c -> "Alimentari".equals(c.getCategoryName())));
+    }
+
+    @Test
+    void testReportBundleMatchesSingleReports() {
+        LocalDate start = LocalDate.now().minusMonths(8).withDayOfMonth(1);
+        LocalDate end = LocalDate.now().minusMonths(2);
+        end = end.withDayOfMonth(end.lengthOfMonth());
+        // Movimenti prima del periodo (saldo di apertura), dentro il periodo e nel mese corrente (proiezione)
+        transactionService.createTransaction(tx(TransactionType.IN, "2000", null, start.minusMonths(3)));
+        transactionService.createTransaction(tx(TransactionType.OUT, "120", groceries, start.plusDays(3)));
+        transactionService.createTransaction(tx(TransactionType.IN, "1500", null, start.plusMonths(2)));
+        transactionService.createTransaction(tx(TransactionType.OUT, "80", groceries, end.minusDays(1)));
+        transactionService.createTransaction(tx(TransactionType.OUT, "45", groceries, LocalDate.now().minusMonths(1)));
+        transactionService.createTransaction(tx(TransactionType.OUT, "10", null, LocalDate.now().withDayOfMonth(1)));
+
+        ReportDto.ReportBundle bundle = reportService.getReportBundle(testUser, start, end);
+
+        assertEquals(reportService.getMonthlyTrendByRange(testUser, start, end), bundle.getMonthlyTrend());
+        assertEquals(reportService.getCategoryBreakdown(testUser, start, end), bundle.getCategoryBreakdown());
+        assertEquals(reportService.getMonthComparison(testUser, end.getYear(), end.getMonthValue()), bundle.getMonthComparison());
+        assertEquals(reportService.getBalanceTrend(testUser, start, end), bundle.getBalanceTrend());
+        assertEquals(reportService.getMonthlyProjection(testUser), bundle.getProjection());
+        assertEquals(0, new BigDecimal("2000").compareTo(bundle.getBalanceTrend().getOpeningBalance()));
+    }
+
+    @Test
+    void testMergeCategoriesMovesRollupRows() {
+        Category target = categoryRepository.save(Category.builder()
+                .name("Spesa")
+                .user(testUser)
+                .build());
+        LocalDate lastMonth = LocalDate.now().minusMonths(1).withDayOfMonth(3);
+        transactionService.createTransaction(tx(TransactionType.OUT, "20", groceries, lastMonth));
+        transactionService.createTransaction(tx(TransactionType.OUT, "15", target, lastMonth));
+
+        categoryService.mergeCategories(groceries.getId(), target.getId(), testUser);
+
+        assertRollupMatchesTransactions();
+    }
+
+    @Test
+    void testReconcileRebuildsDivergentRollup() {
+        transactionService.createTransaction(tx(TransactionType.OUT, "80", groceries, LocalDate.now()));
+        rollupRepository.deleteAll();
+
+        monthlyRollupService.reconcile();
+
+        assertRollupMatchesTransactions();
+    }
+
+    private Transaction tx(TransactionType type, String amount, Category category, LocalDate date) {
+        return Transaction.builder()
+                .user(testUser)
+                .account(testAccount)
+                .amount(new BigDecimal(amount))
+                .type(type)
+                .category(category)
+                .description("Movimento")
+                .date(date)
+                .build();
+    }
+
+    /** Confronta, chiave per chiave, il rollup con l'aggregazione ricalcolata dalle transazioni attive. */
+    private void assertRollupMatchesTransactions() {
+        Map<List<Object>, BigDecimal> expected = new HashMap<>();
+        for (Object[] r : transactionRepository.aggregateMonthlyRollupsByUserId(testUser.getId())) {
+            expected.put(List.of(((Number) r[1]).intValue(), Optional.ofNullable(r[2]), r[3], r[4].toString(), r[5]),
+                    ((BigDecimal) r[6]).stripTrailingZeros());
+        }
+        Map<List<Object>, BigDecimal> actual = new HashMap<>();
+        for (Object[] r : rollupRepository.findTotalsByUserId(testUser.getId())) {
+            BigDecimal amount = (BigDecimal) r[6];
+            if (((Number) r[7]).longValue() == 0 && amount.signum() == 0) {
+                continue;
+            }
+            actual.put(List.of(((Number) r[1]).intValue(), Optional.ofNullable(r[2]), r[3], r[4].toString(), r[5]),
+                    amount.stripTrailingZeros());
+        }
+        assertEquals(expected, actual);
+    }
+}
@@ -1,6 +1,8 @@
 package it.iacovelli.nexabudgetbe;
 
+import it.iacovelli.nexabudgetbe.config.CachingEmbeddingModel;
 import it.iacovelli.nexabudgetbe.service.SemanticCacheService;
+import it.iacovelli.nexabudgetbe.service.semantic.EmbeddingEncoding.Quantization;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,15 +10,22 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.ai.vectorstore.VectorStore;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,24 +34,56 @@ class SemanticCacheServiceTest {
     @Mock
     private VectorStore vectorStore;
 
+    private TrigramEmbeddingModel remoteModel;
+
     private SemanticCacheService service;
 
     private final UUID userId = UUID.randomUUID();
 
     @BeforeEach
     void setUp() {
-        service = new SemanticCacheService(vectorStore);
+        remoteModel = new TrigramEmbeddingModel();
+        service = new SemanticCacheService(vectorStore, new CachingEmbeddingModel(remoteModel, 1),
+                "semantic_cache", "embedding", 2000, 0, Quantization.FLOAT32, 16, 60);
+    }
+
+    /** Embedding deterministico: trigrammi di caratteri proiettati per hash, con il conteggio delle chiamate remote. */
+    private static final class TrigramEmbeddingModel implements EmbeddingModel {
+
+        private static final int DIMENSIONS = 1024;
+        private final AtomicInteger texts = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> results = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                texts.incrementAndGet();
+                float[] vector = new float[DIMENSIONS];
+                String padded = " " + text.toLowerCase(Locale.ROOT) + " ";
+                for (int i = 0; i + 3 <= padded.length(); i++) {
+                    vector[Math.floorMod(padded.substring(i, i + 3).hashCode(), DIMENSIONS)] += 1;
+                }
+                results.add(new Embedding(vector, results.size()));
+            }
+            return new EmbeddingResponse(results);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
     }
 
     // ─── findSimilar ─────────────────────────────────────────────────────────────
 
     @Test
-    void findSimilar_cacheHit_returnsCategoryName() {
-        Document doc = Document.builder()
-                .text("Esselunga")
-                .metadata(java.util.Map.of("category", "Alimentari e Supermercati"))
-                .build();
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(doc));
+    void findSimilar_nearDuplicate_returnsCategoryName() {
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
         Optional<String> result = service.findSimilar("Esselunga SPA", userId);
 
@@ -51,52 +92,60 @@ class SemanticCacheServiceTest {
     }
 
     @Test
-    void findSimilar_noResults_returnsEmpty() {
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+    void findSimilar_unrelatedDescription_returnsEmpty() {
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
-        Optional<String> result = service.findSimilar("Transazione sconosciuta", userId);
+        Optional<String> result = service.findSimilar("Bonifico affitto ottobre", userId);
 
         assertTrue(result.isEmpty());
     }
 
     @Test
-    void findSimilar_vectorStoreThrows_returnsEmpty() {
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenThrow(new RuntimeException("MongoDB unavailable"));
-
-        Optional<String> result = service.findSimilar("Esselunga", userId);
+    void findSimilar_emptyIndex_returnsEmptyWithoutEmbedding() {
+        Optional<String> result = service.findSimilar("Transazione sconosciuta", userId);
 
         assertTrue(result.isEmpty());
+        assertEquals(0, remoteModel.texts.get());
     }
 
     @Test
-    void findSimilar_includesUserInFilter() {
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+    void findSimilar_differentUsers_areIsolated() {
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
-        service.findSimilar("Test", userId);
+        assertTrue(service.findSimilar("Esselunga", UUID.randomUUID()).isEmpty());
+        assertTrue(service.findSimilar("Esselunga", userId).isPresent());
+    }
 
-        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
-        verify(vectorStore).similaritySearch(captor.capture());
+    @Test
+    void findSimilar_repeatedDescription_embedsOnce() {
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
-        SearchRequest request = captor.getValue();
-        String filter = request.getFilterExpression().toString();
-        assertTrue(filter.contains(userId.toString()), "Il filtro deve contenere lo userId");
+        service.findSimilar("Esselunga", userId);
+        service.findSimilar("Esselunga", userId);
+
+        assertEquals(1, remoteModel.texts.get());
     }
 
     @Test
-    void findSimilar_differentUsers_useDifferentFilters() {
-        UUID userId2 = UUID.randomUUID();
-        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+    void findSimilar_manyEntries_picksNearestCategory() {
+        service = new SemanticCacheService(vectorStore, remoteModel, "semantic_cache", "embedding", 8, 0, Quantization.FLOAT32, 16, 60);
+        for (int i = 0; i < 20; i++) {
+            service.saveToCache("Pagamento POS negozio " + i, "Shopping", userId);
+        }
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
-        service.findSimilar("Esselunga", userId);
-        service.findSimilar("Esselunga", userId2);
+        assertEquals(Optional.of("Alimentari e Supermercati"), service.findSimilar("Esselunga SPA", userId));
+        assertEquals(Optional.of("Shopping"), service.findSimilar("Pagamento POS negozio 7", userId));
+    }
 
-        ArgumentCaptor<SearchRequest> captor = ArgumentCaptor.forClass(SearchRequest.class);
-        verify(vectorStore, times(2)).similaritySearch(captor.capture());
+    @Test
+    void findSimilar_truncatedInt8Index_keepsHitsAndMisses() {
+        service = new SemanticCacheService(vectorStore, remoteModel, "semantic_cache", "embedding", 2000,
+                512, Quantization.INT8, 16, 60);
+        service.saveToCache("Esselunga", "Alimentari e Supermercati", userId);
 
-        List<SearchRequest> requests = captor.getAllValues();
-        String filter1 = requests.get(0).getFilterExpression().toString();
-        String filter2 = requests.get(1).getFilterExpression().toString();
-        assertNotEquals(filter1, filter2);
+        assertEquals(Optional.of("Alimentari e Supermercati"), service.findSimilar("Esselunga SPA", userId));
+        assertTrue(service.findSimilar("Bonifico affitto ottobre", userId).isEmpty());
     }
 
     // ─── saveToCache ─────────────────────────────────────────────────────────────
@@ -119,10 +168,34 @@ class SemanticCacheServiceTest {
     }
 
     @Test
-    void saveToCache_vectorStoreThrows_doesNotPropagate() {
+    void saveToCache_sameDescriptionAgain_latestCategoryWins() {
+        service.saveToCache("Farmacia Centrale", "Shopping", userId);
+        service.saveToCache("Farmacia Centrale", "Salute", userId);
+
+        assertEquals(Optional.of("Salute"), service.findSimilar("Farmacia Centrale", userId));
+    }
+
+    @Test
+    void saveAll_embedsAndStoresBatchOnce() {
+        UUID otherUser = UUID.randomUUID();
+
+        int saved = service.saveAll(List.of(
+                new SemanticCacheService.Entry(userId, "Esselunga", "Alimentari e Supermercati"),
+                new SemanticCacheService.Entry(otherUser, "Trenitalia", "Trasporti")));
+
+        assertEquals(2, saved);
+        verify(vectorStore, times(1)).add(argThat(documents -> documents.size() == 2));
+        assertEquals(Optional.of("Alimentari e Supermercati"), service.findSimilar("Esselunga", userId));
+        assertEquals(Optional.of("Trasporti"), service.findSimilar("Trenitalia", otherUser));
+        assertEquals(2, remoteModel.texts.get());
+    }
+
+    @Test
+    void saveToCache_vectorStoreThrows_doesNotPropagateNorIndex() {
         doThrow(new RuntimeException("MongoDB unavailable")).when(vectorStore).add(any());
 
         assertDoesNotThrow(() ->
                 service.saveToCache("Esselunga", "Alimentari", userId));
+        assertTrue(service.findSimilar("Esselunga", userId).isEmpty());
     }
 }
@@ -0,0 +1,126 @@
+package it.iacovelli.nexabudgetbe;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.iacovelli.nexabudgetbe.config.TestConfig;
+import it.iacovelli.nexabudgetbe.model.*;
+import it.iacovelli.nexabudgetbe.repository.AccountRepository;
+import it.iacovelli.nexabudgetbe.repository.TransactionRepository;
+import it.iacovelli.nexabudgetbe.repository.UserRepository;
+import it.iacovelli.nexabudgetbe.service.TransactionExportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestConfig.class)
+@org.springframework.transaction.annotation.Transactional
+class TransactionExportServiceTest {
+
+    @Autowired
+    private TransactionExportService transactionExportService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User testUser;
+    private Account checking;
+    private Account savings;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+
+        testUser = userRepository.save(User.builder()
+                .username("exportuser")
+                .email("export@example.com")
+                .passwordHash("hashedPassword")
+                .build());
+        checking = accountRepository.save(Account.builder()
+                .name("Conto Corrente").type(AccountType.CONTO_CORRENTE).currency("EUR").user(testUser)
+                .build());
+        savings = accountRepository.save(Account.builder()
+                .name("Risparmio").type(AccountType.RISPARMIO).currency("EUR").user(testUser)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.hardDeleteAll();
+        accountRepository.hardDeleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testCsvExportSpansSeveralClearChunks() throws Exception {
+        // Più righe del chunk di clear del persistence context, per attraversare più blocchi
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1201; i++) {
+            transactions.add(tx(checking, "Riga " + i, LocalDate.now().minusDays(i % 90)));
+        }
+        transactionRepository.saveAll(transactions);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = transactionExportService.export(testUser.getId(), null, null, null,
+                TransactionExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(1201, written);
+        assertEquals(1202, lines.length);
+        assertTrue(lines[0].startsWith("id,date,accountId,accountName"));
+        assertTrue(lines[1].contains(LocalDate.now().toString()));
+    }
+
+    @Test
+    void testNdjsonExportFiltersByAccountAndDate() throws Exception {
+        transactionRepository.saveAll(List.of(
+                tx(checking, "Spesa \"speciale\"", LocalDate.now()),
+                tx(checking, "Vecchia", LocalDate.now().minusYears(2)),
+                tx(savings, "Altro conto", LocalDate.now())));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = transactionExportService.export(testUser.getId(), checking.getId(),
+                LocalDate.now().minusMonths(1), LocalDate.now(), TransactionExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, written);
+        assertEquals(1, lines.length);
+        JsonNode row = new ObjectMapper().readTree(lines[0]);
+        assertEquals("Spesa \"speciale\"", row.get("description").asText());
+        assertEquals(LocalDate.now().toString(), row.get("date").asText());
+        assertEquals(checking.getId().toString(), row.get("accountId").asText());
+    }
+
+    private Transaction tx(Account account, String description, LocalDate date) {
+        return Transaction.builder()
+                .user(testUser)
+                .account(account)
+                .amount(new BigDecimal("12.50"))
+                .type(TransactionType.OUT)
+                .description(description)
+                .date(date)
+                .build();
+    }
+}
@@ -22,8 +22,11 @@ import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -394,6 +397,89 @@ class TransactionServiceTest {
         assertTrue(page.isLast());
     }
 
+    @Test
+    void testGetTransactionsFilteredByCursor_WalksAllPagesWithoutDuplicates() {
+        // Due transazioni per giorno: lo spareggio sull'id deve mantenere stabile l'ordine tra le pagine
+        for (int i = 0; i < 7; i++) {
+            transactionService.createTransaction(Transaction.builder()
+                    .user(testUser).account(testAccount)
+                    .amount(BigDecimal.TEN).type(TransactionType.OUT)
+                    .description("Trans " + i).date(LocalDate.now().minusDays(i / 2))
+                    .build());
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionDto.CursorPageResponse page = transactionService.getTransactionsFilteredByCursor(
+                    testUser.getId(), null, null, null, null, null, null, false,
+                    cursor, 3, Sort.Direction.DESC, false);
+            assertNull(page.getTotalElements());
+            page.getItems().forEach(t -> seen.add(t.getId()));
+            cursor = page.getNextCursor();
+            assertEquals(page.isHasNext(), cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(7, seen.size());
+        assertEquals(7, new HashSet<>(seen).size());
+        List<LocalDate> dates = seen.stream()
+                .map(id -> transactionRepository.findById(id).orElseThrow().getDate())
+                .toList();
+        for (int i = 1; i < dates.size(); i++) {
+            assertFalse(dates.get(i).isAfter(dates.get(i - 1)));
+        }
+    }
+
+    @Test
+    void testGetTransactionsFilteredByCursor_FiltersAndOptionalTotal() {
+        transactionService.createTransaction(Transaction.builder()
+                .user(testUser).account(testAccount).category(testCategory)
+                .amount(BigDecimal.TEN).type(TransactionType.OUT)
+                .description("Con categoria").date(LocalDate.now())
+                .build());
+        transactionService.createTransaction(Transaction.builder()
+                .user(testUser).account(testAccount)
+                .amount(BigDecimal.ONE).type(TransactionType.IN)
+                .description("Senza categoria").date(LocalDate.now().minusDays(1))
+                .build());
+
+        TransactionDto.CursorPageResponse page = transactionService.getTransactionsFilteredByCursor(
+                testUser.getId(), testAccount.getId(), null, testCategory.getId(), null, null, null, false,
+                null, 10, Sort.Direction.DESC, true);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(1L, page.getTotalElements());
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsFilteredByCursor(
+                testUser.getId(), null, null, null, null, null, null, false,
+                "non-un-cursore", 10, Sort.Direction.DESC, false));
+    }
+
+    @Test
+    void testGetTransactionsFiltered_SearchMatchesNotesOnlyWhenRequested() {
+        transactionService.createTransaction(Transaction.builder()
+                .user(testUser).account(testAccount)
+                .amount(BigDecimal.TEN).type(TransactionType.OUT)
+                .description("Bonifico").note("Rimborso cena con Marco").date(LocalDate.now())
+                .build());
+
+        Page<TransactionDto.TransactionResponse> withoutNotes = transactionService.getTransactionsFiltered(
+                testUser.getId(), null, null, null, null, null, "marco", false, PageRequest.of(0, 10));
+        Page<TransactionDto.TransactionResponse> withNotes = transactionService.getTransactionsFiltered(
+                testUser.getId(), null, null, null, null, null, "marco", true, PageRequest.of(0, 10));
+        Page<TransactionDto.TransactionResponse> byAccountName = transactionService.getTransactionsFiltered(
+                testUser.getId(), null, null, null, null, null, "corrente", false, PageRequest.of(0, 10));
+
+        assertEquals(0, withoutNotes.getTotalElements());
+        assertEquals(1, withNotes.getTotalElements());
+        assertEquals(1, byAccountName.getTotalElements());
+    }
+
     @Test
     void testConvertTransactionsToTransfer_SameAccount() {
         Transaction t1 = Transaction.builder()
@@ -0,0 +1,94 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import it.iacovelli.nexabudgetbe.dto.GocardlessAmount;
+import it.iacovelli.nexabudgetbe.dto.GocardlessTransaction;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test del codec binario: round-trip dei tipi cachati, compressione solo sopra soglia, header di versione.
+ */
+class BinaryCacheSerializerTest {
+
+    private final ObjectMapper cacheMapper = CacheConfig.cacheObjectMapper(new ObjectMapper());
+    private final BinaryCacheSerializer serializer =
+            new BinaryCacheSerializer(cacheMapper.copyWith(new SmileFactory()), 1024);
+
+    @Test
+    void roundTripKeepsTypes() {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        prices.put("BTC", new BigDecimal("64250.12"));
+        prices.put("ETH", new BigDecimal("3120.5"));
+
+        Object decoded = serializer.deserialize(serializer.serialize(prices));
+
+        assertEquals(prices, decoded);
+        assertEquals(BigDecimal.class, ((Map<?, ?>) decoded).get("BTC").getClass());
+    }
+
+    @Test
+    void largeValuesAreCompressedAndSmallerThanJson() {
+        List<GocardlessTransaction> transactions = transactions(500);
+
+        byte[] binary = serializer.serialize(transactions);
+        byte[] json = new GenericJackson2JsonRedisSerializer(cacheMapper).serialize(transactions);
+
+        assertEquals(BinaryCacheSerializer.FLAG_DEFLATE, binary[3]);
+        assertTrue(binary.length * 2 < json.length, binary.length + " vs " + json.length);
+        assertEquals(transactions, serializer.deserialize(binary));
+    }
+
+    @Test
+    void smallValuesAreNotCompressed() {
+        byte[] bytes = serializer.serialize("report breve");
+
+        assertEquals(0, bytes[3]);
+        assertEquals("report breve", serializer.deserialize(bytes));
+    }
+
+    @Test
+    void unknownFormatVersionIsRejected() {
+        byte[] bytes = serializer.serialize("valore");
+        bytes[2] = (byte) (BinaryCacheSerializer.FORMAT_VERSION + 1);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+        assertThrows(SerializationException.class, () -> serializer.deserialize("{\"json\":1}".getBytes()));
+    }
+
+    @Test
+    void nullAndEmpty() {
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(new byte[0]));
+        assertNull(serializer.deserialize(null));
+    }
+
+    private static List<GocardlessTransaction> transactions(int count) {
+        List<GocardlessTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GocardlessAmount amount = new GocardlessAmount();
+            amount.setAmount("-" + (i % 300) + ".45");
+            amount.setCurrency("EUR");
+            GocardlessTransaction tx = new GocardlessTransaction();
+            tx.setTransactionId("tx-" + i);
+            tx.setBookingDate("2024-03-" + (10 + i % 18));
+            tx.setValueDate(tx.getBookingDate());
+            tx.setTransactionAmount(amount);
+            tx.setCreditorName("Esercente " + (i % 40));
+            tx.setRemittanceInformationUnstructuredArray(new ArrayList<>(List.of("PAGAMENTO POS", "CARTA *1234")));
+            tx.setInternalTransactionId("int-" + i);
+            transactions.add(tx);
+        }
+        return transactions;
+    }
+}
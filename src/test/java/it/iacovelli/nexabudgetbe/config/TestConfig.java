@@ -86,8 +86,8 @@ public class TestConfig {
     public AiCategorizationService aiCategorizationService() {
         AiCategorizationService mockService = Mockito.mock(AiCategorizationService.class);
 
-        doNothing().when(mockService).updateSemanticCache(
-                anyString(), any(Category.class), any(Category.class), any(User.class), any(TransactionType.class));
+        doNothing().when(mockService).updateSemanticCache(anyString(), any(TransactionType.class), any(Category.class),
+                anyString(), any(TransactionType.class), any(Category.class), any(User.class));
         when(mockService.categorizeTransaction(anyString(), any(), any())).thenReturn(Optional.empty());
 
         return mockService;
@@ -0,0 +1,130 @@
+package it.iacovelli.nexabudgetbe.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test della cache a due livelli: lettura dal tier locale senza passare dal remoto, metriche per tier,
+ * pubblicazione delle invalidazioni e scarto della copia locale su messaggio di un'altra replica.
+ */
+class TwoLevelCacheManagerTest {
+
+    private static final String LOCAL = "cryptoPrices";
+    private static final String REMOTE_ONLY = "portfolio";
+
+    private ConcurrentMapCacheManager remote;
+    private MeterRegistry meterRegistry;
+    private StringRedisTemplate redisTemplate;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        meterRegistry = new SimpleMeterRegistry();
+        redisTemplate = mock(StringRedisTemplate.class);
+        cacheManager = new TwoLevelCacheManager(remote,
+                Map.of(LOCAL, new TwoLevelCacheManager.LocalTier(10, Duration.ofMinutes(1))),
+                meterRegistry, redisTemplate);
+    }
+
+    @Test
+    void cachesWithoutLocalTierAreServedByRemoteManager() {
+        assertSame(remote.getCache(REMOTE_ONLY), cacheManager.getCache(REMOTE_ONLY));
+        assertInstanceOf(TwoLevelCache.class, cacheManager.getCache(LOCAL));
+        assertSame(cacheManager.getCache(LOCAL), cacheManager.getCache(LOCAL));
+    }
+
+    @Test
+    void localHitDoesNotReadRemote() {
+        remote.getCache(LOCAL).put("BTC", "30000");
+        Cache cache = cacheManager.getCache(LOCAL);
+
+        assertEquals("30000", cache.get("BTC").get());
+        // Il remoto cambia senza invalidazione: la copia locale resta valida fino al TTL
+        remote.getCache(LOCAL).put("BTC", "31000");
+        assertEquals("30000", cache.get("BTC", String.class));
+        assertNull(cache.get("ETH"));
+
+        assertEquals(1.0, count("local", "hit"));
+        assertEquals(2.0, count("local", "miss"));
+        assertEquals(1.0, count("redis", "hit"));
+        assertEquals(1.0, count("redis", "miss"));
+    }
+
+    @Test
+    void loaderRunsOnceAndWritesBothTiers() {
+        Cache cache = cacheManager.getCache(LOCAL);
+
+        assertEquals("1", cache.get("ALL_USDT", () -> "1"));
+        assertEquals("1", cache.get("ALL_USDT", () -> "2"));
+
+        assertEquals("1", remote.getCache(LOCAL).get("ALL_USDT").get());
+        assertEquals(1.0, count("redis", "miss"));
+        assertEquals(1.0, count("local", "hit"));
+        verify(redisTemplate).convertAndSend(eq(TwoLevelCacheManager.INVALIDATION_CHANNEL), endsWith("\nALL_USDT"));
+    }
+
+    @Test
+    void writesAndEvictionsArePublishedToOtherReplicas() {
+        Cache cache = cacheManager.getCache(LOCAL);
+
+        cache.put("BTC", "30000");
+        cache.evict("BTC");
+        cache.clear();
+
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(3)).convertAndSend(eq(TwoLevelCacheManager.INVALIDATION_CHANNEL), messages.capture());
+        assertTrue(messages.getAllValues().get(0).endsWith("\n" + LOCAL + "\nBTC"));
+        assertTrue(messages.getAllValues().get(1).endsWith("\n" + LOCAL + "\nBTC"));
+        assertFalse(messages.getAllValues().get(2).endsWith("\nBTC"));
+    }
+
+    @Test
+    void invalidationFromOtherReplicaDropsLocalCopyOnly() {
+        Cache cache = cacheManager.getCache(LOCAL);
+        cache.put("BTC", "30000");
+        remote.getCache(LOCAL).put("BTC", "31000");
+
+        cacheManager.onMessage(message("other-instance\n" + LOCAL + "\nBTC"), null);
+
+        assertEquals("31000", cache.get("BTC").get());
+    }
+
+    @Test
+    void ownInvalidationsAreIgnored() {
+        Cache cache = cacheManager.getCache(LOCAL);
+        cache.put("BTC", "30000");
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(anyString(), published.capture());
+        remote.getCache(LOCAL).put("BTC", "31000");
+
+        cacheManager.onMessage(message(published.getValue()), null);
+
+        assertEquals("30000", cache.get("BTC").get());
+    }
+
+    private double count(String tier, String result) {
+        return meterRegistry.get(TwoLevelCache.REQUESTS_METRIC)
+                .tags("cache", LOCAL, "tier", tier, "result", result)
+                .counter().count();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TwoLevelCacheManager.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
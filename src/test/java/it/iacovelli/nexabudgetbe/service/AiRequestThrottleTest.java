@@ -0,0 +1,79 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test del limitatore della categorizzazione massiva: limite di richieste in volo AIMD (dimezzato sui 429,
+ * risalita additiva sui successi) e pausa di backoff dopo un 429.
+ */
+class AiRequestThrottleTest {
+
+    @Test
+    void quotaExceeded_halvesTheLimitAndSuccessesRaiseItBack() throws InterruptedException {
+        AiRequestThrottle throttle = new AiRequestThrottle(6_000, 8, 1, 1);
+
+        throttle.acquire();
+        throttle.release(AiRequestThrottle.Outcome.QUOTA_EXCEEDED);
+        assertEquals(4, throttle.currentLimit());
+        throttle.acquire();
+        throttle.release(AiRequestThrottle.Outcome.QUOTA_EXCEEDED);
+        assertEquals(2, throttle.currentLimit());
+
+        for (int i = 0; i < 20; i++) {
+            throttle.acquire();
+            throttle.release(AiRequestThrottle.Outcome.SUCCESS);
+        }
+        assertTrue(throttle.currentLimit() > 2);
+        assertTrue(throttle.currentLimit() <= 8);
+    }
+
+    @Test
+    void limit_neverDropsBelowOne() throws InterruptedException {
+        AiRequestThrottle throttle = new AiRequestThrottle(6_000, 2, 1, 1);
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire();
+            throttle.release(AiRequestThrottle.Outcome.QUOTA_EXCEEDED);
+        }
+        assertEquals(1, throttle.currentLimit());
+    }
+
+    @Test
+    void acquire_blocksWhileTheLimitIsReached() throws InterruptedException {
+        AiRequestThrottle throttle = new AiRequestThrottle(6_000, 1, 1, 1);
+        throttle.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread second = Thread.ofVirtual().start(() -> {
+            try {
+                throttle.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        throttle.release(AiRequestThrottle.Outcome.SUCCESS);
+        assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        second.join();
+    }
+
+    @Test
+    void acquire_waitsForTheBackoffAfterQuotaExceeded() throws InterruptedException {
+        AiRequestThrottle throttle = new AiRequestThrottle(6_000, 4, 300, 300);
+        throttle.acquire();
+        throttle.release(AiRequestThrottle.Outcome.QUOTA_EXCEEDED);
+
+        long start = System.nanoTime();
+        throttle.acquire();
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+        throttle.release(AiRequestThrottle.Outcome.SUCCESS);
+
+        assertTrue(waitedMs >= 250, "atteso il backoff, attesa effettiva " + waitedMs + " ms");
+    }
+}
@@ -0,0 +1,131 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test del modello locale di categorizzazione: normalizzazione delle descrizioni, dizionario dei merchant con
+ * confidenza smorzata sulle poche osservazioni, classificatore a trigrammi per le descrizioni mai viste e
+ * aggiornamento incrementale alla ricategorizzazione.
+ */
+class CategorizerModelTest {
+
+    private static final UUID SPESA = UUID.randomUUID();
+    private static final UUID TRASPORTI = UUID.randomUUID();
+    private static final UUID STIPENDIO = UUID.randomUUID();
+
+    @Test
+    void tokens_dropDigitsAccentsAndBankBoilerplate() {
+        assertEquals(List.of("esselunga", "milano"),
+                CategorizerModel.tokens("PAGAMENTO POS 12/03 ESSELUNGA S.P.A. - Milano 0042"));
+        assertEquals(List.of("caffe", "cantu"), CategorizerModel.tokens("Caffè Cantù"));
+        assertTrue(CategorizerModel.tokens("POS 1234").isEmpty());
+    }
+
+    @Test
+    void knownMerchant_isPredictedWithHighConfidence() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("PAGAMENTO POS ESSELUNGA 1234 MILANO", TransactionType.OUT, SPESA, 5);
+
+        Optional<CategorizerModel.Prediction> prediction =
+                model.predict("Pagamento pos Esselunga 9876 Milano", TransactionType.OUT);
+
+        assertTrue(prediction.isPresent());
+        assertEquals(SPESA, prediction.get().categoryId());
+        assertTrue(prediction.get().confidence() >= 0.85);
+    }
+
+    @Test
+    void singleObservation_staysBelowDefaultThreshold() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Esselunga Milano", TransactionType.OUT, SPESA, 1);
+
+        Optional<CategorizerModel.Prediction> prediction = model.predict("Esselunga Milano", TransactionType.OUT);
+
+        assertTrue(prediction.isPresent());
+        assertTrue(prediction.get().confidence() < 0.85);
+    }
+
+    @Test
+    void conflictingHistory_lowersConfidence() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Amazon Marketplace", TransactionType.OUT, SPESA, 6);
+        model.add("Amazon Marketplace", TransactionType.OUT, TRASPORTI, 4);
+
+        CategorizerModel.Prediction prediction = model.predict("AMAZON MARKETPLACE", TransactionType.OUT).orElseThrow();
+
+        assertEquals(SPESA, prediction.categoryId());
+        assertTrue(prediction.confidence() < 0.85);
+    }
+
+    @Test
+    void transactionTypes_areLearnedSeparately() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Bonifico stipendio ACME", TransactionType.IN, STIPENDIO, 12);
+
+        assertTrue(model.predict("Bonifico stipendio ACME", TransactionType.OUT).isEmpty());
+        assertEquals(STIPENDIO, model.predict("Bonifico stipendio ACME", TransactionType.IN).orElseThrow().categoryId());
+    }
+
+    @Test
+    void unseenDescription_isClassifiedByNgrams() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Esselunga Milano", TransactionType.OUT, SPESA, 15);
+        model.add("Trenitalia Roma Termini", TransactionType.OUT, TRASPORTI, 15);
+
+        CategorizerModel.Prediction prediction = model.predict("ESSELUNGA TORINO", TransactionType.OUT).orElseThrow();
+
+        assertEquals(SPESA, prediction.categoryId());
+        assertTrue(prediction.confidence() >= 0.85);
+    }
+
+    @Test
+    void unrelatedMerchant_isNotClassifiedByNgrams() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Esselunga Milano", TransactionType.OUT, SPESA, 15);
+        model.add("Trenitalia Roma Termini", TransactionType.OUT, TRASPORTI, 15);
+
+        assertTrue(model.predict("NETFLIX", TransactionType.OUT).isEmpty());
+        assertTrue(model.predict("Amazon Prime", TransactionType.OUT).isEmpty());
+    }
+
+    @Test
+    void ngrams_needEnoughExamples() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Esselunga Milano", TransactionType.OUT, SPESA, 3);
+        model.add("Trenitalia Roma", TransactionType.OUT, TRASPORTI, 3);
+
+        assertTrue(model.predict("Esselunga Torino", TransactionType.OUT).isEmpty());
+    }
+
+    @Test
+    void recategorization_movesTheObservation() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Farmacia Centrale", TransactionType.OUT, SPESA, 1);
+
+        model.remove("Farmacia Centrale", TransactionType.OUT, SPESA);
+        model.add("Farmacia Centrale", TransactionType.OUT, TRASPORTI, 1);
+
+        assertEquals(TRASPORTI, model.predict("Farmacia Centrale", TransactionType.OUT).orElseThrow().categoryId());
+    }
+
+    @Test
+    void remove_neverGoesBelowZero() {
+        CategorizerModel model = new CategorizerModel();
+        model.add("Farmacia Centrale", TransactionType.OUT, SPESA, 1);
+
+        model.remove("Farmacia Centrale", TransactionType.OUT, TRASPORTI);
+        model.remove("Farmacia Centrale", TransactionType.OUT, SPESA);
+        model.remove("Farmacia Centrale", TransactionType.OUT, SPESA);
+
+        assertTrue(model.predict("Farmacia Centrale", TransactionType.OUT).isEmpty());
+        model.add("Farmacia Centrale", TransactionType.OUT, SPESA, 1);
+        assertEquals(SPESA, model.predict("Farmacia Centrale", TransactionType.OUT).orElseThrow().categoryId());
+    }
+}
@@ -0,0 +1,112 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.config.TwoLevelCacheManager;
+import it.iacovelli.nexabudgetbe.model.Category;
+import it.iacovelli.nexabudgetbe.model.User;
+import it.iacovelli.nexabudgetbe.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CategoryCatalogServiceTest {
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
+    @Mock
+    private ObjectProvider<TwoLevelCacheManager> cacheManager;
+
+    private CategoryCatalogService service;
+
+    private final User user = User.builder().id(UUID.randomUUID()).username("testuser").build();
+    private final Category spesa = Category.builder().id(UUID.randomUUID()).name("Spesa").user(user).build();
+    private final Category trasporti = Category.builder().id(UUID.randomUUID()).name("Trasporti").build();
+
+    @BeforeEach
+    void setUp() {
+        service = new CategoryCatalogService(categoryRepository, cacheManager, 100, 30);
+    }
+
+    @Test
+    void get_repeatedReads_loadOnce() {
+        when(categoryRepository.findByUserOrDefault(user)).thenReturn(List.of(spesa, trasporti));
+
+        for (int i = 0; i < 5000; i++) {
+            service.get(user);
+        }
+
+        verify(categoryRepository, times(1)).findByUserOrDefault(user);
+    }
+
+    @Test
+    void get_buildsIndexesAndPromptList() {
+        when(categoryRepository.findByUserOrDefault(user)).thenReturn(List.of(spesa, trasporti));
+
+        CategoryCatalog catalog = service.get(user);
+
+        assertEquals(spesa.getId(), catalog.findByName("sPeSa").orElseThrow().getId());
+        assertEquals("Trasporti", catalog.findById(trasporti.getId()).orElseThrow().getName());
+        assertTrue(catalog.findByName("Svago").isEmpty());
+        assertEquals("- Spesa\n- Trasporti", catalog.promptList());
+        assertSame(user, catalog.findById(spesa.getId()).orElseThrow().getUser());
+        assertNull(catalog.findById(trasporti.getId()).orElseThrow().getUser());
+    }
+
+    @Test
+    void changed_userCategories_reloadsOnlyThatUser() {
+        User other = User.builder().id(UUID.randomUUID()).username("other").build();
+        when(categoryRepository.findByUserOrDefault(user)).thenReturn(List.of(spesa));
+        when(categoryRepository.findByUserOrDefault(other)).thenReturn(List.of(trasporti));
+        service.get(user);
+        service.get(other);
+
+        service.changed(user.getId());
+        service.get(user);
+        service.get(other);
+
+        verify(categoryRepository, times(2)).findByUserOrDefault(user);
+        verify(categoryRepository, times(1)).findByUserOrDefault(other);
+    }
+
+    @Test
+    void changed_defaultCategories_reloadsEveryone() {
+        when(categoryRepository.findByUserOrDefault(user)).thenReturn(List.of(trasporti));
+        service.get(user);
+
+        service.changed(null);
+        service.get(user);
+
+        verify(categoryRepository, times(2)).findByUserOrDefault(user);
+    }
+
+    @Test
+    void changed_insideTransaction_reloadsAgainAfterCompletion() {
+        when(categoryRepository.findByUserOrDefault(user)).thenReturn(List.of(spesa));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.changed(user.getId());
+            // Letta dentro la transazione, prima che la scrittura sia visibile agli altri
+            service.get(user);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        service.get(user);
+
+        verify(categoryRepository, times(2)).findByUserOrDefault(user);
+    }
+}
@@ -0,0 +1,116 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.dto.AccountDto;
+import it.iacovelli.nexabudgetbe.dto.ReportDto;
+import it.iacovelli.nexabudgetbe.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test della dashboard: sezioni calcolate in parallelo con un contesto condiviso e la stessa data di
+ * riferimento, totale dei conti convertito, risposta parziale quando una sezione scade o fallisce.
+ */
+@ExtendWith(MockitoExtension.class)
+class DashboardServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 15);
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private ReportService reportService;
+
+    @Mock
+    private BudgetService budgetService;
+
+    @Mock
+    private CurrencyConversionService conversionService;
+
+    private DashboardService dashboardService;
+    private ReportService.RequestContext context;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        dashboardService = new DashboardService(accountService, reportService, budgetService, 300);
+        user = new User();
+        user.setDefaultCurrency("EUR");
+        context = new ReportService.RequestContext(new ConversionContext(conversionService, "EUR"), Map.of());
+        when(reportService.newRequestContext(user)).thenReturn(context);
+        lenient().when(accountService.getAccountsByUser(user)).thenReturn(List.of(
+                account("EUR", "100.00"),
+                account("USD", "50.00")));
+        lenient().when(conversionService.rateOn("USD", "EUR", null)).thenReturn(new BigDecimal("0.9"));
+        lenient().when(reportService.getMonthlyTrend(eq(user), eq(6), same(context), eq(DATE)))
+                .thenReturn(new ReportDto.MonthlyTrendResponse("EUR", List.of()));
+        lenient().when(reportService.getMonthlyProjection(eq(user), same(context), eq(DATE)))
+                .thenReturn(new ReportDto.MonthlyProjection());
+        lenient().when(budgetService.getBudgetMonthlySummary(user, DATE)).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dashboardService.shutdown();
+    }
+
+    @Test
+    void allSectionsShareTheRequestContext() {
+        when(reportService.getCategoryBreakdown(eq(user), eq(DATE.withDayOfMonth(1)), eq(DATE), same(context)))
+                .thenReturn(new ReportDto.CategoryBreakdownResponse());
+        when(reportService.getBalanceTrend(eq(user), eq(LocalDate.of(2024, 9, 1)), eq(DATE), same(context)))
+                .thenReturn(new ReportDto.BalanceTrendResponse());
+
+        var dashboard = dashboardService.getDashboard(user, 6, DATE);
+
+        assertEquals(List.of(), dashboard.getUnavailableSections());
+        assertEquals(2, dashboard.getAccounts().size());
+        assertEquals(new BigDecimal("145.00"), dashboard.getTotalBalance());
+        assertNotNull(dashboard.getMonthlyTrend());
+        assertNotNull(dashboard.getCategoryBreakdown());
+        assertNotNull(dashboard.getBalanceTrend());
+        assertNotNull(dashboard.getProjection());
+        assertNotNull(dashboard.getBudgets());
+        verify(reportService).newRequestContext(user);
+    }
+
+    @Test
+    void slowAndFailingSectionsAreReportedAsUnavailable() {
+        when(reportService.getCategoryBreakdown(any(), any(), any(), any())).thenAnswer(inv -> {
+            Thread.sleep(5_000);
+            return new ReportDto.CategoryBreakdownResponse();
+        });
+        when(reportService.getBalanceTrend(any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("rollup non disponibile"));
+
+        long start = System.nanoTime();
+        var dashboard = dashboardService.getDashboard(user, 6, DATE);
+
+        assertTrue(System.nanoTime() - start < 3_000_000_000L);
+        assertEquals(List.of("categoryBreakdown", "balanceTrend"), dashboard.getUnavailableSections());
+        assertNull(dashboard.getCategoryBreakdown());
+        assertNull(dashboard.getBalanceTrend());
+        assertNotNull(dashboard.getMonthlyTrend());
+        assertEquals(new BigDecimal("145.00"), dashboard.getTotalBalance());
+    }
+
+    private static AccountDto.AccountResponse account(String currency, String balance) {
+        return AccountDto.AccountResponse.builder()
+                .currency(currency)
+                .actualBalance(new BigDecimal(balance))
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRateServiceTest {
+
+    @Mock
+    private ExchangeRateTableClient tableClient;
+
+    private ExchangeRateService exchangeRateService;
+
+    @BeforeEach
+    void setUp() {
+        exchangeRateService = new ExchangeRateService(tableClient, "USD", 2);
+    }
+
+    @Test
+    void getRate_loadsWholeTableOnceAndServesOtherPairsFromMemory() {
+        when(tableClient.fetchTable("EUR")).thenReturn(table("EUR", Map.of("USD", "1.10", "GBP", "0.85")));
+
+        assertEquals(Optional.of(new BigDecimal("1.10")), exchangeRateService.getRate("eur", "usd"));
+        assertEquals(Optional.of(new BigDecimal("0.85")), exchangeRateService.getRate("EUR", "GBP"));
+        // Inverso dalla stessa tabella, senza caricare quella USD
+        assertEquals(0, new BigDecimal("0.9090909090909091").compareTo(exchangeRateService.getRate("USD", "EUR").orElseThrow()));
+
+        verify(tableClient, times(1)).fetchTable("EUR");
+        verifyNoMoreInteractions(tableClient);
+    }
+
+    @Test
+    void getRate_triangulatesThroughPivotTable() {
+        when(tableClient.fetchTable("CHF")).thenReturn(null);
+        when(tableClient.fetchTable("USD")).thenReturn(table("USD", Map.of("CHF", "0.80", "JPY", "150")));
+
+        BigDecimal rate = exchangeRateService.getRate("CHF", "JPY").orElseThrow();
+
+        assertEquals(0, new BigDecimal("187.5").compareTo(rate));
+        // La base fallita non viene richiesta di nuovo subito: la coppia si risolve dalla pivot in memoria
+        assertTrue(exchangeRateService.getRate("CHF", "JPY").isPresent());
+        verify(tableClient, times(1)).fetchTable("CHF");
+    }
+
+    @Test
+    void getRate_unknownCurrencyIsEmpty() {
+        when(tableClient.fetchTable("XYZ")).thenReturn(null);
+        when(tableClient.fetchTable("USD")).thenReturn(table("USD", Map.of("EUR", "0.9")));
+
+        assertTrue(exchangeRateService.getRate("XYZ", "EUR").isEmpty());
+        assertTrue(exchangeRateService.getRate("XYZ", "EUR").isEmpty());
+        verify(tableClient, times(1)).fetchTable("XYZ");
+    }
+
+    @Test
+    void refreshTables_replacesTablesAndKeepsStaleOnFailure() {
+        when(tableClient.fetchTable("EUR"))
+                .thenReturn(table("EUR", Map.of("USD", "1.10")))
+                .thenReturn(table("EUR", Map.of("USD", "1.20")))
+                .thenReturn(null);
+
+        exchangeRateService.getRate("EUR", "USD");
+        exchangeRateService.refreshTables();
+        assertEquals(Optional.of(new BigDecimal("1.20")), exchangeRateService.getRate("EUR", "USD"));
+
+        exchangeRateService.refreshTables();
+        assertEquals(Optional.of(new BigDecimal("1.20")), exchangeRateService.getRate("EUR", "USD"));
+    }
+
+    @Test
+    void nearCache_isBoundedButKeepsPivot() {
+        when(tableClient.fetchTable("USD")).thenReturn(table("USD", Map.of("EUR", "0.9")));
+        when(tableClient.fetchTable("GBP")).thenReturn(table("GBP", Map.of("SEK", "13")));
+        when(tableClient.fetchTable("NOK")).thenReturn(table("NOK", Map.of("DKK", "0.65")));
+
+        exchangeRateService.getRate("USD", "EUR");
+        exchangeRateService.getRate("GBP", "SEK");
+        exchangeRateService.getRate("NOK", "DKK");
+
+        // Limite 2: GBP è uscita, la pivot USD è rimasta
+        exchangeRateService.getRate("USD", "EUR");
+        exchangeRateService.getRate("GBP", "SEK");
+        verify(tableClient, times(1)).fetchTable("USD");
+        verify(tableClient, times(2)).fetchTable("GBP");
+    }
+
+    private static ExchangeRateTable table(String base, Map<String, String> rates) {
+        Map<String, BigDecimal> parsed = new java.util.HashMap<>();
+        rates.forEach((currency, rate) -> parsed.put(currency, new BigDecimal(rate)));
+        return new ExchangeRateTable(base, parsed, Instant.now());
+    }
+}
@@ -0,0 +1,143 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.model.ExchangeRate;
+import it.iacovelli.nexabudgetbe.repository.ExchangeRateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test dello storico dei tassi: ricerca per data sulla serie in memoria, inverso e triangolazione sulla pivot,
+ * registrazione della fotografia giornaliera.
+ */
+@ExtendWith(MockitoExtension.class)
+class HistoricalExchangeRateServiceTest {
+
+    private static final LocalDate JAN = LocalDate.of(2024, 1, 31);
+    private static final LocalDate FEB = LocalDate.of(2024, 2, 29);
+
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+
+    @Mock
+    private ExchangeRateTableClient tableClient;
+
+    private HistoricalExchangeRateService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new HistoricalExchangeRateService(exchangeRateRepository, tableClient, "USD", false);
+    }
+
+    @Test
+    void getRate_usesLastRateOnOrBeforeDate() {
+        loadHistory(
+                row(JAN, "EUR", "0.90"),
+                row(FEB, "EUR", "0.95"));
+
+        assertEquals(new BigDecimal("0.90"), service.getRate("USD", "EUR", JAN).orElseThrow());
+        assertEquals(new BigDecimal("0.90"), service.getRate("USD", "EUR", JAN.plusDays(10)).orElseThrow());
+        assertEquals(new BigDecimal("0.95"), service.getRate("USD", "EUR", FEB.plusYears(1)).orElseThrow());
+        // Prima dell'inizio dello storico vale il primo tasso registrato
+        assertEquals(new BigDecimal("0.90"), service.getRate("usd", "eur", LocalDate.of(2019, 5, 1)).orElseThrow());
+    }
+
+    @Test
+    void getRate_derivesInverseAndCrossRatesFromPivot() {
+        loadHistory(
+                row(JAN, "EUR", "0.80"),
+                row(JAN, "GBP", "0.60"));
+
+        assertEquals(0, new BigDecimal("1.25").compareTo(service.getRate("EUR", "USD", JAN).orElseThrow()));
+        assertEquals(0, new BigDecimal("0.75").compareTo(service.getRate("EUR", "GBP", JAN).orElseThrow()));
+        assertTrue(service.getRate("EUR", "CHF", JAN).isEmpty());
+    }
+
+    @Test
+    void convert_fallsBackToCurrentRateWhenHistoryMissesPair() {
+        loadHistory(row(JAN, "EUR", "0.80"));
+        ExchangeRateService current = mock(ExchangeRateService.class);
+        when(current.getRate("USD", "CHF")).thenReturn(java.util.Optional.of(new BigDecimal("0.90")));
+        CurrencyConversionService conversion = new CurrencyConversionService(current, service);
+
+        assertEquals(new BigDecimal("80.00"), conversion.convert(new BigDecimal("100"), "USD", "EUR", JAN));
+        assertEquals(new BigDecimal("90.00"), conversion.convert(new BigDecimal("100"), "USD", "CHF", JAN));
+        verify(current, never()).getRate("USD", "EUR");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordDailyRates_storesPivotTableOnceAndUpdatesSeries() {
+        loadHistory(row(JAN, "EUR", "0.80"));
+        LocalDate today = LocalDate.now();
+        when(exchangeRateRepository.existsByRateDateAndBase(today, "USD")).thenReturn(false);
+        when(tableClient.fetchTable("USD")).thenReturn(new ExchangeRateTable("USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.92")), Instant.now()));
+
+        service.recordDailyRates();
+
+        ArgumentCaptor<List<ExchangeRate>> saved = ArgumentCaptor.forClass(List.class);
+        verify(exchangeRateRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals("EUR", saved.getValue().getFirst().getQuote());
+        assertEquals(new BigDecimal("0.92"), service.getRate("USD", "EUR", today).orElseThrow());
+        assertEquals(new BigDecimal("0.80"), service.getRate("USD", "EUR", JAN).orElseThrow());
+    }
+
+    @Test
+    void recordDailyRates_skipsWhenTodayAlreadyRecorded() {
+        loadHistory(row(JAN, "EUR", "0.80"));
+        LocalDate today = LocalDate.now();
+        when(exchangeRateRepository.existsByRateDateAndBase(any(), any())).thenReturn(true);
+        when(exchangeRateRepository.findAllRatesOrderByDate()).thenReturn(List.of(
+                row(JAN, "EUR", "0.80"),
+                row(today, "EUR", "0.92")));
+
+        service.recordDailyRates();
+
+        verifyNoInteractions(tableClient);
+        verify(exchangeRateRepository, never()).saveAll(any());
+        // La fotografia scritta da un'altra replica entra comunque nelle serie in memoria
+        assertEquals(new BigDecimal("0.92"), service.getRate("USD", "EUR", today).orElseThrow());
+    }
+
+    @Test
+    void recordDailyRates_concurrentWriteByAnotherInstance_reloadsSeries() {
+        loadHistory(row(JAN, "EUR", "0.80"));
+        LocalDate today = LocalDate.now();
+        when(exchangeRateRepository.existsByRateDateAndBase(today, "USD")).thenReturn(false);
+        when(tableClient.fetchTable("USD")).thenReturn(new ExchangeRateTable("USD",
+                Map.of("EUR", new BigDecimal("0.93")), Instant.now()));
+        when(exchangeRateRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(exchangeRateRepository.findAllRatesOrderByDate()).thenReturn(List.of(
+                row(JAN, "EUR", "0.80"),
+                row(today, "EUR", "0.92")));
+
+        service.recordDailyRates();
+
+        assertEquals(new BigDecimal("0.92"), service.getRate("USD", "EUR", today).orElseThrow());
+    }
+
+    private void loadHistory(Object[]... rows) {
+        when(exchangeRateRepository.findAllRatesOrderByDate()).thenReturn(List.of(rows));
+        service.loadSeries();
+    }
+
+    private static Object[] row(LocalDate date, String quote, String rate) {
+        return new Object[]{"USD", quote, date, new BigDecimal(rate)};
+    }
+}
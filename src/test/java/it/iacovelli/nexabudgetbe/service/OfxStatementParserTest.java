@@ -0,0 +1,129 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test del tokenizer OFX: blocchi SGML senza tag di chiusura, XML con chiusure e attributi,
+ * prima occorrenza dei campi, blocchi incompleti saltati e limite di righe.
+ */
+class OfxStatementParserTest {
+
+    private static final String SGML = """
+            OFXHEADER:100
+            DATA:OFXSGML
+            VERSION:102
+
+            <OFX>
+            <BANKMSGSRSV1><STMTTRNRS><STMTRS>
+            <BANKTRANLIST>
+            <DTSTART>20250101
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <DTPOSTED>20250105120000.000[+1:CET]
+            <TRNAMT>-12,50
+            <FITID>A-1
+            <NAME>Supermercato Rossi
+            <MEMO>Spesa settimanale
+            <STMTTRN>
+            <TRNTYPE>CREDIT
+            <DTPOSTED>20250106
+            <TRNAMT>1500.00
+            <FITID>A-2
+            <MEMO>Stipendio gennaio
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <TRNAMT>-3.00
+            <NAME>Senza data
+            </BANKTRANLIST>
+            </STMTRS></STMTTRNRS></BANKMSGSRSV1>
+            </OFX>
+            """;
+
+    private static final String XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <?OFX OFXHEADER="200" VERSION="220"?>
+            <OFX>
+              <BANKTRANLIST>
+                <stmttrn>
+                  <trntype>DEBIT</trntype>
+                  <dtposted>20250210</dtposted>
+                  <trnamt>-45.90</trnamt>
+                  <fitid>X-1</fitid>
+                  <name>Farmacia Centrale</name>
+                  <payee><name>Ignorato</name></payee>
+                </stmttrn>
+                <STMTTRN type="extra">
+                  <DTPOSTED>2025-bad</DTPOSTED>
+                  <TRNAMT>-1.00</TRNAMT>
+                </STMTTRN>
+                <STMTTRN>
+                  <DTPOSTED>20250211</DTPOSTED>
+                  <TRNAMT>20.00</TRNAMT>
+                  <NAME></NAME>
+                  <MEMO>Rimborso</MEMO>
+                </STMTTRN>
+              </BANKTRANLIST>
+            </OFX>
+            """;
+
+    @Test
+    void parse_sgmlWithoutClosingTags() throws Exception {
+        List<OfxStatementParser.Entry> entries = parse(SGML, 100);
+
+        assertEquals(2, entries.size());
+        OfxStatementParser.Entry first = entries.get(0);
+        assertEquals(LocalDate.of(2025, 1, 5), first.date());
+        assertEquals(0, new BigDecimal("-12.50").compareTo(first.amount()));
+        assertEquals("A-1", first.fitId());
+        assertEquals("Supermercato Rossi", first.name());
+        assertEquals("Spesa settimanale", first.memo());
+
+        OfxStatementParser.Entry second = entries.get(1);
+        assertNull(second.name());
+        assertEquals("Stipendio gennaio", second.memo());
+        assertEquals(0, new BigDecimal("1500.00").compareTo(second.amount()));
+    }
+
+    @Test
+    void parse_xmlCaseInsensitiveAndFirstOccurrenceWins() throws Exception {
+        List<OfxStatementParser.Entry> entries = parse(XML, 100);
+
+        assertEquals(2, entries.size());
+        assertEquals("Farmacia Centrale", entries.get(0).name());
+        assertEquals("X-1", entries.get(0).fitId());
+        assertEquals(LocalDate.of(2025, 2, 10), entries.get(0).date());
+        assertNull(entries.get(1).name());
+        assertEquals("Rimborso", entries.get(1).memo());
+    }
+
+    @Test
+    void parse_reportsSkippedBlocks() throws Exception {
+        int[] invalid = {0};
+        int emitted = OfxStatementParser.parse(new StringReader(SGML + XML), 100, entry -> {
+        }, () -> invalid[0]++);
+
+        assertEquals(4, emitted);
+        assertEquals(2, invalid[0]);
+    }
+
+    @Test
+    void parse_stopsAtMaxRows() throws Exception {
+        assertEquals(1, parse(SGML, 1).size());
+    }
+
+    private List<OfxStatementParser.Entry> parse(String content, int maxRows) throws Exception {
+        List<OfxStatementParser.Entry> entries = new ArrayList<>();
+        int emitted = OfxStatementParser.parse(new StringReader(content), maxRows, entries::add);
+        assertEquals(entries.size(), emitted);
+        return entries;
+    }
+}
@@ -0,0 +1,91 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import it.iacovelli.nexabudgetbe.config.CacheConfig;
+import it.iacovelli.nexabudgetbe.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test della cache dei report: un report ricalcolato solo al cambio di generazione, dei parametri o della
+ * valuta dell'utente; gli errori del calcolo non vengono messi in cache.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportCacheServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 3, 31);
+
+    @Mock
+    private UserDataGenerationService generationService;
+
+    private ReportCacheService reportCache;
+    private User user;
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        reportCache = new ReportCacheService(new ConcurrentMapCacheManager(CacheConfig.REPORTS_CACHE), generationService);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setDefaultCurrency("EUR");
+    }
+
+    @Test
+    void sameGenerationIsServedFromCache() {
+        when(generationService.current(user.getId())).thenReturn(3L);
+
+        assertEquals("r1", report(START, END));
+        assertEquals("r1", report(START, END));
+
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void newGenerationRecomputes() {
+        when(generationService.current(user.getId())).thenReturn(3L, 4L);
+
+        assertEquals("r1", report(START, END));
+        assertEquals("r2", report(START, END));
+    }
+
+    @Test
+    void parametersAndCurrencyArePartOfTheKey() {
+        when(generationService.current(user.getId())).thenReturn(3L);
+
+        report(START, END);
+        report(START, END.plusMonths(1));
+        user.setDefaultCurrency("USD");
+        report(START, END);
+
+        assertEquals(3, computations.get());
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        when(generationService.current(user.getId())).thenReturn(3L);
+
+        assertThrows(IllegalArgumentException.class, () -> reportCache.get(user, "balance-trend",
+                List.of(END, START), String.class, () -> {
+                    throw new IllegalArgumentException("endDate prima di startDate");
+                }));
+        assertEquals("r1", reportCache.get(user, "balance-trend", List.of(END, START), String.class,
+                () -> "r" + computations.incrementAndGet()));
+    }
+
+    private String report(LocalDate start, LocalDate end) {
+        return reportCache.get(user, "category-breakdown", List.of(start, end), String.class,
+                () -> "r" + computations.incrementAndGet());
+    }
+}
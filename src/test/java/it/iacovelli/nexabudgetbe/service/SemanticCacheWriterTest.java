@@ -0,0 +1,109 @@
+package it.iacovelli.nexabudgetbe.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SemanticCacheWriterTest {
+
+    @Mock
+    private SemanticCacheService semanticCacheService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID userId = UUID.randomUUID();
+
+    private SemanticCacheWriter writer(int capacity, int batchSize) {
+        return new SemanticCacheWriter(semanticCacheService, meterRegistry, capacity, batchSize);
+    }
+
+    private double writes(String outcome) {
+        return meterRegistry.counter(SemanticCacheWriter.WRITES_COUNTER, "outcome", outcome).count();
+    }
+
+    @Test
+    void enqueue_withoutTransaction_isFlushedInBatches() {
+        when(semanticCacheService.saveAll(anyList())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        SemanticCacheWriter writer = writer(100, 2);
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue("Descrizione " + i, "Shopping", userId);
+        }
+        assertEquals(5, meterRegistry.get(SemanticCacheWriter.PENDING_METRIC).gauge().value());
+
+        writer.flush();
+
+        verify(semanticCacheService, times(3)).saveAll(anyList());
+        assertEquals(0, writer.pending());
+        assertEquals(5, writes("written"));
+        assertEquals(3, meterRegistry.get(SemanticCacheWriter.FLUSH_TIMER).timer().count());
+    }
+
+    @Test
+    void enqueue_sameUserAndDescription_keepsLastCategory() {
+        when(semanticCacheService.saveAll(anyList())).thenReturn(1);
+        SemanticCacheWriter writer = writer(100, 10);
+        writer.enqueue("Esselunga", "Shopping", userId);
+        writer.enqueue("Esselunga", "Alimentari e Supermercati", userId);
+
+        writer.flush();
+
+        ArgumentCaptor<List<SemanticCacheService.Entry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(semanticCacheService).saveAll(captor.capture());
+        assertEquals(List.of(new SemanticCacheService.Entry(userId, "Esselunga", "Alimentari e Supermercati")),
+                captor.getValue());
+        assertEquals(1, writes("merged"));
+    }
+
+    @Test
+    void enqueue_fullBuffer_dropsNewEntries() {
+        SemanticCacheWriter writer = writer(2, 10);
+        writer.enqueue("Esselunga", "Alimentari", userId);
+        writer.enqueue("Trenitalia", "Trasporti", userId);
+        writer.enqueue("Netflix", "Abbonamenti", userId);
+
+        assertEquals(2, writer.pending());
+        assertEquals(1, writes("dropped"));
+    }
+
+    @Test
+    void enqueue_insideTransaction_waitsForCommit() {
+        SemanticCacheWriter writer = writer(100, 10);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.enqueue("Esselunga", "Alimentari", userId);
+            assertEquals(0, writer.pending());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, writer.pending());
+    }
+
+    @Test
+    void flush_storeFailure_countsFailedEntries() {
+        when(semanticCacheService.saveAll(anyList())).thenReturn(0);
+        SemanticCacheWriter writer = writer(100, 10);
+        writer.enqueue("Esselunga", "Alimentari", userId);
+        writer.enqueue("Trenitalia", "Trasporti", userId);
+
+        writer.flush();
+
+        assertEquals(2, writes("failed"));
+        assertEquals(0, writer.pending());
+    }
+}
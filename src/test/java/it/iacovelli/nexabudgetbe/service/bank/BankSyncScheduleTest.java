@@ -0,0 +1,56 @@
+package it.iacovelli.nexabudgetbe.service.bank;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test della pianificazione dei sync bancari: backoff esponenziale con tetto e jitter contenuto
+ * entro ± jitterRatio attorno alla scadenza nominale.
+ */
+class BankSyncScheduleTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    @Test
+    void backoff_doublesPerFailureUpToCap() {
+        Duration base = Duration.ofMinutes(30);
+        Duration cap = Duration.ofHours(6);
+
+        assertEquals(Duration.ofMinutes(30), BankSyncSchedule.backoff(base, 1, cap));
+        assertEquals(Duration.ofMinutes(60), BankSyncSchedule.backoff(base, 2, cap));
+        assertEquals(Duration.ofMinutes(240), BankSyncSchedule.backoff(base, 4, cap));
+        assertEquals(cap, BankSyncSchedule.backoff(base, 5, cap));
+        assertEquals(cap, BankSyncSchedule.backoff(base, 1_000, cap));
+    }
+
+    @Test
+    void withoutJitter_schedulesAreExact() {
+        BankSyncSchedule schedule = new BankSyncSchedule(360, 30, 1440, 10080, 0);
+
+        assertEquals(NOW.plusHours(6), schedule.afterSuccess(NOW));
+        assertEquals(NOW.plusHours(1), schedule.afterFailure(NOW, 2));
+        assertEquals(NOW.plusHours(6), schedule.afterFailure(NOW, 10));
+        assertEquals(NOW.plusDays(2), schedule.afterReauthRequired(NOW, 2));
+        assertEquals(NOW.plusDays(7), schedule.afterReauthRequired(NOW, 10));
+    }
+
+    @Test
+    void jitter_staysWithinRatioAndSpreadsSchedules() {
+        BankSyncSchedule schedule = new BankSyncSchedule(360, 30, 1440, 10080, 0.2);
+        LocalDateTime earliest = NOW.plusMinutes(288);
+        LocalDateTime latest = NOW.plusMinutes(432);
+
+        java.util.Set<LocalDateTime> distinct = new java.util.HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime next = schedule.afterSuccess(NOW);
+            assertFalse(next.isBefore(earliest), "jitter sotto il -20%: " + next);
+            assertFalse(next.isAfter(latest), "jitter sopra il +20%: " + next);
+            distinct.add(next);
+        }
+        assertTrue(distinct.size() > 1, "il jitter deve distribuire le scadenze");
+    }
+}
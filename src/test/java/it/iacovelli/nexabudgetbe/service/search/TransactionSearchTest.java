@@ -0,0 +1,46 @@
+package it.iacovelli.nexabudgetbe.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSearchTest {
+
+    @Test
+    void blankTextMeansNoFilter() {
+        assertNull(TransactionSearch.of(null, false));
+        assertNull(TransactionSearch.of("   ", true));
+    }
+
+    @Test
+    void likePatternIsTrimmedAndLowercased() {
+        assertEquals("%amazon prime%", TransactionSearch.of("  Amazon Prime ", false).likePattern());
+    }
+
+    @Test
+    void accountIdsAreEmptyUntilResolvedByBackend() {
+        TransactionSearch search = TransactionSearch.of("Conto corrente", true);
+        UUID accountId = UUID.randomUUID();
+
+        assertTrue(search.accountIds().isEmpty());
+        TransactionSearch resolved = search.withAccountIds(List.of(accountId));
+        assertEquals(List.of(accountId), resolved.accountIds());
+        assertEquals(search.likePattern(), resolved.likePattern());
+        assertTrue(resolved.includeNotes());
+    }
+
+    @Test
+    void prefixTsQueryAndsEveryTermWithPrefixMatching() {
+        assertEquals("amaz:* & pri:*", TransactionSearch.of("Amaz pri", false).prefixTsQuery());
+        assertEquals("caffè:* & 2024:*", TransactionSearch.of("caffè, 2024", false).prefixTsQuery());
+    }
+
+    @Test
+    void prefixTsQueryDropsTsQueryOperators() {
+        assertEquals("a:* & b:*", TransactionSearch.of("a & !b | (", false).prefixTsQuery());
+        assertNull(TransactionSearch.of("&|!()", false).prefixTsQuery());
+    }
+}
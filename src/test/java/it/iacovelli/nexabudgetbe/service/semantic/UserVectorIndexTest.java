@@ -0,0 +1,132 @@
+package it.iacovelli.nexabudgetbe.service.semantic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserVectorIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    private static float[] around(float[] center, Random random, double noise) {
+        float[] vector = new float[center.length];
+        for (int i = 0; i < center.length; i++) {
+            vector[i] = (float) (center[i] + random.nextGaussian() * noise);
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        return around(new float[DIMENSIONS], random, 1);
+    }
+
+    @Test
+    void nearest_emptyIndex_returnsEmpty() {
+        UserVectorIndex index = new UserVectorIndex(100);
+
+        assertTrue(index.nearest(new float[]{1, 0}).isEmpty());
+    }
+
+    @Test
+    void nearest_flat_returnsExactMatchWithUnitCosine() {
+        UserVectorIndex index = new UserVectorIndex(100);
+        index.add(new float[]{1, 0, 0}, "A");
+        index.add(new float[]{0, 2, 0}, "B");
+
+        VectorIndex.Neighbor neighbor = index.nearest(new float[]{0, 5, 0}).orElseThrow();
+
+        assertEquals("B", neighbor.category());
+        assertEquals(1.0, neighbor.cosine(), 1e-6);
+    }
+
+    @Test
+    void add_sameDescription_replacesCategory() {
+        UserVectorIndex index = new UserVectorIndex(100);
+        index.add("X", new float[]{1, 0, 0}, "A");
+        index.add("Y", new float[]{0, 1, 0}, "C");
+        index.add("X", new float[]{1, 0, 0}, "B");
+
+        assertEquals("B", index.nearest(new float[]{1, 0, 0}).orElseThrow().category());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void add_sameDescriptionAfterHnswUpgrade_replacesCategory() {
+        UserVectorIndex index = new UserVectorIndex(2);
+        index.add("X", new float[]{1, 0, 0}, "A");
+        index.add("Y", new float[]{0, 1, 0}, "C");
+        index.add("X", new float[]{1, 0, 0}, "B");
+
+        assertEquals("B", index.nearest(new float[]{1, 0, 0}).orElseThrow().category());
+        assertEquals("C", index.nearest(new float[]{0, 1, 0}).orElseThrow().category());
+    }
+
+    @Test
+    void add_differentDimensions_isIgnored() {
+        UserVectorIndex index = new UserVectorIndex(100);
+        index.add(new float[]{1, 0, 0}, "A");
+        index.add(new float[]{1, 0}, "B");
+        index.add(new float[]{0, 0, 0}, "C");
+
+        assertEquals(1, index.size());
+        assertTrue(index.nearest(new float[]{1, 0}).isEmpty());
+    }
+
+    @Test
+    void nearest_int8_approximatesCosine() {
+        Random random = new Random(3);
+        UserVectorIndex exact = new UserVectorIndex(100);
+        UserVectorIndex quantized = new UserVectorIndex(100, new EmbeddingEncoding(0, EmbeddingEncoding.Quantization.INT8));
+        float[] stored = randomVector(random);
+        exact.add(stored, "A");
+        quantized.add(stored, "A");
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = around(stored, random, 0.5);
+            assertEquals(exact.nearest(query).orElseThrow().cosine(), quantized.nearest(query).orElseThrow().cosine(), 0.01);
+        }
+        assertTrue(quantized.weightKb() <= exact.weightKb());
+    }
+
+    @Test
+    void add_truncatedEncoding_keepsLeadingDimensions() {
+        UserVectorIndex index = new UserVectorIndex(100, new EmbeddingEncoding(2, EmbeddingEncoding.Quantization.FLOAT32));
+        index.add(new float[]{3, 4, 100}, "A");
+
+        VectorIndex.Neighbor neighbor = index.nearest(new float[]{6, 8, -100}).orElseThrow();
+
+        assertEquals(1.0, neighbor.cosine(), 1e-6);
+    }
+
+    @ParameterizedTest
+    @EnumSource(EmbeddingEncoding.Quantization.class)
+    void nearest_afterHnswUpgrade_findsQueryCluster(EmbeddingEncoding.Quantization quantization) {
+        Random random = new Random(7);
+        List<float[]> centers = new ArrayList<>();
+        for (int c = 0; c < 40; c++) {
+            centers.add(randomVector(random));
+        }
+        UserVectorIndex index = new UserVectorIndex(500, new EmbeddingEncoding(0, quantization));
+        for (int i = 0; i < 2000; i++) {
+            int cluster = i % centers.size();
+            index.add(around(centers.get(cluster), random, 0.3), "cat-" + cluster);
+        }
+        assertEquals(2000, index.size());
+
+        int matches = 0;
+        for (int q = 0; q < 200; q++) {
+            int cluster = random.nextInt(centers.size());
+            float[] query = around(centers.get(cluster), random, 0.3);
+            if (index.nearest(query).orElseThrow().category().equals("cat-" + cluster)) {
+                matches++;
+            }
+        }
+        assertTrue(matches >= 190, "Richiamo HNSW troppo basso: " + matches + "/200");
+    }
+}